@@ -0,0 +1,47 @@
+package com.dekarrin.db;
+
+/**
+ * The ways that the values of a column of a TableData can be held.
+ * Typed columns keep their values as primitives, so setting and
+ * getting them with the matching typed methods needs no conversion to
+ * or from a String. Any column can still be read and written as a
+ * String; values are converted as needed.
+ */
+public enum ColumnType {
+
+	/**
+	 * Each value is held as its own String. This is the type of
+	 * columns that are added without one.
+	 */
+	STRING,
+
+	/**
+	 * Each distinct value is held once, and rows hold an int code
+	 * that refers to it. This is best for String columns whose values
+	 * repeat often. A value stays in the dictionary even after every
+	 * row that held it has been set to something else, so this is not
+	 * suited to columns whose values are changed often.
+	 */
+	DICTIONARY,
+
+	/**
+	 * Values are held as ints.
+	 */
+	INT,
+
+	/**
+	 * Values are held as longs.
+	 */
+	LONG,
+
+	/**
+	 * Values are held as doubles.
+	 */
+	DOUBLE,
+
+	/**
+	 * Values are held as booleans. As a String, true is "1" and false
+	 * is "0".
+	 */
+	BOOLEAN
+}
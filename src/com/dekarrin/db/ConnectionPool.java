@@ -0,0 +1,399 @@
+package com.dekarrin.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Properties;
+
+/**
+ * Holds a bounded number of JDBC connections to one database so that
+ * they can be shared. A connection is borrowed, used by one thread at
+ * a time, and given back. Connections are only opened when none are
+ * idle, and no more than the maximum are ever open at once; borrowing
+ * when every connection is in use waits until one is given back.
+ *
+ * Idle connections are checked before they are handed out and are
+ * replaced if they have stopped working. Connections that have been
+ * idle for longer than the idle timeout are closed, so a pool that is
+ * busy only now and then does not hold connections open forever. The
+ * pool has no thread of its own, so this is only done when a
+ * connection is borrowed or {@link #evictIdle() evictIdle()} is
+ * called; a pool that is left unused keeps its idle connections until
+ * then.
+ *
+ * Any JDBC URL can be used, so a pool can also be set up for an
+ * embedded database in place of a MySQL server.
+ */
+public class ConnectionPool {
+
+	/**
+	 * The default time, in milliseconds, to wait for a connection.
+	 */
+	public static final long DEFAULT_BORROW_TIMEOUT = 30000L;
+
+	/**
+	 * The default time, in milliseconds, that a connection may be idle
+	 * before it is closed.
+	 */
+	public static final long DEFAULT_IDLE_TIMEOUT = 600000L;
+
+	/**
+	 * The default time, in seconds, to wait for a connection to be
+	 * checked.
+	 */
+	public static final int DEFAULT_VALIDATION_TIMEOUT = 5;
+
+	/**
+	 * How long to wait for a connection.
+	 */
+	private volatile long borrowTimeout = DEFAULT_BORROW_TIMEOUT;
+
+	/**
+	 * Whether the pool has been closed.
+	 */
+	private boolean closed = false;
+
+	/**
+	 * The connections that are not in use, most recently given back
+	 * first.
+	 */
+	private ArrayDeque<IdleConnection> idle = new ArrayDeque<IdleConnection>();
+
+	/**
+	 * How long a connection may be idle before it is closed.
+	 */
+	private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+	/**
+	 * The most connections that may be open at once.
+	 */
+	private int maxSize;
+
+	/**
+	 * The number of connections that are open, whether they are in use
+	 * or idle.
+	 */
+	private int openCount = 0;
+
+	/**
+	 * The properties that connections are opened with.
+	 */
+	private Properties properties;
+
+	/**
+	 * The JDBC URL that connections are opened to.
+	 */
+	private String url;
+
+	/**
+	 * How long to wait for a connection to be checked.
+	 */
+	private volatile int validationTimeout = DEFAULT_VALIDATION_TIMEOUT;
+
+	/**
+	 * Creates a new ConnectionPool. No connections are opened until
+	 * the first one is borrowed.
+	 *
+	 * @param url
+	 * The JDBC URL of the database.
+	 *
+	 * @param properties
+	 * The properties to open connections with, such as the user and
+	 * password.
+	 *
+	 * @param maxSize
+	 * The most connections that may be open at once.
+	 */
+	public ConnectionPool(String url, Properties properties, int maxSize) {
+		if(maxSize < 1) {
+			throw new IllegalArgumentException("Pool must allow at least one connection");
+		}
+		this.url = url;
+		this.properties = new Properties();
+		this.properties.putAll(properties);
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Borrows a connection from the pool. An idle connection is used
+	 * if there is one that still works; otherwise, a new one is opened
+	 * if the pool is not full. If it is full, this waits for up to the
+	 * borrow timeout for a connection to be given back.
+	 *
+	 * @return
+	 * The connection. This must be given back with
+	 * {@link #giveBack(Connection) giveBack()} once it is no longer
+	 * needed.
+	 *
+	 * @throws SQLException
+	 * If the pool is closed, no connection becomes free in time, or a
+	 * new connection cannot be opened.
+	 */
+	public Connection borrow() throws SQLException {
+		long deadline = System.currentTimeMillis() + borrowTimeout;
+		while(true) {
+			Connection connection = null;
+			synchronized(this) {
+				while(connection == null) {
+					if(closed) {
+						throw new SQLException("Connection pool is closed");
+					}
+					evictIdle();
+					if(!idle.isEmpty()) {
+						connection = idle.pollFirst().connection;
+					} else if(openCount < maxSize) {
+						openCount++;
+						break;
+					} else {
+						long remaining = deadline - System.currentTimeMillis();
+						if(remaining <= 0) {
+							throw new SQLException("Timed out waiting for a pooled connection");
+						}
+						try {
+							wait(remaining);
+						} catch(InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new SQLException("Interrupted while waiting for a pooled connection");
+						}
+					}
+				}
+			}
+			if(connection == null) {
+				return open();
+			} else if(isValid(connection)) {
+				return connection;
+			} else {
+				discard(connection);
+			}
+		}
+	}
+
+	/**
+	 * Closes the pool along with every idle connection. Connections
+	 * that are in use are closed when they are given back.
+	 */
+	public synchronized void close() {
+		closed = true;
+		for(IdleConnection ic: idle) {
+			closeQuietly(ic.connection);
+			openCount--;
+		}
+		idle.clear();
+		notifyAll();
+	}
+
+	/**
+	 * Closes the connections that have been idle for longer than the
+	 * idle timeout. This is also done whenever a connection is
+	 * borrowed. An application that may leave the pool unused for a
+	 * long time can call this now and then to close connections that
+	 * would otherwise stay open.
+	 */
+	public synchronized void evictIdle() {
+		long cutoff = System.currentTimeMillis() - idleTimeout;
+		Iterator<IdleConnection> oldest = idle.descendingIterator();
+		while(oldest.hasNext()) {
+			IdleConnection ic = oldest.next();
+			if(ic.since > cutoff) {
+				break;
+			}
+			oldest.remove();
+			closeQuietly(ic.connection);
+			openCount--;
+		}
+	}
+
+	/**
+	 * Gets the number of connections that are idle.
+	 *
+	 * @return
+	 * The number of idle connections.
+	 */
+	public synchronized int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * Gets the most connections that may be open at once.
+	 *
+	 * @return
+	 * The maximum size of the pool.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Gets the number of connections that are open, whether they are
+	 * in use or idle.
+	 *
+	 * @return
+	 * The number of open connections.
+	 */
+	public synchronized int getOpenCount() {
+		return openCount;
+	}
+
+	/**
+	 * Gives back a connection that was borrowed from this pool. If the
+	 * pool has been closed, or the connection has been closed, it is
+	 * dropped instead of being kept.
+	 *
+	 * @param connection
+	 * The connection.
+	 */
+	public void giveBack(Connection connection) {
+		boolean keep;
+		try {
+			keep = !connection.isClosed();
+		} catch(SQLException e) {
+			keep = false;
+		}
+		synchronized(this) {
+			if(keep && !closed) {
+				idle.addFirst(new IdleConnection(connection, System.currentTimeMillis()));
+				notifyAll();
+				return;
+			}
+		}
+		discard(connection);
+	}
+
+	/**
+	 * Sets how long to wait for a connection when every connection is
+	 * in use.
+	 *
+	 * @param timeout
+	 * The time to wait, in milliseconds.
+	 */
+	public void setBorrowTimeout(long timeout) {
+		borrowTimeout = timeout;
+	}
+
+	/**
+	 * Sets how long a connection may be idle before it is closed.
+	 *
+	 * @param timeout
+	 * The idle time, in milliseconds.
+	 */
+	public synchronized void setIdleTimeout(long timeout) {
+		idleTimeout = timeout;
+	}
+
+	/**
+	 * Sets how long to wait for an idle connection to be checked before
+	 * it is handed out.
+	 *
+	 * @param timeout
+	 * The time to wait, in seconds.
+	 */
+	public void setValidationTimeout(int timeout) {
+		validationTimeout = timeout;
+	}
+
+	/**
+	 * Closes a connection, ignoring any error.
+	 *
+	 * @param connection
+	 * The connection to close.
+	 */
+	private static void closeQuietly(Connection connection) {
+		try {
+			connection.close();
+		} catch(SQLException e) {
+			// the connection is being dropped either way
+		}
+	}
+
+	/**
+	 * Closes a connection that was counted as open and lets a waiting
+	 * thread open another in its place.
+	 *
+	 * @param connection
+	 * The connection to drop.
+	 */
+	private void discard(Connection connection) {
+		closeQuietly(connection);
+		synchronized(this) {
+			openCount--;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Checks whether a connection still works.
+	 *
+	 * @param connection
+	 * The connection to check.
+	 *
+	 * @return
+	 * Whether the connection can be used.
+	 */
+	private boolean isValid(Connection connection) {
+		boolean valid;
+		try {
+			valid = connection.isValid(validationTimeout);
+		} catch(SQLException e) {
+			valid = false;
+		}
+		return valid;
+	}
+
+	/**
+	 * Opens a new connection for a slot that has already been counted
+	 * as open.
+	 *
+	 * @return
+	 * The new connection.
+	 *
+	 * @throws SQLException
+	 * If the connection cannot be opened.
+	 */
+	private Connection open() throws SQLException {
+		Connection connection = null;
+		try {
+			connection = DriverManager.getConnection(url, properties);
+		} finally {
+			if(connection == null) {
+				synchronized(this) {
+					openCount--;
+					notifyAll();
+				}
+			}
+		}
+		return connection;
+	}
+
+	/**
+	 * A connection that is not in use, along with when it was given
+	 * back.
+	 */
+	private static class IdleConnection {
+
+		/**
+		 * The connection.
+		 */
+		public final Connection connection;
+
+		/**
+		 * When the connection was given back, in milliseconds.
+		 */
+		public final long since;
+
+		/**
+		 * Creates a new IdleConnection.
+		 *
+		 * @param connection
+		 * The connection.
+		 *
+		 * @param since
+		 * When the connection was given back, in milliseconds.
+		 */
+		public IdleConnection(Connection connection, long since) {
+			this.connection = connection;
+			this.since = since;
+		}
+	}
+}
@@ -190,6 +190,109 @@ public interface DatabaseManager {
 	 */
 	public DatabaseManager delete(String table, String where) throws SQLException;
 	
+	/**
+	 * Sets the number of rows that are held back by
+	 * {@link insertBatch(TableData) insertBatch()} and
+	 * {@link updateBatch(TableData, String) updateBatch()} before every
+	 * pending batch is sent to the database.
+	 * 
+	 * @param size
+	 * The number of rows in each batch.
+	 * 
+	 * @return
+	 * This DatabaseManager.
+	 * 
+	 * @throws SQLException
+	 * If sending the batches that are already pending fails.
+	 */
+	public DatabaseManager setBatchSize(int size) throws SQLException;
+	
+	/**
+	 * Gets the number of rows that are held back before every pending
+	 * batch is sent to the database.
+	 * 
+	 * @return
+	 * The batch size.
+	 */
+	public int getBatchSize();
+	
+	/**
+	 * Adds rows of data to a batch of inserts into a table. The rows are
+	 * not sent to the database until the rows pending for every table
+	 * reach the batch size or {@link flush() flush()} is called. Rows
+	 * with the same table and columns share a batch, and batches are
+	 * sent in the order they were started; so if rows are added to two
+	 * tables in turn, all of the pending rows of the table that was
+	 * written to first are sent before any of the other's. Rows that
+	 * another row depends on should therefore be added first, or sent
+	 * with flush() before the rows that depend on them. If a batch
+	 * fails, every unsent row is dropped. Values are passed as statement parameters,
+	 * so they do not need to be escaped. This method requires a default
+	 * database to be set, and so {@link use() use()} must be called
+	 * before this method is.
+	 * 
+	 * @param data
+	 * A TableData containing the table to insert into and the data to
+	 * be inserted.
+	 * 
+	 * @return
+	 * This DatabaseManager.
+	 * 
+	 * @throws SQLException
+	 * If there was a problem preparing the insert or sending the batch.
+	 */
+	public DatabaseManager insertBatch(TableData data) throws SQLException;
+	
+	/**
+	 * Adds rows of data to a batch of updates to a table. Each row of the
+	 * TableData updates the rows of the table whose key column holds the
+	 * same value as the row does; every other column of the TableData is
+	 * set on them. The rows are sent in the same way as those given to
+	 * {@link insertBatch(TableData) insertBatch()}. This method requires a
+	 * default database to be set, and so {@link use() use()} must be
+	 * called before this method is.
+	 * 
+	 * @param data
+	 * A TableData containing the table to update, the key column, and
+	 * the columns to be changed.
+	 * 
+	 * @param keyColumn
+	 * The column that selects the rows to update.
+	 * 
+	 * @return
+	 * This DatabaseManager.
+	 * 
+	 * @throws SQLException
+	 * If there was a problem preparing the update or sending the batch.
+	 */
+	public DatabaseManager updateBatch(TableData data, String keyColumn) throws SQLException;
+	
+	/**
+	 * Sends every pending batch to the database, in the order that the
+	 * batches were started. If one fails, the rows that were not sent
+	 * are dropped rather than kept for the next batch.
+	 * 
+	 * @return
+	 * This DatabaseManager.
+	 * 
+	 * @throws SQLException
+	 * If there was a problem executing a batch.
+	 */
+	public DatabaseManager flush() throws SQLException;
+	
+	/**
+	 * Gets the ids that were generated for the rows of the last batch of
+	 * inserts into a table that was sent to the database.
+	 * 
+	 * @param table
+	 * The table that the rows were inserted into.
+	 * 
+	 * @return
+	 * The ids, in the order that the rows were added, or an empty array
+	 * if no batch has been sent for the table.
+	 */
+	public long[] getBatchInsertIds(String table);
+	
 	/**
 	 * Passes a query directly to the RDBM. This should be avoided, as it causes
 	 * reliance on particular SQL.
@@ -226,6 +329,90 @@ public interface DatabaseManager {
 	 */
 	public TableData getResult() throws SQLException;
 	
+	/**
+	 * Sets the number of rows that a ResultCursor asks the database for
+	 * at a time. Larger sizes mean fewer trips to the database; smaller
+	 * ones mean fewer rows held in memory at once.
+	 * 
+	 * @param size
+	 * The number of rows to fetch at a time.
+	 * 
+	 * @return
+	 * This DatabaseManager.
+	 */
+	public DatabaseManager setFetchSize(int size);
+	
+	/**
+	 * Gets the number of rows that a ResultCursor asks the database for
+	 * at a time.
+	 * 
+	 * @return
+	 * The fetch size.
+	 */
+	public int getFetchSize();
+	
+	/**
+	 * Selects rows of data from a table and gives a cursor that reads
+	 * them as they arrive, rather than holding all of them as a
+	 * TableData. All columns are selected. The cursor must be closed
+	 * before another query is made. This method requires a default
+	 * database to be set, and so {@link use() use()} must be called
+	 * before this method is.
+	 * 
+	 * @param table
+	 * The table to select data from. This must be a table that exists on
+	 * the current database.
+	 * 
+	 * @param where
+	 * A condition that evaluates to true on all rows selected.
+	 * 
+	 * @return
+	 * The cursor over the selected rows.
+	 * 
+	 * @throws SQLException
+	 * If there was a problem selecting the data.
+	 */
+	public ResultCursor selectCursor(String table, String where) throws SQLException;
+	
+	/**
+	 * Passes a query directly to the RDBM and gives a cursor that reads
+	 * the rows it selects as they arrive. The cursor must be closed
+	 * before another query is made. This should be avoided, as it causes
+	 * reliance on particular SQL.
+	 * 
+	 * @param query
+	 * The query to execute.
+	 * 
+	 * @param table
+	 * The table that the query is executed on, or null if there is not
+	 * one.
+	 * 
+	 * @return
+	 * The cursor over the selected rows.
+	 * 
+	 * @throws SQLException
+	 * If there was a problem executing the query.
+	 */
+	public ResultCursor queryCursor(String query, String table) throws SQLException;
+	
+	/**
+	 * Calls a stored procedure on a database and gives a cursor that
+	 * reads the rows it selects as they arrive. The cursor must be
+	 * closed before another query is made. This method requires a
+	 * default database to be set, and so {@link use() use()} must be
+	 * called before this method is.
+	 * 
+	 * @param proc
+	 * The name of the stored procedure.
+	 * 
+	 * @return
+	 * The cursor over the selected rows.
+	 * 
+	 * @throws SQLException
+	 * If there was a problem calling the stored procedure.
+	 */
+	public ResultCursor callCursor(String proc) throws SQLException;
+
 	/**
 	 * Gets a single cell's value from the database. This method requires a
 	 * default database to be set, and so {@link use() use()} must be called
@@ -316,7 +503,8 @@ public interface DatabaseManager {
 	public DatabaseManager call(String proc) throws SQLException;
 	
 	/**
-	 * Closes the connection and releases the resources.
+	 * Sends every pending batch, closes the connection, and releases the
+	 * resources.
 	 * 
 	 * @return
 	 * This DatabaseManager.
@@ -1,38 +1,86 @@
 package com.dekarrin.db;
 
 import java.sql.*;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 
+import com.dekarrin.error.ValueOutOfRangeException;
+import com.dekarrin.util.LongArrayList;
+
 public class MySqlEngine implements DatabaseManager {
 	
+	/**
+	 * The number of rows held back in batches by default.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	
+	/**
+	 * The number of rows fetched at a time by cursors by default.
+	 */
+	public static final int DEFAULT_FETCH_SIZE = 1000;
+	
 	private Connection connection;
 	private Statement statement;
+	private Statement selectStatement;
 	private String query = null;
 	private ResultSet result;
 	private int affectedRows;
 	private long insertId = 0L;
 	private String lastTable = null;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private int pendingRows = 0;
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+	
+	/**
+	 * The last cursor that was opened. It is closed when the next one
+	 * is opened, if it has not been closed already.
+	 */
+	private ResultCursor cursor;
+	
+	/**
+	 * The batches that have rows waiting to be sent, keyed by their
+	 * SQL and kept in the order they were started.
+	 */
+	private Map<String,Batch> pendingBatches = new LinkedHashMap<String,Batch>();
+	
+	/**
+	 * The statements prepared for batches, keyed by their SQL. As the
+	 * SQL only depends on the table and the columns, each statement is
+	 * prepared once for every set of columns written to a table.
+	 */
+	private Map<String,PreparedStatement> preparedStatements = new HashMap<String,PreparedStatement>();
+	
+	/**
+	 * The ids generated by the last batch of inserts into each table.
+	 */
+	private Map<String,long[]> batchInsertIds = new HashMap<String,long[]>();
 	
 	/**
 	 * Creates a newly-allocated MySqlEngine.
 	 */
 	public MySqlEngine() {
-		try {
-			Class.forName("com.mysql.jdbc.Driver");
-		} catch (ClassNotFoundException e1) {
-			e1.printStackTrace();
-		}
+		loadDriver();
+	}
+	
+	/**
+	 * Creates a new MySqlEngine that uses a connection that is already
+	 * open. {@link open(String, int, String, String) open()} does not
+	 * need to be called.
+	 * 
+	 * @param connection
+	 * The connection to use.
+	 */
+	public MySqlEngine(Connection connection) {
+		this.connection = connection;
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 */
 	public MySqlEngine open(String host, int port, String user, String password) throws SQLException {
-		Properties props = new Properties();
-		props.put("user", user);
-		props.put("password", password);
-		String dbUrl = "jdbc:mysql://"+host+":"+port+"/";
-		connection = DriverManager.getConnection(dbUrl, props);
+		connection = DriverManager.getConnection(hostUrl(host, port), connectionProperties(user, password));
 		return this;
 	}
 	
@@ -97,23 +145,21 @@ public class MySqlEngine implements DatabaseManager {
 	 */
 	public MySqlEngine insert(TableData data) throws SQLException {
 		lastTable = data.getTable();
-		query = "INSERT INTO `"+data.getTable()+"` (";
-		for(int i = 0; i < data.columns(); i++) {
-			query += "`"+data.columnName(i)+"`";
-			query += (i + 1 < data.columns()) ? "," : "";
+		StringBuilder sql = new StringBuilder(insertSql(data));
+		String values = sql.substring(sql.lastIndexOf("("));
+		for(int i = 1; i < data.rows(); i++) {
+			sql.append(',').append(values);
 		}
-		query += ") VALUES ";
-		for(int i = 0; i < data.rows(); data.jump(i++)) {
-			query += "(";
-			for(int j = 0; j < data.columns(); data.jumpColumn(j++)) {
-				query += "'"+data.get()+"'";
-				query += (data.hasNextColumn()) ? "," : "";
+		query = sql.toString();
+		createInsertStatement();
+		int parameter = 1;
+		for(int i = 0; i < data.rows(); i++) {
+			data.jump(i);
+			for(int j = 0; j < data.columns(); j++) {
+				((PreparedStatement)statement).setString(parameter++, data.get(j));
 			}
-			query += ")";
-			query += (i + 1 < data.rows()) ? "," : "";
 		}
-		query += ";";
-		insertQuery();
+		executeInsert();
 		return this;
 	}
 	
@@ -153,6 +199,122 @@ public class MySqlEngine implements DatabaseManager {
 		return this;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public MySqlEngine setBatchSize(int size) throws SQLException {
+		if(size < 1) {
+			throw new ValueOutOfRangeException("Batch size must be at least 1.");
+		}
+		batchSize = size;
+		if(pendingRows >= batchSize) {
+			flush();
+		}
+		return this;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public MySqlEngine insertBatch(TableData data) throws SQLException {
+		lastTable = data.getTable();
+		Batch batch = getBatch(insertSql(data), data.getTable(), true);
+		for(int i = 0; i < data.rows(); i++) {
+			data.jump(i);
+			for(int j = 0; j < data.columns(); j++) {
+				batch.statement.setString(j + 1, data.get(j));
+			}
+			addToBatch(batch);
+		}
+		return this;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public MySqlEngine updateBatch(TableData data, String keyColumn) throws SQLException {
+		lastTable = data.getTable();
+		int key = data.columnIndex(keyColumn);
+		StringBuilder sql = new StringBuilder("UPDATE `").append(data.getTable()).append("` SET ");
+		boolean first = true;
+		for(int i = 0; i < data.columns(); i++) {
+			if(i != key) {
+				sql.append(first ? "" : ",").append('`').append(data.columnName(i)).append("`=?");
+				first = false;
+			}
+		}
+		sql.append(" WHERE `").append(keyColumn).append("`=?");
+		Batch batch = getBatch(sql.toString(), data.getTable(), false);
+		for(int i = 0; i < data.rows(); i++) {
+			data.jump(i);
+			int parameter = 1;
+			for(int j = 0; j < data.columns(); j++) {
+				if(j != key) {
+					batch.statement.setString(parameter++, data.get(j));
+				}
+			}
+			batch.statement.setString(parameter, data.get(key));
+			addToBatch(batch);
+		}
+		return this;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public MySqlEngine flush() throws SQLException {
+		affectedRows = 0;
+		try {
+			for(Map.Entry<String,Batch> entry: pendingBatches.entrySet()) {
+				Batch batch = entry.getValue();
+				query = entry.getKey();
+				for(int count: batch.statement.executeBatch()) {
+					if(count > 0) {
+						affectedRows += count;
+					}
+				}
+				if(batch.generatesKeys) {
+					LongArrayList ids = new LongArrayList(batch.rows);
+					ResultSet keys = batch.statement.getGeneratedKeys();
+					try {
+						while(keys.next()) {
+							ids.add(keys.getLong(1));
+						}
+					} finally {
+						keys.close();
+					}
+					long[] idArray = ids.toArray();
+					batchInsertIds.put(batch.table, idArray);
+					if(idArray.length > 0) {
+						insertId = idArray[idArray.length - 1];
+					}
+				}
+			}
+		} finally {
+			for(Batch batch: pendingBatches.values()) {
+				batch.statement.clearBatch();
+			}
+			pendingBatches.clear();
+			pendingRows = 0;
+		}
+		return this;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public long[] getBatchInsertIds(String table) {
+		long[] ids = batchInsertIds.get(table);
+		return (ids != null) ? ids.clone() : new long[0];
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -213,21 +375,78 @@ public class MySqlEngine implements DatabaseManager {
 	public TableData getResult() throws SQLException {
 		ResultSetMetaData md = result.getMetaData();
 		TableData tableResult = new TableData(lastTable);
+		ColumnType[] types = new ColumnType[md.getColumnCount()];
 		// The Java SQL package uses index 1 as the first column, NOT index 0.
-		for(int i = 1; i <= md.getColumnCount(); i++) {
-			tableResult.addColumn(md.getColumnLabel(i));
+		for(int i = 1; i <= types.length; i++) {
+			types[i-1] = columnType(md, i);
+			tableResult.addColumn(md.getColumnLabel(i), types[i-1]);
 		}
 		while(result.next()) {
 			tableResult.addRow();
-			for(int i = 1; i <= tableResult.columns(); i++) {
-				// TableData column index not set explicitly;
-				// it will automatically 0-index them.
-				tableResult.set(result.getString(i));
+			for(int i = 0; i < types.length; i++) {
+				switch(types[i]) {
+					case INT:
+						tableResult.setInt(i, result.getInt(i+1));
+						break;
+						
+					case LONG:
+						tableResult.setLong(i, result.getLong(i+1));
+						break;
+						
+					default:
+						tableResult.set(i, result.getString(i+1));
+						break;
+				}
+				if(types[i] != ColumnType.STRING && result.wasNull()) {
+					tableResult.set(i, (String)null);
+				}
 			}
 		}
 		return tableResult;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public MySqlEngine setFetchSize(int size) {
+		if(size < 1) {
+			throw new ValueOutOfRangeException("Fetch size must be at least 1.");
+		}
+		fetchSize = size;
+		return this;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getFetchSize() {
+		return fetchSize;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public ResultCursor selectCursor(String table, String where) throws SQLException {
+		query = String.format("SELECT * FROM `%s` WHERE %s;", table, where);
+		return openCursor(table);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public ResultCursor queryCursor(String query, String table) throws SQLException {
+		this.query = query;
+		return openCursor(table);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public ResultCursor callCursor(String proc) throws SQLException {
+		query = String.format("CALL %s();", proc);
+		return openCursor(null);
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -239,10 +458,48 @@ public class MySqlEngine implements DatabaseManager {
 	 * {@inheritDoc}
 	 */
 	public MySqlEngine close() throws SQLException {
-		connection.close();
+		try {
+			flush();
+		} finally {
+			try {
+				closeStatements();
+			} finally {
+				connection.close();
+			}
+		}
 		return this;
 	}
 	
+	/**
+	 * Gets the connection that this MySqlEngine uses.
+	 * 
+	 * @return
+	 * The connection.
+	 */
+	Connection getConnection() {
+		return connection;
+	}
+	
+	/**
+	 * Closes every statement that this MySqlEngine has created without
+	 * closing the connection. Batches that have not been flushed are
+	 * dropped.
+	 */
+	void closeStatements() throws SQLException {
+		pendingBatches.clear();
+		pendingRows = 0;
+		try {
+			closeCursor();
+			closeStatement();
+			closeSelectStatement();
+		} finally {
+			for(PreparedStatement ps: preparedStatements.values()) {
+				ps.close();
+			}
+			preparedStatements.clear();
+		}
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -263,6 +520,58 @@ public class MySqlEngine implements DatabaseManager {
 		return rowCount;
 	}
 	
+	/**
+	 * Loads the MySQL JDBC driver so that connections can be opened
+	 * to MySQL URLs.
+	 */
+	static void loadDriver() {
+		try {
+			Class.forName("com.mysql.jdbc.Driver");
+		} catch (ClassNotFoundException e1) {
+			e1.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Gets the JDBC URL of a MySQL server.
+	 * 
+	 * @param host
+	 * The URL of the database host.
+	 * 
+	 * @param port
+	 * The port of the server.
+	 * 
+	 * @return
+	 * The JDBC URL.
+	 */
+	static String hostUrl(String host, int port) {
+		return "jdbc:mysql://"+host+":"+port+"/";
+	}
+	
+	/**
+	 * Gets the properties that connections to a MySQL server are
+	 * opened with.
+	 * 
+	 * @param user
+	 * The username to authenticate with.
+	 * 
+	 * @param password
+	 * The password to authenticate with.
+	 * 
+	 * @return
+	 * The properties.
+	 */
+	static Properties connectionProperties(String user, String password) {
+		Properties props = new Properties();
+		props.put("user", user);
+		props.put("password", password);
+		// lets the driver send each batch of inserts as one statement
+		props.put("rewriteBatchedStatements", "true");
+		// lets cursors fetch a few rows at a time instead of all at once
+		props.put("useCursorFetch", "true");
+		return props;
+	}
+	
 	/**
 	 * Runs a query on the database and saves the output.
 	 * 
@@ -285,15 +594,188 @@ public class MySqlEngine implements DatabaseManager {
 		runUpdateQuery();
 	}
 	
+	/**
+	 * Chooses the type of TableData column that holds a column of a
+	 * result. Integers are only held as primitives when every value
+	 * fits. Real numbers, unsigned BIGINTs, and DECIMALs are kept as
+	 * Strings so that they read the same as the database gives them.
+	 * Text columns are also kept as Strings; a DICTIONARY column can be
+	 * asked for by adding the column to a TableData directly. Single
+	 * bits are held as ints rather than booleans, because the driver
+	 * reports TINYINT(1) columns as bits and they may hold any value
+	 * that fits in a byte.
+	 * 
+	 * @param md
+	 * The metadata of the result.
+	 * 
+	 * @param column
+	 * The number of the column, starting at 1.
+	 * 
+	 * @return
+	 * The type of column to use.
+	 */
+	private static ColumnType columnType(ResultSetMetaData md, int column) throws SQLException {
+		ColumnType type;
+		switch(md.getColumnType(column)) {
+			case Types.TINYINT:
+			case Types.SMALLINT:
+				type = ColumnType.INT;
+				break;
+				
+			case Types.INTEGER:
+				type = md.isSigned(column) ? ColumnType.INT : ColumnType.LONG;
+				break;
+				
+			case Types.BIGINT:
+				type = md.isSigned(column) ? ColumnType.LONG : ColumnType.STRING;
+				break;
+				
+			case Types.BIT:
+			case Types.BOOLEAN:
+				type = (md.getPrecision(column) <= 1) ? ColumnType.INT : ColumnType.STRING;
+				break;
+				
+			default:
+				type = ColumnType.STRING;
+				break;
+		}
+		return type;
+	}
+	
+	/**
+	 * Creates the SQL for inserting one row of data into a table, with
+	 * a parameter in place of each value.
+	 * 
+	 * @param data
+	 * The data whose table and columns are used.
+	 * 
+	 * @return
+	 * The SQL, ending with the parenthesized list of parameters.
+	 */
+	private String insertSql(TableData data) {
+		StringBuilder sql = new StringBuilder("INSERT INTO `").append(data.getTable()).append("` (");
+		StringBuilder values = new StringBuilder("(");
+		for(int i = 0; i < data.columns(); i++) {
+			sql.append((i > 0) ? "," : "").append('`').append(data.columnName(i)).append('`');
+			values.append((i > 0) ? ",?" : "?");
+		}
+		sql.append(") VALUES ").append(values).append(')');
+		return sql.toString();
+	}
+	
+	/**
+	 * Gets the pending batch for some SQL, starting one if there is
+	 * none. The statement for the SQL is prepared the first time that
+	 * it is used and then reused for every later batch.
+	 * 
+	 * @param sql
+	 * The SQL of the statement.
+	 * 
+	 * @param table
+	 * The table that the statement writes to.
+	 * 
+	 * @param generatesKeys
+	 * Whether the statement generates keys that should be kept.
+	 * 
+	 * @return
+	 * The batch.
+	 */
+	private Batch getBatch(String sql, String table, boolean generatesKeys) throws SQLException {
+		query = sql;
+		Batch batch = pendingBatches.get(sql);
+		if(batch == null) {
+			PreparedStatement ps = preparedStatements.get(sql);
+			if(ps == null) {
+				if(generatesKeys) {
+					ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+				} else {
+					ps = connection.prepareStatement(sql);
+				}
+				preparedStatements.put(sql, ps);
+			}
+			batch = new Batch(table, ps, generatesKeys);
+			pendingBatches.put(sql, batch);
+		}
+		return batch;
+	}
+	
+	/**
+	 * Adds the parameters that have been set on a batch's statement as
+	 * a row of the batch. Once the rows of every pending batch add up
+	 * to the batch size, they are all sent, so that rows written to
+	 * several tables in turn still share round trips.
+	 * 
+	 * @param batch
+	 * The batch to add the row to.
+	 */
+	private void addToBatch(Batch batch) throws SQLException {
+		batch.statement.addBatch();
+		batch.rows++;
+		pendingRows++;
+		if(pendingRows >= batchSize) {
+			flush();
+		}
+	}
+	
 	/**
 	 * Runs a query specialized for insertions on the database.
 	 */
 	private void insertQuery() throws SQLException {
 		createInsertStatement();
+		executeInsert();
+	}
+	
+	/**
+	 * Executes the current statement as an insertion and saves the id
+	 * of the inserted row.
+	 */
+	private void executeInsert() throws SQLException {
 		affectedRows = ((PreparedStatement)statement).executeUpdate();
 		ResultSet keys = statement.getGeneratedKeys();
-		if(keys.next()) {
-			insertId = keys.getLong(1);
+		try {
+			if(keys.next()) {
+				insertId = keys.getLong(1);
+			}
+		} finally {
+			keys.close();
+		}
+	}
+	
+	/**
+	 * Closes the statement of the last query if it did not select
+	 * data. A connection keeps every statement made on it until it is
+	 * closed, so this keeps long-lived connections from filling up
+	 * with them. The statement of the last select is left open so that
+	 * its result can still be read.
+	 */
+	private void closeStatement() throws SQLException {
+		if(statement != null && statement != selectStatement) {
+			statement.close();
+		}
+		statement = null;
+	}
+	
+	/**
+	 * Closes the last cursor that was opened, if it is still open.
+	 */
+	private void closeCursor() throws SQLException {
+		if(cursor != null) {
+			try {
+				cursor.close();
+			} finally {
+				cursor = null;
+			}
+		}
+	}
+	
+	/**
+	 * Closes the statement of the last select along with its result.
+	 */
+	private void closeSelectStatement() throws SQLException {
+		if(selectStatement != null) {
+			selectStatement.close();
+			selectStatement = null;
+			result = null;
 		}
 	}
 	
@@ -301,6 +783,7 @@ public class MySqlEngine implements DatabaseManager {
 	 * Creates the statement for a query string.
 	 */
 	private void createUpdateStatement() throws SQLException {
+		closeStatement();
 		statement = connection.createStatement();
 	}
 	
@@ -308,6 +791,7 @@ public class MySqlEngine implements DatabaseManager {
 	 * Prepares the statement for an INSERT query.
 	 */
 	private void createInsertStatement() throws SQLException {
+		closeStatement();
 		statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
 	}
 	
@@ -316,7 +800,35 @@ public class MySqlEngine implements DatabaseManager {
 	 * a result set.
 	 */
 	private void createSelectStatement() throws SQLException {
-		statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+		closeStatement();
+		closeSelectStatement();
+		selectStatement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		statement = selectStatement;
+	}
+	
+	/**
+	 * Runs the current query on a statement of its own and gives a
+	 * cursor over the rows it selects. The statement is forward-only
+	 * and asks for the fetch size at a time, so the driver does not
+	 * need to hold every row at once.
+	 * 
+	 * @param table
+	 * The table that the query is executed on, or null.
+	 * 
+	 * @return
+	 * The cursor.
+	 */
+	private ResultCursor openCursor(String table) throws SQLException {
+		closeCursor();
+		Statement cursorStatement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		try {
+			cursorStatement.setFetchSize(fetchSize);
+			cursor = new SqlResultCursor(cursorStatement, cursorStatement.executeQuery(query), table);
+		} catch(SQLException e) {
+			cursorStatement.close();
+			throw e;
+		}
+		return cursor;
 	}
 	
 	/**
@@ -340,4 +852,48 @@ public class MySqlEngine implements DatabaseManager {
 	private void runSelectQuery() throws SQLException {
 		result = statement.executeQuery(query);
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * The rows waiting to be sent through one prepared statement.
+	 */
+	private static class Batch {
+		
+		/**
+		 * Whether the keys generated by the statement are kept.
+		 */
+		public final boolean generatesKeys;
+		
+		/**
+		 * The number of rows added to the statement.
+		 */
+		public int rows = 0;
+		
+		/**
+		 * The statement that the rows are added to.
+		 */
+		public final PreparedStatement statement;
+		
+		/**
+		 * The table that the statement writes to.
+		 */
+		public final String table;
+		
+		/**
+		 * Creates a new, empty Batch.
+		 * 
+		 * @param table
+		 * The table that the statement writes to.
+		 * 
+		 * @param statement
+		 * The statement that the rows are added to.
+		 * 
+		 * @param generatesKeys
+		 * Whether the keys generated by the statement are kept.
+		 */
+		public Batch(String table, PreparedStatement statement, boolean generatesKeys) {
+			this.table = table;
+			this.statement = statement;
+			this.generatesKeys = generatesKeys;
+		}
+	}
+}
@@ -0,0 +1,530 @@
+package com.dekarrin.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import com.dekarrin.error.ValueOutOfRangeException;
+
+/**
+ * A DatabaseManager that can be shared by many threads. Each thread
+ * that uses it is given its own session, which is a MySqlEngine on a
+ * connection borrowed from a ConnectionPool. The session holds the
+ * last query, result, and pending batches for that thread only, so
+ * calls can be chained in the same way as on a single MySqlEngine.
+ *
+ * A thread keeps its connection until it calls
+ * {@link #release() release()}, which sends its pending batches and
+ * gives the connection back to the pool for another thread to use.
+ */
+public class PooledDatabaseManager implements DatabaseManager {
+
+	/**
+	 * The number of connections that are opened at most by default.
+	 */
+	public static final int DEFAULT_POOL_SIZE = 8;
+
+	private volatile ConnectionPool pool;
+	private int poolSize;
+	private volatile String database = null;
+	private volatile int batchSize = MySqlEngine.DEFAULT_BATCH_SIZE;
+	private volatile int fetchSize = MySqlEngine.DEFAULT_FETCH_SIZE;
+
+	/**
+	 * The session of each thread that currently holds a connection.
+	 */
+	private ThreadLocal<MySqlEngine> sessions = new ThreadLocal<MySqlEngine>();
+
+	/**
+	 * Creates a new PooledDatabaseManager that opens a pool to a MySQL
+	 * server of the default size once
+	 * {@link open(String, int, String, String) open()} is called.
+	 */
+	public PooledDatabaseManager() {
+		this(DEFAULT_POOL_SIZE);
+	}
+
+	/**
+	 * Creates a new PooledDatabaseManager that opens a pool to a MySQL
+	 * server once {@link open(String, int, String, String) open()} is
+	 * called.
+	 *
+	 * @param poolSize
+	 * The most connections that may be open at once.
+	 */
+	public PooledDatabaseManager(int poolSize) {
+		this.poolSize = poolSize;
+	}
+
+	/**
+	 * Creates a new PooledDatabaseManager that uses a pool that has
+	 * already been set up. This may be a pool for any database that
+	 * understands the queries made by MySqlEngine.
+	 * {@link open(String, int, String, String) open()} does not need to
+	 * be called.
+	 *
+	 * @param pool
+	 * The pool to borrow connections from.
+	 */
+	public PooledDatabaseManager(ConnectionPool pool) {
+		this.pool = pool;
+		this.poolSize = pool.getMaxSize();
+	}
+
+	/**
+	 * Sets up the pool of connections to the host. No connection is
+	 * opened until a thread first makes a query.
+	 *
+	 * @param host
+	 * The URL of the database host.
+	 *
+	 * @param port
+	 * The port to establish the connections with.
+	 *
+	 * @param user
+	 * The username to authenticate with.
+	 *
+	 * @param password
+	 * The password to authenticate with.
+	 *
+	 * @return
+	 * This PooledDatabaseManager.
+	 *
+	 * @throws SQLException
+	 * If a pool has already been set up.
+	 */
+	public synchronized PooledDatabaseManager open(String host, int port, String user, String password) throws SQLException {
+		if(pool != null) {
+			throw new SQLException("Connection pool is already open");
+		}
+		MySqlEngine.loadDriver();
+		Properties props = MySqlEngine.connectionProperties(user, password);
+		pool = new ConnectionPool(MySqlEngine.hostUrl(host, port), props, poolSize);
+		return this;
+	}
+
+	/**
+	 * Gets the pool that connections are borrowed from.
+	 *
+	 * @return
+	 * The pool, or null if it has not been set up yet.
+	 */
+	public ConnectionPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Gets the last query that the calling thread attempted to execute.
+	 *
+	 * @return
+	 * The query, or null if the calling thread has no session.
+	 */
+	public String getLastQuery() {
+		MySqlEngine session = sessions.get();
+		return (session != null) ? session.getLastQuery() : null;
+	}
+
+	/**
+	 * Gets the id of the last row that the calling thread inserted into
+	 * a table.
+	 *
+	 * @return
+	 * The last id, or 0 if the calling thread has no session.
+	 */
+	public long getInsertId() {
+		MySqlEngine session = sessions.get();
+		return (session != null) ? session.getInsertId() : 0L;
+	}
+
+	/**
+	 * Gets the number of rows that were affected by the last DDL query
+	 * of the calling thread.
+	 *
+	 * @return
+	 * The number of affected rows, or 0 if the calling thread has no
+	 * session.
+	 */
+	public int getAffected() {
+		MySqlEngine session = sessions.get();
+		return (session != null) ? session.getAffected() : 0;
+	}
+
+	/**
+	 * Establishes a database on the host to use for queries. The
+	 * calling thread's session switches to it at once; every session
+	 * started after this uses it as well.
+	 *
+	 * @param db
+	 * The name of the database to use.
+	 *
+	 * @return
+	 * This PooledDatabaseManager.
+	 *
+	 * @throws SQLException
+	 * If there was a problem with setting the default database.
+	 */
+	public PooledDatabaseManager use(String db) throws SQLException {
+		session().use(db);
+		database = db;
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String[] showDatabases() throws SQLException {
+		return session().showDatabases();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String[] showTables() throws SQLException {
+		return session().showTables();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String[] showColumns(String table) throws SQLException {
+		return session().showColumns(table);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public PooledDatabaseManager insert(TableData data) throws SQLException {
+		session().insert(data);
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public PooledDatabaseManager insertEmpty(String table) throws SQLException {
+		session().insertEmpty(table);
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public PooledDatabaseManager update(TableData data, String where) throws SQLException {
+		session().update(data, where);
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public PooledDatabaseManager delete(String table, String where) throws SQLException {
+		session().delete(table, where);
+		return this;
+	}
+
+	/**
+	 * Sets the number of rows that are held back before every pending
+	 * batch is sent to the database. This applies to the calling
+	 * thread's session, if it has one, and to every session started
+	 * after this.
+	 *
+	 * @param size
+	 * The number of rows in each batch.
+	 *
+	 * @return
+	 * This PooledDatabaseManager.
+	 *
+	 * @throws SQLException
+	 * If sending the batches that are already pending fails.
+	 */
+	public PooledDatabaseManager setBatchSize(int size) throws SQLException {
+		if(size < 1) {
+			throw new ValueOutOfRangeException("Batch size must be at least 1.");
+		}
+		batchSize = size;
+		MySqlEngine session = sessions.get();
+		if(session != null) {
+			session.setBatchSize(size);
+		}
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public PooledDatabaseManager insertBatch(TableData data) throws SQLException {
+		session().insertBatch(data);
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public PooledDatabaseManager updateBatch(TableData data, String keyColumn) throws SQLException {
+		session().updateBatch(data, keyColumn);
+		return this;
+	}
+
+	/**
+	 * Sends every batch that the calling thread has pending to the
+	 * database.
+	 *
+	 * @return
+	 * This PooledDatabaseManager.
+	 *
+	 * @throws SQLException
+	 * If there was a problem executing a batch.
+	 */
+	public PooledDatabaseManager flush() throws SQLException {
+		MySqlEngine session = sessions.get();
+		if(session != null) {
+			session.flush();
+		}
+		return this;
+	}
+
+	/**
+	 * Gets the ids that were generated for the rows of the last batch of
+	 * inserts that the calling thread sent to a table.
+	 *
+	 * @param table
+	 * The table that the rows were inserted into.
+	 *
+	 * @return
+	 * The ids, in the order that the rows were added, or an empty array
+	 * if no batch has been sent for the table.
+	 */
+	public long[] getBatchInsertIds(String table) {
+		MySqlEngine session = sessions.get();
+		return (session != null) ? session.getBatchInsertIds(table) : new long[0];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public PooledDatabaseManager executeQuery(String query, String table) throws SQLException {
+		session().executeQuery(query, table);
+		return this;
+	}
+
+	/**
+	 * Gets a TableData that represents the result of the last query of
+	 * the calling thread to SELECT data. The result is lost once the
+	 * thread calls {@link #release() release()}.
+	 *
+	 * @return
+	 * The result TableData.
+	 *
+	 * @throws SQLException
+	 * If the calling thread has no session, or there was a problem
+	 * converting the result into a TableData.
+	 */
+	public TableData getResult() throws SQLException {
+		MySqlEngine session = sessions.get();
+		if(session == null) {
+			throw new SQLException("No result; thread has no session");
+		}
+		return session.getResult();
+	}
+
+	/**
+	 * Sets the number of rows that a ResultCursor asks the database for
+	 * at a time. This applies to the calling thread's session, if it
+	 * has one, and to every session started after this.
+	 *
+	 * @param size
+	 * The number of rows to fetch at a time.
+	 *
+	 * @return
+	 * This PooledDatabaseManager.
+	 */
+	public PooledDatabaseManager setFetchSize(int size) {
+		if(size < 1) {
+			throw new ValueOutOfRangeException("Fetch size must be at least 1.");
+		}
+		fetchSize = size;
+		MySqlEngine session = sessions.get();
+		if(session != null) {
+			session.setFetchSize(size);
+		}
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * Selects rows of data from a table and gives a cursor that reads
+	 * them as they arrive. The cursor belongs to the calling thread's
+	 * session and is closed when the thread calls
+	 * {@link #release() release()}.
+	 *
+	 * @param table
+	 * The table to select data from.
+	 *
+	 * @param where
+	 * A condition that evaluates to true on all rows selected.
+	 *
+	 * @return
+	 * The cursor over the selected rows.
+	 *
+	 * @throws SQLException
+	 * If there was a problem selecting the data.
+	 */
+	public ResultCursor selectCursor(String table, String where) throws SQLException {
+		return session().selectCursor(table, where);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public ResultCursor queryCursor(String query, String table) throws SQLException {
+		return session().queryCursor(query, table);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public ResultCursor callCursor(String proc) throws SQLException {
+		return session().callCursor(proc);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String selectItem(String column, String table, String where) throws SQLException {
+		return session().selectItem(column, table, where);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public PooledDatabaseManager updateItem(String table, String column, String value, String where) throws SQLException {
+		session().updateItem(table, column, value, where);
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public PooledDatabaseManager selectRows(String table, String where) throws SQLException {
+		session().selectRows(table, where);
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public PooledDatabaseManager call(String proc) throws SQLException {
+		session().call(proc);
+		return this;
+	}
+
+	/**
+	 * Ends the calling thread's session. Its pending batches are sent,
+	 * its statements are closed, and its connection is given back to
+	 * the pool. The thread is given a new session the next time it
+	 * makes a query.
+	 *
+	 * @return
+	 * This PooledDatabaseManager.
+	 *
+	 * @throws SQLException
+	 * If sending the pending batches fails. The connection is given
+	 * back regardless.
+	 */
+	public PooledDatabaseManager release() throws SQLException {
+		MySqlEngine session = sessions.get();
+		if(session != null) {
+			sessions.remove();
+			try {
+				session.flush();
+			} finally {
+				try {
+					session.closeStatements();
+				} finally {
+					pool.giveBack(session.getConnection());
+				}
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Ends the calling thread's session and closes the pool. Sessions
+	 * of other threads are not ended; their connections are closed
+	 * when those threads call {@link #release() release()}.
+	 *
+	 * @return
+	 * This PooledDatabaseManager.
+	 *
+	 * @throws SQLException
+	 * If sending the pending batches of the calling thread fails.
+	 */
+	public PooledDatabaseManager close() throws SQLException {
+		try {
+			release();
+		} finally {
+			if(pool != null) {
+				pool.close();
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int count(String table, String where) throws SQLException {
+		return session().count(table, where);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int count(String column, String table, String where) throws SQLException {
+		return session().count(column, table, where);
+	}
+
+	/**
+	 * Gets the calling thread's session, starting one on a connection
+	 * from the pool if the thread does not have one.
+	 */
+	private MySqlEngine session() throws SQLException {
+		MySqlEngine session = sessions.get();
+		if(session == null) {
+			if(pool == null) {
+				throw new SQLException("Connection pool has not been opened");
+			}
+			Connection connection = pool.borrow();
+			session = new MySqlEngine(connection);
+			try {
+				session.setBatchSize(batchSize);
+				session.setFetchSize(fetchSize);
+				if(database != null) {
+					session.use(database);
+				}
+			} catch(SQLException e) {
+				try {
+					session.closeStatements();
+				} finally {
+					pool.giveBack(connection);
+				}
+				throw e;
+			}
+			sessions.set(session);
+		}
+		return session;
+	}
+}
@@ -0,0 +1,241 @@
+package com.dekarrin.db;
+
+import java.sql.SQLException;
+
+/**
+ * Reads the rows selected by a query one at a time, as they arrive
+ * from the database. Unlike a TableData, a ResultCursor does not hold
+ * every row in memory; only the current row can be read, and rows can
+ * only be moved through forwards.
+ *
+ * A ResultCursor holds on to its statement until it is closed. It must
+ * be closed once it is no longer needed, and some databases do not
+ * allow any other query on the same connection until it is.
+ */
+public interface ResultCursor {
+
+	/**
+	 * Moves to the next row. This must be called once before the first
+	 * row can be read.
+	 *
+	 * @return
+	 * Whether there was another row.
+	 *
+	 * @throws SQLException
+	 * If there was a problem reading the row.
+	 */
+	public boolean next() throws SQLException;
+
+	/**
+	 * Gets the number of columns in each row.
+	 *
+	 * @return
+	 * The number of columns.
+	 */
+	public int columns();
+
+	/**
+	 * Gets the name of a column.
+	 *
+	 * @param index
+	 * The index of the column, starting at 0.
+	 *
+	 * @return
+	 * The name of the column.
+	 */
+	public String columnName(int index);
+
+	/**
+	 * Gets the index of a column.
+	 *
+	 * @param column
+	 * The name of the column.
+	 *
+	 * @return
+	 * The index of the column, starting at 0, or -1 if there is no
+	 * column with that name.
+	 */
+	public int columnIndex(String column);
+
+	/**
+	 * Gets the table that the rows were selected from.
+	 *
+	 * @return
+	 * The name of the table, or null if it was not given.
+	 */
+	public String getTable();
+
+	/**
+	 * Gets a value in the current row as a String.
+	 *
+	 * @param index
+	 * The index of the column, starting at 0.
+	 *
+	 * @return
+	 * The value, or null if it is NULL.
+	 *
+	 * @throws SQLException
+	 * If the value could not be read.
+	 */
+	public String getString(int index) throws SQLException;
+
+	/**
+	 * Gets a value in the current row as a String.
+	 *
+	 * @param column
+	 * The name of the column.
+	 *
+	 * @return
+	 * The value, or null if it is NULL.
+	 *
+	 * @throws SQLException
+	 * If there is no such column or the value could not be read.
+	 */
+	public String getString(String column) throws SQLException;
+
+	/**
+	 * Gets a value in the current row as an int.
+	 *
+	 * @param index
+	 * The index of the column, starting at 0.
+	 *
+	 * @return
+	 * The value, or 0 if it is NULL.
+	 *
+	 * @throws SQLException
+	 * If the value could not be read as an int.
+	 */
+	public int getInt(int index) throws SQLException;
+
+	/**
+	 * Gets a value in the current row as an int.
+	 *
+	 * @param column
+	 * The name of the column.
+	 *
+	 * @return
+	 * The value, or 0 if it is NULL.
+	 *
+	 * @throws SQLException
+	 * If there is no such column or the value could not be read as an
+	 * int.
+	 */
+	public int getInt(String column) throws SQLException;
+
+	/**
+	 * Gets a value in the current row as a long.
+	 *
+	 * @param index
+	 * The index of the column, starting at 0.
+	 *
+	 * @return
+	 * The value, or 0 if it is NULL.
+	 *
+	 * @throws SQLException
+	 * If the value could not be read as a long.
+	 */
+	public long getLong(int index) throws SQLException;
+
+	/**
+	 * Gets a value in the current row as a long.
+	 *
+	 * @param column
+	 * The name of the column.
+	 *
+	 * @return
+	 * The value, or 0 if it is NULL.
+	 *
+	 * @throws SQLException
+	 * If there is no such column or the value could not be read as a
+	 * long.
+	 */
+	public long getLong(String column) throws SQLException;
+
+	/**
+	 * Gets a value in the current row as a double.
+	 *
+	 * @param index
+	 * The index of the column, starting at 0.
+	 *
+	 * @return
+	 * The value, or 0 if it is NULL.
+	 *
+	 * @throws SQLException
+	 * If the value could not be read as a double.
+	 */
+	public double getDouble(int index) throws SQLException;
+
+	/**
+	 * Gets a value in the current row as a double.
+	 *
+	 * @param column
+	 * The name of the column.
+	 *
+	 * @return
+	 * The value, or 0 if it is NULL.
+	 *
+	 * @throws SQLException
+	 * If there is no such column or the value could not be read as a
+	 * double.
+	 */
+	public double getDouble(String column) throws SQLException;
+
+	/**
+	 * Gets a value in the current row as a boolean.
+	 *
+	 * @param index
+	 * The index of the column, starting at 0.
+	 *
+	 * @return
+	 * The value, or false if it is NULL.
+	 *
+	 * @throws SQLException
+	 * If the value could not be read as a boolean.
+	 */
+	public boolean getBoolean(int index) throws SQLException;
+
+	/**
+	 * Gets a value in the current row as a boolean.
+	 *
+	 * @param column
+	 * The name of the column.
+	 *
+	 * @return
+	 * The value, or false if it is NULL.
+	 *
+	 * @throws SQLException
+	 * If there is no such column or the value could not be read as a
+	 * boolean.
+	 */
+	public boolean getBoolean(String column) throws SQLException;
+
+	/**
+	 * Checks whether the last value that was read was NULL. This tells
+	 * a NULL apart from a 0 or false given by the typed getters.
+	 *
+	 * @return
+	 * Whether the last value read was NULL.
+	 *
+	 * @throws SQLException
+	 * If no value has been read.
+	 */
+	public boolean wasNull() throws SQLException;
+
+	/**
+	 * Closes the cursor along with its statement. Any rows that have
+	 * not been read are dropped. Closing a cursor that is already
+	 * closed has no effect.
+	 *
+	 * @throws SQLException
+	 * If there was a problem closing the statement.
+	 */
+	public void close() throws SQLException;
+
+	/**
+	 * Checks whether the cursor has been closed.
+	 *
+	 * @return
+	 * Whether the cursor is closed.
+	 */
+	public boolean isClosed();
+}
@@ -0,0 +1,227 @@
+package com.dekarrin.db;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A ResultCursor that reads from a forward-only JDBC ResultSet.
+ */
+class SqlResultCursor implements ResultCursor {
+
+	/**
+	 * The names of the columns, by index.
+	 */
+	private String[] columnNames;
+
+	/**
+	 * The indexes of the columns, by name.
+	 */
+	private Map<String,Integer> columnIndexes;
+
+	/**
+	 * The rows being read.
+	 */
+	private ResultSet result;
+
+	/**
+	 * The statement that selected the rows. It is closed along with the
+	 * cursor.
+	 */
+	private Statement statement;
+
+	/**
+	 * The table that the rows were selected from.
+	 */
+	private String table;
+
+	/**
+	 * Creates a new SqlResultCursor. The names of the columns are read
+	 * once, here, so that reading by name does not have to look them
+	 * up for every row.
+	 *
+	 * @param statement
+	 * The statement that selected the rows.
+	 *
+	 * @param result
+	 * The rows.
+	 *
+	 * @param table
+	 * The table that the rows were selected from, or null if it is not
+	 * known.
+	 *
+	 * @throws SQLException
+	 * If the names of the columns could not be read.
+	 */
+	public SqlResultCursor(Statement statement, ResultSet result, String table) throws SQLException {
+		this.statement = statement;
+		this.result = result;
+		this.table = table;
+		ResultSetMetaData md = result.getMetaData();
+		columnNames = new String[md.getColumnCount()];
+		columnIndexes = new HashMap<String,Integer>(columnNames.length * 2);
+		for(int i = 0; i < columnNames.length; i++) {
+			// The Java SQL package uses index 1 as the first column, NOT index 0.
+			columnNames[i] = md.getColumnLabel(i + 1);
+			if(!columnIndexes.containsKey(columnNames[i])) {
+				columnIndexes.put(columnNames[i], i);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean next() throws SQLException {
+		return result.next();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int columns() {
+		return columnNames.length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String columnName(int index) {
+		return columnNames[index];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int columnIndex(String column) {
+		Integer index = columnIndexes.get(column);
+		return (index != null) ? index : -1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getTable() {
+		return table;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getString(int index) throws SQLException {
+		return result.getString(index + 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String getString(String column) throws SQLException {
+		return result.getString(columnNumber(column));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getInt(int index) throws SQLException {
+		return result.getInt(index + 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int getInt(String column) throws SQLException {
+		return result.getInt(columnNumber(column));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getLong(int index) throws SQLException {
+		return result.getLong(index + 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public long getLong(String column) throws SQLException {
+		return result.getLong(columnNumber(column));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getDouble(int index) throws SQLException {
+		return result.getDouble(index + 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public double getDouble(String column) throws SQLException {
+		return result.getDouble(columnNumber(column));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean getBoolean(int index) throws SQLException {
+		return result.getBoolean(index + 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean getBoolean(String column) throws SQLException {
+		return result.getBoolean(columnNumber(column));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean wasNull() throws SQLException {
+		return result.wasNull();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void close() throws SQLException {
+		if(statement != null) {
+			try {
+				statement.close();
+			} finally {
+				statement = null;
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isClosed() {
+		return (statement == null);
+	}
+
+	/**
+	 * Gets the JDBC column number of a column.
+	 *
+	 * @param column
+	 * The name of the column.
+	 *
+	 * @return
+	 * The column number, starting at 1.
+	 *
+	 * @throws SQLException
+	 * If there is no column with the name.
+	 */
+	private int columnNumber(String column) throws SQLException {
+		Integer index = columnIndexes.get(column);
+		if(index == null) {
+			throw new SQLException("No column named '"+column+"'");
+		}
+		return index + 1;
+	}
+}
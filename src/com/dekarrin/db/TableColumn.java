@@ -0,0 +1,732 @@
+package com.dekarrin.db;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.dekarrin.error.ValueOutOfRangeException;
+
+/**
+ * Holds the values of one column of a TableData. Each subclass keeps
+ * its values in an array of a single type; the array has room for some
+ * number of rows, which the TableData grows as rows are added. Values
+ * can be read and written as any type, and are converted from the type
+ * that the column holds as needed.
+ */
+abstract class TableColumn {
+
+	/**
+	 * The name of the column.
+	 */
+	private String name;
+
+	/**
+	 * Which rows hold NULL, for columns whose values cannot be null
+	 * themselves. This is only created once a NULL is set.
+	 */
+	protected boolean[] nulls = null;
+
+	/**
+	 * Creates a new TableColumn.
+	 *
+	 * @param name
+	 * The name of the column.
+	 */
+	protected TableColumn(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Creates a new column of a type.
+	 *
+	 * @param name
+	 * The name of the column.
+	 *
+	 * @param type
+	 * The type of the column.
+	 *
+	 * @param capacity
+	 * The number of rows to make room for.
+	 *
+	 * @return
+	 * The new column.
+	 */
+	public static TableColumn create(String name, ColumnType type, int capacity) {
+		TableColumn column;
+		switch(type) {
+			case DICTIONARY:
+				column = new DictionaryColumn(name);
+				break;
+
+			case INT:
+				column = new IntColumn(name);
+				break;
+
+			case LONG:
+				column = new LongColumn(name);
+				break;
+
+			case DOUBLE:
+				column = new DoubleColumn(name);
+				break;
+
+			case BOOLEAN:
+				column = new BooleanColumn(name);
+				break;
+
+			default:
+				column = new StringColumn(name);
+				break;
+		}
+		column.resize(capacity);
+		return column;
+	}
+
+	/**
+	 * Gets the name of the column.
+	 *
+	 * @return
+	 * The name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the type of the column.
+	 *
+	 * @return
+	 * The type.
+	 */
+	public abstract ColumnType getType();
+
+	/**
+	 * Changes the number of rows that the column has room for.
+	 *
+	 * @param capacity
+	 * The number of rows.
+	 */
+	public abstract void resize(int capacity);
+
+	/**
+	 * Gives every row in a range the value that rows of a new column
+	 * start with. For columns that hold Strings, this is an empty
+	 * String; for typed columns, it is 0 or false.
+	 *
+	 * @param from
+	 * The first row.
+	 *
+	 * @param to
+	 * One past the last row.
+	 */
+	public abstract void fill(int from, int to);
+
+	/**
+	 * Gets a value as a String.
+	 *
+	 * @param row
+	 * The row of the value.
+	 *
+	 * @return
+	 * The value, or null if it is NULL.
+	 */
+	public abstract String getString(int row);
+
+	/**
+	 * Sets a value from a String.
+	 *
+	 * @param row
+	 * The row of the value.
+	 *
+	 * @param value
+	 * The value, or null for NULL.
+	 */
+	public abstract void setString(int row, String value);
+
+	/**
+	 * Checks whether a value is NULL.
+	 *
+	 * @param row
+	 * The row of the value.
+	 *
+	 * @return
+	 * Whether the value is NULL.
+	 */
+	public boolean isNull(int row) {
+		return (nulls != null && nulls[row]);
+	}
+
+	/**
+	 * Gets a value as an int.
+	 *
+	 * @param row
+	 * The row of the value.
+	 *
+	 * @return
+	 * The value.
+	 */
+	public int getInt(int row) {
+		return Integer.parseInt(getString(row));
+	}
+
+	/**
+	 * Gets a value as a long.
+	 *
+	 * @param row
+	 * The row of the value.
+	 *
+	 * @return
+	 * The value.
+	 */
+	public long getLong(int row) {
+		return Long.parseLong(getString(row));
+	}
+
+	/**
+	 * Gets a value as a double.
+	 *
+	 * @param row
+	 * The row of the value.
+	 *
+	 * @return
+	 * The value.
+	 */
+	public double getDouble(int row) {
+		return Double.parseDouble(getString(row));
+	}
+
+	/**
+	 * Gets a value as a boolean. A String value is false if it is "0"
+	 * or "false", and true otherwise.
+	 *
+	 * @param row
+	 * The row of the value.
+	 *
+	 * @return
+	 * The value.
+	 */
+	public boolean getBoolean(int row) {
+		String value = getString(row);
+		return !(value.equals("0") || value.equalsIgnoreCase("false"));
+	}
+
+	/**
+	 * Sets a value from an int.
+	 *
+	 * @param row
+	 * The row of the value.
+	 *
+	 * @param value
+	 * The value.
+	 */
+	public void setInt(int row, int value) {
+		setString(row, Integer.toString(value));
+	}
+
+	/**
+	 * Sets a value from a long.
+	 *
+	 * @param row
+	 * The row of the value.
+	 *
+	 * @param value
+	 * The value.
+	 */
+	public void setLong(int row, long value) {
+		setString(row, Long.toString(value));
+	}
+
+	/**
+	 * Sets a value from a double.
+	 *
+	 * @param row
+	 * The row of the value.
+	 *
+	 * @param value
+	 * The value.
+	 */
+	public void setDouble(int row, double value) {
+		setString(row, Double.toString(value));
+	}
+
+	/**
+	 * Sets a value from a boolean.
+	 *
+	 * @param row
+	 * The row of the value.
+	 *
+	 * @param value
+	 * The value.
+	 */
+	public void setBoolean(int row, boolean value) {
+		setString(row, value ? "1" : "0");
+	}
+
+	/**
+	 * Marks whether a value is NULL, for columns whose values cannot be
+	 * null themselves.
+	 *
+	 * @param row
+	 * The row of the value.
+	 *
+	 * @param isNull
+	 * Whether the value is NULL.
+	 *
+	 * @param capacity
+	 * The number of rows that the column has room for.
+	 */
+	protected void setNull(int row, boolean isNull, int capacity) {
+		if(nulls == null) {
+			if(!isNull) {
+				return;
+			}
+			nulls = new boolean[capacity];
+		}
+		nulls[row] = isNull;
+	}
+
+	/**
+	 * Resizes the NULL markers along with the values.
+	 *
+	 * @param capacity
+	 * The number of rows.
+	 */
+	protected void resizeNulls(int capacity) {
+		if(nulls != null) {
+			boolean[] resized = new boolean[capacity];
+			System.arraycopy(nulls, 0, resized, 0, Math.min(nulls.length, capacity));
+			nulls = resized;
+		}
+	}
+
+	/**
+	 * Narrows a long to an int.
+	 *
+	 * @param value
+	 * The value.
+	 *
+	 * @return
+	 * The value as an int.
+	 *
+	 * @throws ValueOutOfRangeException
+	 * If the value does not fit in an int.
+	 */
+	protected static int toInt(long value) {
+		if(value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new ValueOutOfRangeException(value + " does not fit in an int.");
+		}
+		return (int)value;
+	}
+
+	/**
+	 * A column that holds each value as its own String.
+	 */
+	private static class StringColumn extends TableColumn {
+
+		private String[] values = new String[0];
+
+		public StringColumn(String name) {
+			super(name);
+		}
+
+		public ColumnType getType() {
+			return ColumnType.STRING;
+		}
+
+		public void resize(int capacity) {
+			String[] resized = new String[capacity];
+			System.arraycopy(values, 0, resized, 0, Math.min(values.length, capacity));
+			values = resized;
+		}
+
+		public void fill(int from, int to) {
+			for(int i = from; i < to; i++) {
+				values[i] = "";
+			}
+		}
+
+		public String getString(int row) {
+			return values[row];
+		}
+
+		public void setString(int row, String value) {
+			values[row] = value;
+		}
+
+		public boolean isNull(int row) {
+			return (values[row] == null);
+		}
+	}
+
+	/**
+	 * A column that holds each distinct String once, with rows holding
+	 * codes that refer to them.
+	 */
+	private static class DictionaryColumn extends TableColumn {
+
+		/**
+		 * The code of each row, or -1 for NULL.
+		 */
+		private int[] codes = new int[0];
+
+		/**
+		 * The distinct values, by code.
+		 */
+		private ArrayList<String> dictionary = new ArrayList<String>();
+
+		/**
+		 * The codes of the distinct values.
+		 */
+		private HashMap<String,Integer> lookup = new HashMap<String,Integer>();
+
+		public DictionaryColumn(String name) {
+			super(name);
+		}
+
+		public ColumnType getType() {
+			return ColumnType.DICTIONARY;
+		}
+
+		public void resize(int capacity) {
+			int[] resized = new int[capacity];
+			System.arraycopy(codes, 0, resized, 0, Math.min(codes.length, capacity));
+			for(int i = codes.length; i < capacity; i++) {
+				resized[i] = -1;
+			}
+			codes = resized;
+		}
+
+		public void fill(int from, int to) {
+			int code = encode("");
+			for(int i = from; i < to; i++) {
+				codes[i] = code;
+			}
+		}
+
+		public String getString(int row) {
+			int code = codes[row];
+			return (code >= 0) ? dictionary.get(code) : null;
+		}
+
+		public void setString(int row, String value) {
+			codes[row] = (value != null) ? encode(value) : -1;
+		}
+
+		public boolean isNull(int row) {
+			return (codes[row] < 0);
+		}
+
+		/**
+		 * Gets the code of a value, adding it to the dictionary if it is
+		 * not there yet.
+		 */
+		private int encode(String value) {
+			Integer code = lookup.get(value);
+			if(code == null) {
+				code = dictionary.size();
+				dictionary.add(value);
+				lookup.put(value, code);
+			}
+			return code;
+		}
+	}
+
+	/**
+	 * A column that holds ints.
+	 */
+	private static class IntColumn extends TableColumn {
+
+		private int[] values = new int[0];
+
+		public IntColumn(String name) {
+			super(name);
+		}
+
+		public ColumnType getType() {
+			return ColumnType.INT;
+		}
+
+		public void resize(int capacity) {
+			int[] resized = new int[capacity];
+			System.arraycopy(values, 0, resized, 0, Math.min(values.length, capacity));
+			values = resized;
+			resizeNulls(capacity);
+		}
+
+		public void fill(int from, int to) {
+			for(int i = from; i < to; i++) {
+				setInt(i, 0);
+			}
+		}
+
+		public String getString(int row) {
+			return isNull(row) ? null : Integer.toString(values[row]);
+		}
+
+		public void setString(int row, String value) {
+			if(value != null) {
+				setInt(row, Integer.parseInt(value));
+			} else {
+				values[row] = 0;
+				setNull(row, true, values.length);
+			}
+		}
+
+		public int getInt(int row) {
+			return values[row];
+		}
+
+		public long getLong(int row) {
+			return values[row];
+		}
+
+		public double getDouble(int row) {
+			return values[row];
+		}
+
+		public boolean getBoolean(int row) {
+			return (values[row] != 0);
+		}
+
+		public void setInt(int row, int value) {
+			values[row] = value;
+			setNull(row, false, values.length);
+		}
+
+		public void setLong(int row, long value) {
+			setInt(row, toInt(value));
+		}
+
+		public void setDouble(int row, double value) {
+			setLong(row, (long)value);
+		}
+
+		public void setBoolean(int row, boolean value) {
+			setInt(row, value ? 1 : 0);
+		}
+	}
+
+	/**
+	 * A column that holds longs.
+	 */
+	private static class LongColumn extends TableColumn {
+
+		private long[] values = new long[0];
+
+		public LongColumn(String name) {
+			super(name);
+		}
+
+		public ColumnType getType() {
+			return ColumnType.LONG;
+		}
+
+		public void resize(int capacity) {
+			long[] resized = new long[capacity];
+			System.arraycopy(values, 0, resized, 0, Math.min(values.length, capacity));
+			values = resized;
+			resizeNulls(capacity);
+		}
+
+		public void fill(int from, int to) {
+			for(int i = from; i < to; i++) {
+				setLong(i, 0L);
+			}
+		}
+
+		public String getString(int row) {
+			return isNull(row) ? null : Long.toString(values[row]);
+		}
+
+		public void setString(int row, String value) {
+			if(value != null) {
+				setLong(row, Long.parseLong(value));
+			} else {
+				values[row] = 0L;
+				setNull(row, true, values.length);
+			}
+		}
+
+		public int getInt(int row) {
+			return toInt(values[row]);
+		}
+
+		public long getLong(int row) {
+			return values[row];
+		}
+
+		public double getDouble(int row) {
+			return values[row];
+		}
+
+		public boolean getBoolean(int row) {
+			return (values[row] != 0L);
+		}
+
+		public void setInt(int row, int value) {
+			setLong(row, value);
+		}
+
+		public void setLong(int row, long value) {
+			values[row] = value;
+			setNull(row, false, values.length);
+		}
+
+		public void setDouble(int row, double value) {
+			setLong(row, (long)value);
+		}
+
+		public void setBoolean(int row, boolean value) {
+			setLong(row, value ? 1L : 0L);
+		}
+	}
+
+	/**
+	 * A column that holds doubles.
+	 */
+	private static class DoubleColumn extends TableColumn {
+
+		private double[] values = new double[0];
+
+		public DoubleColumn(String name) {
+			super(name);
+		}
+
+		public ColumnType getType() {
+			return ColumnType.DOUBLE;
+		}
+
+		public void resize(int capacity) {
+			double[] resized = new double[capacity];
+			System.arraycopy(values, 0, resized, 0, Math.min(values.length, capacity));
+			values = resized;
+			resizeNulls(capacity);
+		}
+
+		public void fill(int from, int to) {
+			for(int i = from; i < to; i++) {
+				setDouble(i, 0.0);
+			}
+		}
+
+		public String getString(int row) {
+			return isNull(row) ? null : Double.toString(values[row]);
+		}
+
+		public void setString(int row, String value) {
+			if(value != null) {
+				setDouble(row, Double.parseDouble(value));
+			} else {
+				values[row] = 0.0;
+				setNull(row, true, values.length);
+			}
+		}
+
+		public int getInt(int row) {
+			return toInt((long)values[row]);
+		}
+
+		public long getLong(int row) {
+			return (long)values[row];
+		}
+
+		public double getDouble(int row) {
+			return values[row];
+		}
+
+		public boolean getBoolean(int row) {
+			return (values[row] != 0.0);
+		}
+
+		public void setInt(int row, int value) {
+			setDouble(row, value);
+		}
+
+		public void setLong(int row, long value) {
+			setDouble(row, value);
+		}
+
+		public void setDouble(int row, double value) {
+			values[row] = value;
+			setNull(row, false, values.length);
+		}
+
+		public void setBoolean(int row, boolean value) {
+			setDouble(row, value ? 1.0 : 0.0);
+		}
+	}
+
+	/**
+	 * A column that holds booleans.
+	 */
+	private static class BooleanColumn extends TableColumn {
+
+		private boolean[] values = new boolean[0];
+
+		public BooleanColumn(String name) {
+			super(name);
+		}
+
+		public ColumnType getType() {
+			return ColumnType.BOOLEAN;
+		}
+
+		public void resize(int capacity) {
+			boolean[] resized = new boolean[capacity];
+			System.arraycopy(values, 0, resized, 0, Math.min(values.length, capacity));
+			values = resized;
+			resizeNulls(capacity);
+		}
+
+		public void fill(int from, int to) {
+			for(int i = from; i < to; i++) {
+				setBoolean(i, false);
+			}
+		}
+
+		public String getString(int row) {
+			return isNull(row) ? null : (values[row] ? "1" : "0");
+		}
+
+		public void setString(int row, String value) {
+			if(value != null) {
+				setBoolean(row, !(value.equals("0") || value.equalsIgnoreCase("false")));
+			} else {
+				values[row] = false;
+				setNull(row, true, values.length);
+			}
+		}
+
+		public int getInt(int row) {
+			return values[row] ? 1 : 0;
+		}
+
+		public long getLong(int row) {
+			return values[row] ? 1L : 0L;
+		}
+
+		public double getDouble(int row) {
+			return values[row] ? 1.0 : 0.0;
+		}
+
+		public boolean getBoolean(int row) {
+			return values[row];
+		}
+
+		public void setInt(int row, int value) {
+			setBoolean(row, value != 0);
+		}
+
+		public void setLong(int row, long value) {
+			setBoolean(row, value != 0L);
+		}
+
+		public void setDouble(int row, double value) {
+			setBoolean(row, value != 0.0);
+		}
+
+		public void setBoolean(int row, boolean value) {
+			values[row] = value;
+			setNull(row, false, values.length);
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package com.dekarrin.db;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
 /**
@@ -19,6 +21,14 @@ import java.util.HashMap;
  * as the result of a query. To do so, use the
  * {@link DatabaseManager#getResultTableData() getResultTableData()}
  * method.
+ * 
+ * Values are held by column. A column may be given a ColumnType so
+ * that its values are held as primitives; the typed get and set
+ * methods then read and write them without converting them to and
+ * from Strings. Columns added without a type hold Strings.
+ * 
+ * Rows can be found by their values through a TableIndex, which is
+ * kept up to date as rows are added and values are set.
  */
 public class TableData {
 	
@@ -28,20 +38,45 @@ public class TableData {
 	private String table;
 	
 	/**
-	 * The names of the columns.
+	 * The columns of data. Only the first columnCount are used.
+	 */
+	private TableColumn[] columns = new TableColumn[0];
+	
+	/**
+	 * The number of columns.
+	 */
+	private int columnCount = 0;
+	
+	/**
+	 * The index of the first column with each name.
+	 */
+	private HashMap<String,Integer> columnIndexes = new HashMap<String,Integer>();
+	
+	/**
+	 * The number of rows.
 	 */
-	private String[] columns = new String[0];
+	private int rowCount = 0;
 	
 	/**
-	 * The rows of data.
+	 * The number of rows that every column has room for.
 	 */
-	private RowData[] data = new RowData[0];
+	private int rowCapacity = 0;
 	
 	/**
 	 * The row currently being operated on.
 	 */
 	private int currentRow = 0;
 	
+	/**
+	 * The column currently being operated on in each row.
+	 */
+	private int[] currentColumns = new int[0];
+	
+	/**
+	 * The indexes over the rows, or null if there are none.
+	 */
+	private ArrayList<TableIndex> indexes = null;
+	
 	/**
 	 * Creates a new empty TableData for a table.
 	 * 
@@ -62,7 +97,7 @@ public class TableData {
 	 * True if empty.
 	 */
 	public boolean isEmpty() {
-		return (data == null);
+		return (rowCount == 0);
 	}
 	
 	/**
@@ -82,7 +117,7 @@ public class TableData {
 	 * The number of rows.
 	 */
 	public int rows() {
-		return data.length;
+		return rowCount;
 	}
 	
 	/**
@@ -96,11 +131,11 @@ public class TableData {
 	}
 	
 	/**
-	 * The column being operated on. This resets to 0 every
-	 * time the current row changes.
+	 * The column being operated on. Each row keeps its own current
+	 * column, which starts at 0 when the row is added.
 	 */
 	public int currentColumn() {
-		return data[currentRow].currentColumn();
+		return currentColumns[row()];
 	}
 	
 	/**
@@ -116,10 +151,9 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData jump(int row) {
-		if(row < 0 || row >= data.length) {
+		if(row < 0 || row >= rowCount) {
 			throw new ArrayIndexOutOfBoundsException();
 		}
-		data[currentRow].reset();
 		currentRow = row;
 		return this;
 	}
@@ -137,7 +171,10 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData jumpColumn(int index) {
-		data[currentRow].jump(index);
+		if(index < 0 || index >= columnCount) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		currentColumns[row()] = index;
 		return this;
 	}
 	
@@ -155,7 +192,7 @@ public class TableData {
 	 */
 	public TableData jumpColumn(String name) {
 		int index = columnIndex(name);
-		data[currentRow].jump(index);
+		jumpColumn(index);
 		return this;
 	}
 	
@@ -166,7 +203,7 @@ public class TableData {
 	 * The number of columns.
 	 */
 	public int columns() {
-		return columns.length;
+		return columnCount;
 	}
 	
 	/**
@@ -180,11 +217,10 @@ public class TableData {
 	 * have a name.
 	 */
 	public String columnName(int index) {
-		String name = null;
-		if(columns != null) {
-			name = columns[index];
+		if(index >= columnCount) {
+			throw new ArrayIndexOutOfBoundsException();
 		}
-		return name;
+		return columns[index].getName();
 	}
 	
 	/**
@@ -198,16 +234,8 @@ public class TableData {
 	 * that name.
 	 */
 	public int columnIndex(String name) {
-		int index = -1;
-		if(columns != null) {
-			for(int i = 0; i < columns.length; i++) {
-				if(columns[i].equals(name)) {
-					index = i;
-					break;
-				}
-			}
-		}
-		return index;
+		Integer index = columnIndexes.get(name);
+		return (index != null) ? index : -1;
 	}
 	
 	/**
@@ -221,7 +249,7 @@ public class TableData {
 	 */
 	public TableData next() {
 		currentRow++;
-		if(currentRow >= data.length) {
+		if(currentRow >= rowCount) {
 			throw new ArrayIndexOutOfBoundsException();
 		}
 		return this;
@@ -234,7 +262,7 @@ public class TableData {
 	 * Whether there are more rows.
 	 */
 	public boolean hasNext() {
-		return (currentRow + 1 < data.length); 
+		return (currentRow + 1 < rowCount); 
 	}
 	
 	/**
@@ -262,7 +290,10 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData nextColumn() {
-		data[currentRow].next();
+		currentColumns[row()]++;
+		if(currentColumns[currentRow] >= columnCount) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
 		return this;
 	}
 	
@@ -273,11 +304,11 @@ public class TableData {
 	 * Whether there are more columns.
 	 */
 	public boolean hasNextColumn() {
-		return data[currentRow].hasNext(); 
+		return (currentColumns[row()] + 1 < columnCount); 
 	}
 	
 	/**
-	 * Resets the pointer to the first row.
+	 * Resets the pointer to the first column.
 	 * 
 	 * @return
 	 * This TableData.
@@ -286,7 +317,7 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData resetColumn() {
-		data[currentRow].reset();
+		currentColumns[row()] = 0;
 		return this;
 	}
 	
@@ -304,10 +335,85 @@ public class TableData {
 	 */
 	public TableData addColumn(String... names) {
 		for(String n: names) {
-			addColumnSlot();
-			columns[columns.length-1] = n;
-			for(int i = 0; i < rows(); i++) {
-				data[i].addColumn();
+			addColumn(n, ColumnType.STRING);
+		}
+		return this;
+	}
+	
+	/**
+	 * Adds a new column that holds a type of value. Rows that already
+	 * exist are given an empty String in the column if it holds Strings,
+	 * or else 0 or false.
+	 * 
+	 * @param name
+	 * The name of the column. This can be null.
+	 * 
+	 * @param type
+	 * The type of values that the column holds.
+	 * 
+	 * @return
+	 * This TableData.
+	 */
+	public TableData addColumn(String name, ColumnType type) {
+		if(columnCount == columns.length) {
+			TableColumn[] grown = new TableColumn[columnCount + (columnCount >> 1) + 1];
+			System.arraycopy(columns, 0, grown, 0, columnCount);
+			columns = grown;
+		}
+		TableColumn column = TableColumn.create(name, type, rowCapacity);
+		column.fill(0, rowCount);
+		columns[columnCount] = column;
+		if(name != null && !columnIndexes.containsKey(name)) {
+			columnIndexes.put(name, columnCount);
+		}
+		columnCount++;
+		return this;
+	}
+	
+	/**
+	 * Gets the type of values that a column holds.
+	 * 
+	 * @param index
+	 * The index of the column.
+	 * 
+	 * @return
+	 * The type of the column.
+	 */
+	public ColumnType columnType(int index) {
+		return column(index).getType();
+	}
+	
+	/**
+	 * Gets the type of values that a column holds.
+	 * 
+	 * @param name
+	 * The name of the column.
+	 * 
+	 * @return
+	 * The type of the column.
+	 */
+	public ColumnType columnType(String name) {
+		int index = columnIndex(name);
+		return columnType(index);
+	}
+	
+	/**
+	 * Makes sure that this TableData has room for a number of rows
+	 * without growing again. Rows are added faster if room for all of
+	 * them is made first.
+	 * 
+	 * @param rows
+	 * The number of rows.
+	 * 
+	 * @return
+	 * This TableData.
+	 */
+	public TableData ensureCapacity(int rows) {
+		if(rows > rowCapacity) {
+			rowCapacity = rows;
+			currentColumns = Arrays.copyOf(currentColumns, rowCapacity);
+			for(int i = 0; i < columnCount; i++) {
+				columns[i].resize(rowCapacity);
 			}
 		}
 		return this;
@@ -324,9 +430,16 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData addRow() {
-		addRowSlot();
-		data[data.length-1] = new RowData(columns.length);
-		jump(data.length-1);
+		if(rowCount == rowCapacity) {
+			ensureCapacity(rowCapacity + (rowCapacity >> 1) + 1);
+		}
+		rowCount++;
+		jump(rowCount-1);
+		if(indexes != null) {
+			for(TableIndex ti: indexes) {
+				ti.add(currentRow);
+			}
+		}
 		return this;
 	}
 	
@@ -345,7 +458,7 @@ public class TableData {
 	 */
 	public TableData addRow(String... data) {
 		addRow();
-		for(int i = 0; i < data.length && i < columns.length; i++) {
+		for(int i = 0; i < data.length && i < columnCount; i++) {
 			set(data[i]);
 		}
 		return this;
@@ -373,8 +486,8 @@ public class TableData {
 	public HashMap<String,String> getMap(int index) {
 		HashMap<String,String> map = new HashMap<String,String>();
 		jump(index);
-		for(int i = 0; i < columns.length; i++) {
-			map.put(columns[i], get(i));
+		for(int i = 0; i < columnCount; i++) {
+			map.put(columns[i].getName(), get(i));
 		}
 		return map;
 	}
@@ -393,10 +506,8 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData set(String value) {
-		data[currentRow].set(value);
-		if(data[currentRow].hasNext()) {
-			data[currentRow].next();
-		}
+		set(currentColumns[row()], value);
+		advance();
 		return this;
 	}
 	
@@ -416,7 +527,13 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData set(int index, String value) {
-		data[currentRow].set(index, value);
+		TableColumn column = column(index);
+		int row = startChange(column);
+		try {
+			column.setString(row, value);
+		} finally {
+			endChange(column, row);
+		}
 		return this;
 	}
 	
@@ -455,8 +572,8 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData setBoolean(boolean value) {
-		String strValue = value ? "1" : "0";
-		set(strValue);
+		setBoolean(currentColumns[row()], value);
+		advance();
 		return this;
 	}
 	
@@ -476,8 +593,13 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData setBoolean(int index, boolean value) {
-		String strValue = value ? "1" : "0";
-		set(index, strValue);
+		TableColumn column = column(index);
+		int row = startChange(column);
+		try {
+			column.setBoolean(row, value);
+		} finally {
+			endChange(column, row);
+		}
 		return this;
 	}
 	
@@ -497,8 +619,8 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData setBoolean(String name, boolean value) {
-		String strValue = value ? "1" : "0";
-		set(name, strValue);
+		int index = columnIndex(name);
+		setBoolean(index, value);
 		return this;
 	}
 	
@@ -620,8 +742,8 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData setInt(int value) {
-		String strValue = Integer.toString(value);
-		set(strValue);
+		setInt(currentColumns[row()], value);
+		advance();
 		return this;
 	}
 	
@@ -638,8 +760,13 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData setInt(int index, int value) {
-		String strValue = Integer.toString(value);
-		set(index, strValue);
+		TableColumn column = column(index);
+		int row = startChange(column);
+		try {
+			column.setInt(row, value);
+		} finally {
+			endChange(column, row);
+		}
 		return this;
 	}
 	
@@ -656,8 +783,8 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData setInt(String name, int value) {
-		String strValue = Integer.toString(value);
-		set(name, strValue);
+		int index = columnIndex(name);
+		setInt(index, value);
 		return this;
 	}
 	
@@ -672,8 +799,8 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData setLong(long value) {
-		String strValue = Long.toString(value);
-		set(strValue);
+		setLong(currentColumns[row()], value);
+		advance();
 		return this;
 	}
 	
@@ -690,8 +817,13 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData setLong(int index, long value) {
-		String strValue = Long.toString(value);
-		set(index, strValue);
+		TableColumn column = column(index);
+		int row = startChange(column);
+		try {
+			column.setLong(row, value);
+		} finally {
+			endChange(column, row);
+		}
 		return this;
 	}
 	
@@ -708,8 +840,8 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData setLong(String name, long value) {
-		String strValue = Long.toString(value);
-		set(name, strValue);
+		int index = columnIndex(name);
+		setLong(index, value);
 		return this;
 	}
 	
@@ -776,8 +908,8 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData setDouble(double value) {
-		String strValue = Double.toString(value);
-		set(strValue);
+		setDouble(currentColumns[row()], value);
+		advance();
 		return this;
 	}
 	
@@ -794,8 +926,13 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData setDouble(int index, double value) {
-		String strValue = Double.toString(value);
-		set(index, strValue);
+		TableColumn column = column(index);
+		int row = startChange(column);
+		try {
+			column.setDouble(row, value);
+		} finally {
+			endChange(column, row);
+		}
 		return this;
 	}
 	
@@ -812,8 +949,8 @@ public class TableData {
 	 * This TableData.
 	 */
 	public TableData setDouble(String name, double value) {
-		String strValue = Double.toString(value);
-		set(name, strValue);
+		int index = columnIndex(name);
+		setDouble(index, value);
 		return this;
 	}
 	
@@ -877,10 +1014,8 @@ public class TableData {
 	 * The value of the column.
 	 */
 	public String get() {
-		String value = data[currentRow].get();
-		if(data[currentRow].hasNext()) {
-			data[currentRow].next();
-		}
+		String value = column(currentColumns[row()]).getString(currentRow);
+		advance();
 		return value;
 	}
 	
@@ -894,7 +1029,7 @@ public class TableData {
 	 * The value.
 	 */
 	public String get(int index) {
-		return data[currentRow].get(index);
+		return column(index).getString(row());
 	}
 	
 	/**
@@ -911,6 +1046,33 @@ public class TableData {
 		return get(index);
 	}
 	
+	/**
+	 * Checks whether the value of a column is NULL.
+	 * 
+	 * @param index
+	 * The index of the column to check.
+	 * 
+	 * @return
+	 * Whether the value is NULL.
+	 */
+	public boolean isNull(int index) {
+		return column(index).isNull(row());
+	}
+	
+	/**
+	 * Checks whether the value of a column is NULL.
+	 * 
+	 * @param name
+	 * The name of the column to check.
+	 * 
+	 * @return
+	 * Whether the value is NULL.
+	 */
+	public boolean isNull(String name) {
+		int index = columnIndex(name);
+		return isNull(index);
+	}
+	
 	/**
 	 * Gets the value of the current column as a boolean and
 	 * advances the current column.
@@ -919,13 +1081,8 @@ public class TableData {
 	 * The value of the column.
 	 */
 	public boolean getBoolean() {
-		String strValue = get();
-		boolean value;
-		if(strValue.equals("0") || strValue.equalsIgnoreCase("false")) {
-			value = false;
-		} else {
-			value = true;
-		}
+		boolean value = column(currentColumns[row()]).getBoolean(currentRow);
+		advance();
 		return value;
 	}
 	
@@ -939,14 +1096,7 @@ public class TableData {
 	 * The value.
 	 */
 	public boolean getBoolean(int index) {
-		String strValue = get(index);
-		boolean value;
-		if(strValue.equals("0") || strValue.equals("false")) {
-			value = false;
-		} else {
-			value = true;
-		}
-		return value;
+		return column(index).getBoolean(row());
 	}
 	
 	/**
@@ -1051,8 +1201,9 @@ public class TableData {
 	 * The value of the column.
 	 */
 	public int getInt() {
-		String strValue = get();
-		return Integer.parseInt(strValue);
+		int value = column(currentColumns[row()]).getInt(currentRow);
+		advance();
+		return value;
 	}
 	
 	/**
@@ -1065,8 +1216,7 @@ public class TableData {
 	 * The value.
 	 */
 	public int getInt(int index) {
-		String strValue = get(index);
-		return Integer.parseInt(strValue);
+		return column(index).getInt(row());
 	}
 	
 	/**
@@ -1091,8 +1241,9 @@ public class TableData {
 	 * The value of the column.
 	 */
 	public long getLong() {
-		String strValue = get();
-		return Long.parseLong(strValue);
+		long value = column(currentColumns[row()]).getLong(currentRow);
+		advance();
+		return value;
 	}
 	
 	/**
@@ -1105,8 +1256,7 @@ public class TableData {
 	 * The value.
 	 */
 	public long getLong(int index) {
-		String strValue = get(index);
-		return Long.parseLong(strValue);
+		return column(index).getLong(row());
 	}
 	
 	/**
@@ -1171,8 +1321,9 @@ public class TableData {
 	 * The value of the column.
 	 */
 	public double getDouble() {
-		String strValue = get();
-		return Double.parseDouble(strValue);
+		double value = column(currentColumns[row()]).getDouble(currentRow);
+		advance();
+		return value;
 	}
 	
 	/**
@@ -1185,8 +1336,7 @@ public class TableData {
 	 * The value.
 	 */
 	public double getDouble(int index) {
-		String strValue = get(index);
-		return Double.parseDouble(strValue);
+		return column(index).getDouble(row());
 	}
 	
 	/**
@@ -1253,10 +1403,10 @@ public class TableData {
 	 * The array.
 	 */
 	public String[] getArray(int index) {
-		String[] values = new String[rows()];
-		reset();
-		for(int i = 0; i < rows(); jump(i++)) {
-			values[i] = get(index);
+		TableColumn column = column(index);
+		String[] values = new String[rowCount];
+		for(int i = 0; i < rowCount; i++) {
+			values[i] = column.getString(i);
 		}
 		return values;
 	}
@@ -1285,8 +1435,12 @@ public class TableData {
 	 * The array.
 	 */
 	public boolean[] getBooleanArray(int index) {
-		String[] strValues = getArray(index);
-		return convertToBoolean(strValues);
+		TableColumn column = column(index);
+		boolean[] values = new boolean[rowCount];
+		for(int i = 0; i < rowCount; i++) {
+			values[i] = column.getBoolean(i);
+		}
+		return values;
 	}
 	
 	/**
@@ -1299,8 +1453,8 @@ public class TableData {
 	 * The array.
 	 */
 	public boolean[] getBooleanArray(String name) {
-		String[] strValues = getArray(name);
-		return convertToBoolean(strValues);
+		int index = columnIndex(name);
+		return getBooleanArray(index);
 	}
 	
 	/**
@@ -1369,8 +1523,12 @@ public class TableData {
 	 * The array.
 	 */
 	public int[] getIntArray(int index) {
-		String[] strValues = getArray(index);
-		return convertToInt(strValues);
+		TableColumn column = column(index);
+		int[] values = new int[rowCount];
+		for(int i = 0; i < rowCount; i++) {
+			values[i] = column.getInt(i);
+		}
+		return values;
 	}
 	
 	/**
@@ -1383,8 +1541,8 @@ public class TableData {
 	 * The array.
 	 */
 	public int[] getIntArray(String name) {
-		String[] strValues = getArray(name);
-		return convertToInt(strValues);
+		int index = columnIndex(name);
+		return getIntArray(index);
 	}
 	
 	/**
@@ -1397,8 +1555,12 @@ public class TableData {
 	 * The array.
 	 */
 	public long[] getLongArray(int index) {
-		String[] strValues = getArray(index);
-		return convertToLong(strValues);
+		TableColumn column = column(index);
+		long[] values = new long[rowCount];
+		for(int i = 0; i < rowCount; i++) {
+			values[i] = column.getLong(i);
+		}
+		return values;
 	}
 	
 	/**
@@ -1411,8 +1573,8 @@ public class TableData {
 	 * The array.
 	 */
 	public long[] getLongArray(String name) {
-		String[] strValues = getArray(name);
-		return convertToLong(strValues);
+		int index = columnIndex(name);
+		return getLongArray(index);
 	}
 	
 	/**
@@ -1453,8 +1615,12 @@ public class TableData {
 	 * The array.
 	 */
 	public double[] getDoubleArray(int index) {
-		String[] strValues = getArray(index);
-		return convertToDouble(strValues);
+		TableColumn column = column(index);
+		double[] values = new double[rowCount];
+		for(int i = 0; i < rowCount; i++) {
+			values[i] = column.getDouble(i);
+		}
+		return values;
 	}
 	
 	/**
@@ -1467,8 +1633,8 @@ public class TableData {
 	 * The array.
 	 */
 	public double[] getDoubleArray(String name) {
-		String[] strValues = getArray(name);
-		return convertToDouble(strValues);
+		int index = columnIndex(name);
+		return getDoubleArray(index);
 	}
 	
 	/**
@@ -1500,40 +1666,79 @@ public class TableData {
 	}
 	
 	/**
-	 * Duplicates the column structure of this TableData without
-	 * keeping any rows.
+	 * Gets a hash index over some columns. The index finds the rows
+	 * that hold a key in constant time. If there is already a hash
+	 * index over the same columns, it is given instead of a new one.
+	 * 
+	 * @param names
+	 * The names of the columns that make up the key, in order.
 	 * 
 	 * @return
-	 * The new TableData object containing identical columns and
-	 * table properties.
+	 * The index.
+	 * 
+	 * @throws IllegalArgumentException
+	 * If no columns are given or there is no column with one of the
+	 * names.
 	 */
-	public TableData cloneStructure() {
-		TableData t2 = new TableData(table);
-		for(String colName: columns) {
-			t2.addColumn(colName);
-		}
-		return t2;
+	public TableIndex index(String... names) {
+		return createIndex(names, false);
 	}
 	
 	/**
-	 * Converts String array into a boolean array.
+	 * Gets a sorted index over some columns. Besides finding the rows
+	 * that hold a key, the index can find every row whose key is within
+	 * a range. If there is already a sorted index over the same
+	 * columns, it is given instead of a new one.
 	 * 
-	 * @param strArray
-	 * The array to convert.
+	 * @param names
+	 * The names of the columns that make up the key, in order.
 	 * 
 	 * @return
-	 * The converted array.
+	 * The index.
+	 * 
+	 * @throws IllegalArgumentException
+	 * If no columns are given or there is no column with one of the
+	 * names.
 	 */
-	private boolean[] convertToBoolean(String[] strArray) {
-		boolean[] arr = new boolean[strArray.length];
-		for(int i = 0; i < strArray.length; i++) {
-			if(strArray[i].equals("0") || strArray[i].equalsIgnoreCase("false")) {
-				arr[i] = false;
-			} else {
-				arr[i] = true;
+	public TableIndex sortedIndex(String... names) {
+		return createIndex(names, true);
+	}
+	
+	/**
+	 * Stops keeping an index up to date. Every index slows down adding
+	 * rows and setting the values in its columns, so indexes that are
+	 * no longer needed should be dropped.
+	 * 
+	 * @param index
+	 * The index to drop.
+	 * 
+	 * @return
+	 * This TableData.
+	 */
+	public TableData dropIndex(TableIndex index) {
+		if(indexes != null) {
+			indexes.remove(index);
+			if(indexes.isEmpty()) {
+				indexes = null;
 			}
 		}
-		return arr;
+		return this;
+	}
+	
+	/**
+	 * Duplicates the column structure of this TableData without
+	 * keeping any rows.
+	 * 
+	 * @return
+	 * The new TableData object containing identical columns and
+	 * table properties.
+	 */
+	public TableData cloneStructure() {
+		TableData t2 = new TableData(table);
+		for(int i = 0; i < columnCount; i++) {
+			t2.addColumn(columns[i].getName(), columns[i].getType());
+		}
+		return t2;
 	}
 	
 	/**
@@ -1571,7 +1776,7 @@ public class TableData {
 	}
 	
 	/**
-	 * Converts String array into an integer array.
+	 * Converts String array into a float array.
 	 * 
 	 * @param strArray
 	 * The array to convert.
@@ -1579,16 +1784,16 @@ public class TableData {
 	 * @return
 	 * The converted array.
 	 */
-	private int[] convertToInt(String[] strArray) {
-		int[] arr = new int[strArray.length];
+	private float[] convertToFloat(String[] strArray) {
+		float[] arr = new float[strArray.length];
 		for(int i = 0; i < strArray.length; i++) {
-			arr[i] = Integer.parseInt(strArray[i]);
+			arr[i] = Float.parseFloat(strArray[i]);
 		}
 		return arr;
 	}
 	
 	/**
-	 * Converts String array into a long array.
+	 * Converts String array into a char array.
 	 * 
 	 * @param strArray
 	 * The array to convert.
@@ -1596,84 +1801,133 @@ public class TableData {
 	 * @return
 	 * The converted array.
 	 */
-	private long[] convertToLong(String[] strArray) {
-		long[] arr = new long[strArray.length];
+	private char[] convertToChar(String[] strArray) {
+		char[] arr = new char[strArray.length];
 		for(int i = 0; i < strArray.length; i++) {
-			arr[i] = Long.parseLong(strArray[i]);
+			arr[i] = strArray[i].charAt(0);
 		}
 		return arr;
 	}
 	
 	/**
-	 * Converts String array into a float array.
+	 * Creates an index over some columns and adds every row to it, or
+	 * finds the index that already exists over them.
 	 * 
-	 * @param strArray
-	 * The array to convert.
+	 * @param names
+	 * The names of the columns.
+	 * 
+	 * @param sorted
+	 * Whether the index is sorted.
 	 * 
 	 * @return
-	 * The converted array.
+	 * The index.
 	 */
-	private float[] convertToFloat(String[] strArray) {
-		float[] arr = new float[strArray.length];
-		for(int i = 0; i < strArray.length; i++) {
-			arr[i] = Float.parseFloat(strArray[i]);
+	private TableIndex createIndex(String[] names, boolean sorted) {
+		if(names.length == 0) {
+			throw new IllegalArgumentException("An index needs at least one column.");
 		}
-		return arr;
+		TableColumn[] indexColumns = new TableColumn[names.length];
+		for(int i = 0; i < names.length; i++) {
+			int index = columnIndex(names[i]);
+			if(index < 0) {
+				throw new IllegalArgumentException("No column named '" + names[i] + "'");
+			}
+			indexColumns[i] = columns[index];
+		}
+		if(indexes == null) {
+			indexes = new ArrayList<TableIndex>();
+		}
+		for(TableIndex ti: indexes) {
+			if(ti.isOn(indexColumns, sorted)) {
+				return ti;
+			}
+		}
+		TableIndex ti = new TableIndex(indexColumns, sorted);
+		for(int row = 0; row < rowCount; row++) {
+			ti.add(row);
+		}
+		indexes.add(ti);
+		return ti;
 	}
 	
 	/**
-	 * Converts String array into a double array.
+	 * Takes the current row out of the indexes over a column before one
+	 * of its values changes.
 	 * 
-	 * @param strArray
-	 * The array to convert.
+	 * @param column
+	 * The column whose value is about to change.
 	 * 
 	 * @return
-	 * The converted array.
+	 * The index of the current row.
 	 */
-	private double[] convertToDouble(String[] strArray) {
-		double[] arr = new double[strArray.length];
-		for(int i = 0; i < strArray.length; i++) {
-			arr[i] = Double.parseDouble(strArray[i]);
+	private int startChange(TableColumn column) {
+		int row = row();
+		if(indexes != null) {
+			for(TableIndex ti: indexes) {
+				if(ti.covers(column)) {
+					ti.remove(row);
+				}
+			}
 		}
-		return arr;
+		return row;
 	}
 	
 	/**
-	 * Converts String array into a char array.
+	 * Puts a row back into the indexes over a column after one of its
+	 * values has changed.
 	 * 
-	 * @param strArray
-	 * The array to convert.
+	 * @param column
+	 * The column whose value changed.
 	 * 
-	 * @return
-	 * The converted array.
+	 * @param row
+	 * The index of the row.
 	 */
-	private char[] convertToChar(String[] strArray) {
-		char[] arr = new char[strArray.length];
-		for(int i = 0; i < strArray.length; i++) {
-			arr[i] = strArray[i].charAt(0);
+	private void endChange(TableColumn column, int row) {
+		if(indexes != null) {
+			for(TableIndex ti: indexes) {
+				if(ti.covers(column)) {
+					ti.add(row);
+				}
+			}
 		}
-		return arr;
 	}
 	
 	/**
-	 * Adds space for an extra row to the data array.
+	 * Moves to the next column if there is one. This is used by the
+	 * methods that work on the current column.
 	 */
-	private void addRowSlot() {
-		RowData[] dataBuffer = new RowData[data.length + 1];
-		for(int i = 0; i < data.length; i++) {
-			dataBuffer[i] = data[i];
+	private void advance() {
+		if(currentColumns[currentRow] + 1 < columnCount) {
+			currentColumns[currentRow]++;
 		}
-		data = dataBuffer;
 	}
 	
 	/**
-	 * Adds space for an extra row to the data array.
+	 * Gets a column.
+	 * 
+	 * @param index
+	 * The index of the column.
+	 * 
+	 * @return
+	 * The column.
 	 */
-	private void addColumnSlot() {
-		String[] dataBuffer = new String[columns.length + 1];
-		for(int i = 0; i < columns.length; i++) {
-			dataBuffer[i] = columns[i];
+	private TableColumn column(int index) {
+		if(index >= columnCount) {
+			throw new ArrayIndexOutOfBoundsException();
 		}
-		columns = dataBuffer;
+		return columns[index];
+	}
+	
+	/**
+	 * Gets the current row, making sure that there is one.
+	 * 
+	 * @return
+	 * The index of the current row.
+	 */
+	private int row() {
+		if(currentRow >= rowCount) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		return currentRow;
 	}
-}
\ No newline at end of file
+}
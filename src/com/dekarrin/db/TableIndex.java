@@ -0,0 +1,671 @@
+package com.dekarrin.db;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import com.dekarrin.util.Int2ObjectMap;
+import com.dekarrin.util.IntArrayList;
+import com.dekarrin.util.Long2LongMap;
+
+/**
+ * Finds the rows of a TableData by the values in one or more of its
+ * columns. An index is created by
+ * {@link TableData#index(String...) TableData.index()} or
+ * {@link TableData#sortedIndex(String...) TableData.sortedIndex()} and
+ * is kept up to date by the TableData as rows are added and values
+ * are set.
+ *
+ * A key is given as one value for each column of the index, in the
+ * same order as the columns. Values may be given as any type that the
+ * column can be set from; for example, a row whose LONG column holds 5
+ * can be found with 5, 5L, or "5". A null value finds rows that hold
+ * NULL.
+ *
+ * A hash index finds rows by their exact key. A sorted index can also
+ * find every row whose key is within a range, at the cost of slower
+ * lookups. A hash index on a single INT or LONG column keeps its keys
+ * and rows as primitives, so it takes far less memory than one on
+ * other columns.
+ */
+public class TableIndex {
+
+	/**
+	 * Orders keys. NULL comes before every other value, and keys made
+	 * of several values are compared one value at a time.
+	 */
+	private static final Comparator<Object> KEY_ORDER = new Comparator<Object>() {
+		public int compare(Object a, Object b) {
+			int result = 0;
+			if(a instanceof List) {
+				List<?> la = (List<?>)a;
+				List<?> lb = (List<?>)b;
+				for(int i = 0; i < la.size() && result == 0; i++) {
+					result = compareValues(la.get(i), lb.get(i));
+				}
+			} else {
+				result = compareValues(a, b);
+			}
+			return result;
+		}
+	};
+
+	/**
+	 * The columns that the index is on.
+	 */
+	private TableColumn[] columns;
+
+	/**
+	 * The rows with each key. A key with a single row maps to an
+	 * Integer; a key with more maps to an IntArrayList. This is null
+	 * if the index uses numberRows instead.
+	 */
+	private Map<Object,Object> rows;
+
+	/**
+	 * The rows with each key, for a hash index on one INT or LONG
+	 * column; null for any other index. A key with a single row maps
+	 * to the row. A key with more maps to the id of its bucket in
+	 * numberBuckets, stored as -2 minus the id.
+	 */
+	private Long2LongMap numberRows;
+
+	/**
+	 * The rows of the keys in numberRows that have more than one row.
+	 */
+	private Int2ObjectMap<IntArrayList> numberBuckets;
+
+	/**
+	 * The id that the next bucket in numberBuckets is given.
+	 */
+	private int nextBucket = 0;
+
+	/**
+	 * The rows that hold NULL, for an index that uses numberRows.
+	 */
+	private IntArrayList nullRows;
+
+	/**
+	 * Whether the keys are kept in order.
+	 */
+	private boolean sorted;
+
+	/**
+	 * Creates a new, empty TableIndex.
+	 *
+	 * @param columns
+	 * The columns that the index is on.
+	 *
+	 * @param sorted
+	 * Whether the keys are kept in order.
+	 */
+	TableIndex(TableColumn[] columns, boolean sorted) {
+		this.columns = columns;
+		this.sorted = sorted;
+		if(sorted) {
+			rows = new TreeMap<Object,Object>(KEY_ORDER);
+		} else if(columns.length == 1 && isWhole(columns[0].getType())) {
+			numberRows = new Long2LongMap();
+			numberRows.setDefaultValue(-1L);
+			numberBuckets = new Int2ObjectMap<IntArrayList>();
+			nullRows = new IntArrayList();
+		} else {
+			rows = new HashMap<Object,Object>();
+		}
+	}
+
+	/**
+	 * Gets the names of the columns that the index is on.
+	 *
+	 * @return
+	 * The names of the columns.
+	 */
+	public String[] getColumns() {
+		String[] names = new String[columns.length];
+		for(int i = 0; i < columns.length; i++) {
+			names[i] = columns[i].getName();
+		}
+		return names;
+	}
+
+	/**
+	 * Checks whether this index keeps its keys in order, and so can
+	 * find ranges of them.
+	 *
+	 * @return
+	 * Whether the index is sorted.
+	 */
+	public boolean isSorted() {
+		return sorted;
+	}
+
+	/**
+	 * Gets the number of distinct keys in the index.
+	 *
+	 * @return
+	 * The number of keys.
+	 */
+	public int size() {
+		int size;
+		if(numberRows != null) {
+			size = numberRows.size() + (nullRows.isEmpty() ? 0 : 1);
+		} else {
+			size = rows.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Checks whether any row has a key.
+	 *
+	 * @param key
+	 * The value of each column of the index.
+	 *
+	 * @return
+	 * Whether there is a row with the key.
+	 */
+	public boolean containsKey(Object... key) {
+		Object k = key(key);
+		boolean contains;
+		if(numberRows == null) {
+			contains = rows.containsKey(k);
+		} else if(k == null) {
+			contains = !nullRows.isEmpty();
+		} else {
+			contains = numberRows.containsKey((Long)k);
+		}
+		return contains;
+	}
+
+	/**
+	 * Gets the first row that has a key.
+	 *
+	 * @param key
+	 * The value of each column of the index.
+	 *
+	 * @return
+	 * The index of the first row with the key, or -1 if there is none.
+	 * The row can be moved to with {@link TableData#jump(int) jump()}.
+	 */
+	public int get(Object... key) {
+		Object found = bucket(key(key));
+		int row = -1;
+		if(found instanceof Integer) {
+			row = (Integer)found;
+		} else if(found != null) {
+			IntArrayList list = (IntArrayList)found;
+			row = list.get(0);
+			for(int i = 1; i < list.size(); i++) {
+				row = Math.min(row, list.get(i));
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Gets every row that has a key.
+	 *
+	 * @param key
+	 * The value of each column of the index.
+	 *
+	 * @return
+	 * The indexes of the rows with the key, in order, or an empty array
+	 * if there are none.
+	 */
+	public int[] getAll(Object... key) {
+		IntArrayList found = new IntArrayList();
+		addRows(found, bucket(key(key)));
+		return found.toArray();
+	}
+
+	/**
+	 * Gets every row whose key is within a range. This can only be done
+	 * by a sorted index.
+	 *
+	 * @param from
+	 * The lowest key to include, or null for no lower limit. For an
+	 * index on more than one column, this is an Object[] with a value
+	 * for each column.
+	 *
+	 * @param to
+	 * The key to stop before, or null for no upper limit. For an index
+	 * on more than one column, this is an Object[] with a value for
+	 * each column.
+	 *
+	 * @return
+	 * The indexes of the rows, ordered by their keys and then by row.
+	 *
+	 * @throws UnsupportedOperationException
+	 * If this index is not sorted.
+	 */
+	public int[] range(Object from, Object to) {
+		if(!sorted) {
+			throw new UnsupportedOperationException("A hash index cannot look up ranges.");
+		}
+		NavigableMap<Object,Object> keys = (NavigableMap<Object,Object>)rows;
+		if(from != null) {
+			keys = keys.tailMap(bound(from), true);
+		}
+		if(to != null) {
+			keys = keys.headMap(bound(to), false);
+		}
+		IntArrayList found = new IntArrayList();
+		for(Object bucket: keys.values()) {
+			addRows(found, bucket);
+		}
+		return found.toArray();
+	}
+
+	/**
+	 * Adds a row under its current key.
+	 *
+	 * @param row
+	 * The index of the row.
+	 */
+	void add(int row) {
+		if(numberRows != null) {
+			addNumber(row);
+			return;
+		}
+		Object key = rowKey(row);
+		Object bucket = rows.get(key);
+		if(bucket == null) {
+			rows.put(key, row);
+		} else if(bucket instanceof Integer) {
+			IntArrayList list = new IntArrayList(2);
+			list.add((Integer)bucket);
+			list.add(row);
+			rows.put(key, list);
+		} else {
+			((IntArrayList)bucket).add(row);
+		}
+	}
+
+	/**
+	 * Checks whether the index is on a column.
+	 *
+	 * @param column
+	 * The column.
+	 *
+	 * @return
+	 * Whether the column is one of the columns of the index.
+	 */
+	boolean covers(TableColumn column) {
+		boolean covered = false;
+		for(TableColumn c: columns) {
+			if(c == column) {
+				covered = true;
+				break;
+			}
+		}
+		return covered;
+	}
+
+	/**
+	 * Checks whether the index is on exactly some columns.
+	 *
+	 * @param columns
+	 * The columns, in order.
+	 *
+	 * @param sorted
+	 * Whether the index must be sorted.
+	 *
+	 * @return
+	 * Whether this index is on the columns.
+	 */
+	boolean isOn(TableColumn[] columns, boolean sorted) {
+		return (this.sorted == sorted && Arrays.equals(this.columns, columns));
+	}
+
+	/**
+	 * Removes a row from under its current key. This must be called
+	 * before a value of the row in one of the columns of the index is
+	 * changed.
+	 *
+	 * @param row
+	 * The index of the row.
+	 */
+	void remove(int row) {
+		if(numberRows != null) {
+			removeNumber(row);
+			return;
+		}
+		Object key = rowKey(row);
+		Object bucket = rows.get(key);
+		if(bucket instanceof Integer) {
+			if((Integer)bucket == row) {
+				rows.remove(key);
+			}
+		} else if(bucket != null) {
+			IntArrayList list = (IntArrayList)bucket;
+			int position = list.indexOf(row);
+			if(position >= 0) {
+				list.removeAt(position);
+				if(list.size() == 1) {
+					rows.put(key, list.get(0));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds a row under its current key in numberRows.
+	 *
+	 * @param row
+	 * The index of the row.
+	 */
+	private void addNumber(int row) {
+		TableColumn column = columns[0];
+		if(column.isNull(row)) {
+			nullRows.add(row);
+			return;
+		}
+		long key = column.getLong(row);
+		long found = numberRows.get(key);
+		if(found == -1L) {
+			numberRows.put(key, row);
+		} else if(found >= 0) {
+			IntArrayList list = new IntArrayList(2);
+			list.add((int)found);
+			list.add(row);
+			numberBuckets.put(nextBucket, list);
+			numberRows.put(key, -2L - nextBucket);
+			nextBucket++;
+		} else {
+			numberBuckets.get((int)(-2L - found)).add(row);
+		}
+	}
+
+	/**
+	 * Removes a row from under its current key in numberRows.
+	 *
+	 * @param row
+	 * The index of the row.
+	 */
+	private void removeNumber(int row) {
+		TableColumn column = columns[0];
+		if(column.isNull(row)) {
+			int position = nullRows.indexOf(row);
+			if(position >= 0) {
+				nullRows.removeAt(position);
+			}
+			return;
+		}
+		long key = column.getLong(row);
+		long found = numberRows.get(key);
+		if(found == row) {
+			numberRows.remove(key);
+		} else if(found < -1L) {
+			int id = (int)(-2L - found);
+			IntArrayList list = numberBuckets.get(id);
+			int position = list.indexOf(row);
+			if(position >= 0) {
+				list.removeAt(position);
+				if(list.size() == 1) {
+					numberBuckets.remove(id);
+					numberRows.put(key, list.get(0));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the rows of a key.
+	 *
+	 * @param key
+	 * The key, as made by {@link #key(Object[]) key()}.
+	 *
+	 * @return
+	 * An Integer if the key has a single row, an IntArrayList if it
+	 * has more, or null if it has none.
+	 */
+	private Object bucket(Object key) {
+		if(numberRows == null) {
+			return rows.get(key);
+		}
+		Object bucket = null;
+		if(key == null) {
+			if(nullRows.size() == 1) {
+				bucket = nullRows.get(0);
+			} else if(!nullRows.isEmpty()) {
+				bucket = nullRows;
+			}
+		} else {
+			long found = numberRows.get((Long)key);
+			if(found >= 0) {
+				bucket = (int)found;
+			} else if(found < -1L) {
+				bucket = numberBuckets.get((int)(-2L - found));
+			}
+		}
+		return bucket;
+	}
+
+	/**
+	 * Adds the rows of a bucket to a list, in order.
+	 *
+	 * @param found
+	 * The list to add to.
+	 *
+	 * @param bucket
+	 * The rows of a key, or null if the key has none.
+	 */
+	private static void addRows(IntArrayList found, Object bucket) {
+		if(bucket instanceof Integer) {
+			found.add((Integer)bucket);
+		} else if(bucket != null) {
+			int[] bucketRows = ((IntArrayList)bucket).toArray();
+			Arrays.sort(bucketRows);
+			found.addAll(bucketRows);
+		}
+	}
+
+	/**
+	 * Compares two values of a column. NULL comes first.
+	 *
+	 * @param a
+	 * The first value.
+	 *
+	 * @param b
+	 * The second value.
+	 *
+	 * @return
+	 * A negative number, zero, or a positive number as the first value
+	 * is less than, equal to, or greater than the second.
+	 */
+	@SuppressWarnings("unchecked")
+	private static int compareValues(Object a, Object b) {
+		int result;
+		if(a == null) {
+			result = (b == null) ? 0 : -1;
+		} else if(b == null) {
+			result = 1;
+		} else {
+			result = ((Comparable<Object>)a).compareTo(b);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether a type of column holds whole numbers.
+	 *
+	 * @param type
+	 * The type of the column.
+	 *
+	 * @return
+	 * Whether the column is an INT or LONG column.
+	 */
+	private static boolean isWhole(ColumnType type) {
+		return (type == ColumnType.INT || type == ColumnType.LONG);
+	}
+
+	/**
+	 * Makes the key of a range limit.
+	 *
+	 * @param limit
+	 * The limit as given to {@link #range(Object, Object) range()}.
+	 *
+	 * @return
+	 * The key.
+	 */
+	private Object bound(Object limit) {
+		Object[] values;
+		if(columns.length > 1 && limit instanceof Object[]) {
+			values = (Object[])limit;
+		} else {
+			values = new Object[] {limit};
+		}
+		return key(values);
+	}
+
+	/**
+	 * Makes a key from the values given for it. Each value is converted
+	 * to the type that its column holds, so that it matches the keys of
+	 * the rows.
+	 *
+	 * @param values
+	 * The value for each column.
+	 *
+	 * @return
+	 * The key.
+	 *
+	 * @throws IllegalArgumentException
+	 * If the number of values is not the number of columns.
+	 */
+	private Object key(Object[] values) {
+		if(values.length != columns.length) {
+			throw new IllegalArgumentException("Index needs " + columns.length + " values; got " + values.length);
+		}
+		Object key;
+		if(columns.length == 1) {
+			key = normalize(columns[0].getType(), values[0]);
+		} else {
+			Object[] normalized = new Object[values.length];
+			for(int i = 0; i < values.length; i++) {
+				normalized[i] = normalize(columns[i].getType(), values[i]);
+			}
+			key = Arrays.asList(normalized);
+		}
+		return key;
+	}
+
+	/**
+	 * Converts a value to the type of key used for a type of column.
+	 * Whole numbers are kept as Longs, other numbers as Doubles, and
+	 * values of String columns as Strings.
+	 *
+	 * @param type
+	 * The type of the column.
+	 *
+	 * @param value
+	 * The value, or null for NULL.
+	 *
+	 * @return
+	 * The key value.
+	 */
+	private static Object normalize(ColumnType type, Object value) {
+		if(value == null) {
+			return null;
+		}
+		Object key;
+		switch(type) {
+			case INT:
+			case LONG:
+				if(value instanceof Number) {
+					key = ((Number)value).longValue();
+				} else {
+					key = Long.parseLong(value.toString());
+				}
+				break;
+
+			case DOUBLE:
+				if(value instanceof Number) {
+					key = ((Number)value).doubleValue();
+				} else {
+					key = Double.parseDouble(value.toString());
+				}
+				break;
+
+			case BOOLEAN:
+				if(value instanceof Boolean) {
+					key = value;
+				} else if(value instanceof Number) {
+					key = (((Number)value).doubleValue() != 0.0);
+				} else {
+					String s = value.toString();
+					key = !(s.equals("0") || s.equalsIgnoreCase("false"));
+				}
+				break;
+
+			default:
+				key = value.toString();
+				break;
+		}
+		return key;
+	}
+
+	/**
+	 * Gets the key of a row as it is now.
+	 *
+	 * @param row
+	 * The index of the row.
+	 *
+	 * @return
+	 * The key.
+	 */
+	private Object rowKey(int row) {
+		Object key;
+		if(columns.length == 1) {
+			key = value(columns[0], row);
+		} else {
+			Object[] values = new Object[columns.length];
+			for(int i = 0; i < columns.length; i++) {
+				values[i] = value(columns[i], row);
+			}
+			key = Arrays.asList(values);
+		}
+		return key;
+	}
+
+	/**
+	 * Gets the value of a row in a column as a key value.
+	 *
+	 * @param column
+	 * The column.
+	 *
+	 * @param row
+	 * The index of the row.
+	 *
+	 * @return
+	 * The key value.
+	 */
+	private static Object value(TableColumn column, int row) {
+		if(column.isNull(row)) {
+			return null;
+		}
+		Object value;
+		switch(column.getType()) {
+			case INT:
+			case LONG:
+				value = column.getLong(row);
+				break;
+
+			case DOUBLE:
+				value = column.getDouble(row);
+				break;
+
+			case BOOLEAN:
+				value = column.getBoolean(row);
+				break;
+
+			default:
+				value = column.getString(row);
+				break;
+		}
+		return value;
+	}
+}
@@ -12,6 +12,16 @@ import com.dekarrin.util.ByteComposer;
  */
 class BackgroundColorChunk extends Chunk {
 	
+	/**
+	 * Creates BackgroundColorChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) {
+			return new BackgroundColorChunk(data);
+		}
+	};
+	
 	/**
 	 * The mode of this background chunk. This is dependent on
 	 * the color type of the PNG, but the amount of data in this
@@ -135,12 +145,12 @@ class BackgroundColorChunk extends Chunk {
 		int r,g,b;
 		switch(mode) {
 			case INDEXED:
-				setProperties(parser.parseInt(1));
+				setProperties(getParser().parseInt(1));
 				break;
 				
 			case GRAYSCALE:
 			case GRAYSCALE_ALPHA:
-				g = parser.parseInt(2);
+				g = getParser().parseInt(2);
 				GrayColor c = new GrayColor();
 				c.setValue(g);
 				setProperties(c);
@@ -148,9 +158,9 @@ class BackgroundColorChunk extends Chunk {
 				
 			case TRUECOLOR:
 			case TRUECOLOR_ALPHA:
-				r = parser.parseInt(2);
-				g = parser.parseInt(2);
-				b = parser.parseInt(2);
+				r = getParser().parseInt(2);
+				g = getParser().parseInt(2);
+				b = getParser().parseInt(2);
 				Color color = new Color();
 				color.setSamples(r, g, b);
 				setProperties(color);
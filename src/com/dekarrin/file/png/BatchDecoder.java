@@ -0,0 +1,243 @@
+package com.dekarrin.file.png;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Loads many PNG files at once on a fixed number of threads. Before a
+ * file is queued, its header is read to find how much memory its
+ * image will take up, and that amount is reserved from a fixed limit;
+ * the reservation is given back once the loaded PNG has been passed
+ * to the listener. Queuing blocks while the limit is used up, so the
+ * total size of the images being decoded never goes over the limit.
+ * A single image that is larger than the limit is decoded on its own.
+ *
+ * Every load has its own decoding state, so PNGs loaded by a
+ * BatchDecoder do not interfere with each other or with PNGs that are
+ * loaded or saved elsewhere at the same time.
+ */
+public class BatchDecoder {
+
+	/**
+	 * The default limit on the memory used by images being decoded.
+	 */
+	public static final long DEFAULT_MEMORY_LIMIT = 256L * 1024 * 1024;
+
+	/**
+	 * The number of bytes that each permit of the memory semaphore
+	 * stands for.
+	 */
+	private static final int PERMIT_SIZE = 1024;
+
+	/**
+	 * The number of bytes in the signature and IHDR chunk of a PNG
+	 * file, up to and including the color type.
+	 */
+	private static final int HEADER_LENGTH = 26;
+
+	/**
+	 * Runs the decoding tasks.
+	 */
+	private ExecutorService executor;
+
+	/**
+	 * Tracks how much of the memory limit is free, in permits.
+	 */
+	private Semaphore memory;
+
+	/**
+	 * The total number of permits.
+	 */
+	private int permits;
+
+	/**
+	 * Creates a new BatchDecoder with the default memory limit.
+	 *
+	 * @param threads
+	 * The number of files to decode at the same time.
+	 */
+	public BatchDecoder(int threads) {
+		this(threads, DEFAULT_MEMORY_LIMIT);
+	}
+
+	/**
+	 * Creates a new BatchDecoder.
+	 *
+	 * @param threads
+	 * The number of files to decode at the same time.
+	 *
+	 * @param memoryLimit
+	 * The most memory, in bytes, that the images being decoded may
+	 * take up together.
+	 */
+	public BatchDecoder(int threads, long memoryLimit) {
+		if(threads < 1) {
+			throw new IllegalArgumentException("Thread count must be positive");
+		}
+		if(memoryLimit < PERMIT_SIZE) {
+			throw new IllegalArgumentException("Memory limit must be at least " + PERMIT_SIZE + " bytes");
+		}
+		permits = (int)Math.min(Integer.MAX_VALUE, memoryLimit / PERMIT_SIZE);
+		memory = new Semaphore(permits, true);
+		executor = Executors.newFixedThreadPool(threads);
+	}
+
+	/**
+	 * Decodes a list of files, passing each result to a listener.
+	 * This method returns once every file has been decoded and the
+	 * listener has been called for each of them.
+	 *
+	 * @param files
+	 * The locations of the files to decode.
+	 *
+	 * @param listener
+	 * Receives each PNG as it is loaded, or the reason that it
+	 * could not be.
+	 *
+	 * @throws InterruptedException
+	 * If the calling thread is interrupted while waiting. Files that
+	 * have already been queued are still decoded.
+	 */
+	public void decode(List<String> files, final BatchListener listener) throws InterruptedException {
+		List<Future<?>> results = new ArrayList<Future<?>>(files.size());
+		for(final String file: files) {
+			final int reserved = permitsFor(file);
+			memory.acquire(reserved);
+			try {
+				results.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							decodeFile(file, listener);
+						} finally {
+							memory.release(reserved);
+						}
+					}
+				}));
+			} catch(RuntimeException e) {
+				memory.release(reserved);
+				throw e;
+			}
+		}
+		for(Future<?> result: results) {
+			try {
+				result.get();
+			} catch(ExecutionException e) {
+				Throwable cause = e.getCause();
+				if(cause instanceof RuntimeException) {
+					throw (RuntimeException)cause;
+				} else if(cause instanceof Error) {
+					throw (Error)cause;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops the decoding threads once the files that have been queued
+	 * are finished. No more files can be decoded afterwards.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Estimates the memory taken up by the image of a PNG file from
+	 * its header. Decoded images hold three or four samples per pixel
+	 * of one byte each, or two bytes for 16-bit images.
+	 *
+	 * @param file
+	 * The location of the file.
+	 *
+	 * @return
+	 * The estimated size of the image in bytes, or 0 if the header
+	 * cannot be read.
+	 */
+	public static long estimateMemory(String file) {
+		byte[] header = new byte[HEADER_LENGTH];
+		try {
+			RandomAccessFile in = new RandomAccessFile(file, "r");
+			try {
+				in.readFully(header);
+			} finally {
+				in.close();
+			}
+		} catch(IOException e) {
+			return 0;
+		}
+		long width = readUnsignedInt(header, 16);
+		long height = readUnsignedInt(header, 20);
+		int depth = header[24] & 0xff;
+		ColorMode mode = ColorMode.fromData(header[25] & 0xff);
+		boolean hasAlpha = (mode == ColorMode.GRAYSCALE_ALPHA || mode == ColorMode.TRUECOLOR_ALPHA);
+		int bytesPerPixel = (hasAlpha ? 4 : 3) * (depth > 8 ? 2 : 1);
+		long size = width * height * bytesPerPixel;
+		return size;
+	}
+
+	/**
+	 * Loads a single file and passes the result to the listener.
+	 *
+	 * @param file
+	 * The location of the file.
+	 *
+	 * @param listener
+	 * Receives the PNG or the reason that it could not be loaded.
+	 */
+	private void decodeFile(String file, BatchListener listener) {
+		PortableNetworkGraphic png = null;
+		try {
+			png = new PortableNetworkGraphic(file);
+		} catch(Exception e) {
+			listener.decodeFailed(file, e);
+		}
+		if(png != null) {
+			listener.imageDecoded(file, png);
+		}
+	}
+
+	/**
+	 * Finds the number of permits to reserve for a file. This is
+	 * never more than the total, so that an image that is larger than
+	 * the limit can still be decoded.
+	 *
+	 * @param file
+	 * The location of the file.
+	 *
+	 * @return
+	 * The number of permits.
+	 */
+	private int permitsFor(String file) {
+		long size = estimateMemory(file);
+		long needed = (size + PERMIT_SIZE - 1) / PERMIT_SIZE;
+		int reserved = (int)Math.max(1, Math.min(permits, needed));
+		return reserved;
+	}
+
+	/**
+	 * Reads a big-endian unsigned 32-bit integer.
+	 *
+	 * @param data
+	 * The array to read from.
+	 *
+	 * @param offset
+	 * The index of the first byte.
+	 *
+	 * @return
+	 * The value.
+	 */
+	private static long readUnsignedInt(byte[] data, int offset) {
+		long value = 0;
+		for(int i = 0; i < 4; i++) {
+			value = (value << 8) | (data[offset + i] & 0xff);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,34 @@
+package com.dekarrin.file.png;
+
+/**
+ * Interface for objects that receive the results of a BatchDecoder.
+ * The methods are called from the decoding threads, so they may be
+ * called by several threads at once and must be thread-safe.
+ */
+public interface BatchListener {
+
+	/**
+	 * Receives a PNG that could not be loaded.
+	 *
+	 * @param file
+	 * The location of the file.
+	 *
+	 * @param cause
+	 * The exception that stopped the load.
+	 */
+	public void decodeFailed(String file, Exception cause);
+
+	/**
+	 * Receives a PNG that has been loaded. The memory that the
+	 * image takes up stops counting toward the decoder's limit once
+	 * this method returns, so any PNG that is kept should be
+	 * accounted for by the listener.
+	 *
+	 * @param file
+	 * The location of the file.
+	 *
+	 * @param png
+	 * The loaded PNG.
+	 */
+	public void imageDecoded(String file, PortableNetworkGraphic png);
+}
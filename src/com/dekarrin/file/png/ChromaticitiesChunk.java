@@ -8,6 +8,16 @@ import com.dekarrin.util.ByteComposer;
  */
 class ChromaticitiesChunk extends Chunk {
 
+	/**
+	 * Creates ChromaticitiesChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) {
+			return new ChromaticitiesChunk(data);
+		}
+	};
+	
 	/**
 	 * White point chromaticity.
 	 */
@@ -105,14 +115,14 @@ class ChromaticitiesChunk extends Chunk {
 	 * Parses the chunk data into meaningful chromaticities.
 	 */
 	private void parseData() {
-		int wX	= parser.parseInt();
-		int wY	= parser.parseInt();
-		int rX	= parser.parseInt();
-		int rY	= parser.parseInt();
-		int bX	= parser.parseInt();
-		int bY	= parser.parseInt();
-		int gX	= parser.parseInt();
-		int gY	= parser.parseInt();
+		int wX	= getParser().parseInt();
+		int wY	= getParser().parseInt();
+		int rX	= getParser().parseInt();
+		int rY	= getParser().parseInt();
+		int bX	= getParser().parseInt();
+		int bY	= getParser().parseInt();
+		int gX	= getParser().parseInt();
+		int gY	= getParser().parseInt();
 		
 		setProperties(new Point(wX, wY), new Point(rX, rY), new Point(gX, gY), new Point(bX, bY));
 	}
@@ -1,23 +1,16 @@
 package com.dekarrin.file.png;
 
 import com.dekarrin.error.ValueOutOfRangeException;
+import com.dekarrin.io.InvalidFormatException;
 import com.dekarrin.util.ArrayHelper;
 import com.dekarrin.util.ByteParser;
-
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
+import com.dekarrin.util.Int2ObjectMap;
 
 /**
  * Represents a chunk from a PNG file.
  */
 public class Chunk {
 	
-	/**
-	 * Stores the different types of Chunks and their classes.
-	 */
-	private static HashMap<Integer,String> chunkTypes = new HashMap<Integer,String>();
-	
 	public static final int IHDR = 0x49484452;
 	public static final int PLTE = 0x504c5445;
 	public static final int IDAT = 0x49444154;
@@ -37,31 +30,12 @@ public class Chunk {
 	public static final int hIST = 0x68495354;
 	public static final int tIME = 0x74494d45;
 	
-	static {
-		registerChunk(Chunk.IHDR, "HeaderChunk");
-		registerChunk(Chunk.PLTE, "PaletteChunk");
-		registerChunk(Chunk.IDAT, "ImageDataChunk");
-		registerChunk(Chunk.IEND, "TrailerChunk");
-		registerChunk(Chunk.tRNS, "TransparencyChunk");
-		registerChunk(Chunk.gAMA, "GammaChunk");
-		registerChunk(Chunk.cHRM, "ChromaticitiesChunk");
-		registerChunk(Chunk.sRGB, "StandardRgbColorSpaceChunk");
-		registerChunk(Chunk.iCCP, "EmbeddedColorProfileChunk");
-		registerChunk(Chunk.iTXt, "InternationalTextDataChunk");
-		registerChunk(Chunk.tEXt, "TextDataChunk");
-		registerChunk(Chunk.zTXt, "CompressedTextDataChunk");
-		registerChunk(Chunk.bKGD, "BackgroundColorChunk");
-		registerChunk(Chunk.pHYs, "PhysicalPixelDimensionsChunk");
-		registerChunk(Chunk.sBIT, "SignificantBitsChunk");
-		registerChunk(Chunk.sPLT, "SuggestedPaletteChunk");
-		registerChunk(Chunk.hIST, "PaletteHistogramChunk");
-		registerChunk(Chunk.tIME, "ModificationTimeChunk");
-	}
-	
 	/**
-	 * Used for parsing properties from chunk data.
+	 * Used for parsing properties from chunk data. This is only
+	 * created once a subclass asks for it, so chunks whose data is
+	 * never parsed, such as image data, do not allocate one.
 	 */
-	protected ByteParser parser;
+	private ByteParser parser;
 	
 	/**
 	 * The type of this chunk.
@@ -85,7 +59,6 @@ public class Chunk {
 	public Chunk(int type, byte[] data) {
 		chunkData = data;
 		chunkType = type;
-		parser = new ByteParser(chunkData);
 	}
 	
 	/**
@@ -176,7 +149,24 @@ public class Chunk {
 	 */
 	protected void setChunkData(byte[] data) {
 		chunkData = data;
-		parser = new ByteParser(chunkData);
+		if(parser != null) {
+			parser.reset(chunkData);
+		}
+	}
+	
+	/**
+	 * Gets the parser for the data of this chunk. The parser is
+	 * created the first time that this is called, and is pointed at
+	 * the new data whenever the data changes.
+	 *
+	 * @return
+	 * The parser.
+	 */
+	protected ByteParser getParser() {
+		if(parser == null) {
+			parser = new ByteParser(chunkData);
+		}
+		return parser;
 	}
 	
 	/**
@@ -207,29 +197,48 @@ public class Chunk {
 	
 	/**
 	 * Gets a specific type of Chunk and initializes it with
-	 * data.
+	 * data. Chunks of a type that has no registered factory are
+	 * created as plain Chunks.
 	 * 
 	 * @param type
 	 * The type code of the Chunk to create.
 	 * 
 	 * @param data
 	 * The data to fill the chunk with.
+	 * 
+	 * @return
+	 * The chunk.
+	 * 
+	 * @throws InvalidFormatException
+	 * If the data is not valid for the chunk type.
 	 */
-	public static Chunk getChunkObject(int type, byte[] data) {
-		return loadChunkClass(chunkTypes.get(type), data);
+	public static Chunk getChunkObject(int type, byte[] data) throws InvalidFormatException {
+		ChunkFactory factory = Registry.factories.get(type);
+		Chunk chunk;
+		if(factory != null) {
+			chunk = factory.createChunk(data);
+		} else {
+			chunk = new Chunk(type, data);
+		}
+		return chunk;
 	}
 	
 	/**
-	 * Registers a chunk type and its associated class.
+	 * Registers the factory for a chunk type. This replaces any
+	 * factory that the type already had, so it can be used both to
+	 * handle private chunks and to override a standard chunk.
 	 * 
 	 * @param typeCode
 	 * The type code of the chunk.
 	 * 
-	 * @param className
-	 * The class that represents that chunk.
+	 * @param factory
+	 * The factory that creates chunks of that type.
 	 */
-	public static void registerChunk(int typeCode, String className) throws ValueOutOfRangeException {
-		chunkTypes.put(typeCode, className);
+	public static void registerChunk(int typeCode, ChunkFactory factory) {
+		if(factory == null) {
+			throw new IllegalArgumentException("Chunk factory must not be null");
+		}
+		Registry.register(typeCode, factory);
 	}
 	
 	/**
@@ -320,42 +329,65 @@ public class Chunk {
 	}
 	
 	/**
-	 * Loads a chunk class.
-	 * 
-	 * @param name
-	 * The name of the class.
-	 * 
-	 * @param data
-	 * The data to fill the chunk with.
-	 * 
-	 * @return
-	 * The chunk class.
+	 * Holds the factories for each chunk type. This is kept apart from
+	 * Chunk so that it is only set up once the first chunk is read or
+	 * registered; setting it up reads the FACTORY of every standard
+	 * chunk class, which cannot be done while Chunk itself is being
+	 * initialized for one of those classes.
+	 *
+	 * Chunks may be registered while other threads are reading PNGs,
+	 * so the map is never changed once it is published. Registering a
+	 * chunk copies the map and publishes the copy, which keeps the
+	 * lookup for every chunk that is read free of locking and boxing.
 	 */
-	private static Chunk loadChunkClass(String name, byte[] data) {
-		String chunkClassName = "com.dekarrin.file.png." + name;
-		Class<?> chunkClass = null;
-		Constructor<?> chunkConstructor = null;
-		Chunk chunk = null;
-		try {
-			chunkClass = Class.forName(chunkClassName);
-			chunkConstructor = chunkClass.getConstructor(byte[].class);
-			chunk = (Chunk)chunkConstructor.newInstance(data);
-		} catch(ClassNotFoundException e) {
-			System.err.println("Can't load class:" + e.getMessage());
-			System.exit(1);
-		} catch(NoSuchMethodException e) {
-			System.err.println("Can't load class:" + e.getMessage());
-			System.exit(1);
-		} catch(InvocationTargetException e) {
-			System.err.println("Can't load class:" + e.getMessage());
-			System.exit(1);
-		} catch(IllegalAccessException e) {
-			System.err.println("Can't load class:" + e.getMessage());
-			System.exit(1);
-		} catch(InstantiationException e) {
-			System.err.println("Can't load class:" + e.getMessage());
-			System.exit(1);
+	private static class Registry {
+		
+		/**
+		 * The factories, keyed by chunk type.
+		 */
+		public static volatile Int2ObjectMap<ChunkFactory> factories;
+		
+		static {
+			Int2ObjectMap<ChunkFactory> map = new Int2ObjectMap<ChunkFactory>(32);
+			map.put(Chunk.IHDR, HeaderChunk.FACTORY);
+			map.put(Chunk.PLTE, PaletteChunk.FACTORY);
+			map.put(Chunk.IDAT, ImageDataChunk.FACTORY);
+			map.put(Chunk.IEND, TrailerChunk.FACTORY);
+			map.put(Chunk.tRNS, TransparencyChunk.FACTORY);
+			map.put(Chunk.gAMA, GammaChunk.FACTORY);
+			map.put(Chunk.cHRM, ChromaticitiesChunk.FACTORY);
+			map.put(Chunk.sRGB, StandardRgbColorSpaceChunk.FACTORY);
+			map.put(Chunk.iCCP, EmbeddedColorProfileChunk.FACTORY);
+			map.put(Chunk.iTXt, InternationalTextDataChunk.FACTORY);
+			map.put(Chunk.tEXt, TextDataChunk.FACTORY);
+			map.put(Chunk.zTXt, CompressedTextDataChunk.FACTORY);
+			map.put(Chunk.bKGD, BackgroundColorChunk.FACTORY);
+			map.put(Chunk.pHYs, PhysicalPixelDimensionsChunk.FACTORY);
+			map.put(Chunk.sBIT, SignificantBitsChunk.FACTORY);
+			map.put(Chunk.sPLT, SuggestedPaletteChunk.FACTORY);
+			map.put(Chunk.hIST, PaletteHistogramChunk.FACTORY);
+			map.put(Chunk.tIME, ModificationTimeChunk.FACTORY);
+			factories = map;
+		}
+		
+		/**
+		 * Publishes a copy of the factories with one more added.
+		 * 
+		 * @param typeCode
+		 * The type code of the chunk.
+		 * 
+		 * @param factory
+		 * The factory for the chunk.
+		 */
+		public static synchronized void register(int typeCode, ChunkFactory factory) {
+			Int2ObjectMap<ChunkFactory> old = factories;
+			Int2ObjectMap<ChunkFactory> map = new Int2ObjectMap<ChunkFactory>(old.capacity());
+			Int2ObjectMap<ChunkFactory>.Cursor c = old.cursor();
+			while(c.next()) {
+				map.put(c.key(), c.value());
+			}
+			map.put(typeCode, factory);
+			factories = map;
 		}
-		return chunk;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,26 @@
+package com.dekarrin.file.png;
+
+import com.dekarrin.io.InvalidFormatException;
+
+/**
+ * Creates the Chunk object for one type of chunk from the data that
+ * was read for it. Each chunk class that is read from files provides
+ * a factory of its own, and a factory can be registered with
+ * Chunk.registerChunk() to handle a private chunk type.
+ */
+public interface ChunkFactory {
+
+	/**
+	 * Creates a chunk from its data.
+	 *
+	 * @param data
+	 * The data bytes of the chunk.
+	 *
+	 * @return
+	 * The new chunk.
+	 *
+	 * @throws InvalidFormatException
+	 * If the data is not valid for the chunk type.
+	 */
+	public Chunk createChunk(byte[] data) throws InvalidFormatException;
+}
@@ -122,9 +122,7 @@ class ChunkInputStream extends DataInputStream {
 	 */
 	private byte[] readData(int dataLength) throws EOFException, IOException {
 		byte[] chunkData = new byte[dataLength];
-		for(int i = 0; i < chunkData.length; i++) {
-			chunkData[i] = readByte();
-		}
+		readFully(chunkData);
 		return chunkData;
 	}
 	
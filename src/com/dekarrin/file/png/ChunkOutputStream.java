@@ -1,89 +1,320 @@
 package com.dekarrin.file.png;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.zip.CRC32;
 
 import com.dekarrin.io.StreamFailureException;
 
-class ChunkOutputStream extends DataOutputStream {
-	
+/**
+ * Writes the chunks of a PNG file to a channel. The length, type,
+ * data, and CRC of each chunk are gathered into a single buffer, which
+ * is only written out once it is full, so many small chunks cost a
+ * single write. Chunk data that is too large to be worth copying into
+ * the buffer is instead written straight from where it is held, along
+ * with whatever is in the buffer, in one gathering write.
+ *
+ * Nothing is flushed after a chunk is written; flush() or close() must
+ * be called once the last chunk has been written.
+ */
+class ChunkOutputStream {
+
+	/**
+	 * The values in the header of a valid PNG file.
+	 */
+	public static final int[] MAGIC_NUMBER = {137, 80, 78, 71, 13, 10, 26, 10};
+
+	/**
+	 * The size of the write buffer.
+	 */
+	private static final int BUFFER_LENGTH = 65536;
+
+	/**
+	 * The size of the buffer used for passing chunk data that is not
+	 * held in an array to the CRC generator.
+	 */
+	private static final int TRANSFER_BUFFER_LENGTH = 8192;
+
+	/**
+	 * Holds the bytes that have not yet been written to the channel.
+	 */
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_LENGTH);
+
+	/**
+	 * The channel that the chunks are written to.
+	 */
+	private WritableByteChannel channel;
+
+	/**
+	 * Generates the CRC of each chunk.
+	 */
+	private CRC32 crcGenerator = new CRC32();
+
+	/**
+	 * Holds the buffer and the chunk data for gathering writes.
+	 */
+	private ByteBuffer[] gatherBuffers = new ByteBuffer[2];
+
 	/**
 	 * Whether the magic number has already been written.
 	 */
 	private boolean magicNumberWritten = false;
 
 	/**
-	 * The values in the header of a valid PNG file.
+	 * The stream that the channel writes to, if the channel was made
+	 * for one. Otherwise, this is null.
 	 */
-	public static final int[] MAGIC_NUMBER = {137, 80, 78, 71, 13, 10, 26, 10};
-	
+	private OutputStream stream;
+
+	/**
+	 * Used for passing chunk data that is not held in an array to the
+	 * CRC generator.
+	 */
+	private byte[] transferBuffer;
+
 	/**
 	 * Creates a new ChunkOutputStream for an OutputStream.
-	 * 
+	 *
 	 * @param oStream
 	 * The output stream.
 	 */
 	public ChunkOutputStream(OutputStream oStream) {
-		super(oStream);
+		this(Channels.newChannel(oStream));
+		stream = oStream;
+	}
+
+	/**
+	 * Creates a new ChunkOutputStream for a channel.
+	 *
+	 * @param channel
+	 * The channel to write to.
+	 */
+	public ChunkOutputStream(WritableByteChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * Writes out everything that has been buffered and closes the
+	 * channel.
+	 *
+	 * @throws StreamFailureException
+	 * If the channel fails.
+	 */
+	public void close() throws StreamFailureException {
+		try {
+			flush();
+		} finally {
+			try {
+				channel.close();
+			} catch(IOException e) {
+				throw new StreamFailureException(e.getMessage());
+			}
+		}
 	}
-	
+
+	/**
+	 * Writes out everything that has been buffered. If the channel was
+	 * made for an OutputStream, the stream is flushed as well.
+	 *
+	 * @throws StreamFailureException
+	 * If the channel fails.
+	 */
+	public void flush() throws StreamFailureException {
+		try {
+			drain();
+			if(stream != null) {
+				stream.flush();
+			}
+		} catch(IOException e) {
+			throw new StreamFailureException(e.getMessage());
+		}
+	}
+
 	/**
 	 * Writes the magic number to the stream.
+	 *
+	 * @throws StreamFailureException
+	 * If the channel fails.
 	 */
 	public void writeMagicNumber() throws StreamFailureException {
 		if(!magicNumberWritten) {
 			magicNumberWritten = true;
+			try {
+				makeRoom(MAGIC_NUMBER.length);
+			} catch(IOException e) {
+				throw new StreamFailureException(e.getMessage());
+			}
 			for(int i = 0; i < MAGIC_NUMBER.length; i++) {
-				try {
-					byte nextNumber = (byte)(MAGIC_NUMBER[i] & 0xff);
-					write(new byte[]{nextNumber}, 0, 1);
-				} catch(IOException e) {
-					throw new StreamFailureException(e.getMessage());
-				}
+				buffer.put((byte)MAGIC_NUMBER[i]);
 			}
 		}
 	}
-	
+
 	/**
 	 * Writes the next Chunk.
-	 * 
+	 *
 	 * @param chunk
 	 * The next Chunk in the stream.
+	 *
+	 * @throws StreamFailureException
+	 * If the channel fails.
 	 */
 	public void writeChunk(Chunk chunk) throws StreamFailureException {
+		byte[] data = chunk.getData();
+		writeChunk(chunk.getType(), data, 0, data.length);
+	}
+
+	/**
+	 * Writes a chunk directly from a section of a buffer. No Chunk
+	 * object needs to be created for the data.
+	 *
+	 * @param type
+	 * The type code of the chunk.
+	 *
+	 * @param data
+	 * The buffer holding the chunk data.
+	 *
+	 * @param offset
+	 * The index of the first byte of chunk data in the buffer.
+	 *
+	 * @param length
+	 * The number of bytes of chunk data.
+	 *
+	 * @throws StreamFailureException
+	 * If the channel fails.
+	 */
+	public void writeChunk(int type, byte[] data, int offset, int length) throws StreamFailureException {
+		writeChunk(type, ByteBuffer.wrap(data, offset, length));
+	}
+
+	/**
+	 * Writes a chunk whose data is held in a buffer, such as a slice
+	 * of a mapped file. The buffer's position is not changed.
+	 *
+	 * @param type
+	 * The type code of the chunk.
+	 *
+	 * @param data
+	 * The chunk data, from its position to its limit.
+	 *
+	 * @throws StreamFailureException
+	 * If the channel fails.
+	 */
+	public void writeChunk(int type, ByteBuffer data) throws StreamFailureException {
 		if(!magicNumberWritten) {
 			writeMagicNumber();
 		}
+		data = data.duplicate();
 		try {
-			writeInt(chunk.getLength());
-			writeInt(chunk.getType());
-			write(chunk.getData(), 0, chunk.getData().length);
-			writeInt(generateChecksum(chunk.getType(), chunk.getData()));
-			flush();
+			makeRoom(8);
+			buffer.putInt(data.remaining());
+			int typeStart = buffer.position();
+			buffer.putInt(type);
+			crcGenerator.reset();
+			crcGenerator.update(buffer.array(), typeStart, 4);
+			updateChecksum(data);
+			if(data.remaining() > buffer.remaining()) {
+				if(data.remaining() <= BUFFER_LENGTH / 2) {
+					drain();
+				} else {
+					drain(data);
+				}
+			}
+			buffer.put(data);
+			makeRoom(4);
+			buffer.putInt((int)crcGenerator.getValue());
 		} catch(IOException e) {
 			throw new StreamFailureException(e.getMessage());
 		}
 	}
-	
+
 	/**
-	 * Generates the checksum for the chunk.
-	 * 
-	 * @param type
-	 * The type code of the chunk whose checksum is being generated.
-	 * 
+	 * Writes everything in the buffer to the channel and empties it.
+	 *
+	 * @throws IOException
+	 * If the channel fails.
+	 */
+	private void drain() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Writes everything in the buffer followed by all of a block of
+	 * data, then empties the buffer. If the channel supports it, both
+	 * are passed to it in a single gathering write.
+	 *
 	 * @param data
-	 * The data from the chunk whose checksum is being generated.
-	 * 
-	 * @return
-	 * The generated checksum.
-	 */
-	private int generateChecksum(int type, byte[] data) {
-		CRC32 crcGenerator = new CRC32();
-		crcGenerator.update(Chunk.typeToBytes(type));
-		crcGenerator.update(data);
-		long calculatedChecksum = crcGenerator.getValue();
-		return (int)calculatedChecksum;
+	 * The data to write after the buffer. Its position is moved to
+	 * its limit.
+	 *
+	 * @throws IOException
+	 * If the channel fails.
+	 */
+	private void drain(ByteBuffer data) throws IOException {
+		if(channel instanceof GatheringByteChannel) {
+			buffer.flip();
+			gatherBuffers[0] = buffer;
+			gatherBuffers[1] = data;
+			try {
+				while(data.hasRemaining()) {
+					((GatheringByteChannel)channel).write(gatherBuffers);
+				}
+			} finally {
+				gatherBuffers[1] = null;
+			}
+			buffer.clear();
+		} else {
+			drain();
+			while(data.hasRemaining()) {
+				channel.write(data);
+			}
+		}
+	}
+
+	/**
+	 * Makes sure that the buffer has room for some number of bytes,
+	 * writing it out if it does not.
+	 *
+	 * @param length
+	 * The number of bytes that are about to be put in the buffer.
+	 *
+	 * @throws IOException
+	 * If the channel fails.
+	 */
+	private void makeRoom(int length) throws IOException {
+		if(buffer.remaining() < length) {
+			drain();
+		}
+	}
+
+	/**
+	 * Adds chunk data to the CRC being generated. The position of the
+	 * data is not changed.
+	 *
+	 * @param data
+	 * The chunk data, from its position to its limit.
+	 */
+	private void updateChecksum(ByteBuffer data) {
+		if(data.hasArray()) {
+			crcGenerator.update(data.array(), data.arrayOffset() + data.position(), data.remaining());
+		} else {
+			if(transferBuffer == null) {
+				transferBuffer = new byte[TRANSFER_BUFFER_LENGTH];
+			}
+			ByteBuffer source = data.duplicate();
+			while(source.hasRemaining()) {
+				int n = Math.min(source.remaining(), transferBuffer.length);
+				source.get(transferBuffer, 0, n);
+				crcGenerator.update(transferBuffer, 0, n);
+			}
+		}
 	}
 }
@@ -2,12 +2,23 @@ package com.dekarrin.file.png;
 
 import com.dekarrin.io.InvalidFormatException;
 import com.dekarrin.util.ByteComposer;
+import com.dekarrin.zip.CorruptDataException;
 
 /**
  * Chunk holding compressed text data.
  */
 class CompressedTextDataChunk extends TextChunk {
 	
+	/**
+	 * Creates CompressedTextDataChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) throws InvalidFormatException {
+			return new CompressedTextDataChunk(data);
+		}
+	};
+	
 	/**
 	 * The raw, compressed text.
 	 */
@@ -95,9 +106,9 @@ class CompressedTextDataChunk extends TextChunk {
 	 * If an invalid compression method is specified.
 	 */
 	private void parseData() throws InvalidFormatException  {
-		String keyword = parser.parseString();
-		CompressionEngine cm = CompressionEngine.fromData(parser.parseInt(1));
-		String compressed = parser.parseRemainingString();
+		String keyword = getParser().parseString();
+		CompressionEngine cm = CompressionEngine.fromData(getParser().parseInt(1));
+		String compressed = getParser().parseRemainingString();
 		setProperties(keyword, null, compressed, cm);
 	}
 	
@@ -105,11 +116,15 @@ class CompressedTextDataChunk extends TextChunk {
 	 * Decompresses the text read from chunk data.
 	 * 
 	 * @throws InvalidFormatException
-	 * If an invalid compression method is specified.
+	 * If an invalid compression method is specified, or if the
+	 * compressed data is corrupt.
 	 */
 	private void decompressText() throws InvalidFormatException {
-		compressionEngine.setContents(compressedText);
-		text = compressionEngine.decompressString();
+		try {
+			text = compressionEngine.openSession().decompressString(compressedText);
+		} catch(CorruptDataException e) {
+			throw new InvalidFormatException(e.getMessage(), "png");
+		}
 	}
 	
 	/**
@@ -119,8 +134,7 @@ class CompressedTextDataChunk extends TextChunk {
 	 * If an invalid compression method is specified.
 	 */
 	private void compressText() throws InvalidFormatException {
-		compressionEngine.setContents(text);
-		compressedText = compressionEngine.compressString();
+		compressedText = compressionEngine.openSession().compressString(text);
 	}
 	
 	/**
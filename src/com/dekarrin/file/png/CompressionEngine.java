@@ -1,11 +1,15 @@
 package com.dekarrin.file.png;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.Deflater;
 
-import com.dekarrin.io.InvalidFormatException;
 import com.dekarrin.zip.*;
 
 /**
@@ -17,11 +21,11 @@ public enum CompressionEngine implements Compresser, Decompresser {
 	 * Uses the DEFLATE/INFLATE compression algorithm.
 	 */
 	ZLIB(0) {
-		protected Compresser getCompresser() {
-			return new ZlibCompresser(contents);
+		protected Compresser createCompresser(byte[] data, int level, CompressionStrategy strategy) {
+			return new ZlibCompresser(data, level, strategy);
 		}
-		protected Decompresser getDecompresser() {
-			return new ZlibDecompresser(contents);
+		protected Decompresser createDecompresser(byte[] data) {
+			return new ZlibDecompresser(data);
 		}
 	};
 	
@@ -44,27 +48,25 @@ public enum CompressionEngine implements Compresser, Decompresser {
 	 * time wasted on the creation of a new buffer every time the
 	 * current one is filled, but also uses more memory.
 	 */
-	private int outputBufferSize = 1024;
+	private volatile int outputBufferSize = 1024;
 	
 	/**
-	 * The data to be compressed or decompressed.
+	 * The data to be compressed or decompressed by each thread. This
+	 * is kept separately for every thread so that the shared engine
+	 * constants can be used from more than one thread at a time.
 	 */
-	protected byte[] contents = null;
+	private final ThreadLocal<byte[]> contents = new ThreadLocal<byte[]>();
 	
 	/**
-	 * The value that is written to disk for this CompressionEngine.
-	 */
-	private int dataValue;
-	
-	/**
-	 * The object used for decompression.
+	 * The expected size of the result of each thread's next
+	 * operation.
 	 */
-	private Decompresser decompresser = null;
+	private final ThreadLocal<Integer> expectedSizes = new ThreadLocal<Integer>();
 	
 	/**
-	 * The object used for compression.
+	 * The value that is written to disk for this CompressionEngine.
 	 */
-	private Compresser compresser = null;
+	private int dataValue;
 	
 	/**
 	 * Creates a new CompressionEngine.
@@ -101,30 +103,41 @@ public enum CompressionEngine implements Compresser, Decompresser {
 	}
 	
 	/**
-	 * Sets the contents of the data buffer.
+	 * Opens a new session for this CompressionEngine. Sessions carry
+	 * their own settings and share no state with each other, so a
+	 * session may be opened for each thread or each operation.
+	 * 
+	 * @return
+	 * The new session.
+	 */
+	public CompressionSession openSession() {
+		return new CompressionSession(this);
+	}
+	
+	/**
+	 * Sets the contents of the data buffer for the current thread.
 	 * 
 	 * @param contents
 	 * The new contents of the buffer.
 	 */
 	public void setContents(byte[] contents) {
-		this.contents = contents;
-		selectComDec();
+		this.contents.set(contents);
 	}
 	
 	/**
-	 * Sets the contents of the data buffer to a String using the
-	 * default system encoding.
+	 * Sets the contents of the data buffer for the current thread to
+	 * a String using the default system encoding.
 	 * 
 	 * @param contents
 	 * The String to set the contents to.
 	 */
 	public void setContents(String contents) {
-		this.contents = contents.getBytes();
-		selectComDec();
+		this.contents.set(contents.getBytes());
 	}
 	
 	/**
-	 * Sets the contents of the data buffer to a String.
+	 * Sets the contents of the data buffer for the current thread to
+	 * a String.
 	 * 
 	 * @param contents
 	 * The String to set the contents to.
@@ -135,65 +148,59 @@ public enum CompressionEngine implements Compresser, Decompresser {
 	 */
 	public void setContents(String contents, String encoding) {
 		try {
-			this.contents = contents.getBytes(encoding);
+			this.contents.set(contents.getBytes(encoding));
 		} catch(UnsupportedEncodingException e) {
-			this.contents = contents.getBytes();
+			this.contents.set(contents.getBytes());
 		}
-		selectComDec();
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 */
 	public byte[] decompress() {
-		checkState();
-		decompresser.setBufferSize(outputBufferSize);
-		return decompresser.decompress();
+		return selectDecompresser().decompress();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] decompressExact(int length) throws CorruptDataException {
+		return selectDecompresser().decompressExact(length);
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 */
 	public String decompressString() {
-		checkState();
-		decompresser.setBufferSize(outputBufferSize);
-		return decompresser.decompressString();
+		return selectDecompresser().decompressString();
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 */
 	public String decompressString(String encoding) {
-		checkState();
-		decompresser.setBufferSize(outputBufferSize);
-		return decompresser.decompressString(encoding);
+		return selectDecompresser().decompressString(encoding);
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 */
 	public byte[] compress() {
-		checkState();
-		compresser.setBufferSize(outputBufferSize);
-		return compresser.compress();
+		return selectCompresser().compress();
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 */
 	public String compressString() {
-		checkState();
-		compresser.setBufferSize(outputBufferSize);
-		return compresser.compressString();
+		return selectCompresser().compressString();
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 */
 	public String compressString(String encoding) {
-		checkState();
-		compresser.setBufferSize(outputBufferSize);
-		return compresser.compressString(encoding);
+		return selectCompresser().compressString(encoding);
 	}
 	
 	/**
@@ -202,49 +209,154 @@ public enum CompressionEngine implements Compresser, Decompresser {
 	public void setBufferSize(int newSize) {
 		outputBufferSize = newSize;
 	}
-
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public long compress(InputStream in, OutputStream out) throws IOException {
+		return selectStreamCompresser().compress(in, out);
+	}
+	
 	/**
-	 * Selects both a Compresser and a Decompresser for the current
-	 * contents with the current compression method.
+	 * {@inheritDoc}
 	 */
-	private void selectComDec() {
-		compresser = getCompresser();
-		decompresser = getDecompresser();
+	public ByteBuffer compress(ByteBuffer input, ByteBuffer output) {
+		return selectStreamCompresser().compress(input, output);
 	}
 	
 	/**
-	 * Gets the appropriate Compresser for the compression method
-	 * that is currently being used.
+	 * {@inheritDoc}
+	 */
+	public long decompress(InputStream in, OutputStream out) throws IOException {
+		return selectStreamDecompresser().decompress(in, out);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public ByteBuffer decompress(ByteBuffer input, ByteBuffer output) {
+		return selectStreamDecompresser().decompress(input, output);
+	}
+	
+	/**
+	 * Sets the expected size of the result of the current thread's
+	 * next call to compress() or decompress() on its contents.
 	 * 
-	 * @param contents
-	 * The contents to set the new Compresser to.
+	 * @param size
+	 * The expected size in bytes, or 0 if it is not known.
+	 */
+	public void setExpectedSize(int size) {
+		expectedSizes.set(size);
+	}
+	
+	/**
+	 * Creates a Compresser for the data with this compression
+	 * method.
+	 * 
+	 * @param data
+	 * The data to compress, or null if the Compresser will only be
+	 * used with streams and buffers.
+	 * 
+	 * @param level
+	 * The compression level, from 0 to 9, or
+	 * Deflater.DEFAULT_COMPRESSION.
+	 * 
+	 * @param strategy
+	 * The compression strategy.
 	 * 
 	 * @return
-	 * The Compresser for the current compression method.
+	 * The new Compresser.
 	 */
-	protected abstract Compresser getCompresser();
+	protected abstract Compresser createCompresser(byte[] data, int level, CompressionStrategy strategy);
 	
 	/**
-	 * Gets the appropriate Decompresser for the compression method
-	 * that is currently being used.
+	 * Creates a Decompresser for the data with this compression
+	 * method.
 	 * 
-	 * @param contents
-	 * The contents to set the new Decompresser to.
+	 * @param data
+	 * The data to decompress, or null if the Decompresser will only
+	 * be used with streams and buffers.
+	 * 
+	 * @return
+	 * The new Decompresser.
+	 */
+	protected abstract Decompresser createDecompresser(byte[] data);
+	
+	/**
+	 * Creates a Compresser for the current thread's contents.
+	 * 
+	 * @return
+	 * The Compresser.
+	 */
+	private Compresser selectCompresser() {
+		Compresser c = createCompresser(checkState(), Deflater.DEFAULT_COMPRESSION, CompressionStrategy.DEFAULT);
+		c.setBufferSize(outputBufferSize);
+		c.setExpectedSize(takeExpectedSize());
+		return c;
+	}
+	
+	/**
+	 * Creates a Compresser for streams and buffers.
+	 * 
+	 * @return
+	 * The Compresser.
+	 */
+	private Compresser selectStreamCompresser() {
+		Compresser c = createCompresser(null, Deflater.DEFAULT_COMPRESSION, CompressionStrategy.DEFAULT);
+		c.setBufferSize(outputBufferSize);
+		return c;
+	}
+	
+	/**
+	 * Creates a Decompresser for the current thread's contents.
 	 * 
 	 * @return
-	 * The Decompresser for the current compression method.
+	 * The Decompresser.
+	 */
+	private Decompresser selectDecompresser() {
+		Decompresser d = createDecompresser(checkState());
+		d.setBufferSize(outputBufferSize);
+		d.setExpectedSize(takeExpectedSize());
+		return d;
+	}
+	
+	/**
+	 * Creates a Decompresser for streams and buffers.
 	 * 
-	 * @throws InvalidFormatException
-	 * If the current compression method cannot be handled.
+	 * @return
+	 * The Decompresser.
 	 */
-	protected abstract Decompresser getDecompresser();
+	private Decompresser selectStreamDecompresser() {
+		Decompresser d = createDecompresser(null);
+		d.setBufferSize(outputBufferSize);
+		return d;
+	}
 	
 	/**
-	 * Checks that this CompressionEngine has had its contents set.
+	 * Gets the expected size that the current thread has set, and
+	 * clears it so that it only applies to one operation.
+	 * 
+	 * @return
+	 * The expected size, or 0 if none was set.
+	 */
+	private int takeExpectedSize() {
+		Integer size = expectedSizes.get();
+		expectedSizes.remove();
+		return (size != null) ? size : 0;
+	}
+	
+	/**
+	 * Checks that the current thread has set the contents of this
+	 * CompressionEngine.
+	 * 
+	 * @return
+	 * The current thread's contents.
 	 */
-	private void checkState() {
-		if(contents == null) {
+	private byte[] checkState() {
+		byte[] data = contents.get();
+		if(data == null) {
 			throw new IllegalStateException("contents null");
 		}
+		return data;
 	}
-}
\ No newline at end of file
+}
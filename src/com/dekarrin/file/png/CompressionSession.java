@@ -0,0 +1,359 @@
+package com.dekarrin.file.png;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+
+import com.dekarrin.zip.CompressionStrategy;
+import com.dekarrin.zip.Compresser;
+import com.dekarrin.zip.CorruptDataException;
+import com.dekarrin.zip.Decompresser;
+
+/**
+ * A set of compression settings for use with a CompressionEngine.
+ * Every call made through a session gets its own Compresser or
+ * Decompresser, and the Deflater and Inflater that do the work are
+ * taken from a per-thread pool, so sessions may be used from any
+ * number of threads without interfering with each other.
+ */
+public class CompressionSession {
+
+	/**
+	 * The default size of the output buffer.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/**
+	 * The size of the output buffer used for each operation.
+	 */
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+	/**
+	 * The engine that performs the compression.
+	 */
+	private CompressionEngine engine;
+
+	/**
+	 * The compression level.
+	 */
+	private int level = Deflater.DEFAULT_COMPRESSION;
+
+	/**
+	 * The compression strategy.
+	 */
+	private CompressionStrategy strategy = CompressionStrategy.DEFAULT;
+
+	/**
+	 * Creates a new CompressionSession.
+	 *
+	 * @param engine
+	 * The engine that performs the compression.
+	 */
+	CompressionSession(CompressionEngine engine) {
+		this.engine = engine;
+	}
+
+	/**
+	 * Compresses binary data.
+	 *
+	 * @param data
+	 * The data to compress.
+	 *
+	 * @return
+	 * The compressed data.
+	 */
+	public byte[] compress(byte[] data) {
+		return createCompresser(data).compress();
+	}
+
+	/**
+	 * Compresses all of the data read from a stream and writes the
+	 * result to another stream. Neither stream is closed.
+	 *
+	 * @param in
+	 * The stream to read uncompressed data from.
+	 *
+	 * @param out
+	 * The stream to write the compressed data to.
+	 *
+	 * @return
+	 * The number of bytes written.
+	 *
+	 * @throws IOException
+	 * If either stream fails.
+	 */
+	public long compress(InputStream in, OutputStream out) throws IOException {
+		return createCompresser(null).compress(in, out);
+	}
+
+	/**
+	 * Compresses the remaining data in one buffer into another. If
+	 * the output buffer is too small, a larger one is allocated.
+	 *
+	 * @param input
+	 * The buffer holding the uncompressed data.
+	 *
+	 * @param output
+	 * The buffer to write the compressed data to.
+	 *
+	 * @return
+	 * The buffer holding the result, positioned just past it.
+	 */
+	public ByteBuffer compress(ByteBuffer input, ByteBuffer output) {
+		return createCompresser(null).compress(input, output);
+	}
+
+	/**
+	 * Compresses a String into a String. Both use the default
+	 * encoding for the system.
+	 *
+	 * @param text
+	 * The text to compress.
+	 *
+	 * @return
+	 * The compressed String.
+	 */
+	public String compressString(String text) {
+		return createCompresser(text.getBytes()).compressString();
+	}
+
+	/**
+	 * Compresses a String into a String that uses a specified
+	 * encoding.
+	 *
+	 * @param text
+	 * The text to compress.
+	 *
+	 * @param encoding
+	 * The encoding of the text and of the compressed String. If this
+	 * is invalid, the default character set is used.
+	 *
+	 * @return
+	 * The compressed String.
+	 */
+	public String compressString(String text, String encoding) {
+		byte[] bytes;
+		try {
+			bytes = text.getBytes(encoding);
+		} catch(UnsupportedEncodingException e) {
+			bytes = text.getBytes();
+		}
+		return createCompresser(bytes).compressString(encoding);
+	}
+
+	/**
+	 * Decompresses binary data.
+	 *
+	 * @param data
+	 * The data to decompress.
+	 *
+	 * @return
+	 * The decompressed data.
+	 */
+	public byte[] decompress(byte[] data) {
+		return createDecompresser(data).decompress();
+	}
+
+	/**
+	 * Decompresses binary data whose decompressed length is known.
+	 * The data is inflated straight into an array of that length.
+	 *
+	 * @param data
+	 * The data to decompress.
+	 *
+	 * @param length
+	 * The exact length of the decompressed data.
+	 *
+	 * @return
+	 * The decompressed data.
+	 *
+	 * @throws CorruptDataException
+	 * If the data does not decompress to exactly the given length.
+	 */
+	public byte[] decompress(byte[] data, int length) throws CorruptDataException {
+		return createDecompresser(data).decompressExact(length);
+	}
+
+	/**
+	 * Decompresses all of the data read from a stream and writes the
+	 * result to another stream. Neither stream is closed.
+	 *
+	 * @param in
+	 * The stream to read compressed data from.
+	 *
+	 * @param out
+	 * The stream to write the decompressed data to.
+	 *
+	 * @return
+	 * The number of bytes written.
+	 *
+	 * @throws IOException
+	 * If either stream fails.
+	 */
+	public long decompress(InputStream in, OutputStream out) throws IOException {
+		return createDecompresser(null).decompress(in, out);
+	}
+
+	/**
+	 * Decompresses the remaining data in one buffer into another. If
+	 * the output buffer is too small, a larger one is allocated.
+	 *
+	 * @param input
+	 * The buffer holding the compressed data.
+	 *
+	 * @param output
+	 * The buffer to write the decompressed data to.
+	 *
+	 * @return
+	 * The buffer holding the result, positioned just past it.
+	 */
+	public ByteBuffer decompress(ByteBuffer input, ByteBuffer output) {
+		return createDecompresser(null).decompress(input, output);
+	}
+
+	/**
+	 * Decompresses a String into a String. Both use the default
+	 * encoding for the system.
+	 *
+	 * @param data
+	 * The compressed String.
+	 *
+	 * @return
+	 * The decompressed String.
+	 */
+	public String decompressString(String data) {
+		return createDecompresser(data.getBytes()).decompressString();
+	}
+
+	/**
+	 * Decompresses a String into a String that uses a specified
+	 * encoding.
+	 *
+	 * @param data
+	 * The compressed String.
+	 *
+	 * @param encoding
+	 * The encoding to use for the decompressed String. If this is
+	 * invalid, the default character set is used.
+	 *
+	 * @return
+	 * The decompressed String.
+	 */
+	public String decompressString(String data, String encoding) {
+		return createDecompresser(data.getBytes()).decompressString(encoding);
+	}
+
+	/**
+	 * Gets the size of the output buffer.
+	 *
+	 * @return
+	 * The size of the buffer in bytes.
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Gets the engine that this session uses.
+	 *
+	 * @return
+	 * The CompressionEngine.
+	 */
+	public CompressionEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Gets the compression level.
+	 *
+	 * @return
+	 * The compression level.
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Gets the compression strategy.
+	 *
+	 * @return
+	 * The compression strategy.
+	 */
+	public CompressionStrategy getStrategy() {
+		return strategy;
+	}
+
+	/**
+	 * Sets the size of the output buffer. A larger buffer means
+	 * fewer passes through the compressor for large data, but uses
+	 * more memory.
+	 *
+	 * @param bufferSize
+	 * The size of the buffer in bytes.
+	 */
+	public void setBufferSize(int bufferSize) {
+		if(bufferSize < 1) {
+			throw new IllegalArgumentException("Buffer size must be positive");
+		}
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Sets the compression level. Lower levels are faster; higher
+	 * levels produce smaller output.
+	 *
+	 * @param level
+	 * The compression level, from Deflater.BEST_SPEED to
+	 * Deflater.BEST_COMPRESSION, Deflater.NO_COMPRESSION, or
+	 * Deflater.DEFAULT_COMPRESSION.
+	 */
+	public void setLevel(int level) {
+		if((level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) && level != Deflater.DEFAULT_COMPRESSION) {
+			throw new IllegalArgumentException("Invalid compression level");
+		}
+		this.level = level;
+	}
+
+	/**
+	 * Sets the compression strategy.
+	 *
+	 * @param strategy
+	 * The strategy to use.
+	 */
+	public void setStrategy(CompressionStrategy strategy) {
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Creates a Compresser with the settings of this session.
+	 *
+	 * @param data
+	 * The data to compress, or null for streams and buffers.
+	 *
+	 * @return
+	 * The Compresser.
+	 */
+	private Compresser createCompresser(byte[] data) {
+		Compresser c = engine.createCompresser(data, level, strategy);
+		c.setBufferSize(bufferSize);
+		return c;
+	}
+
+	/**
+	 * Creates a Decompresser with the settings of this session.
+	 *
+	 * @param data
+	 * The data to decompress, or null for streams and buffers.
+	 *
+	 * @return
+	 * The Decompresser.
+	 */
+	private Decompresser createDecompresser(byte[] data) {
+		Decompresser d = engine.createDecompresser(data);
+		d.setBufferSize(bufferSize);
+		return d;
+	}
+}
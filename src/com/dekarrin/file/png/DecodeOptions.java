@@ -0,0 +1,141 @@
+package com.dekarrin.file.png;
+
+import java.awt.Rectangle;
+
+import com.dekarrin.error.ValueOutOfRangeException;
+import com.dekarrin.graphics.PackedPixelStorage;
+import com.dekarrin.graphics.PixelStorageFactory;
+
+/**
+ * Controls how a PNG's image is built when it is loaded. A new
+ * DecodeOptions gives the same result as loading without one.
+ */
+public class DecodeOptions {
+
+	/**
+	 * The distance between the rows and columns that are kept.
+	 */
+	private int downsampleFactor = 1;
+
+	/**
+	 * Whether decoding the image waits until it is first asked for.
+	 */
+	private boolean imageDeferred = false;
+
+	/**
+	 * The part of the image to build, or null for all of it.
+	 */
+	private Rectangle region = null;
+
+	/**
+	 * Creates the storage for the image.
+	 */
+	private PixelStorageFactory storageFactory = PackedPixelStorage.FACTORY;
+
+	/**
+	 * Gets the factor that the image is reduced by.
+	 *
+	 * @return
+	 * The downsample factor.
+	 */
+	public int getDownsampleFactor() {
+		return downsampleFactor;
+	}
+
+	/**
+	 * Gets the part of the image that is built.
+	 *
+	 * @return
+	 * A copy of the region, or null if the whole image is built.
+	 */
+	public Rectangle getRegion() {
+		return (region != null) ? new Rectangle(region) : null;
+	}
+
+	/**
+	 * Gets the factory that creates the storage for the image.
+	 *
+	 * @return
+	 * The storage factory.
+	 */
+	public PixelStorageFactory getStorageFactory() {
+		return storageFactory;
+	}
+
+	/**
+	 * Checks whether decoding the image waits until it is first asked
+	 * for.
+	 *
+	 * @return
+	 * Whether the image is deferred.
+	 */
+	public boolean isImageDeferred() {
+		return imageDeferred;
+	}
+
+	/**
+	 * Sets the factor that the image is reduced by as it is decoded.
+	 * With a factor of n, the image holds the first pixel of every n
+	 * by n block of the region, so a factor of 4 gives a quarter-scale
+	 * image. Pixels that are not kept are never unpacked.
+	 *
+	 * @param factor
+	 * The downsample factor. This is 1 by default.
+	 *
+	 * @throws ValueOutOfRangeException
+	 * If the factor is less than 1.
+	 */
+	public void setDownsampleFactor(int factor) throws ValueOutOfRangeException {
+		if(factor < 1) {
+			throw new ValueOutOfRangeException("Downsample factor must be at least 1.");
+		}
+		downsampleFactor = factor;
+	}
+
+	/**
+	 * Sets the part of the image to build. Every row of image data
+	 * before the region must still be decompressed and unfiltered,
+	 * but it is not unpacked; once the last row of the region has been
+	 * decoded, the rest of the image data is skipped. The region is
+	 * clipped to the image when it is loaded.
+	 *
+	 * A PNG whose image is only partly built cannot write out its
+	 * original image data again, so saving it encodes the partial
+	 * image.
+	 *
+	 * @param region
+	 * The region to build, or null to build the whole image.
+	 */
+	public void setRegion(Rectangle region) {
+		this.region = (region != null) ? new Rectangle(region) : null;
+	}
+
+	/**
+	 * Sets whether decoding the image waits until it is first asked
+	 * for. When it does, loading a PNG reads only its header and
+	 * ancillary chunks; the image data is neither checked nor
+	 * inflated, so the size, color mode, text, resolution, and
+	 * modification time can be read for little more than the cost of
+	 * opening the file. The image is decoded when getImage() is first
+	 * called, or when the PNG is saved in a way that needs it.
+	 *
+	 * @param imageDeferred
+	 * Whether to defer the image.
+	 */
+	public void setImageDeferred(boolean imageDeferred) {
+		this.imageDeferred = imageDeferred;
+	}
+
+	/**
+	 * Sets the factory that creates the storage for the image. By
+	 * default the image is held in a PackedPixelStorage on the heap;
+	 * very large images can instead be held outside of the heap by
+	 * using DirectPixelStorage.FACTORY or MappedPixelStorage.FACTORY.
+	 *
+	 * @param storageFactory
+	 * The storage factory.
+	 */
+	public void setStorageFactory(PixelStorageFactory storageFactory) {
+		this.storageFactory = storageFactory;
+	}
+}
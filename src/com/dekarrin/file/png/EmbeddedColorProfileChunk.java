@@ -2,12 +2,23 @@ package com.dekarrin.file.png;
 
 import com.dekarrin.io.InvalidFormatException;
 import com.dekarrin.util.ByteComposer;
+import com.dekarrin.zip.CorruptDataException;
 
 /**
  * Chunk for an embedded ICC color profile.
  */
 class EmbeddedColorProfileChunk extends Chunk {
 	
+	/**
+	 * Creates EmbeddedColorProfileChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) throws InvalidFormatException {
+			return new EmbeddedColorProfileChunk(data);
+		}
+	};
+	
 	/**
 	 * The name of the ICC Profile.
 	 */
@@ -164,9 +175,9 @@ class EmbeddedColorProfileChunk extends Chunk {
 	 * If an invalid compression method is specified.
 	 */
 	private void parseData() throws InvalidFormatException {
-		String profileName			= parser.parseString();
-		CompressionEngine cm		= CompressionEngine.fromData(parser.parseInt(1));
-		byte[] compressedProfile	= parser.parseRemainingBytes();
+		String profileName			= getParser().parseString();
+		CompressionEngine cm		= CompressionEngine.fromData(getParser().parseInt(1));
+		byte[] compressedProfile	= getParser().parseRemainingBytes();
 		setProperties(profileName, null, compressedProfile, cm);
 	}
 	
@@ -174,11 +185,15 @@ class EmbeddedColorProfileChunk extends Chunk {
 	 * Decompresses profile data.
 	 * 
 	 * @throws InvalidFormatException
-	 * If an invalid compression method is specified.
+	 * If an invalid compression method is specified, or if the
+	 * compressed data is corrupt.
 	 */
 	private void decompressProfile() throws InvalidFormatException {
-		compressionEngine.setContents(compressedProfile);
-		profile = compressionEngine.decompress();
+		try {
+			profile = compressionEngine.openSession().decompress(compressedProfile);
+		} catch(CorruptDataException e) {
+			throw new InvalidFormatException(e.getMessage(), "png");
+		}
 	}
 	
 	/**
@@ -188,7 +203,6 @@ class EmbeddedColorProfileChunk extends Chunk {
 	 * If an invalid compression method is specified.
 	 */
 	private void compressProfile() throws InvalidFormatException {
-		compressionEngine.setContents(profile);
-		compressedProfile = compressionEngine.compress();
+		compressedProfile = compressionEngine.openSession().compress(profile);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package com.dekarrin.file.png;
+
+import java.util.Arrays;
+
+/**
+ * Chooses the filter type whose output has the lowest estimated
+ * entropy. A histogram of byte values is built for every filter type
+ * in a single pass over the scanline, and the type with the least
+ * spread-out histogram is chosen. This usually compresses better
+ * than the minimum sum heuristic at a small extra cost.
+ *
+ * The histograms and a table of c log c values are kept between
+ * calls, so a selector does not allocate once it has seen its first
+ * scanline.
+ */
+public class EntropyFilterSelector implements FilterSelector {
+
+	/**
+	 * The number of filter types that are compared.
+	 */
+	private static final int TYPES = 5;
+
+	/**
+	 * One histogram of 256 counts for each filter type, in the
+	 * order of their data values.
+	 */
+	private int[] histograms = new int[TYPES * 256];
+
+	/**
+	 * The value of c log c for each count c that can occur.
+	 */
+	private double[] logTable = new double[0];
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public FilterType choose(byte[] raw, byte[] prior, int bpp) {
+		if(logTable.length < raw.length) {
+			buildLogTable(raw.length);
+		}
+		Arrays.fill(histograms, 0);
+		int[] h = histograms;
+		int i = 1;
+		int end = Math.min(1 + bpp, raw.length);
+		for(; i < end; i++) {
+			int x = raw[i];
+			int b = prior[i] & 0xff;
+			h[x & 0xff]++;
+			h[256 + (x & 0xff)]++;
+			h[512 + ((x - b) & 0xff)]++;
+			h[768 + ((x - (b >>> 1)) & 0xff)]++;
+			h[1024 + ((x - b) & 0xff)]++;
+		}
+		for(; i < raw.length; i++) {
+			int x = raw[i];
+			int a = raw[i-bpp] & 0xff;
+			int b = prior[i] & 0xff;
+			int c = prior[i-bpp] & 0xff;
+			h[x & 0xff]++;
+			h[256 + ((x - a) & 0xff)]++;
+			h[512 + ((x - b) & 0xff)]++;
+			h[768 + ((x - ((a + b) >>> 1)) & 0xff)]++;
+			h[1024 + ((x - MinimumSumFilterSelector.paethPredictor(a, b, c)) & 0xff)]++;
+		}
+		int bestType = 0;
+		double best = -1;
+		for(int t = 0; t < TYPES; t++) {
+			double order = 0;
+			for(int v = t * 256; v < (t + 1) * 256; v++) {
+				order += logTable[h[v]];
+			}
+			if(order > best) {
+				best = order;
+				bestType = t;
+			}
+		}
+		FilterType type = FilterType.fromData(bestType);
+		return type;
+	}
+
+	/**
+	 * Fills the table of c log c values.
+	 *
+	 * @param length
+	 * The largest count that the table must hold.
+	 */
+	private void buildLogTable(int length) {
+		logTable = new double[length + 1];
+		for(int c = 2; c <= length; c++) {
+			logTable[c] = c * Math.log(c);
+		}
+	}
+}
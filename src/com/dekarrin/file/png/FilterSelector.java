@@ -0,0 +1,35 @@
+package com.dekarrin.file.png;
+
+/**
+ * Chooses which filter type to use for each scanline when image data
+ * is encoded. A FilterSelector may keep scratch buffers between calls
+ * so that it does not allocate for every row; because of this, each
+ * selector must only be used by one encoder at a time.
+ *
+ * The choice must depend only on the scanline and the one before it.
+ * Parallel encoders filter the rows before each band a second time to
+ * rebuild the data that precedes it, and rely on getting exactly the
+ * same filter types as before.
+ */
+public interface FilterSelector {
+
+	/**
+	 * Chooses the filter type for a scanline. Both buffers hold a
+	 * whole scanline with the filter-type byte at index 0 and the
+	 * sample bytes after it; the filter-type bytes are ignored.
+	 *
+	 * @param raw
+	 * The unfiltered scanline.
+	 *
+	 * @param prior
+	 * The unfiltered previous scanline. For the first row, this is
+	 * all zeros.
+	 *
+	 * @param bpp
+	 * The number of bytes per complete pixel, rounded up to one.
+	 *
+	 * @return
+	 * The filter type to use.
+	 */
+	public FilterType choose(byte[] raw, byte[] prior, int bpp);
+}
@@ -0,0 +1,95 @@
+package com.dekarrin.file.png;
+
+/**
+ * Ways of choosing the filter type of each scanline when image data
+ * is encoded. Each strategy creates a new FilterSelector for every
+ * encoder that uses it, so a strategy can be shared freely.
+ */
+public enum FilterStrategy {
+
+	/**
+	 * Every scanline is left unfiltered. This is usually best for
+	 * indexed images and images with fewer than 8 bits per sample.
+	 */
+	NONE {
+		public FilterSelector createSelector() {
+			return new FixedFilterSelector(FilterType.NONE);
+		}
+	},
+
+	/**
+	 * Every scanline uses the SUB filter.
+	 */
+	SUB {
+		public FilterSelector createSelector() {
+			return new FixedFilterSelector(FilterType.SUB);
+		}
+	},
+
+	/**
+	 * Every scanline uses the UP filter.
+	 */
+	UP {
+		public FilterSelector createSelector() {
+			return new FixedFilterSelector(FilterType.UP);
+		}
+	},
+
+	/**
+	 * Every scanline uses the AVERAGE filter.
+	 */
+	AVERAGE {
+		public FilterSelector createSelector() {
+			return new FixedFilterSelector(FilterType.AVERAGE);
+		}
+	},
+
+	/**
+	 * Every scanline uses the PAETH filter.
+	 */
+	PAETH {
+		public FilterSelector createSelector() {
+			return new FixedFilterSelector(FilterType.PAETH);
+		}
+	},
+
+	/**
+	 * Each scanline uses the filter with the minimum sum of absolute
+	 * differences. This is the heuristic from the PNG specification
+	 * and is a good balance of speed and size.
+	 */
+	MINIMUM_SUM {
+		public FilterSelector createSelector() {
+			return new MinimumSumFilterSelector();
+		}
+	},
+
+	/**
+	 * Each scanline uses the filter whose output has the lowest
+	 * estimated entropy.
+	 */
+	ENTROPY {
+		public FilterSelector createSelector() {
+			return new EntropyFilterSelector();
+		}
+	},
+
+	/**
+	 * Each scanline is deflated with every filter and the smallest
+	 * result is used. This is the slowest strategy but gives the
+	 * smallest files.
+	 */
+	TRIAL_DEFLATE {
+		public FilterSelector createSelector() {
+			return new TrialDeflateFilterSelector();
+		}
+	};
+
+	/**
+	 * Creates a FilterSelector that implements this strategy.
+	 *
+	 * @return
+	 * The new selector.
+	 */
+	public abstract FilterSelector createSelector();
+}
@@ -4,8 +4,6 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 
-import com.dekarrin.util.ArrayHelper;
-
 /**
  * The filter algorithms for the adaptive filter method.
  */
@@ -24,6 +22,12 @@ public enum FilterType {
 		public byte[] unfilter(byte[] none, byte[] lastLine, int bpp) {
 			return none;
 		}
+		public void filterScanline(byte[] raw, byte[] prior, byte[] filtered, int bpp) {
+			filtered[0] = 0;
+			System.arraycopy(raw, 1, filtered, 1, raw.length - 1);
+		}
+		public void unfilterScanline(byte[] scanline, byte[] prior, int bpp) {
+		}
 	},
 	
 	/**
@@ -51,6 +55,21 @@ public enum FilterType {
 			}
 			return raw;
 		}
+		public void filterScanline(byte[] raw, byte[] prior, byte[] filtered, int bpp) {
+			filtered[0] = 1;
+			int i = 1;
+			for(; i <= bpp && i < raw.length; i++) {
+				filtered[i] = raw[i];
+			}
+			for(; i < raw.length; i++) {
+				filtered[i] = (byte)(raw[i] - raw[i-bpp]);
+			}
+		}
+		public void unfilterScanline(byte[] scanline, byte[] prior, int bpp) {
+			for(int i = 1 + bpp; i < scanline.length; i++) {
+				scanline[i] += scanline[i-bpp];
+			}
+		}
 	},
 	
 	/**
@@ -74,6 +93,17 @@ public enum FilterType {
 			}
 			return raw;
 		}
+		public void filterScanline(byte[] raw, byte[] prior, byte[] filtered, int bpp) {
+			filtered[0] = 2;
+			for(int i = 1; i < raw.length; i++) {
+				filtered[i] = (byte)(raw[i] - prior[i]);
+			}
+		}
+		public void unfilterScanline(byte[] scanline, byte[] prior, int bpp) {
+			for(int i = 1; i < scanline.length; i++) {
+				scanline[i] += prior[i];
+			}
+		}
 	},
 	
 	/**
@@ -104,6 +134,25 @@ public enum FilterType {
 			}
 			return raw;
 		}
+		public void filterScanline(byte[] raw, byte[] prior, byte[] filtered, int bpp) {
+			filtered[0] = 3;
+			int i = 1;
+			for(; i <= bpp && i < raw.length; i++) {
+				filtered[i] = (byte)(raw[i] - ((prior[i] & 0xff) >>> 1));
+			}
+			for(; i < raw.length; i++) {
+				filtered[i] = (byte)(raw[i] - (((raw[i-bpp] & 0xff) + (prior[i] & 0xff)) >>> 1));
+			}
+		}
+		public void unfilterScanline(byte[] scanline, byte[] prior, int bpp) {
+			int i = 1;
+			for(; i <= bpp && i < scanline.length; i++) {
+				scanline[i] += (prior[i] & 0xff) >>> 1;
+			}
+			for(; i < scanline.length; i++) {
+				scanline[i] += ((scanline[i-bpp] & 0xff) + (prior[i] & 0xff)) >>> 1;
+			}
+		}
 		private int calculateAverage(byte left, byte above) {
 			int l = (int)left & 0xff;
 			int a = (int)above & 0xff;
@@ -139,6 +188,25 @@ public enum FilterType {
 			}
 			return raw;
 		}
+		public void filterScanline(byte[] raw, byte[] prior, byte[] filtered, int bpp) {
+			filtered[0] = 4;
+			int i = 1;
+			for(; i <= bpp && i < raw.length; i++) {
+				filtered[i] = (byte)(raw[i] - prior[i]);
+			}
+			for(; i < raw.length; i++) {
+				filtered[i] = (byte)(raw[i] - paethPredictor(raw[i-bpp], prior[i], prior[i-bpp]));
+			}
+		}
+		public void unfilterScanline(byte[] scanline, byte[] prior, int bpp) {
+			int i = 1;
+			for(; i <= bpp && i < scanline.length; i++) {
+				scanline[i] += prior[i];
+			}
+			for(; i < scanline.length; i++) {
+				scanline[i] += paethPredictor(scanline[i-bpp], prior[i], prior[i-bpp]);
+			}
+		}
 		private int paethPredictor(byte left, byte above, byte upperLeft) {
 			int predictor;
 			int a,b,c; // results are off if not properly cast to ints
@@ -213,7 +281,8 @@ public enum FilterType {
 	
 	/**
 	 * Chooses a filter method based on which one produces the smallest
-	 * running total. This heuristic is taken from the PNG specification.
+	 * sum of absolute differences. This heuristic is taken from the
+	 * PNG specification.
 	 *
 	 * @param unfiltered
 	 * The data that is to be filtered.
@@ -228,19 +297,8 @@ public enum FilterType {
 	 * The number representing the filter algorithm to use.
 	 */
 	public static FilterType choose(byte[] unfiltered, byte[] lastLine, int bpp) {
-		int total = 0;
-		int nextTotal = 0;
-		boolean set = false;
-		FilterType type = null;
-		for(FilterType ft: EnumSet.allOf(FilterType.class)) {
-			nextTotal = (int)ArrayHelper.sum(ft.filter(unfiltered, lastLine, bpp));
-			if(nextTotal < total || !set) {
-				type = ft;
-				total = nextTotal;
-				set = true;
-			}
-		}
-		return type;
+		byte[] prior = (lastLine != null) ? lastLine : new byte[unfiltered.length];
+		return MinimumSumFilterSelector.select(unfiltered, prior, 0, bpp);
 	}
 	
 	/**
@@ -276,4 +334,45 @@ public enum FilterType {
 	 * The unfiltered data.
 	 */
 	public abstract byte[] unfilter(byte[] unraw, byte[] lastLine, int bpp);
-}
\ No newline at end of file
+	
+	/**
+	 * Filters a complete scanline according to this FilterType.
+	 * All three buffers hold a whole scanline, including the
+	 * leading filter-type byte, so that the sample bytes of each
+	 * start at index 1. The filter-type byte of the output is set
+	 * to this FilterType. No new arrays are created.
+	 * 
+	 * @param raw
+	 * The unfiltered scanline. Its first byte is ignored.
+	 * 
+	 * @param prior
+	 * The unfiltered previous scanline. This should be all zeros
+	 * for the first scanline.
+	 * 
+	 * @param filtered
+	 * The buffer to write the filtered scanline to.
+	 * 
+	 * @param bpp
+	 * The number of bytes per pixel.
+	 */
+	public abstract void filterScanline(byte[] raw, byte[] prior, byte[] filtered, int bpp);
+	
+	/**
+	 * Unfilters a complete scanline in place according to this
+	 * FilterType. Both buffers hold a whole scanline, including
+	 * the leading filter-type byte, so that the sample bytes of
+	 * each start at index 1. No new arrays are created.
+	 * 
+	 * @param scanline
+	 * The filtered scanline. It is replaced with the unfiltered
+	 * bytes.
+	 * 
+	 * @param prior
+	 * The unfiltered previous scanline. This should be all zeros
+	 * for the first scanline.
+	 * 
+	 * @param bpp
+	 * The number of bytes per pixel.
+	 */
+	public abstract void unfilterScanline(byte[] scanline, byte[] prior, int bpp);
+}
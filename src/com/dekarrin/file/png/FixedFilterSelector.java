@@ -0,0 +1,30 @@
+package com.dekarrin.file.png;
+
+/**
+ * Uses the same filter type for every scanline.
+ */
+public class FixedFilterSelector implements FilterSelector {
+
+	/**
+	 * The filter type that is always chosen.
+	 */
+	private FilterType type;
+
+	/**
+	 * Creates a new FixedFilterSelector.
+	 *
+	 * @param type
+	 * The filter type to use for every scanline.
+	 */
+	public FixedFilterSelector(FilterType type) {
+		this.type = type;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public FilterType choose(byte[] raw, byte[] prior, int bpp) {
+		return type;
+	}
+}
@@ -7,6 +7,16 @@ import com.dekarrin.util.ByteComposer;
  */
 class GammaChunk extends Chunk {
 
+	/**
+	 * Creates GammaChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) {
+			return new GammaChunk(data);
+		}
+	};
+	
 	/**
 	 * The gamma stored in this chunk.
 	 */
@@ -71,7 +81,7 @@ class GammaChunk extends Chunk {
 	 * Parses the chunk data into the content.
 	 */
 	private void parseData() {
-		setProperties(parser.parseInt());
+		setProperties(getParser().parseInt());
 	}
 	
 }
\ No newline at end of file
@@ -7,6 +7,16 @@ import com.dekarrin.util.ByteComposer;
  */
 class HeaderChunk extends Chunk {
 	
+	/**
+	 * Creates HeaderChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) {
+			return new HeaderChunk(data);
+		}
+	};
+	
 	/**
 	 * The width of the image.
 	 */
@@ -167,13 +177,13 @@ class HeaderChunk extends Chunk {
 	 * Parses chunk data for header information.
 	 */
 	private void parseData() {
-		int w							= parser.parseInt();
-		int h							= parser.parseInt();
-		int depth						= parser.parseInt(1);
-		ColorMode mode					= ColorMode.fromData(parser.parseInt(1));
-		CompressionEngine compression	= CompressionEngine.fromData(parser.parseInt(1));
-		FilterMethod filter				= FilterMethod.fromData(parser.parseInt(1));
-		InterlaceMethod interlace		= InterlaceMethod.fromData(parser.parseInt(1));
+		int w							= getParser().parseInt();
+		int h							= getParser().parseInt();
+		int depth						= getParser().parseInt(1);
+		ColorMode mode					= ColorMode.fromData(getParser().parseInt(1));
+		CompressionEngine compression	= CompressionEngine.fromData(getParser().parseInt(1));
+		FilterMethod filter				= FilterMethod.fromData(getParser().parseInt(1));
+		InterlaceMethod interlace		= InterlaceMethod.fromData(getParser().parseInt(1));
 		setProperties(w, h, depth, mode, compression, filter, interlace);
 	}
 	
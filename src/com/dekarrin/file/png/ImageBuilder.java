@@ -0,0 +1,467 @@
+package com.dekarrin.file.png;
+
+import java.awt.Rectangle;
+
+import com.dekarrin.graphics.Color;
+import com.dekarrin.graphics.Image;
+import com.dekarrin.graphics.Palette;
+import com.dekarrin.graphics.PixelStorageFactory;
+
+/**
+ * Builds an Image from decoded scanlines as they arrive. Scanlines of
+ * interlaced images are spread across the image according to their
+ * pass. If a ProgressiveListener is set, it is shown a preview of the
+ * image after each pass.
+ *
+ * The image may be built from only a region of the scanlines, and may
+ * be reduced by a whole factor, in which case it holds every
+ * factor-th pixel of every factor-th row of the region. Rows and
+ * columns that are not kept are never unpacked.
+ */
+class ImageBuilder implements ScanlineListener {
+
+	/**
+	 * The number of channel slots in an image without alpha.
+	 */
+	private static final int COLOR_SLOTS = 3;
+
+	/**
+	 * The row just past the bottom edge of the region.
+	 */
+	private int bottom;
+
+	/**
+	 * The distance between the rows and columns of the scanlines that
+	 * are kept.
+	 */
+	private int factor;
+
+	/**
+	 * The image being built.
+	 */
+	private Image image;
+
+	/**
+	 * The interlace method of the scanlines.
+	 */
+	private InterlaceMethod interlaceMethod;
+
+	/**
+	 * The last pass that was completely decoded, or -1 if none has
+	 * been.
+	 */
+	private int lastPass = -1;
+
+	/**
+	 * The first column of the region.
+	 */
+	private int left;
+
+	/**
+	 * The color mode of the scanlines.
+	 */
+	private ColorMode mode;
+
+	/**
+	 * The red, green, and blue samples of each palette entry, one
+	 * after the other.
+	 */
+	private int[] paletteSamples;
+
+	/**
+	 * Holds a row of the image.
+	 */
+	private int[] pixelRow;
+
+	/**
+	 * Receives a preview after each pass, or null if there is no
+	 * listener.
+	 */
+	private ProgressiveListener progressiveListener;
+
+	/**
+	 * The column just past the right edge of the region.
+	 */
+	private int right;
+
+	/**
+	 * The number of bits in each sample.
+	 */
+	private int sampleDepth;
+
+	/**
+	 * The number of samples in each pixel.
+	 */
+	private int samples;
+
+	/**
+	 * Holds the unpacked samples of a scanline.
+	 */
+	private int[] scanlineSamples;
+
+	/**
+	 * The number of channel slots in each pixel of the image.
+	 */
+	private int slots;
+
+	/**
+	 * The first row of the region.
+	 */
+	private int top;
+
+	/**
+	 * The width of the scanlines.
+	 */
+	private int width;
+
+	/**
+	 * Creates a new ImageBuilder.
+	 *
+	 * @param width
+	 * The width of the image.
+	 *
+	 * @param height
+	 * The height of the image.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample.
+	 *
+	 * @param mode
+	 * The color mode of the scanlines.
+	 *
+	 * @param palette
+	 * The palette to use for indexed images.
+	 *
+	 * @param interlaceMethod
+	 * The interlace method of the scanlines.
+	 *
+	 * @param progressiveListener
+	 * Receives a preview after each pass, or null for none.
+	 *
+	 * @param storageFactory
+	 * Creates the storage for the image.
+	 */
+	public ImageBuilder(int width, int height, int sampleDepth, ColorMode mode, Palette palette, InterlaceMethod interlaceMethod, ProgressiveListener progressiveListener, PixelStorageFactory storageFactory) {
+		this(width, height, sampleDepth, mode, palette, interlaceMethod, progressiveListener, storageFactory, new Rectangle(0, 0, width, height), 1);
+	}
+
+	/**
+	 * Creates a new ImageBuilder that keeps only part of the
+	 * scanlines. Previews are made as though the image were whole, so
+	 * a ProgressiveListener should only be given when the region
+	 * covers every scanline and the factor is 1.
+	 *
+	 * @param width
+	 * The width of the scanlines.
+	 *
+	 * @param height
+	 * The height of the scanlines.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample.
+	 *
+	 * @param mode
+	 * The color mode of the scanlines.
+	 *
+	 * @param palette
+	 * The palette to use for indexed images.
+	 *
+	 * @param interlaceMethod
+	 * The interlace method of the scanlines.
+	 *
+	 * @param progressiveListener
+	 * Receives a preview after each pass, or null for none.
+	 *
+	 * @param storageFactory
+	 * Creates the storage for the image.
+	 *
+	 * @param region
+	 * The part of the scanlines to keep. This must lie within them
+	 * and must not be empty.
+	 *
+	 * @param factor
+	 * The distance between the rows and columns that are kept.
+	 */
+	public ImageBuilder(int width, int height, int sampleDepth, ColorMode mode, Palette palette, InterlaceMethod interlaceMethod, ProgressiveListener progressiveListener, PixelStorageFactory storageFactory, Rectangle region, int factor) {
+		this.width = width;
+		this.factor = factor;
+		left = region.x;
+		top = region.y;
+		right = region.x + region.width;
+		bottom = region.y + region.height;
+		this.sampleDepth = sampleDepth;
+		this.interlaceMethod = interlaceMethod;
+		this.progressiveListener = progressiveListener;
+		this.mode = mode;
+		samples = mode.samples();
+		boolean hasAlpha = (mode == ColorMode.GRAYSCALE_ALPHA || mode == ColorMode.TRUECOLOR_ALPHA);
+		slots = hasAlpha ? COLOR_SLOTS + 1 : COLOR_SLOTS;
+		int imageDepth = sampleDepth;
+		if(mode == ColorMode.INDEXED) {
+			imageDepth = palette.getSampleDepth();
+			paletteSamples = new int[palette.size() * COLOR_SLOTS];
+			for(int i = 0; i < palette.size(); i++) {
+				Color c = palette.getColor(i);
+				paletteSamples[i * COLOR_SLOTS] = c.getRed();
+				paletteSamples[i * COLOR_SLOTS + 1] = c.getGreen();
+				paletteSamples[i * COLOR_SLOTS + 2] = c.getBlue();
+			}
+		}
+		int imageWidth = (region.width + factor - 1) / factor;
+		int imageHeight = (region.height + factor - 1) / factor;
+		image = new Image(storageFactory.createStorage(imageWidth, imageHeight, slots, imageDepth));
+		pixelRow = new int[imageWidth * slots];
+		scanlineSamples = new int[width * samples];
+	}
+
+	/**
+	 * Gets the image that has been built. If decoding was stopped
+	 * before the last pass, the pixels that were not decoded are
+	 * first filled in from the ones that were.
+	 *
+	 * @return
+	 * The image.
+	 */
+	public Image getImage() {
+		if(lastPass >= 0 && lastPass < interlaceMethod.passes() - 1) {
+			fillBlocks();
+			lastPass = interlaceMethod.passes() - 1;
+		}
+		return image;
+	}
+
+	/**
+	 * Gets the last row of the scanlines that is kept. No row after
+	 * it is needed, so decoding may stop once it has been built.
+	 *
+	 * @return
+	 * The index of the row.
+	 */
+	public int getLastRow() {
+		return top + ((bottom - 1 - top) / factor) * factor;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean passCompleted(int pass) {
+		lastPass = pass;
+		boolean proceed = true;
+		if(progressiveListener != null) {
+			proceed = progressiveListener.passDecoded(pass, createPreview());
+		}
+		return proceed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void scanlineDecoded(int pass, int row, byte[] data, int offset, int length) {
+		if(row < top || row >= bottom || (row - top) % factor != 0) {
+			return;
+		}
+		int x0 = interlaceMethod.columnOffset(pass);
+		int dx = interlaceMethod.columnIncrement(pass);
+		int pixels = interlaceMethod.passWidth(pass, width);
+		int first = (left > x0) ? (left - x0 + dx - 1) / dx : 0;
+		while(first < pixels && (x0 + first * dx - left) % factor != 0) {
+			first++;
+		}
+		if(first >= pixels || x0 + first * dx >= right) {
+			return;
+		}
+		int step = factor / gcd(dx, factor);
+		int last = Math.min(pixels - 1, (right - 1 - x0) / dx);
+		int count = (last - first) / step + 1;
+		int column = (x0 + first * dx - left) / factor;
+		int columnStep = dx * step / factor;
+		int y = (row - top) / factor;
+		SamplePacker.unpack(data, offset, (first + (count - 1) * step + 1) * samples, sampleDepth, scanlineSamples);
+		if(columnStep != 1) {
+			image.getRow(y, pixelRow);
+		}
+		switch(mode) {
+			case GRAYSCALE:
+			case GRAYSCALE_ALPHA:
+				constructGrayscaleRow(first, step, count, column, columnStep);
+				break;
+
+			case TRUECOLOR:
+			case TRUECOLOR_ALPHA:
+				constructColorRow(first, step, count, column, columnStep);
+				break;
+
+			case INDEXED:
+				constructIndexedRow(first, step, count, column, columnStep);
+				break;
+		}
+		image.setRow(y, pixelRow);
+	}
+
+	/**
+	 * Converts the samples of a truecolor scanline into the row
+	 * buffer.
+	 *
+	 * @param first
+	 * The index of the first pixel of the scanline to convert.
+	 *
+	 * @param step
+	 * The distance between the pixels of the scanline to convert.
+	 *
+	 * @param count
+	 * The number of pixels to convert.
+	 *
+	 * @param column
+	 * The column of the image that the first pixel goes in.
+	 *
+	 * @param columnStep
+	 * The distance between the columns that the pixels go in.
+	 */
+	private void constructColorRow(int first, int step, int count, int column, int columnStep) {
+		boolean hasAlpha = (mode == ColorMode.TRUECOLOR_ALPHA);
+		int pStep = columnStep * slots;
+		int sStep = step * samples;
+		for(int i = 0, p = column * slots, s = first * samples; i < count; i++, p += pStep, s += sStep) {
+			pixelRow[p + Image.RED] = scanlineSamples[s + Scanline.RED_SAMPLE];
+			pixelRow[p + Image.GREEN] = scanlineSamples[s + Scanline.GREEN_SAMPLE];
+			pixelRow[p + Image.BLUE] = scanlineSamples[s + Scanline.BLUE_SAMPLE];
+			if(hasAlpha) {
+				pixelRow[p + Image.ALPHA] = scanlineSamples[s + Scanline.ALPHA_SAMPLE];
+			}
+		}
+	}
+
+	/**
+	 * Converts the samples of a grayscale scanline into the row
+	 * buffer. The gray value is copied into each color channel.
+	 *
+	 * @param first
+	 * The index of the first pixel of the scanline to convert.
+	 *
+	 * @param step
+	 * The distance between the pixels of the scanline to convert.
+	 *
+	 * @param count
+	 * The number of pixels to convert.
+	 *
+	 * @param column
+	 * The column of the image that the first pixel goes in.
+	 *
+	 * @param columnStep
+	 * The distance between the columns that the pixels go in.
+	 */
+	private void constructGrayscaleRow(int first, int step, int count, int column, int columnStep) {
+		boolean hasAlpha = (mode == ColorMode.GRAYSCALE_ALPHA);
+		int pStep = columnStep * slots;
+		int sStep = step * samples;
+		for(int i = 0, p = column * slots, s = first * samples; i < count; i++, p += pStep, s += sStep) {
+			int value = scanlineSamples[s + Scanline.GRAYSCALE_VALUE_SAMPLE];
+			pixelRow[p + Image.RED] = value;
+			pixelRow[p + Image.GREEN] = value;
+			pixelRow[p + Image.BLUE] = value;
+			if(hasAlpha) {
+				pixelRow[p + Image.ALPHA] = scanlineSamples[s + Scanline.GRAYSCALE_ALPHA_SAMPLE];
+			}
+		}
+	}
+
+	/**
+	 * Converts the palette indexes of an indexed scanline into the
+	 * row buffer.
+	 *
+	 * @param first
+	 * The index of the first pixel of the scanline to convert.
+	 *
+	 * @param step
+	 * The distance between the pixels of the scanline to convert.
+	 *
+	 * @param count
+	 * The number of pixels to convert.
+	 *
+	 * @param column
+	 * The column of the image that the first pixel goes in.
+	 *
+	 * @param columnStep
+	 * The distance between the columns that the pixels go in.
+	 */
+	private void constructIndexedRow(int first, int step, int count, int column, int columnStep) {
+		int pStep = columnStep * slots;
+		for(int i = 0, p = column * slots, s = first; i < count; i++, p += pStep, s += step) {
+			int entry = scanlineSamples[s] * COLOR_SLOTS;
+			pixelRow[p + Image.RED] = paletteSamples[entry];
+			pixelRow[p + Image.GREEN] = paletteSamples[entry + 1];
+			pixelRow[p + Image.BLUE] = paletteSamples[entry + 2];
+		}
+	}
+
+	/**
+	 * Creates a reduced copy of the image with one pixel for each
+	 * block that the finished passes fill.
+	 *
+	 * @return
+	 * The preview image.
+	 */
+	private Image createPreview() {
+		int bw = interlaceMethod.blockWidth(lastPass);
+		int bh = interlaceMethod.blockHeight(lastPass);
+		Image preview;
+		if(bw == 1 && bh == 1) {
+			preview = image;
+		} else {
+			int width = (image.width + bw - 1) / bw;
+			int height = (image.height + bh - 1) / bh;
+			preview = new Image(image.getStorage().createCompatible(width, height, image.sampleDepth));
+			int[] previewRow = new int[width * slots];
+			for(int y = 0; y < height; y++) {
+				image.getRow(y * bh, pixelRow);
+				for(int x = 0; x < width; x++) {
+					System.arraycopy(pixelRow, x * bw * slots, previewRow, x * slots, slots);
+				}
+				preview.setRow(y, previewRow);
+			}
+		}
+		return preview;
+	}
+
+	/**
+	 * Fills every block that the finished passes cover with the
+	 * pixel at its top-left corner.
+	 */
+	private void fillBlocks() {
+		int bw = interlaceMethod.blockWidth(lastPass);
+		int bh = interlaceMethod.blockHeight(lastPass);
+		for(int y = 0; y < image.height; y++) {
+			image.getRow(y - (y % bh), pixelRow);
+			for(int x = 0; x < image.width; x++) {
+				int sx = x - (x % bw);
+				if(sx != x) {
+					System.arraycopy(pixelRow, sx * slots, pixelRow, x * slots, slots);
+				}
+			}
+			image.setRow(y, pixelRow);
+		}
+	}
+
+	/**
+	 * Finds the greatest common divisor of two positive numbers.
+	 *
+	 * @param a
+	 * The first number.
+	 *
+	 * @param b
+	 * The second number.
+	 *
+	 * @return
+	 * The greatest common divisor.
+	 */
+	private static int gcd(int a, int b) {
+		while(b != 0) {
+			int r = a % b;
+			a = b;
+			b = r;
+		}
+		return a;
+	}
+}
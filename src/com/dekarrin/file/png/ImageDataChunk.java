@@ -8,6 +8,16 @@ package com.dekarrin.file.png;
  */
 class ImageDataChunk extends Chunk {
 	
+	/**
+	 * Creates ImageDataChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) {
+			return new ImageDataChunk(data);
+		}
+	};
+	
 	/**
 	 * Creates a new ImageDataChunk.
 	 *
@@ -0,0 +1,294 @@
+package com.dekarrin.file.png;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.dekarrin.io.InvalidFormatException;
+
+/**
+ * Decodes the contents of IDAT chunks as they are read. Each chunk's
+ * data is fed into a single Inflater, and the decompressed bytes are
+ * unfiltered one scanline at a time into a pair of reused row buffers.
+ * Finished rows are handed to a ScanlineListener. At no point is the
+ * whole of the image data held in memory.
+ *
+ * Interlaced data is decoded one pass at a time. The row buffers are
+ * sized for each pass, and the first row of every pass is unfiltered
+ * as though the row above it were all zeros.
+ *
+ * The length of the decompressed data is known exactly from the image
+ * header, so the data is checked strictly against it: a zlib stream
+ * that ends before the last scanline, that holds more data than the
+ * scanlines, or that is followed by anything else is rejected.
+ */
+class ImageDataDecoder {
+
+	/**
+	 * The number of bytes per complete pixel, rounded up to one.
+	 */
+	private int bpp;
+
+	/**
+	 * Whether every scanline has been decoded.
+	 */
+	private boolean done = false;
+
+	/**
+	 * Gives the order and size of the scanlines.
+	 */
+	private InterlaceEngine engine;
+
+	/**
+	 * How many bytes of the current scanline have been inflated.
+	 */
+	private int filled = 0;
+
+	/**
+	 * Decompresses the image data.
+	 */
+	private Inflater inflater;
+
+	/**
+	 * Holds input from buffers that are not backed by an array.
+	 */
+	private byte[] inputBuffer;
+
+	/**
+	 * The last image row that the listener needs.
+	 */
+	private int lastRow = Integer.MAX_VALUE;
+
+	/**
+	 * Receives each scanline once it has been unfiltered.
+	 */
+	private ScanlineListener listener;
+
+	/**
+	 * The previous scanline, already unfiltered.
+	 */
+	private byte[] prior;
+
+	/**
+	 * The scanline currently being decoded. This includes the
+	 * leading filter-type byte.
+	 */
+	private byte[] scanline;
+
+	/**
+	 * Whether the listener has asked for decoding to stop.
+	 */
+	private boolean stopped = false;
+
+	/**
+	 * Creates a new ImageDataDecoder.
+	 *
+	 * @param width
+	 * The width of the image in pixels.
+	 *
+	 * @param height
+	 * The height of the image in pixels.
+	 *
+	 * @param mode
+	 * The color mode of the image.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample.
+	 *
+	 * @param interlaceMethod
+	 * The interlace method of the image data.
+	 *
+	 * @param listener
+	 * The object that each unfiltered scanline is given to.
+	 */
+	public ImageDataDecoder(int width, int height, ColorMode mode, int sampleDepth, InterlaceMethod interlaceMethod, ScanlineListener listener) {
+		int bitsPerPixel = mode.samples() * sampleDepth;
+		this.listener = listener;
+		bpp = Math.max(1, bitsPerPixel / 8);
+		engine = new InterlaceEngine(interlaceMethod, width, height, bitsPerPixel);
+		inflater = new Inflater();
+		nextScanline();
+	}
+
+	/**
+	 * Decodes the contents of the next IDAT chunk. Any scanlines
+	 * that are completed by the data are passed to the listener
+	 * before this method returns.
+	 *
+	 * @param data
+	 * The compressed data from the chunk.
+	 *
+	 * @throws InvalidFormatException
+	 * If the data is not a valid zlib stream, or if it contains
+	 * more data than the image has room for.
+	 */
+	public void decode(byte[] data) throws InvalidFormatException {
+		decode(data, 0, data.length);
+	}
+
+	/**
+	 * Decodes the contents of the next IDAT chunk from a buffer, such
+	 * as a slice of a mapped file. Buffers that are backed by an array
+	 * are read in place; others are passed to the Inflater through a
+	 * small reused buffer.
+	 *
+	 * @param data
+	 * The compressed data from the chunk. It is read from its
+	 * position to its limit.
+	 *
+	 * @throws InvalidFormatException
+	 * If the data is not a valid zlib stream, or if it contains
+	 * more data than the image has room for.
+	 */
+	public void decode(ByteBuffer data) throws InvalidFormatException {
+		if(stopped) {
+			data.position(data.limit());
+		} else if(data.hasArray()) {
+			decode(data.array(), data.arrayOffset() + data.position(), data.remaining());
+			data.position(data.limit());
+		} else {
+			if(inputBuffer == null) {
+				inputBuffer = new byte[8192];
+			}
+			while(data.hasRemaining() && !stopped) {
+				int n = Math.min(data.remaining(), inputBuffer.length);
+				data.get(inputBuffer, 0, n);
+				decode(inputBuffer, 0, n);
+			}
+		}
+	}
+
+	/**
+	 * Finishes decoding and releases the Inflater. This must be
+	 * called once the last IDAT chunk has been decoded.
+	 *
+	 * @throws InvalidFormatException
+	 * If the image data ended before every scanline was read.
+	 */
+	public void finish() throws InvalidFormatException {
+		boolean finished = inflater.finished();
+		inflater.end();
+		if(!stopped && (!done || filled != 0)) {
+			throw new InvalidFormatException("Number of scanlines does not equal image height", "png");
+		} else if(!stopped && !finished) {
+			throw new InvalidFormatException("Image data ends before the end of its zlib stream", "png");
+		}
+	}
+
+	/**
+	 * Checks whether the listener stopped decoding before the end
+	 * of the image data.
+	 *
+	 * @return
+	 * Whether decoding was stopped.
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	/**
+	 * Sets the last image row that the listener needs. Decoding stops
+	 * once a row at or past it has been decoded in the last pass, as
+	 * every row after that would only be thrown away. The listener is
+	 * told that the last pass is complete when this happens.
+	 *
+	 * @param row
+	 * The index of the last row that is needed.
+	 */
+	public void setLastRow(int row) {
+		lastRow = row;
+	}
+
+	/**
+	 * Unfilters the current scanline, passes it to the listener,
+	 * and swaps the row buffers so that it becomes the prior line.
+	 *
+	 * @throws InvalidFormatException
+	 * If the scanline has an unknown filter type.
+	 */
+	private void completeScanline() throws InvalidFormatException {
+		FilterType type = FilterType.fromData(scanline[0] & 0xff);
+		if(type == null) {
+			throw new InvalidFormatException("Bad filter type", "png");
+		}
+		type.unfilterScanline(scanline, prior, bpp);
+		listener.scanlineDecoded(engine.getPass(), engine.getRow(), scanline, 1, scanline.length - 1);
+		byte[] swap = prior;
+		prior = scanline;
+		scanline = swap;
+		filled = 0;
+		int pass = engine.getPass();
+		boolean cut = (!engine.isPassEnd() && pass == engine.getMethod().passes() - 1 && engine.getRow() >= lastRow);
+		if((engine.isPassEnd() || cut) && !listener.passCompleted(pass)) {
+			stopped = true;
+		} else if(cut) {
+			stopped = true;
+		} else {
+			nextScanline();
+		}
+	}
+
+	/**
+	 * Moves to the next scanline. At the start of each pass, the
+	 * row buffers are sized for the pass and the prior line is
+	 * cleared.
+	 */
+	private void nextScanline() {
+		if(!engine.next()) {
+			done = true;
+		} else if(engine.isPassStart()) {
+			int length = engine.getScanlineLength();
+			if(scanline == null || scanline.length != length) {
+				scanline = new byte[length];
+				prior = new byte[length];
+			} else {
+				Arrays.fill(prior, (byte)0);
+			}
+		}
+	}
+
+	/**
+	 * Decodes compressed image data from part of an array.
+	 *
+	 * @param data
+	 * The array containing the compressed data.
+	 *
+	 * @param offset
+	 * The index of the first byte of data.
+	 *
+	 * @param length
+	 * The number of bytes of data.
+	 *
+	 * @throws InvalidFormatException
+	 * If the data is not a valid zlib stream, or if it contains
+	 * more data than the image has room for.
+	 */
+	private void decode(byte[] data, int offset, int length) throws InvalidFormatException {
+		inflater.setInput(data, offset, length);
+		try {
+			while(!stopped && !inflater.needsInput() && !inflater.finished()) {
+				int count = inflater.inflate(scanline, filled, scanline.length - filled);
+				if(count == 0 && inflater.needsDictionary()) {
+					throw new InvalidFormatException("Image data requires a preset dictionary", "png");
+				}
+				if(done && count > 0) {
+					throw new InvalidFormatException("Image data exceeds image height", "png");
+				}
+				filled += count;
+				if(filled == scanline.length) {
+					completeScanline();
+				}
+			}
+		} catch(DataFormatException e) {
+			throw new InvalidFormatException("Corrupted image data: " + e.getMessage(), "png");
+		}
+		if(!stopped && inflater.finished()) {
+			if(!done) {
+				throw new InvalidFormatException("Image data ends before the last scanline", "png");
+			} else if(inflater.getRemaining() > 0) {
+				throw new InvalidFormatException("Unexpected data after the end of the image data", "png");
+			}
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.dekarrin.file.png;
+
+import java.util.zip.Deflater;
+
+import com.dekarrin.graphics.Image;
+import com.dekarrin.graphics.Palette;
+import com.dekarrin.io.StreamFailureException;
+import com.dekarrin.zip.CompressionStrategy;
+import com.dekarrin.zip.ZlibPool;
+
+/**
+ * Encodes an Image into IDAT chunks as it is written. Rows are pulled
+ * from the image one at a time, filtered into reused buffers, and
+ * pushed through a single Deflater. Whenever the compressed output
+ * fills an IDAT chunk, the chunk is written straight to the output
+ * stream, so no intermediate copy of the whole image data is ever
+ * made.
+ */
+class ImageDataEncoder {
+
+	/**
+	 * Holds compressed data until there is enough for a chunk.
+	 */
+	private byte[] chunkBuffer;
+
+	/**
+	 * How many bytes of the chunk buffer are in use.
+	 */
+	private int chunkLength = 0;
+
+	/**
+	 * Compresses the filtered scanlines.
+	 */
+	private Deflater deflater;
+
+	/**
+	 * Produces the filtered scanlines.
+	 */
+	private ScanlineFilterer filterer;
+
+	/**
+	 * The number of scanlines in the image data.
+	 */
+	private int rows;
+
+	/**
+	 * The compression level.
+	 */
+	private int level = Deflater.DEFAULT_COMPRESSION;
+
+	/**
+	 * The compression strategy.
+	 */
+	private CompressionStrategy strategy = CompressionStrategy.DEFAULT;
+
+	/**
+	 * Creates a new ImageDataEncoder.
+	 *
+	 * @param image
+	 * The image to encode.
+	 *
+	 * @param mode
+	 * The color mode to encode the image in.
+	 *
+	 * @param palette
+	 * The palette to use for indexed images.
+	 *
+	 * @param chunkSize
+	 * The maximum number of bytes to put in each IDAT chunk.
+	 *
+	 * @param interlaceMethod
+	 * The interlace method to write the image data with.
+	 *
+	 * @param selector
+	 * Chooses the filter type of each scanline.
+	 */
+	public ImageDataEncoder(Image image, ColorMode mode, Palette palette, int chunkSize, InterlaceMethod interlaceMethod, FilterSelector selector) {
+		filterer = new ScanlineFilterer(image, mode, palette, interlaceMethod, selector);
+		rows = filterer.getRowCount();
+		chunkBuffer = new byte[chunkSize];
+	}
+
+	/**
+	 * Sets how the image data is compressed.
+	 *
+	 * @param level
+	 * The compression level.
+	 *
+	 * @param strategy
+	 * The compression strategy.
+	 */
+	public void setCompression(int level, CompressionStrategy strategy) {
+		this.level = level;
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Encodes the entire image and writes it as IDAT chunks.
+	 *
+	 * @param out
+	 * The stream to write the chunks to.
+	 *
+	 * @throws StreamFailureException
+	 * If the stream fails.
+	 */
+	public void encode(ChunkOutputStream out) throws StreamFailureException {
+		deflater = ZlibPool.acquireDeflater(level, strategy);
+		try {
+			for(int i = 0; i < rows; i++) {
+				deflater.setInput(filterer.next());
+				while(!deflater.needsInput()) {
+					deflate(out);
+				}
+			}
+			deflater.finish();
+			while(!deflater.finished()) {
+				deflate(out);
+			}
+			if(chunkLength > 0) {
+				out.writeChunk(Chunk.IDAT, chunkBuffer, 0, chunkLength);
+				chunkLength = 0;
+			}
+		} finally {
+			ZlibPool.releaseDeflater(deflater);
+		}
+	}
+
+	/**
+	 * Runs the deflater once, writing out the chunk buffer if it
+	 * becomes full.
+	 *
+	 * @param out
+	 * The stream to write full chunks to.
+	 *
+	 * @throws StreamFailureException
+	 * If the stream fails.
+	 */
+	private void deflate(ChunkOutputStream out) throws StreamFailureException {
+		chunkLength += deflater.deflate(chunkBuffer, chunkLength, chunkBuffer.length - chunkLength);
+		if(chunkLength == chunkBuffer.length) {
+			out.writeChunk(Chunk.IDAT, chunkBuffer, 0, chunkLength);
+			chunkLength = 0;
+		}
+	}
+}
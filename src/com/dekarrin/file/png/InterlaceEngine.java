@@ -1,10 +1,265 @@
 package com.dekarrin.file.png;
 
 /**
- * Turns raw image data into Scanlines and vice
- * versa using a specific interlacing algorithm.
+ * Walks through the scanlines of image data in the order that they
+ * are stored for a specific interlacing algorithm. Passes that have
+ * no pixels for the size of the image are skipped, since they are
+ * not stored at all.
  */
-public abstract class InterlaceEngine {
+public class InterlaceEngine {
 
-	
+	/**
+	 * The number of bits in each pixel.
+	 */
+	private int bitsPerPixel;
+
+	/**
+	 * The height of the full image.
+	 */
+	private int height;
+
+	/**
+	 * The interlace method that gives the order of the scanlines.
+	 */
+	private InterlaceMethod method;
+
+	/**
+	 * The current pass, or -1 before the first call to next().
+	 */
+	private int pass = -1;
+
+	/**
+	 * The number of rows in the current pass.
+	 */
+	private int passHeight = 0;
+
+	/**
+	 * The index of the current row within its pass.
+	 */
+	private int passRow = 0;
+
+	/**
+	 * The number of pixels in each row of the current pass.
+	 */
+	private int passWidth = 0;
+
+	/**
+	 * The width of the full image.
+	 */
+	private int width;
+
+	/**
+	 * Creates a new InterlaceEngine. It is positioned before the
+	 * first scanline.
+	 *
+	 * @param method
+	 * The interlace method of the image data.
+	 *
+	 * @param width
+	 * The width of the full image.
+	 *
+	 * @param height
+	 * The height of the full image.
+	 *
+	 * @param bitsPerPixel
+	 * The number of bits in each pixel.
+	 */
+	public InterlaceEngine(InterlaceMethod method, int width, int height, int bitsPerPixel) {
+		this.method = method;
+		this.width = width;
+		this.height = height;
+		this.bitsPerPixel = bitsPerPixel;
+	}
+
+	/**
+	 * Gets the length of a scanline.
+	 *
+	 * @param bitsPerPixel
+	 * The number of bits in each pixel.
+	 *
+	 * @param pixels
+	 * The number of pixels in the scanline.
+	 *
+	 * @return
+	 * The length of the scanline in bytes, including its
+	 * filter-type byte.
+	 */
+	public static int scanlineLength(int bitsPerPixel, int pixels) {
+		int length = (int)((((long)bitsPerPixel * pixels) + 7) / 8) + 1;
+		return length;
+	}
+
+	/**
+	 * Gets the image column of a pixel in the current scanline.
+	 *
+	 * @param index
+	 * The index of the pixel within the scanline.
+	 *
+	 * @return
+	 * The column of the pixel in the full image.
+	 */
+	public int getColumn(int index) {
+		return method.columnOffset(pass) + index * method.columnIncrement(pass);
+	}
+
+	/**
+	 * Gets the total length of the image data once it is
+	 * decompressed. This is the sum of the lengths of every scanline
+	 * in every pass.
+	 *
+	 * @return
+	 * The length in bytes, including the filter-type bytes.
+	 */
+	public long getDataLength() {
+		long length = 0;
+		for(int p = 0; p < method.passes(); p++) {
+			int pixels = method.passWidth(p, width);
+			if(pixels > 0) {
+				length += (long)method.passHeight(p, height) * scanlineLength(bitsPerPixel, pixels);
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Gets the interlace method.
+	 *
+	 * @return
+	 * The interlace method.
+	 */
+	public InterlaceMethod getMethod() {
+		return method;
+	}
+
+	/**
+	 * Gets the current pass.
+	 *
+	 * @return
+	 * The index of the pass.
+	 */
+	public int getPass() {
+		return pass;
+	}
+
+	/**
+	 * Gets the number of pixels in the current scanline.
+	 *
+	 * @return
+	 * The width of the current pass.
+	 */
+	public int getPassWidth() {
+		return passWidth;
+	}
+
+	/**
+	 * Gets the image row of the current scanline.
+	 *
+	 * @return
+	 * The row in the full image.
+	 */
+	public int getRow() {
+		return method.rowOffset(pass) + passRow * method.rowIncrement(pass);
+	}
+
+	/**
+	 * Gets the total number of scanlines in the image data.
+	 *
+	 * @return
+	 * The number of scanlines in all passes.
+	 */
+	public int getRowCount() {
+		int count = 0;
+		for(int p = 0; p < method.passes(); p++) {
+			if(method.passWidth(p, width) > 0) {
+				count += method.passHeight(p, height);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the length of the current scanline.
+	 *
+	 * @return
+	 * The length in bytes, including the filter-type byte.
+	 */
+	public int getScanlineLength() {
+		return scanlineLength(bitsPerPixel, passWidth);
+	}
+
+	/**
+	 * Checks whether the current scanline is the last of its pass.
+	 *
+	 * @return
+	 * Whether it is.
+	 */
+	public boolean isPassEnd() {
+		return (passRow == passHeight - 1);
+	}
+
+	/**
+	 * Checks whether the current scanline is the first of its pass.
+	 * The scanline before it must not be used for filtering.
+	 *
+	 * @return
+	 * Whether it is.
+	 */
+	public boolean isPassStart() {
+		return (passRow == 0);
+	}
+
+	/**
+	 * Moves to just before a scanline, so that the next call to
+	 * next() moves to it.
+	 *
+	 * @param index
+	 * The index of the scanline, counting from the first scanline
+	 * of the first pass.
+	 */
+	public void seek(int index) {
+		pass = -1;
+		passRow = 0;
+		passHeight = 0;
+		for(int p = 0; p < method.passes() && pass < 0; p++) {
+			int w = method.passWidth(p, width);
+			int h = method.passHeight(p, height);
+			if(w > 0 && h > 0) {
+				if(index < h) {
+					pass = p;
+					passWidth = w;
+					passHeight = h;
+					passRow = index - 1;
+				} else {
+					index -= h;
+				}
+			}
+		}
+		if(pass < 0) {
+			pass = method.passes() - 1;
+		}
+	}
+
+	/**
+	 * Moves to the next scanline.
+	 *
+	 * @return
+	 * Whether there is another scanline; false if every scanline
+	 * has been visited.
+	 */
+	public boolean next() {
+		boolean found = true;
+		if(pass >= 0 && passRow < passHeight - 1) {
+			passRow++;
+		} else {
+			found = false;
+			while(!found && pass < method.passes() - 1) {
+				pass++;
+				passRow = 0;
+				passWidth = method.passWidth(pass, width);
+				passHeight = method.passHeight(pass, height);
+				found = (passWidth > 0 && passHeight > 0);
+			}
+		}
+		return found;
+	}
 }
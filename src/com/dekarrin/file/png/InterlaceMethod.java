@@ -1,14 +1,15 @@
 package com.dekarrin.file.png;
 
-import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 
-import com.dekarrin.io.InvalidFormatException;
-
 /**
- * Methods to use for optimizing image data for compression.
+ * Methods to use for optimizing image data for compression. Each
+ * method divides the image into a series of passes, each of which is
+ * a reduced image made of every pixel that falls on a regular grid.
+ * A pass is described by the position of its first pixel and the
+ * distance between its pixels in each direction.
  */
 public enum InterlaceMethod {
 	
@@ -16,24 +17,7 @@ public enum InterlaceMethod {
 	 * Uses no interlacing. The image data is transmitted
 	 * line-by-line from top to bottom.
 	 */
-	NONE(0, 1) {
-		protected Scanline[] pass() throws InvalidFormatException {
-			int width = getScanlineWidth();
-			int numberOfScanlines = rawData.length / width;
-			if(numberOfScanlines != imageHeight) {
-				throw new InvalidFormatException("Number of scanlines does not equal image height", "png");
-			}
-			Scanline[] lines = new Scanline[imageHeight];
-			byte[] scanlineData;
-			for(int i=0,start=0,end=0; i < imageHeight; i++) {
-				start = i*width;
-				end = (i+1)*width;
-				scanlineData = Arrays.copyOfRange(rawData, start, end);
-				lines[i] = new Scanline(colorMode.samples(), sampleDepth, scanlineData, filter);
-			}
-			return lines;
-		}
-	};/*,
+	NONE(0, new int[] {0}, new int[] {0}, new int[] {1}, new int[] {1}),
 	
 	/**
 	 * Uses the Adam7 interlacing algorithm. The image data is
@@ -51,20 +35,8 @@ public enum InterlaceMethod {
 	 * 7 7 7 7 7 7 7 7
 	 * 5 6 5 6 5 6 5 6
 	 * 7 7 7 7 7 7 7 7
-	 *
-	ADAM7(1, 7) {
-		protected Scanline[] pass() throws InvalidFormatException {
-			int[] vertOff = {0, 0, 4, 0, 2, 0, 1};
-			int[] horzOff = {0, 4, 0, 2, 0, 1, 0};
-			int[] vertInc = {8, 8, 8, 4, 4, 2, 2};
-			int[] horzInc = {8, 8, 4, 4, 2, 2, 1};
-			Scanline[] lines = scanlines;
-			for(int i = vertOff[currentPass]; i < scanlines.length; i += vertInc[currentPass]) {
-				for(int j = horzOff[currentPass]; j < lines[i].)
-			}
-			return null;
-		}
-	};*/
+	 */
+	ADAM7(1, new int[] {0, 4, 0, 2, 0, 1, 0}, new int[] {0, 0, 4, 0, 2, 0, 1}, new int[] {8, 8, 4, 4, 2, 2, 1}, new int[] {8, 8, 8, 4, 4, 2, 2});
 	
 	/**
 	 * Maps data values to InterlaceMethods.
@@ -78,10 +50,30 @@ public enum InterlaceMethod {
 		}
 	}
 	
+	/**
+	 * The horizontal distance between the pixels of each pass.
+	 */
+	private final int[] columnIncrements;
+	
+	/**
+	 * The column of the first pixel of each pass.
+	 */
+	private final int[] columnOffsets;
+	
 	/**
 	 * The value that is written to disk for this InterlaceMethod.
 	 */
-	private int dataValue;
+	private final int dataValue;
+	
+	/**
+	 * The vertical distance between the rows of each pass.
+	 */
+	private final int[] rowIncrements;
+	
+	/**
+	 * The row of the first pixel of each pass.
+	 */
+	private final int[] rowOffsets;
 	
 	/**
 	 * Creates a new InterlaceMethod.
@@ -89,28 +81,26 @@ public enum InterlaceMethod {
 	 * @param value
 	 * The value of this InterlaceMethod as it is written to disk.
 	 * 
-	 * @param passes
-	 * The number of passes in this InterlaceMethod.
+	 * @param columnOffsets
+	 * The column of the first pixel of each pass.
+	 * 
+	 * @param rowOffsets
+	 * The row of the first pixel of each pass.
+	 * 
+	 * @param columnIncrements
+	 * The horizontal distance between the pixels of each pass.
+	 * 
+	 * @param rowIncrements
+	 * The vertical distance between the rows of each pass.
 	 */
-	private InterlaceMethod(int value, int passes) {
+	private InterlaceMethod(int value, int[] columnOffsets, int[] rowOffsets, int[] columnIncrements, int[] rowIncrements) {
 		dataValue = value;
-		numberOfPasses = passes;
+		this.columnOffsets = columnOffsets;
+		this.rowOffsets = rowOffsets;
+		this.columnIncrements = columnIncrements;
+		this.rowIncrements = rowIncrements;
 	}
 	
-	/**
-	 * The raw data buffer. Depending on whether the InterlaceEngine
-	 * is interlacing or deinterlacing, this could be either the input
-	 * buffer or the output buffer.
-	 */
-	protected byte[] rawData;
-	
-	/**
-	 * The Scanlines from the data. Depending on whether the
-	 * InterlaceEngine is interlacing or deinterlacing, this could be
-	 * either the input buffer or the output buffer.
-	 */
-	protected Scanline[] scanlines;
-	
 	/**
 	 * Gets a InterlaceMethod from a data value read from disk.
 	 * 
@@ -125,132 +115,193 @@ public enum InterlaceMethod {
 	}
 	
 	/**
-	 * Gets the value of the interlace method to write to a PNG
-	 * file.
+	 * Gets the height of the blocks that the image can be divided
+	 * into once a pass is finished. The pixel at the top-left of
+	 * every block is known by the end of the pass, so filling each
+	 * block with that pixel gives a coarse version of the image.
+	 * 
+	 * @param pass
+	 * The index of the last finished pass.
 	 * 
 	 * @return
-	 * What value to write for this InterlaceMethod.
+	 * The height of each block.
 	 */
-	public int dataValue() {
-		return dataValue;
+	public int blockHeight(int pass) {
+		return blockSize(pass, rowOffsets, rowIncrements);
 	}
 	
 	/**
-	 * The height of the image that the scanlines are being
-	 * created for.
-	 */
-	protected int imageHeight;
-	
-	/**
-	 * The width of each scanline.
+	 * Gets the width of the blocks that the image can be divided
+	 * into once a pass is finished. The pixel at the top-left of
+	 * every block is known by the end of the pass, so filling each
+	 * block with that pixel gives a coarse version of the image.
+	 * 
+	 * @param pass
+	 * The index of the last finished pass.
+	 * 
+	 * @return
+	 * The width of each block.
 	 */
-	protected int imageWidth;
+	public int blockWidth(int pass) {
+		return blockSize(pass, columnOffsets, columnIncrements);
+	}
 	
 	/**
-	 * The sample depth of the scanlines.
+	 * Gets the horizontal distance between the pixels of a pass.
+	 * 
+	 * @param pass
+	 * The index of the pass.
+	 * 
+	 * @return
+	 * The number of image columns from one pixel of the pass to
+	 * the next.
 	 */
-	protected int sampleDepth;
+	public int columnIncrement(int pass) {
+		return columnIncrements[pass];
+	}
 	
 	/**
-	 * The color mode to use for the scanlines.
+	 * Gets the column of the first pixel of a pass.
+	 * 
+	 * @param pass
+	 * The index of the pass.
+	 * 
+	 * @return
+	 * The image column of the first pixel in each row of the pass.
 	 */
-	protected ColorMode colorMode;
+	public int columnOffset(int pass) {
+		return columnOffsets[pass];
+	}
 	
 	/**
-	 * The filter method for the scanlines.
+	 * Gets the value of the interlace method to write to a PNG
+	 * file.
+	 * 
+	 * @return
+	 * What value to write for this InterlaceMethod.
 	 */
-	protected FilterMethod filter;
+	public int dataValue() {
+		return dataValue;
+	}
 	
 	/**
-	 * Deinterlaces raw data into Scanlines.
+	 * Gets the height of the reduced image of a pass.
+	 * 
+	 * @param pass
+	 * The index of the pass.
 	 * 
-	 * @param data
-	 * What to set it to.
+	 * @param height
+	 * The height of the full image.
 	 * 
 	 * @return
-	 * The resulting scanlines.
+	 * The number of rows in the pass. This is 0 if the image is
+	 * too small to have any pixels in the pass.
 	 */
-	public Scanline[] deinterlace(byte[] data, int height, int width, int depth, ColorMode mode, FilterMethod fm) throws InvalidFormatException {
-		rawData = data;
-		imageHeight = height;
-		scanlines = new Scanline[imageHeight];
-		imageWidth = width;
-		sampleDepth = depth;
-		colorMode = mode;
-		filter = fm;
-		deinterlaceData();
-		return scanlines;
+	public int passHeight(int pass, int height) {
+		return reducedSize(height, rowOffsets[pass], rowIncrements[pass]);
 	}
 	
 	/**
-	 * Interlaces Scanlines into raw data.
+	 * Gets the width of the reduced image of a pass.
 	 * 
-	 * @param lines
-	 * The scanlines.
+	 * @param pass
+	 * The index of the pass.
+	 * 
+	 * @param width
+	 * The width of the full image.
 	 * 
 	 * @return
-	 * The resulting data.
+	 * The number of pixels in each row of the pass. This is 0 if
+	 * the image is too small to have any pixels in the pass.
 	 */
-	public byte[] interlace(Scanline[] lines) {
-		scanlines = lines;
-		interlaceData();
-		return rawData;
+	public int passWidth(int pass, int width) {
+		return reducedSize(width, columnOffsets[pass], columnIncrements[pass]);
 	}
 	
 	/**
-	 * The pass that the engine is currently on.
-	 */
-	protected int currentPass = 0;
-	
-	/**
-	 * The number of passes that there are in this
-	 * interlace method.
-	 */
-	private int numberOfPasses = 0;
-	
-	/**
-	 * Interlaces the data.
+	 * Gets the number of passes in this InterlaceMethod.
+	 * 
+	 * @return
+	 * The number of passes.
 	 */
-	private void interlaceData() {
-		
+	public int passes() {
+		return columnOffsets.length;
 	}
 	
 	/**
-	 * Deinterlaces the data.
+	 * Gets the vertical distance between the rows of a pass.
+	 * 
+	 * @param pass
+	 * The index of the pass.
+	 * 
+	 * @return
+	 * The number of image rows from one row of the pass to the
+	 * next.
 	 */
-	private void deinterlaceData() throws InvalidFormatException {
-		for(currentPass = 0; currentPass < numberOfPasses; currentPass++) {
-			scanlines = pass();
-		}
+	public int rowIncrement(int pass) {
+		return rowIncrements[pass];
 	}
 	
 	/**
-	 * Gets the length of a scanline in bytes.
-	 *
+	 * Gets the row of the first pixel of a pass.
+	 * 
+	 * @param pass
+	 * The index of the pass.
+	 * 
 	 * @return
-	 * The length of a scanline.
+	 * The image row of the first row of the pass.
 	 */
-	protected int getScanlineWidth() {
-		int sw = (int)Math.ceil(getPixelWidth() * imageWidth) + 1;
-		return sw;
+	public int rowOffset(int pass) {
+		return rowOffsets[pass];
 	}
 	
 	/**
-	 * Gets the length of a pixel in bytes.
-	 *
+	 * Gets the size of one dimension of the blocks that are filled
+	 * by the end of a pass.
+	 * 
+	 * @param pass
+	 * The index of the last finished pass.
+	 * 
+	 * @param offsets
+	 * The offsets of the passes in that dimension.
+	 * 
+	 * @param increments
+	 * The increments of the passes in that dimension.
+	 * 
 	 * @return
-	 * The length of a pixel.
+	 * The size of each block.
 	 */
-	private double getPixelWidth() {
-		double pw;
-		pw = colorMode.samples() * ((double)sampleDepth / 8);
-		return pw;
+	private static int blockSize(int pass, int[] offsets, int[] increments) {
+		int size = increments[0];
+		for(int i = 0; i <= pass; i++) {
+			size = Math.min(size, increments[i]);
+			if(offsets[i] > 0) {
+				size = Math.min(size, offsets[i]);
+			}
+		}
+		return size;
 	}
 	
 	/**
-	 * One pass of processing interlaced data. This will replace
-	 * whatever scanlines currently is, so it should use the data in it.
+	 * Gets the size of one dimension of a reduced image.
+	 * 
+	 * @param size
+	 * The size of the full image in that dimension.
+	 * 
+	 * @param offset
+	 * The position of the first pixel.
+	 * 
+	 * @param increment
+	 * The distance between pixels.
+	 * 
+	 * @return
+	 * The number of pixels in the reduced image.
 	 */
-	protected abstract Scanline[] pass() throws InvalidFormatException;
-	
-}
\ No newline at end of file
+	private static int reducedSize(int size, int offset, int increment) {
+		int reduced = 0;
+		if(size > offset) {
+			reduced = (size - offset + increment - 1) / increment;
+		}
+		return reduced;
+	}
+}
@@ -2,12 +2,23 @@ package com.dekarrin.file.png;
 
 import com.dekarrin.io.InvalidFormatException;
 import com.dekarrin.util.ByteComposer;
+import com.dekarrin.zip.CorruptDataException;
 
 /**
  * Chunk that holds international characters.
  */
 class InternationalTextDataChunk extends TextChunk {
 
+	/**
+	 * Creates InternationalTextDataChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) throws InvalidFormatException {
+			return new InternationalTextDataChunk(data);
+		}
+	};
+	
 	/**
 	 * Whether the text data contained is compressed.
 	 */
@@ -131,12 +142,12 @@ class InternationalTextDataChunk extends TextChunk {
 	 * If an invalid compression method is specified.
 	 */
 	private void parseData() throws InvalidFormatException {
-		String keyword			= parser.parseString();
-		boolean compressed		= parser.parseBoolean();
-		CompressionEngine cm	= CompressionEngine.fromData(parser.parseInt(1));
-		String lang				= parser.parseString();
-		String transKeyword		= parser.parseString();
-		String readText			= parser.parseRemainingString();
+		String keyword			= getParser().parseString();
+		boolean compressed		= getParser().parseBoolean();
+		CompressionEngine cm	= CompressionEngine.fromData(getParser().parseInt(1));
+		String lang				= getParser().parseString();
+		String transKeyword		= getParser().parseString();
+		String readText			= getParser().parseRemainingString();
 		if(compressed) {
 			setProperties(keyword, transKeyword, null, readText, lang, cm, compressed);
 		} else {
@@ -148,11 +159,15 @@ class InternationalTextDataChunk extends TextChunk {
 	 * Decompresses the text to its actual contents.
 	 * 
 	 * @throws InvalidFormatException
-	 * If an invalid compression method is specified.
+	 * If an invalid compression method is specified, or if the
+	 * compressed data is corrupt.
 	 */
 	private void decompressText() throws InvalidFormatException {
-		compressionEngine.setContents(compressedText);
-		text = compressionEngine.decompressString("UTF-8");
+		try {
+			text = compressionEngine.openSession().decompressString(compressedText, "UTF-8");
+		} catch(CorruptDataException e) {
+			throw new InvalidFormatException(e.getMessage(), "png");
+		}
 	}
 	
 	/**
@@ -162,8 +177,7 @@ class InternationalTextDataChunk extends TextChunk {
 	 * If an invalid compression method is specified.
 	 */
 	private void compressText() throws InvalidFormatException {
-		compressionEngine.setContents(text);
-		compressedText = compressionEngine.compressString("UTF-8");
+		compressedText = compressionEngine.openSession().compressString(text, "UTF-8");
 	}
 	
 	/**
@@ -0,0 +1,264 @@
+package com.dekarrin.file.png;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import com.dekarrin.io.InvalidFormatException;
+import com.dekarrin.io.StreamFailureException;
+
+/**
+ * Reads the chunks of a PNG file through a memory mapping. The file
+ * is scanned once to build an index of the type, offset, length, and
+ * CRC of every chunk; chunk data is then handed out as slices of the
+ * mapping without being copied. Chunk objects are only built when
+ * they are asked for.
+ */
+class MappedChunkReader {
+
+	/**
+	 * The number of index entries allocated at first.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The size of the buffer used for passing mapped data to APIs
+	 * that only accept arrays.
+	 */
+	private static final int TRANSFER_BUFFER_LENGTH = 8192;
+
+	/**
+	 * The number of chunks in the index.
+	 */
+	private int count = 0;
+
+	/**
+	 * The CRC stored with each chunk.
+	 */
+	private int[] crcs = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The length of each chunk's data.
+	 */
+	private int[] lengths = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The mapped contents of the file.
+	 */
+	private MappedByteBuffer map;
+
+	/**
+	 * The offset of each chunk's data from the start of the file.
+	 */
+	private int[] offsets = new int[INITIAL_CAPACITY];
+
+	/**
+	 * Used for copying mapped data into array-based APIs.
+	 */
+	private byte[] transferBuffer;
+
+	/**
+	 * The type code of each chunk.
+	 */
+	private int[] types = new int[INITIAL_CAPACITY];
+
+	/**
+	 * Maps a PNG file and builds its chunk index.
+	 *
+	 * @param file
+	 * The location of the PNG file.
+	 *
+	 * @throws FileNotFoundException
+	 * If the specified file does not exist.
+	 *
+	 * @throws InvalidFormatException
+	 * If the file is not a PNG or its chunk structure is corrupt.
+	 *
+	 * @throws StreamFailureException
+	 * If the file cannot be mapped.
+	 */
+	public MappedChunkReader(String file) throws FileNotFoundException, InvalidFormatException, StreamFailureException {
+		FileInputStream stream = new FileInputStream(file);
+		try {
+			FileChannel channel = stream.getChannel();
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new StreamFailureException("File is too large to be mapped");
+			}
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch(IOException e) {
+			throw new StreamFailureException(e.getMessage());
+		} finally {
+			try {
+				stream.close();
+			} catch(IOException e) {
+				// the mapping remains valid after the channel is closed
+			}
+		}
+		verifyPng();
+		buildIndex();
+	}
+
+	/**
+	 * Checks whether the CRC stored with a chunk matches its
+	 * contents.
+	 *
+	 * @param index
+	 * The index of the chunk.
+	 *
+	 * @return
+	 * Whether the chunk is intact.
+	 */
+	public boolean checksumMatches(int index) {
+		CRC32 crcGenerator = new CRC32();
+		crcGenerator.update(Chunk.typeToBytes(types[index]));
+		ByteBuffer data = getData(index);
+		if(transferBuffer == null) {
+			transferBuffer = new byte[TRANSFER_BUFFER_LENGTH];
+		}
+		while(data.hasRemaining()) {
+			int n = Math.min(data.remaining(), transferBuffer.length);
+			data.get(transferBuffer, 0, n);
+			crcGenerator.update(transferBuffer, 0, n);
+		}
+		return ((int)crcGenerator.getValue() == crcs[index]);
+	}
+
+	/**
+	 * Gets the Chunk object for an indexed chunk. The chunk's data is
+	 * checked against its CRC before the object is built.
+	 *
+	 * @param index
+	 * The index of the chunk.
+	 *
+	 * @return
+	 * The chunk.
+	 *
+	 * @throws InvalidFormatException
+	 * If the chunk is corrupt.
+	 */
+	public Chunk getChunk(int index) throws InvalidFormatException {
+		if(!checksumMatches(index)) {
+			throw new InvalidFormatException("Corrupted chunk encountered", "png");
+		}
+		byte[] data = new byte[lengths[index]];
+		getData(index).get(data);
+		return Chunk.getChunkObject(types[index], data);
+	}
+
+	/**
+	 * Gets the number of chunks in the file.
+	 *
+	 * @return
+	 * The number of chunks.
+	 */
+	public int getChunkCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the data of a chunk. The returned buffer is a read-only
+	 * view of the mapped file; no data is copied.
+	 *
+	 * @param index
+	 * The index of the chunk.
+	 *
+	 * @return
+	 * A buffer positioned at the start of the chunk data and
+	 * limited to its end.
+	 */
+	public ByteBuffer getData(int index) {
+		ByteBuffer data = map.duplicate();
+		data.limit(offsets[index] + lengths[index]);
+		data.position(offsets[index]);
+		return data.slice();
+	}
+
+	/**
+	 * Gets the length of a chunk's data.
+	 *
+	 * @param index
+	 * The index of the chunk.
+	 *
+	 * @return
+	 * The length of the chunk's data in bytes.
+	 */
+	public int getLength(int index) {
+		return lengths[index];
+	}
+
+	/**
+	 * Gets the type code of a chunk.
+	 *
+	 * @param index
+	 * The index of the chunk.
+	 *
+	 * @return
+	 * The type code.
+	 */
+	public int getType(int index) {
+		return types[index];
+	}
+
+	/**
+	 * Scans the chunk headers of the file and records where each
+	 * chunk is. Scanning stops at the IEND chunk.
+	 *
+	 * @throws InvalidFormatException
+	 * If a chunk header is invalid or the file ends early.
+	 */
+	private void buildIndex() throws InvalidFormatException {
+		int position = ChunkInputStream.MAGIC_NUMBER.length;
+		int type = 0;
+		while(type != Chunk.IEND) {
+			if(map.limit() - position < 12) {
+				throw new InvalidFormatException("Unexpected end of file", "png");
+			}
+			int length = map.getInt(position);
+			type = map.getInt(position + 4);
+			for(int i = 0; i < 4; i++) {
+				if(!Chunk.isValidTypeByte(map.get(position + 4 + i))) {
+					throw new InvalidFormatException("Type code out of range", "png");
+				}
+			}
+			if(length < 0 || length > map.limit() - position - 12) {
+				throw new InvalidFormatException("Unexpected end of file", "png");
+			}
+			if(count == types.length) {
+				int capacity = count * 2;
+				types = Arrays.copyOf(types, capacity);
+				offsets = Arrays.copyOf(offsets, capacity);
+				lengths = Arrays.copyOf(lengths, capacity);
+				crcs = Arrays.copyOf(crcs, capacity);
+			}
+			types[count] = type;
+			offsets[count] = position + 8;
+			lengths[count] = length;
+			crcs[count] = map.getInt(position + 8 + length);
+			count++;
+			position += length + 12;
+		}
+	}
+
+	/**
+	 * Confirms that the magic number is correct.
+	 *
+	 * @throws InvalidFormatException
+	 * If the magic number is incorrect.
+	 */
+	private void verifyPng() throws InvalidFormatException {
+		int[] magic = ChunkInputStream.MAGIC_NUMBER;
+		if(map.limit() < magic.length) {
+			throw new InvalidFormatException("Bad header", "png");
+		}
+		for(int i = 0; i < magic.length; i++) {
+			if((map.get(i) & 0xff) != magic[i]) {
+				throw new InvalidFormatException("Bad header", "png");
+			}
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package com.dekarrin.file.png;
+
+/**
+ * Chooses the filter type whose output has the smallest sum of
+ * absolute values, with each filtered byte treated as a signed
+ * difference. This is the heuristic suggested by the PNG
+ * specification. The cost of all five filter types is worked out in
+ * a single pass over the scanline without filtering it into any
+ * buffer.
+ */
+public class MinimumSumFilterSelector implements FilterSelector {
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public FilterType choose(byte[] raw, byte[] prior, int bpp) {
+		return select(raw, prior, 1, bpp);
+	}
+
+	/**
+	 * Chooses the filter type for part of a scanline.
+	 *
+	 * @param raw
+	 * The unfiltered scanline.
+	 *
+	 * @param prior
+	 * The unfiltered previous scanline.
+	 *
+	 * @param start
+	 * The index of the first sample byte in both buffers.
+	 *
+	 * @param bpp
+	 * The number of bytes per complete pixel.
+	 *
+	 * @return
+	 * The filter type with the smallest sum of absolute
+	 * differences.
+	 */
+	static FilterType select(byte[] raw, byte[] prior, int start, int bpp) {
+		long none = 0, sub = 0, up = 0, average = 0, paeth = 0;
+		int i = start;
+		int end = Math.min(start + bpp, raw.length);
+		for(; i < end; i++) {
+			int x = raw[i] & 0xff;
+			int b = prior[i] & 0xff;
+			none += cost(x);
+			sub += cost(x);
+			up += cost(x - b);
+			average += cost(x - (b >>> 1));
+			paeth += cost(x - b);
+		}
+		for(; i < raw.length; i++) {
+			int x = raw[i] & 0xff;
+			int a = raw[i-bpp] & 0xff;
+			int b = prior[i] & 0xff;
+			int c = prior[i-bpp] & 0xff;
+			none += cost(x);
+			sub += cost(x - a);
+			up += cost(x - b);
+			average += cost(x - ((a + b) >>> 1));
+			paeth += cost(x - paethPredictor(a, b, c));
+		}
+		FilterType type = FilterType.NONE;
+		long best = none;
+		if(sub < best) {
+			type = FilterType.SUB;
+			best = sub;
+		}
+		if(up < best) {
+			type = FilterType.UP;
+			best = up;
+		}
+		if(average < best) {
+			type = FilterType.AVERAGE;
+			best = average;
+		}
+		if(paeth < best) {
+			type = FilterType.PAETH;
+		}
+		return type;
+	}
+
+	/**
+	 * Gets the cost of a filtered byte.
+	 *
+	 * @param difference
+	 * The filtered value before it is truncated to a byte.
+	 *
+	 * @return
+	 * The absolute value of the byte when read as signed.
+	 */
+	static int cost(int difference) {
+		int v = difference & 0xff;
+		return (v < 128) ? v : 256 - v;
+	}
+
+	/**
+	 * Finds the Paeth predictor of a byte.
+	 *
+	 * @param a
+	 * The byte to the left.
+	 *
+	 * @param b
+	 * The byte above.
+	 *
+	 * @param c
+	 * The byte above and to the left.
+	 *
+	 * @return
+	 * Whichever of the three is closest to a + b - c.
+	 */
+	static int paethPredictor(int a, int b, int c) {
+		int pa = Math.abs(b - c);
+		int pb = Math.abs(a - c);
+		int pc = Math.abs(a + b - c - c);
+		int predictor;
+		if(pa <= pb && pa <= pc) {
+			predictor = a;
+		} else if(pb <= pc) {
+			predictor = b;
+		} else {
+			predictor = c;
+		}
+		return predictor;
+	}
+}
@@ -9,6 +9,16 @@ import com.dekarrin.util.ByteComposer;
  */
 class ModificationTimeChunk extends Chunk {
 	
+	/**
+	 * Creates ModificationTimeChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) {
+			return new ModificationTimeChunk(data);
+		}
+	};
+	
 	/**
 	 * The year of the last modification.
 	 */
@@ -128,12 +138,12 @@ class ModificationTimeChunk extends Chunk {
 	 * Parses the chunk data into properties.
 	 */
 	private void parseData() {
-		year	= parser.parseInt(2);
-		month	= parser.parseInt(1);
-		day		= parser.parseInt(1);
-		hour	= parser.parseInt(1);
-		minute	= parser.parseInt(1);
-		second	= parser.parseInt(1);
+		year	= getParser().parseInt(2);
+		month	= getParser().parseInt(1);
+		day		= getParser().parseInt(1);
+		hour	= getParser().parseInt(1);
+		minute	= getParser().parseInt(1);
+		second	= getParser().parseInt(1);
 	}
 	
 	/**
@@ -8,6 +8,16 @@ import com.dekarrin.util.ByteComposer;
  */
 class PaletteChunk extends Chunk {
 	
+	/**
+	 * Creates PaletteChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) {
+			return new PaletteChunk(data);
+		}
+	};
+	
 	/**
 	 * The palette entries.
 	 */
@@ -74,9 +84,9 @@ class PaletteChunk extends Chunk {
 	 */
 	private void parseData() {
 		Color[] colors = new Color[getLength() / 3];
-		for(int i = 0; i < paletteEntries.length; i++) {
+		for(int i = 0; i < colors.length; i++) {
 			colors[i] = new Color();
-			colors[i].setSamples(parser.parseInt(1), parser.parseInt(1), parser.parseInt(1));
+			colors[i].setSamples(getParser().parseInt(1), getParser().parseInt(1), getParser().parseInt(1));
 		}
 		setProperties(colors);
 	}
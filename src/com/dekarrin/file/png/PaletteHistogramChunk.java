@@ -7,6 +7,16 @@ import com.dekarrin.util.ByteComposer;
  */
 class PaletteHistogramChunk extends Chunk {
 	
+	/**
+	 * Creates PaletteHistogramChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) {
+			return new PaletteHistogramChunk(data);
+		}
+	};
+	
 	/**
 	 * The frequencies of each palette item.
 	 */
@@ -63,7 +73,7 @@ class PaletteHistogramChunk extends Chunk {
 	 * Parses chunk data.
 	 */
 	private void parseData() {
-		setProperties(parser.parseRemainingInts(2));
+		setProperties(getParser().parseRemainingInts(2));
 	}
 	
 	/**
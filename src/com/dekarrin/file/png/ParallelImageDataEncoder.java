@@ -0,0 +1,450 @@
+package com.dekarrin.file.png;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+import com.dekarrin.graphics.Image;
+import com.dekarrin.graphics.Palette;
+import com.dekarrin.io.StreamFailureException;
+import com.dekarrin.zip.CompressionStrategy;
+import com.dekarrin.zip.ZlibPool;
+
+/**
+ * Encodes an Image into IDAT chunks using several threads. The rows
+ * of the image are split into bands, and each band is filtered and
+ * deflated as raw DEFLATE data by its own task. Every band but the
+ * first is primed with the filtered data that comes before it as a
+ * preset dictionary, and every band but the last ends with a sync
+ * flush, so the pieces can simply be joined in order. A zlib header
+ * and the combined Adler-32 of all bands turn the result into a
+ * single valid zlib stream.
+ *
+ * Only a limited number of bands are in progress at once, so the
+ * memory used does not grow with the size of the image. Image data is
+ * always written without interlacing.
+ */
+class ParallelImageDataEncoder {
+
+	/**
+	 * The number of bytes of filtered data aimed for in each band.
+	 */
+	public static final int BAND_LENGTH = 131072;
+
+	/**
+	 * The largest preset dictionary that DEFLATE can make use of.
+	 */
+	private static final int DICTIONARY_LENGTH = 32768;
+
+	/**
+	 * The modulus used by Adler-32.
+	 */
+	private static final long ADLER_BASE = 65521;
+
+	/**
+	 * Holds compressed data until there is enough for a chunk.
+	 */
+	private byte[] chunkBuffer;
+
+	/**
+	 * How many bytes of the chunk buffer are in use.
+	 */
+	private int chunkLength = 0;
+
+	/**
+	 * Creates the filter selector of each band.
+	 */
+	private FilterStrategy filterStrategy;
+
+	/**
+	 * The image being encoded.
+	 */
+	private Image image;
+
+	/**
+	 * The compression level.
+	 */
+	private int level = Deflater.DEFAULT_COMPRESSION;
+
+	/**
+	 * The color mode to encode the image in.
+	 */
+	private ColorMode mode;
+
+	/**
+	 * The palette used for indexed images.
+	 */
+	private Palette palette;
+
+	/**
+	 * Runs the band tasks.
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * The length of each filtered scanline.
+	 */
+	private int scanlineLength;
+
+	/**
+	 * The compression strategy.
+	 */
+	private CompressionStrategy strategy = CompressionStrategy.DEFAULT;
+
+	/**
+	 * The deflated data of a single band.
+	 */
+	private static class Band {
+
+		/**
+		 * The Adler-32 of the band's uncompressed data.
+		 */
+		public long adler;
+
+		/**
+		 * The compressed data.
+		 */
+		public byte[] data;
+
+		/**
+		 * The number of bytes of compressed data.
+		 */
+		public int length;
+
+		/**
+		 * The number of bytes of uncompressed data.
+		 */
+		public long rawLength;
+	}
+
+	/**
+	 * Filters and deflates a single band.
+	 */
+	private class BandTask extends RecursiveTask<Band> {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The row after the last one in the band.
+		 */
+		private int end;
+
+		/**
+		 * Whether this is the last band of the image.
+		 */
+		private boolean last;
+
+		/**
+		 * The first row in the band.
+		 */
+		private int start;
+
+		/**
+		 * Creates a new BandTask.
+		 *
+		 * @param start
+		 * The first row in the band.
+		 *
+		 * @param end
+		 * The row after the last one in the band.
+		 *
+		 * @param last
+		 * Whether this is the last band of the image.
+		 */
+		public BandTask(int start, int end, boolean last) {
+			this.start = start;
+			this.end = end;
+			this.last = last;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected Band compute() {
+			ScanlineFilterer filterer = new ScanlineFilterer(image, mode, palette, InterlaceMethod.NONE, filterStrategy.createSelector());
+			Deflater deflater = ZlibPool.acquireRawDeflater(level, strategy);
+			try {
+				if(start > 0) {
+					deflater.setDictionary(createDictionary(filterer));
+				}
+				Adler32 checksum = new Adler32();
+				Band band = new Band();
+				band.data = new byte[Math.max(64, (end - start) * scanlineLength / 2)];
+				for(int y = start; y < end; y++) {
+					byte[] line = filterer.next();
+					checksum.update(line);
+					deflater.setInput(line);
+					while(!deflater.needsInput()) {
+						deflate(deflater, band, Deflater.NO_FLUSH);
+					}
+				}
+				if(last) {
+					deflater.finish();
+					while(!deflater.finished()) {
+						deflate(deflater, band, Deflater.NO_FLUSH);
+					}
+				} else {
+					while(deflate(deflater, band, Deflater.SYNC_FLUSH)) {
+						// keep going until the flush fits in the buffer
+					}
+				}
+				band.adler = checksum.getValue();
+				band.rawLength = (long)(end - start) * scanlineLength;
+				return band;
+			} finally {
+				ZlibPool.releaseRawDeflater(deflater);
+			}
+		}
+
+		/**
+		 * Filters the rows before the band to get the data that
+		 * precedes it in the stream. The filterer is left ready to
+		 * filter the first row of the band.
+		 *
+		 * @param filterer
+		 * The filterer for this band.
+		 *
+		 * @return
+		 * Up to the last 32 KiB of filtered data before the band.
+		 */
+		private byte[] createDictionary(ScanlineFilterer filterer) {
+			int rows = Math.min(start, (DICTIONARY_LENGTH + scanlineLength - 1) / scanlineLength);
+			long total = (long)rows * scanlineLength;
+			byte[] dictionary = new byte[(int)Math.min(DICTIONARY_LENGTH, total)];
+			long skip = total - dictionary.length;
+			int filled = 0;
+			filterer.seek(start - rows);
+			for(int i = 0; i < rows; i++) {
+				byte[] line = filterer.next();
+				int from = 0;
+				if(skip > 0) {
+					from = (int)Math.min(skip, line.length);
+					skip -= from;
+				}
+				System.arraycopy(line, from, dictionary, filled, line.length - from);
+				filled += line.length - from;
+			}
+			return dictionary;
+		}
+
+		/**
+		 * Runs the deflater once into a band's buffer, growing the
+		 * buffer if it is full.
+		 *
+		 * @param deflater
+		 * The deflater to run.
+		 *
+		 * @param band
+		 * The band to write the output to.
+		 *
+		 * @param flush
+		 * The flush mode to pass to the deflater.
+		 *
+		 * @return
+		 * Whether the deflater filled all of the space it was given,
+		 * in which case it may have more output.
+		 */
+		private boolean deflate(Deflater deflater, Band band, int flush) {
+			if(band.length == band.data.length) {
+				band.data = Arrays.copyOf(band.data, band.data.length * 2);
+			}
+			int space = band.data.length - band.length;
+			int count = deflater.deflate(band.data, band.length, space, flush);
+			band.length += count;
+			return (count == space);
+		}
+	}
+
+	/**
+	 * Creates a new ParallelImageDataEncoder.
+	 *
+	 * @param image
+	 * The image to encode.
+	 *
+	 * @param mode
+	 * The color mode to encode the image in.
+	 *
+	 * @param palette
+	 * The palette to use for indexed images.
+	 *
+	 * @param chunkSize
+	 * The maximum number of bytes to put in each IDAT chunk.
+	 *
+	 * @param filterStrategy
+	 * How the filter type of each scanline is chosen.
+	 *
+	 * @param pool
+	 * The pool that runs the compression tasks.
+	 */
+	public ParallelImageDataEncoder(Image image, ColorMode mode, Palette palette, int chunkSize, FilterStrategy filterStrategy, ForkJoinPool pool) {
+		this.image = image;
+		this.filterStrategy = filterStrategy;
+		this.mode = mode;
+		this.palette = palette;
+		this.pool = pool;
+		int bitsPerPixel = mode.samples() * image.sampleDepth;
+		scanlineLength = (int)((((long)bitsPerPixel * image.width) + 7) / 8) + 1;
+		chunkBuffer = new byte[chunkSize];
+	}
+
+	/**
+	 * Sets how the image data is compressed.
+	 *
+	 * @param level
+	 * The compression level.
+	 *
+	 * @param strategy
+	 * The compression strategy.
+	 */
+	public void setCompression(int level, CompressionStrategy strategy) {
+		this.level = level;
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Encodes the entire image and writes it as IDAT chunks. Bands
+	 * are written in order as soon as they are finished, while
+	 * later bands are still being compressed.
+	 *
+	 * @param out
+	 * The stream to write the chunks to.
+	 *
+	 * @throws StreamFailureException
+	 * If the stream fails.
+	 */
+	public void encode(ChunkOutputStream out) throws StreamFailureException {
+		int height = image.height;
+		int rowsPerBand = Math.max(1, BAND_LENGTH / scanlineLength);
+		int maxPending = pool.getParallelism() * 2;
+		Queue<ForkJoinTask<Band>> pending = new ArrayDeque<ForkJoinTask<Band>>();
+		long adler = 1;
+		int next = 0;
+		try {
+			writeHeader(out);
+			while(next < height || !pending.isEmpty()) {
+				while(next < height && pending.size() < maxPending) {
+					int end = Math.min(height, next + rowsPerBand);
+					pending.add(pool.submit(new BandTask(next, end, (end == height))));
+					next = end;
+				}
+				Band band = pending.remove().join();
+				write(out, band.data, 0, band.length);
+				adler = combineAdler32(adler, band.adler, band.rawLength);
+			}
+		} finally {
+			for(ForkJoinTask<Band> task: pending) {
+				task.cancel(false);
+			}
+		}
+		byte[] trailer = {(byte)(adler >>> 24), (byte)(adler >>> 16), (byte)(adler >>> 8), (byte)adler};
+		write(out, trailer, 0, trailer.length);
+		if(chunkLength > 0) {
+			out.writeChunk(Chunk.IDAT, chunkBuffer, 0, chunkLength);
+			chunkLength = 0;
+		}
+	}
+
+	/**
+	 * Combines the Adler-32 checksums of two pieces of data into the
+	 * checksum of both pieces joined together.
+	 *
+	 * @param first
+	 * The checksum of the first piece.
+	 *
+	 * @param second
+	 * The checksum of the second piece.
+	 *
+	 * @param secondLength
+	 * The length of the second piece.
+	 *
+	 * @return
+	 * The checksum of the joined data.
+	 */
+	private static long combineAdler32(long first, long second, long secondLength) {
+		long remainder = secondLength % ADLER_BASE;
+		long sum1 = first & 0xffff;
+		long sum2 = (remainder * sum1) % ADLER_BASE;
+		sum1 += (second & 0xffff) + ADLER_BASE - 1;
+		sum2 += ((first >>> 16) & 0xffff) + ((second >>> 16) & 0xffff) + ADLER_BASE - remainder;
+		if(sum1 >= ADLER_BASE) {
+			sum1 -= ADLER_BASE;
+		}
+		if(sum1 >= ADLER_BASE) {
+			sum1 -= ADLER_BASE;
+		}
+		if(sum2 >= (ADLER_BASE << 1)) {
+			sum2 -= (ADLER_BASE << 1);
+		}
+		if(sum2 >= ADLER_BASE) {
+			sum2 -= ADLER_BASE;
+		}
+		long combined = sum1 | (sum2 << 16);
+		return combined;
+	}
+
+	/**
+	 * Adds compressed data to the chunk buffer, writing out each
+	 * chunk as it fills.
+	 *
+	 * @param out
+	 * The stream to write full chunks to.
+	 *
+	 * @param data
+	 * The compressed data.
+	 *
+	 * @param offset
+	 * The index of the first byte to add.
+	 *
+	 * @param length
+	 * The number of bytes to add.
+	 *
+	 * @throws StreamFailureException
+	 * If the stream fails.
+	 */
+	private void write(ChunkOutputStream out, byte[] data, int offset, int length) throws StreamFailureException {
+		while(length > 0) {
+			int n = Math.min(length, chunkBuffer.length - chunkLength);
+			System.arraycopy(data, offset, chunkBuffer, chunkLength, n);
+			chunkLength += n;
+			offset += n;
+			length -= n;
+			if(chunkLength == chunkBuffer.length) {
+				out.writeChunk(Chunk.IDAT, chunkBuffer, 0, chunkLength);
+				chunkLength = 0;
+			}
+		}
+	}
+
+	/**
+	 * Writes the two-byte zlib header.
+	 *
+	 * @param out
+	 * The stream to write full chunks to.
+	 *
+	 * @throws StreamFailureException
+	 * If the stream fails.
+	 */
+	private void writeHeader(ChunkOutputStream out) throws StreamFailureException {
+		int cmf = 0x78;
+		int flevel;
+		if(level == Deflater.DEFAULT_COMPRESSION || level == 6) {
+			flevel = 2;
+		} else if(level < 2) {
+			flevel = 0;
+		} else if(level < 6) {
+			flevel = 1;
+		} else {
+			flevel = 3;
+		}
+		int flg = flevel << 6;
+		flg += (31 - ((cmf << 8) | flg) % 31) % 31;
+		byte[] header = {(byte)cmf, (byte)flg};
+		write(out, header, 0, header.length);
+	}
+}
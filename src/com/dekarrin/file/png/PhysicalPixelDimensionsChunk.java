@@ -10,6 +10,16 @@ import com.dekarrin.util.ByteComposer;
  */
 class PhysicalPixelDimensionsChunk extends Chunk {
 	
+	/**
+	 * Creates PhysicalPixelDimensionsChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) {
+			return new PhysicalPixelDimensionsChunk(data);
+		}
+	};
+	
 	/**
 	 * The dimensions of the pixels.
 	 */
@@ -94,9 +104,9 @@ class PhysicalPixelDimensionsChunk extends Chunk {
 	 * Parses chunk data for useful information.
 	 */
 	private void parseData() {
-		int x = parser.parseInt();
-		int y = parser.parseInt();
-		Unit unit = Unit.values()[parser.parseInt(1)];
+		int x = getParser().parseInt();
+		int y = getParser().parseInt();
+		Unit unit = Unit.values()[getParser().parseInt(1)];
 		setProperties(x, y, unit);
 	}
 	
@@ -1,18 +1,24 @@
 package com.dekarrin.file.png;
 
 import java.awt.Point;
-import java.io.File;
-import java.io.FileInputStream;
+import java.awt.Rectangle;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
 
 import com.dekarrin.error.ValueOutOfRangeException;
 import com.dekarrin.graphics.Chromaticity;
@@ -22,10 +28,10 @@ import com.dekarrin.graphics.GrayColor;
 import com.dekarrin.graphics.Image;
 import com.dekarrin.graphics.Palette;
 import com.dekarrin.graphics.Resolution;
+import com.dekarrin.graphics.TiledPixelStorage;
 import com.dekarrin.io.InvalidFormatException;
 import com.dekarrin.io.StreamFailureException;
-import com.dekarrin.util.ArrayHelper;
-import com.dekarrin.util.ByteHolder;
+import com.dekarrin.zip.CompressionStrategy;
 
 /**
  * Represents a PNG file. This class is attempting to be compliant
@@ -34,9 +40,9 @@ import com.dekarrin.util.ByteHolder;
 public class PortableNetworkGraphic {
 	
 	/**
-	 * The number of bytes in each image data chunk.
+	 * The default number of bytes in each image data chunk.
 	 */
-	public static final int IDAT_BUFFER_LENGTH = 50;
+	public static final int IDAT_BUFFER_LENGTH = 65536;
 	
 	/**
 	 * The amount of data that can be written uncompressed in
@@ -76,22 +82,79 @@ public class PortableNetworkGraphic {
 	 */
 	private CompressionEngine compressionEngine;
 	
+	/**
+	 * The level of compression used when writing image data.
+	 */
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+	
+	/**
+	 * The strategy used when compressing image data.
+	 */
+	private CompressionStrategy compressionStrategy = CompressionStrategy.DEFAULT;
+	
+	/**
+	 * The number of threads used to compress image data.
+	 */
+	private int compressionThreads = 1;
+	
 	/**
 	 * Whether or not critical Chunks have been modified.
 	 */
 	private boolean criticallyModified = false;
 	
 	/**
-	 * The image data chunks. These are preserved in case unknown unsafe
-	 * to copy chunks exist in the PNG.
+	 * The data of the image data chunks. These are preserved in case
+	 * unknown unsafe to copy chunks exist in the PNG. When loaded from
+	 * a file, each is a view of the mapped file rather than a copy,
+	 * until the PNG is written back to that same file.
+	 */
+	private Vector<ByteBuffer> dataChunks = new Vector<ByteBuffer>();
+	
+	/**
+	 * The file that the image data chunks are mapped from. This is null
+	 * if the PNG was not loaded from a file, or once the chunks have
+	 * been copied out of the mapping.
+	 */
+	private String sourceFile;
+	
+	/**
+	 * Controls how the image is built once it is first asked for, if
+	 * decoding it was deferred when this PNG was loaded. Otherwise,
+	 * this is null.
+	 */
+	private DecodeOptions deferredOptions;
+	
+	/**
+	 * The file that the image data is decoded from once the image is
+	 * first asked for, if decoding it was deferred when this PNG was
+	 * loaded and its chunks have not been checked yet. Otherwise, this
+	 * is null.
+	 */
+	private MappedChunkReader deferredReader;
+	
+	/**
+	 * Whether a setting that changes how the image data is encoded
+	 * has been changed since this PNG was loaded.
 	 */
-	private Vector<ImageDataChunk> dataChunks = new Vector<ImageDataChunk>();
+	private boolean encodingChanged = false;
 	
 	/**
 	 * The filter method used in this PNG's image data.
 	 */
 	private FilterMethod filterMethod;
 	
+	/**
+	 * The filter selector given by the user, or null if the filter
+	 * strategy is used instead.
+	 */
+	private FilterSelector filterSelector = null;
+	
+	/**
+	 * How the filter type of each scanline is chosen when image data
+	 * is written.
+	 */
+	private FilterStrategy filterStrategy = FilterStrategy.MINIMUM_SUM;
+	
 	/**
 	 * The image gamma.
 	 */
@@ -111,6 +174,18 @@ public class PortableNetworkGraphic {
 	 * The image contained by this PNG.
 	 */
 	private Image image;
+	
+	/**
+	 * The maximum number of bytes written to each image data chunk.
+	 */
+	private int imageDataChunkSize = IDAT_BUFFER_LENGTH;
+	
+	/**
+	 * The storage that the image was decoded into, if it keeps track
+	 * of which of its tiles are modified. Otherwise, this is null.
+	 */
+	private TiledPixelStorage imageStorage;
+	
 	/**
 	 * What method of interlacing this PNG uses.
 	 */
@@ -281,7 +356,83 @@ public class PortableNetworkGraphic {
 	 * If the file stream fails for some other reason.
 	 */
 	public PortableNetworkGraphic(String file) throws FileNotFoundException, InvalidFormatException, StreamFailureException {
-		loadPngFile(file);
+		loadPngFile(file, null, null, null);
+	}
+	
+	/**
+	 * Creates a new PNG from a file, showing a preview of the image
+	 * to a listener after each interlace pass. The listener may stop
+	 * the load early, in which case the image is filled in from the
+	 * passes that were decoded.
+	 *
+	 * @param file
+	 * The file to load the PNG data from.
+	 *
+	 * @param listener
+	 * Receives a preview after each pass.
+	 *
+	 * @throws FileNotFoundException
+	 * If the specified file does not exist.
+	 *
+	 * @throws InvalidFormatException
+	 * If the file is corrupt or is not in the correct
+	 * format for a PNG.
+	 *
+	 * @throws StreamFailureException
+	 * If the file stream fails for some other reason.
+	 */
+	public PortableNetworkGraphic(String file, ProgressiveListener listener) throws FileNotFoundException, InvalidFormatException, StreamFailureException {
+		loadPngFile(file, null, listener, null);
+	}
+	
+	/**
+	 * Creates a new PNG from a file without building its image.
+	 * Each row of image data is instead given to a listener as soon
+	 * as it has been decoded, so the full image is never held in
+	 * memory. getImage() returns null for a PNG created this way.
+	 *
+	 * @param file
+	 * The file to load the PNG data from.
+	 *
+	 * @param listener
+	 * Receives each decoded scanline.
+	 *
+	 * @throws FileNotFoundException
+	 * If the specified file does not exist.
+	 *
+	 * @throws InvalidFormatException
+	 * If the file is corrupt or is not in the correct
+	 * format for a PNG.
+	 *
+	 * @throws StreamFailureException
+	 * If the file stream fails for some other reason.
+	 */
+	public PortableNetworkGraphic(String file, ScanlineListener listener) throws FileNotFoundException, InvalidFormatException, StreamFailureException {
+		loadPngFile(file, listener, null, null);
+	}
+	
+	/**
+	 * Creates a new PNG from a file, building its image as set out
+	 * by a DecodeOptions.
+	 *
+	 * @param file
+	 * The file to load the PNG data from.
+	 *
+	 * @param options
+	 * Controls how the image is built.
+	 *
+	 * @throws FileNotFoundException
+	 * If the specified file does not exist.
+	 *
+	 * @throws InvalidFormatException
+	 * If the file is corrupt or is not in the correct
+	 * format for a PNG.
+	 *
+	 * @throws StreamFailureException
+	 * If the file stream fails for some other reason.
+	 */
+	public PortableNetworkGraphic(String file, DecodeOptions options) throws FileNotFoundException, InvalidFormatException, StreamFailureException {
+		loadPngFile(file, null, null, options);
 	}
 	
 	/**
@@ -363,7 +514,8 @@ public class PortableNetworkGraphic {
 	 * The bit depth.
 	 */
 	public int getBitDepth() {
-		return image.sampleDepth;
+		int depth = (image != null) ? image.sampleDepth : sampleDepth;
+		return depth;
 	}
 	
 	/**
@@ -424,19 +576,36 @@ public class PortableNetworkGraphic {
 	 * The height.
 	 */
 	public int getHeight() {
-		return image.height;
+		int h = (image != null) ? image.height : height;
+		return h;
 	}
 	
 	/**
 	 * Gets the image data from this PNG. This modifies the PNG so
 	 * that unsafe-to-copy unknown chunks cannot be copied, because
-	 * if the image is accessed, it can be changed.
+	 * if the image is accessed, it can be changed. The exception is
+	 * an image that was decoded into a TiledPixelStorage; the storage
+	 * keeps track of whether the image is actually changed, so the
+	 * PNG is only treated as modified once it is.
+	 *
+	 * If decoding the image was deferred when this PNG was loaded, it
+	 * is decoded now.
 	 *
 	 * @return
 	 * The image data.
+	 *
+	 * @throws IllegalStateException
+	 * If the image was deferred and its data turns out to be corrupt.
 	 */
 	public Image getImage() {
-		criticallyModify();
+		try {
+			decodeDeferredImage();
+		} catch(InvalidFormatException e) {
+			throw new IllegalStateException("Could not decode image data: " + e.getMessage(), e);
+		}
+		if(imageStorage == null) {
+			criticallyModify();
+		}
 		return image;
 	}
 	
@@ -629,7 +798,8 @@ public class PortableNetworkGraphic {
 	 * The width.
 	 */
 	public int getWidth() {
-		return image.width;
+		int w = (image != null) ? image.width : width;
+		return w;
 	}
 	
 	/**
@@ -774,6 +944,33 @@ public class PortableNetworkGraphic {
 		return has;
 	}
 	
+	/**
+	 * Gets the exact length of the image data once it has been
+	 * decompressed and before it is unfiltered. This follows from the
+	 * header alone. When a PNG is loaded, its image data is inflated
+	 * straight into scanlines of this total length, and image data
+	 * that decompresses to more or less than this is rejected.
+	 *
+	 * @return
+	 * The length in bytes, including the filter-type byte of every
+	 * scanline.
+	 */
+	public long getImageDataLength() {
+		int bitsPerPixel = mode.samples() * sampleDepth;
+		InterlaceEngine engine = new InterlaceEngine(interlaceMethod, getWidth(), getHeight(), bitsPerPixel);
+		return engine.getDataLength();
+	}
+	
+	/**
+	 * Gets the interlace method of the image data.
+	 *
+	 * @return
+	 * The interlace method.
+	 */
+	public InterlaceMethod getInterlaceMethod() {
+		return interlaceMethod;
+	}
+	
 	/**
 	 * Checks whether the image is interlaced.
 	 *
@@ -803,7 +1000,81 @@ public class PortableNetworkGraphic {
 	 * If the file stream fails for some other reason.
 	 */
 	public void load(String location) throws FileNotFoundException, InvalidFormatException, StreamFailureException {
-		loadPngFile(location);
+		loadPngFile(location, null, null, null);
+	}
+	
+	/**
+	 * Loads this PNG from disk, showing a preview of the image to a
+	 * listener after each interlace pass. The listener may stop the
+	 * load early, in which case the image is filled in from the
+	 * passes that were decoded.
+	 *
+	 * @param location
+	 * Where to load the PNG file from.
+	 *
+	 * @param listener
+	 * Receives a preview after each pass.
+	 *
+	 * @throws FileNotFoundException
+	 * If the specified file does not exist.
+	 *
+	 * @throws InvalidFormatException
+	 * If the file is corrupt or is not in the correct
+	 * format for a PNG.
+	 *
+	 * @throws StreamFailureException
+	 * If the file stream fails for some other reason.
+	 */
+	public void load(String location, ProgressiveListener listener) throws FileNotFoundException, InvalidFormatException, StreamFailureException {
+		loadPngFile(location, null, listener, null);
+	}
+	
+	/**
+	 * Loads this PNG from disk, passing each row of image data to
+	 * a listener instead of building the image.
+	 *
+	 * @param location
+	 * Where to load the PNG file from.
+	 *
+	 * @param listener
+	 * Receives each decoded scanline.
+	 *
+	 * @throws FileNotFoundException
+	 * If the specified file does not exist.
+	 *
+	 * @throws InvalidFormatException
+	 * If the file is corrupt or is not in the correct
+	 * format for a PNG.
+	 *
+	 * @throws StreamFailureException
+	 * If the file stream fails for some other reason.
+	 */
+	public void load(String location, ScanlineListener listener) throws FileNotFoundException, InvalidFormatException, StreamFailureException {
+		loadPngFile(location, listener, null, null);
+	}
+	
+	/**
+	 * Loads this PNG from disk, building its image as set out by a
+	 * DecodeOptions.
+	 *
+	 * @param location
+	 * Where to load the PNG file from.
+	 *
+	 * @param options
+	 * Controls how the image is built.
+	 *
+	 * @throws FileNotFoundException
+	 * If the specified file does not exist.
+	 *
+	 * @throws InvalidFormatException
+	 * If the file is corrupt or is not in the correct
+	 * format for a PNG.
+	 *
+	 * @throws StreamFailureException
+	 * If the file stream fails for some other reason.
+	 */
+	public void load(String location, DecodeOptions options) throws FileNotFoundException, InvalidFormatException, StreamFailureException {
+		loadPngFile(location, null, null, options);
 	}
 	
 	/**
@@ -825,6 +1096,161 @@ public class PortableNetworkGraphic {
 		writePngFile(location, false);
 	}
 	
+	/**
+	 * Saves this PNG to a stream, such as the body of a network
+	 * response or an in-memory buffer. The chunks are buffered and
+	 * written in large blocks, and the stream is flushed once the PNG
+	 * has been written, but it is not closed. The stream must not write
+	 * to the file that this PNG was loaded from; use
+	 * {@link #save(String) save(String)} to write over that file.
+	 *
+	 * @param out
+	 * The stream to write the PNG file to.
+	 *
+	 * @throws StreamFailureException
+	 * If the stream failed.
+	 * 
+	 * @throws InvalidFormatException
+	 * If an invalid value is written to the PNG.
+	 */
+	public void save(OutputStream out) throws StreamFailureException, InvalidFormatException {
+		ChunkOutputStream writer = new ChunkOutputStream(out);
+		writePng(writer, false);
+		writer.flush();
+	}
+	
+	/**
+	 * Saves this PNG to a channel. The chunks are buffered and written
+	 * in large blocks, using gathering writes if the channel supports
+	 * them. The channel is not closed. The channel must not write to the
+	 * file that this PNG was loaded from; use
+	 * {@link #save(String) save(String)} to write over that file.
+	 *
+	 * @param channel
+	 * The channel to write the PNG file to.
+	 *
+	 * @throws StreamFailureException
+	 * If the channel failed.
+	 * 
+	 * @throws InvalidFormatException
+	 * If an invalid value is written to the PNG.
+	 */
+	public void save(WritableByteChannel channel) throws StreamFailureException, InvalidFormatException {
+		ChunkOutputStream writer = new ChunkOutputStream(channel);
+		writePng(writer, false);
+		writer.flush();
+	}
+	
+	/**
+	 * Sets how hard the image data is compressed when this PNG is
+	 * saved. Lower levels are faster; higher levels give smaller
+	 * files.
+	 *
+	 * @param level
+	 * The compression level, from Deflater.NO_COMPRESSION to
+	 * Deflater.BEST_COMPRESSION, or Deflater.DEFAULT_COMPRESSION.
+	 */
+	public void setCompressionLevel(int level) {
+		if((level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) && level != Deflater.DEFAULT_COMPRESSION) {
+			throw new ValueOutOfRangeException("Compression level must be between 0 and 9.");
+		}
+		compressionLevel = level;
+		encodingChanged = true;
+	}
+	
+	/**
+	 * Sets the strategy used to compress the image data when this
+	 * PNG is saved. Filtered image data usually does best with
+	 * CompressionStrategy.FILTERED.
+	 *
+	 * @param strategy
+	 * The strategy to use.
+	 */
+	public void setCompressionStrategy(CompressionStrategy strategy) {
+		compressionStrategy = strategy;
+		encodingChanged = true;
+	}
+	
+	/**
+	 * Sets the number of threads used to compress the image data
+	 * when this PNG is saved. With more than one thread, the image
+	 * is split into bands of rows that are compressed at the same
+	 * time and joined into a single stream. This is much faster for
+	 * large images on machines with several cores, at the cost of a
+	 * slightly larger file.
+	 *
+	 * @param threads
+	 * The number of threads to use. Use 1 to compress on the
+	 * calling thread only.
+	 */
+	public void setCompressionThreads(int threads) {
+		if(threads < 1) {
+			throw new ValueOutOfRangeException("Number of compression threads must be positive.");
+		}
+		compressionThreads = threads;
+	}
+	
+	/**
+	 * Sets a custom FilterSelector to choose the filter type of each
+	 * scanline when this PNG is saved. Since a selector may keep
+	 * state from one scanline to the next, image data is always
+	 * compressed on a single thread while a custom selector is set.
+	 *
+	 * @param selector
+	 * The selector to use, or null to go back to using the filter
+	 * strategy.
+	 */
+	public void setFilterSelector(FilterSelector selector) {
+		filterSelector = selector;
+		encodingChanged = true;
+	}
+	
+	/**
+	 * Sets how the filter type of each scanline is chosen when this
+	 * PNG is saved. The default is FilterStrategy.MINIMUM_SUM. This
+	 * has no effect while a custom filter selector is set.
+	 *
+	 * @param strategy
+	 * The strategy to use.
+	 */
+	public void setFilterStrategy(FilterStrategy strategy) {
+		filterStrategy = strategy;
+		encodingChanged = true;
+	}
+	
+	/**
+	 * Sets the interlace method that the image data is written
+	 * with. Adam7 interlacing lets viewers show a rough version of
+	 * the image before all of it has been read, at the cost of a
+	 * somewhat larger file.
+	 *
+	 * @param method
+	 * The interlace method to use.
+	 */
+	public void setInterlaceMethod(InterlaceMethod method) {
+		if(method != interlaceMethod) {
+			interlaceMethod = method;
+			criticallyModify();
+		}
+	}
+	
+	/**
+	 * Sets the maximum size of the image data chunks that are
+	 * written when this PNG is saved. Larger chunks mean less
+	 * overhead from chunk headers and checksums.
+	 *
+	 * @param size
+	 * The number of bytes of compressed image data to put in
+	 * each chunk.
+	 */
+	public void setImageDataChunkSize(int size) {
+		if(size < 1) {
+			throw new ValueOutOfRangeException("Image data chunk size must be positive.");
+		}
+		imageDataChunkSize = size;
+		encodingChanged = true;
+	}
+	
 	/**
 	 * Sets the background color to show this image against.
 	 *
@@ -871,6 +1297,7 @@ public class PortableNetworkGraphic {
 	 */
 	public void setPalette(Palette palette) {
 		this.palette = palette;
+		encodingChanged = true;
 	}
 	
 	/**
@@ -974,6 +1401,27 @@ public class PortableNetworkGraphic {
 		return bcc;
 	}
 	
+	/**
+	 * Checks whether the image data that was loaded can be written
+	 * again as it is instead of being encoded anew. A zlib stream
+	 * cannot be partly re-encoded, so this is only possible when
+	 * nothing in the image has changed at all. That can only be
+	 * known for an image decoded into a TiledPixelStorage or one that
+	 * has not been decoded at all, and only
+	 * while none of the settings that change the encoding have been
+	 * changed since.
+	 *
+	 * @return
+	 * Whether the loaded image data can be reused.
+	 */
+	private boolean canReuseImageData() {
+		boolean reusable = false;
+		if((imageStorage != null || deferredOptions != null) && !encodingChanged && !dataChunks.isEmpty()) {
+			reusable = !imageDataModified();
+		}
+		return reusable;
+	}
+	
 	/**
 	 * Converts the Chromaticity to a chunk.
 	 *
@@ -998,10 +1446,8 @@ public class PortableNetworkGraphic {
 	 * completed versions.
 	 */
 	private void cleanUpDataStructures() {
-		combinePaletteComponents();
 		combineSignificantBits();
 		setIndexedBackgroundColor();
-		Scanline.resetLines();
 	}
 	
 	/**
@@ -1010,8 +1456,10 @@ public class PortableNetworkGraphic {
 	private void combinePaletteComponents() {
 		if(paletteColors != null) {
 			Color[] colorList = new Color[paletteColors.length];
-			Arrays.fill(colorList, new Color(sampleDepth));
 			if(paletteAlphas != null) {
+				for(int i = 0; i < colorList.length; i++) {
+					colorList[i] = new Color(8);
+				}
 				int i = 0;
 				for(; i < paletteAlphas.length; i++) {
 					colorList[i].setRed(paletteColors[i].getRed());
@@ -1027,7 +1475,11 @@ public class PortableNetworkGraphic {
 			} else {
 				colorList = paletteColors;
 			}
-			palette = new Palette("untitled", sampleDepth, colorList, paletteFrequencies);
+			if(paletteFrequencies != null) {
+				palette = new Palette("untitled", 8, colorList, paletteFrequencies);
+			} else {
+				palette = new Palette("untitled", 8, colorList);
+			}
 		}
 	}
 	
@@ -1042,154 +1494,17 @@ public class PortableNetworkGraphic {
 		}
 	}
 	
-	/**
-	 * Compresses a byte array.
-	 *
-	 * @param data
-	 * The uncompressed data.
-	 *
-	 * @return
-	 * The compressed data.
-	 * 
-	 * @throws InvalidFormatException
-	 * If the compression method specified by this PNG
-	 * is invalid.
-	 */
-	private byte[] compressData(byte[] data) throws InvalidFormatException {
-		compressionEngine.setContents(data);
-		return compressionEngine.compress();
-	}
-	
-	/**
-	 * Concatenates all the image data into one array.
-	 * 
-	 * @return
-	 * The data contents of the image data.
-	 */
-	private byte[] concatenateImageData() {
-		byte[] iData = new byte[0];
-		byte[] nextData;
-		for(ImageDataChunk c: dataChunks) {
-			nextData = c.getData();
-			iData = ArrayHelper.append(iData, nextData);
-		}
-		return iData;
-	}
-	
-	/**
-	 * Creates an image from a series of scanlines using truecolor
-	 * mode.
-	 *
-	 * @param scanlines
-	 * The scanlines that make up the image.
-	 *
-	 * @return
-	 * The completed image.
-	 */
-	private void constructColorImage(Scanline[] scanlines) {
-		boolean hasAlpha = (mode == ColorMode.TRUECOLOR_ALPHA);
-		image = new Image(width, height, sampleDepth, hasAlpha);
-		Color color = new Color(sampleDepth);
-		for(int y = 0; y < scanlines.length; y++) {
-			for(int x = 0; x < scanlines[y].pixels(); x++) {
-				color.setRed(scanlines[y].getSample(x, Scanline.RED_SAMPLE));
-				color.setGreen(scanlines[y].getSample(x, Scanline.GREEN_SAMPLE));
-				color.setBlue(scanlines[y].getSample(x, Scanline.BLUE_SAMPLE));
-				if(hasAlpha) {
-					color.setAlpha(scanlines[y].getSample(x, Scanline.ALPHA_SAMPLE));
-				} else if(transparentColor != null && transparentColor.equals(color)) {
-					color.setAlpha(0);
-				}
-				image.setColorAt(x, y, color);
-			}
-		}
-	}
-	
-	/**
-	 * Creates an image from a series of scanlines using grayscale
-	 * mode.
-	 *
-	 * @param scanlines
-	 * The scanlines that make up the image.
-	 *
-	 * @return
-	 * The completed image.
-	 */
-	private void constructGrayscaleImage(Scanline[] scanlines) {
-		boolean hasAlpha = (mode == ColorMode.GRAYSCALE_ALPHA);
-		image = new Image(width, height, sampleDepth, hasAlpha);
-		GrayColor color = new GrayColor(sampleDepth);
-		for(int y = 0; y < scanlines.length; y++) {
-			for(int x = 0; x < scanlines[y].pixels(); x++) {
-				color.setValue(scanlines[y].getSample(x, Scanline.GRAYSCALE_VALUE_SAMPLE));
-				if(hasAlpha) {
-					color.setAlpha(scanlines[y].getSample(x, Scanline.GRAYSCALE_ALPHA_SAMPLE));
-				} else if(transparentColor != null && transparentColor.equals(color)) {
-					color.setAlpha(0);
-				}
-				image.setColorAt(x, y, color);
-			}
-		}
-	}
 	 
-	/**
-	 * Builds the image from a series of scanlines.
-	 *
-	 * @param scanlines
-	 * The scanlines that make up the image data.
-	 */
-	private void constructImage(Scanline[] scanlines) {
-		switch(mode) {
-			case GRAYSCALE:
-			case GRAYSCALE_ALPHA:
-				constructGrayscaleImage(scanlines);
-				break;
-				
-			case TRUECOLOR:
-			case TRUECOLOR_ALPHA:
-				constructColorImage(scanlines);
-				break;
-				
-			case INDEXED:
-				constructIndexedImage(scanlines);
-				break;
-		}
-	}
 	
 	/**
-	 * Creates an image from a series of scanlines using indexed
-	 * mode.
-	 *
-	 * @param scanlines
-	 * The scanlines that make up the image.
-	 *
-	 * @return
-	 * The completed image.
-	 */
-	private void constructIndexedImage(Scanline[] scanlines) {
-		image = new Image(width, height, sampleDepth);
-		Color color;
-		for(int y = 0; y < scanlines.length; y++) {
-			for(int x = 0; x < scanlines[y].pixels(); x++) {
-				int paletteIndex = scanlines[y].getSample(x, Scanline.PALETTE_INDEX_SAMPLE);
-				color = palette.getColor(paletteIndex);
-				image.setColorAt(x, y, color);
-			}
-		}
-	}
-	
-	/**
-	 * Converts the data in this PNG into chunks to be written
-	 * to disk.
-	 * 
-	 * @param forcePreservation
-	 * Whether or not the image data is preserved from the source.
+	 * Converts the data in this PNG that comes before the image
+	 * data into chunks to be written to disk.
 	 * 
 	 * @throws InvalidFormatException
 	 * If one of the chunks specifies an incorrect value for the
 	 * PNG standard.
 	 */
-	private Chunk[] convertToChunks(boolean forcePreservation) throws InvalidFormatException {
+	private Chunk[] convertToLeadingChunks() throws InvalidFormatException {
 		Vector<Chunk> chunks = new Vector<Chunk>();
 		chunks.add(headerToChunk());
 		if(unknownColorSpaceChunks.size() > 0) {
@@ -1239,16 +1554,19 @@ public class PortableNetworkGraphic {
 		if(hasSuggestedPalette()) {
 			chunks.add(suggestedPaletteToChunk());
 		}
-		if(forcePreservation || preserveImageData()) {
-			for(ImageDataChunk idc: dataChunks) {
-				chunks.add(idc);
-			}
-		} else {
-			ImageDataChunk[] idatChunks = encodeImageData();
-			for(ImageDataChunk idc: idatChunks) {
-				chunks.add(idc);
-			}
-		}
+		return chunks.toArray(new Chunk[0]);
+	}
+	
+	/**
+	 * Converts the data in this PNG that comes after the image
+	 * data into chunks to be written to disk.
+	 * 
+	 * @throws InvalidFormatException
+	 * If one of the chunks specifies an incorrect value for the
+	 * PNG standard.
+	 */
+	private Chunk[] convertToTrailingChunks() throws InvalidFormatException {
+		Vector<Chunk> chunks = new Vector<Chunk>();
 		if(unknownPostDataChunks.size() > 0) {
 			for(Chunk c: unknownPostDataChunks) {
 				if(c.isSafeToCopy() || !criticallyModified) {
@@ -1269,202 +1587,31 @@ public class PortableNetworkGraphic {
 	}
 	
 	/**
-	 * Creates as many IDAT chunks as necessary from a series
-	 * of bytes.
+	 * Creates the ImageBuilder for the image data, keeping only the
+	 * region and rows set out by a DecodeOptions.
 	 *
-	 * @param data
-	 * The data that makes up the image, pre-compressed and
-	 * pre-filtered.
+	 * @param options
+	 * Controls how the image is built.
 	 *
-	 * @return
-	 * The IDAT chunks generated from the data.
-	 */
-	private ImageDataChunk[] createIdatChunks(byte[] data) {
-		int dataLength = data.length / IDAT_BUFFER_LENGTH;
-		if(data.length % IDAT_BUFFER_LENGTH != 0) {
-			dataLength++;
-		}
-		ImageDataChunk[] chunks = new ImageDataChunk[dataLength];
-		int chunksPointer = 0;
-		ByteHolder idatBuffer;
-		for(int i = 0; i < data.length; i += IDAT_BUFFER_LENGTH) {
-			if(i + IDAT_BUFFER_LENGTH < data.length) {
-				idatBuffer = new ByteHolder(IDAT_BUFFER_LENGTH);
-			} else {
-				idatBuffer = new ByteHolder(data.length - i);
-			}
-			for(int j = 0; j < IDAT_BUFFER_LENGTH && i+j < data.length; j++) {
-				idatBuffer.add(data[i+j]);
-			}
-			chunks[chunksPointer++] = new ImageDataChunk(idatBuffer.toArray());
-		}
-		return chunks;
-	}
-	
-	/**
-	 * Decompresses a byte array.
-	 *
-	 * @param data
-	 * The compressed data.
-	 *
-	 * @return
-	 * The decompressed data.
-	 * 
-	 * @throws InvalidFormatException
-	 * If the compression method specified by this PNG
-	 * is invalid.
-	 */
-	private byte[] decompressData(byte[] data) throws InvalidFormatException {
-		compressionEngine.setContents(data);
-		return compressionEngine.decompress();
-	}
-	
-	/**
-	 * Creates a series of scanlines from an image using truecolor
-	 * mode.
-	 *
-	 * @param img
-	 * The completed image.
-	 *
-	 * @return
-	 * The scanlines that make up the image.
-	 */
-	private Scanline[] deconstructColorImage(Image img) {
-		boolean hasAlpha = (mode == ColorMode.TRUECOLOR_ALPHA);
-		Scanline[] lines = new Scanline[height];
-		Color color;
-		for(int y = 0; y < height; y++) {
-			lines[y] = new Scanline(mode.samples(), sampleDepth, width, filterMethod);
-			for(int x = 0; x < width; x++) {
-				color = img.getColorAt(x, y);
-				lines[y].setSample(x, Scanline.RED_SAMPLE, color.getRed());
-				lines[y].setSample(x, Scanline.GREEN_SAMPLE, color.getGreen());
-				lines[y].setSample(x, Scanline.BLUE_SAMPLE, color.getBlue());
-				if(hasAlpha) {
-					lines[y].setSample(x, Scanline.ALPHA_SAMPLE, color.getAlpha());
-				}
-			}
-		}
-		return lines;
-	}
-	
-	/**
-	 * Creates a series of scanlines from an image using grayscale
-	 * mode.
-	 *
-	 * @param img
-	 * The completed image.
-	 *
-	 * @return
-	 * The scanlines that make up the image.
-	 */
-	private Scanline[] deconstructGrayscaleImage(Image img) {
-		boolean hasAlpha = (mode == ColorMode.GRAYSCALE_ALPHA);
-		Scanline[] lines = new Scanline[height];
-		GrayColor color;
-		for(int y = 0; y < height; y++) {
-			lines[y] = new Scanline(mode.samples(), sampleDepth, width, filterMethod);
-			for(int x = 0; x < width; x++) {
-				color = new GrayColor(sampleDepth);
-				color.setValue(image.valueAt(Image.GRAY, x, y));
-				color.setAlpha(image.valueAt(Image.GRAY_ALPHA, x, y));
-				lines[y].setSample(x, Scanline.GRAYSCALE_VALUE_SAMPLE, color.getValue());
-				if(hasAlpha) {
-					lines[y].setSample(x, Scanline.GRAYSCALE_ALPHA_SAMPLE, color.getAlpha());
-				}
-			}
-		}
-		return lines;
-	}
-	
-	
-	/**
-	 * Creates a series of scanlines from the image.
+	 * @param progressiveListener
+	 * Receives a preview of the image after each pass, or null for
+	 * none.
 	 *
 	 * @return
-	 * The scanlines that make up the image data.
-	 */
-	private Scanline[] deconstructImage() {
-		Scanline[] scanlines = null;
-		switch(mode) {
-			case GRAYSCALE:
-			case GRAYSCALE_ALPHA:
-				scanlines = deconstructGrayscaleImage(image);
-				break;
-				
-			case TRUECOLOR:
-			case TRUECOLOR_ALPHA:
-				scanlines = deconstructColorImage(image);
-				break;
-				
-			case INDEXED:
-				scanlines = deconstructImageFromPalette(image);
-				break;
-		}
-		return scanlines;
-	}
-	
-	/**
-	 * Creates a series of scanlines from an image using indexed
-	 * mode.
+	 * The ImageBuilder.
 	 *
-	 * @param img
-	 * The completed image.
-	 *
-	 * @return
-	 * The scanlines that make up the image.
+	 * @throws ValueOutOfRangeException
+	 * If the region of the options lies outside of the image.
 	 */
-	private Scanline[] deconstructImageFromPalette(Image img) {
-		Scanline[] lines = new Scanline[height];
-		Color color;
-		for(int y = 0; y < height; y++) {
-			lines[y] = new Scanline(mode.samples(), sampleDepth, width, filterMethod);
-			for(int x = 0; x < width; x++) {
-				color = img.getColorAt(x, y);
-				int paletteIndex = palette.indexOf(color);
-				lines[y].setSample(x, Scanline.PALETTE_INDEX_SAMPLE, paletteIndex);
+	private ImageBuilder createImageBuilder(DecodeOptions options, ProgressiveListener progressiveListener) throws ValueOutOfRangeException {
+		Rectangle region = new Rectangle(0, 0, width, height);
+		if(options.getRegion() != null) {
+			region = region.intersection(options.getRegion());
+			if(region.isEmpty()) {
+				throw new ValueOutOfRangeException("Decode region lies outside of the image.");
 			}
 		}
-		return lines;
-	}
-	
-	/**
-	 * Turns scanlines into a single array of bytes.
-	 *
-	 * @param scanlines
-	 * The scanlines to deconstruct.
-	 *
-	 * @return
-	 * The data of the scanlines.
-	 * 
-	 * @throws InvalidFormatException
-	 * If the filter method is invalid.
-	 */
-	private byte[] deconstructScanlines(Scanline[] lines) throws InvalidFormatException {
-		ByteHolder holder = new ByteHolder(lines.length * getScanlineWidth());
-		byte[] buffer;
-		for(Scanline sl: lines) {
-			buffer = sl.getFiltered();
-			holder.add(buffer);
-		}
-		return holder.toArray();
-	}
-	
-	/**
-	 * Builds image chunks from the image data.
-	 *
-	 * @return
-	 * The ImageDataChunks that decode to the image data.
-	 * 
-	 * @throws InvalidFormatException
-	 * If a format error occurs with one of the header values.
-	 */
-	private ImageDataChunk[] encodeImageData() throws InvalidFormatException {
-		Scanline[] rawData = deconstructImage();
-		byte[] uncompressedData = deconstructScanlines(rawData);
-		byte[] compressedData = compressData(uncompressedData);
-		ImageDataChunk[] chunks = createIdatChunks(compressedData);
-		return chunks;
+		return new ImageBuilder(width, height, sampleDepth, mode, palette, interlaceMethod, progressiveListener, options.getStorageFactory(), region, options.getDownsampleFactor());
 	}
 	
 	/**
@@ -1493,52 +1640,6 @@ public class PortableNetworkGraphic {
 		return gc;
 	}
 	
-	/**
-	 * Gets the length of a pixel in bytes.
-	 *
-	 * @return
-	 * The length of a pixel.
-	 */
-	private double getPixelWidth() {
-		double pw;
-		pw = mode.samples() * ((double)sampleDepth / 8);
-		return pw;
-	}
-	
-	/**
-	 * Gets any scan lines that may exist from the data.
-	 * 
-	 * @param data
-	 * Extra data to be added to the previous data in order to
-	 * create scan lines.
-	 */
-	private Scanline[] getScanlinesFromData(byte[] data) throws InvalidFormatException {
-		int numberOfScanlines = data.length / getScanlineWidth();
-		if(numberOfScanlines != height) {
-			throw new InvalidFormatException("Number of scanlines does not equal image height", "png");
-		}
-		Scanline[] lines = new Scanline[height];
-		byte[] scanlineData;
-		for(int i=0,start=0,end=0; i < height; i++) {
-			start = i*getScanlineWidth();
-			end = (i+1)*getScanlineWidth();
-			scanlineData = Arrays.copyOfRange(data, start, end);
-			lines[i] = new Scanline(mode.samples(), sampleDepth, scanlineData, filterMethod);
-		}
-		return lines;
-	}
-	
-	/**
-	 * Gets the length of a scanline in bytes.
-	 *
-	 * @return
-	 * The length of a scanline.
-	 */
-	private int getScanlineWidth() {
-		int sw = (int)Math.ceil(getPixelWidth() * width) + 1;
-		return sw;
-	}
-	
 	/**
 	 * Converts the header data into a new HeaderChunk.
 	 *
@@ -1546,7 +1647,7 @@ public class PortableNetworkGraphic {
 	 * The resulting HeaderChunk.
 	 */
 	private HeaderChunk headerToChunk() {
-		HeaderChunk hc = new HeaderChunk(image.width, image.height, image.sampleDepth, mode, compressionEngine, filterMethod, interlaceMethod);
+		HeaderChunk hc = new HeaderChunk(getWidth(), getHeight(), getBitDepth(), mode, compressionEngine, filterMethod, interlaceMethod);
 		return hc;
 	}
 	
@@ -1562,12 +1663,39 @@ public class PortableNetworkGraphic {
 		return phc;
 	}
 	
+	/**
+	 * Checks whether the image may have changed since it was loaded.
+	 * For an image in a TiledPixelStorage, this asks the storage;
+	 * otherwise, any access to the image counts as a change.
+	 *
+	 * @return
+	 * Whether the image may have changed.
+	 */
+	private boolean imageDataModified() {
+		boolean modified = criticallyModified;
+		if(!modified && imageStorage != null && image != null) {
+			modified = (image.getStorage() != imageStorage || imageStorage.isModified());
+		}
+		return modified;
+	}
+	
 	/**
 	 * Reads the PNG data from a file.
 	 *
 	 * @param file
 	 * The name of the file load the data from.
 	 *
+	 * @param listener
+	 * Receives each decoded scanline instead of the image being
+	 * built, or null to build the image.
+	 *
+	 * @param progressiveListener
+	 * Receives a preview of the image after each pass, or null for
+	 * none. This is only used when the image is built.
+	 *
+	 * @param options
+	 * Controls how the image is built, or null for the defaults.
+	 *
 	 * @throws FileNotFoundException
 	 * If the specified file does not exist.
 	 *
@@ -1579,20 +1707,60 @@ public class PortableNetworkGraphic {
 	 * @throws StreamFailureException
 	 * If the file stream fails for some other reason.
 	 */
-	private void loadPngFile(String file) throws FileNotFoundException, InvalidFormatException, StreamFailureException {
-		Chunk nextChunk = null;
-		FileInputStream f = new FileInputStream(file);
-		ChunkInputStream reader = new ChunkInputStream(f);
-		reader.verifyPng();
-		boolean reading = true;
-		while(reading) {
-			nextChunk = reader.readChunk();
-			if(nextChunk.getType() == Chunk.IEND) {
-				reading = false;
+	private void loadPngFile(String file, ScanlineListener listener, ProgressiveListener progressiveListener, DecodeOptions options) throws FileNotFoundException, InvalidFormatException, StreamFailureException {
+		if(options == null) {
+			options = new DecodeOptions();
+		}
+		boolean deferred = (listener == null && progressiveListener == null && options.isImageDeferred());
+		boolean dataFound = false;
+		ImageBuilder builder = null;
+		ImageDataDecoder decoder = null;
+		MappedChunkReader reader = new MappedChunkReader(file);
+		for(int i = 0; i < reader.getChunkCount(); i++) {
+			if(reader.getType(i) == Chunk.IDAT) {
+				if(!dataFound) {
+					dataFound = true;
+					combinePaletteComponents();
+					unknownChunks = unknownPostDataChunks;
+				}
+				ByteBuffer data = reader.getData(i);
+				dataChunks.add(data);
+				if(deferred) {
+					continue;
+				}
+				if(decoder == null) {
+					if(listener == null) {
+						builder = createImageBuilder(options, progressiveListener);
+						listener = builder;
+					}
+					decoder = new ImageDataDecoder(width, height, mode, sampleDepth, interlaceMethod, listener);
+					if(builder != null) {
+						decoder.setLastRow(builder.getLastRow());
+					}
+				}
+				if(!decoder.isStopped()) {
+					if(!reader.checksumMatches(i)) {
+						throw new InvalidFormatException("Corrupted chunk encountered", "png");
+					}
+					decoder.decode(data.duplicate());
+				}
+			} else {
+				processChunk(reader.getChunk(i));
+			}
+		}
+		if(!dataFound) {
+			throw new InvalidFormatException("No image data", "png");
+		}
+		sourceFile = file;
+		if(deferred) {
+			deferredReader = reader;
+			deferredOptions = options;
+		} else {
+			decoder.finish();
+			if(builder != null) {
+				setDecodedImage(builder.getImage());
 			}
-			processChunk(nextChunk);
 		}
-		processImageData();
 		cleanUpDataStructures();
 	}
 	
@@ -1739,7 +1907,7 @@ public class PortableNetworkGraphic {
 				}
 			}
 		}
-		if(unsafeChunks && !criticallyModified) {
+		if(unsafeChunks && !imageDataModified()) {
 			preserve = true;
 		}
 		return preserve;
@@ -1763,11 +1931,6 @@ public class PortableNetworkGraphic {
 				readPaletteChunk((PaletteChunk) chunk);
 				break;
 				
-			case Chunk.IDAT:
-				unknownChunks = unknownPostDataChunks;
-				dataChunks.add((ImageDataChunk) chunk);
-				break;
-
 			case Chunk.IEND:
 				break;
 
@@ -1829,22 +1992,6 @@ public class PortableNetworkGraphic {
 		}
 	}
 	
-	/**
-	 * Builds an image from image data chunks.
-	 *
-	 * @param chunks
-	 * The image chunk to process make up the image data.
-	 */
-	private void processImageData() throws InvalidFormatException {
-		byte[] compressedData = concatenateImageData();
-		byte[] decompressedData = decompressData(compressedData);
-		//InterlaceEngine iEngine = interlaceMethod.getInterlaceEngine();
-		//iEngine.setRawData(decompressedData);
-		Scanline[] lines = getScanlinesFromData(decompressedData);
-		//Scanline[] lines = iEngine.getScanlines();
-		constructImage(lines);
-	}
-	
 	/**
 	 * Converts the profile data to a new EmbeddedColorProfileChunk.
 	 *
@@ -1931,6 +2078,9 @@ public class PortableNetworkGraphic {
 		height = header.getHeight();
 		width = header.getWidth();
 		mode = header.getColorMode();
+		compressionEngine = header.getCompressionEngine();
+		filterMethod = header.getFilterMethod();
+		interlaceMethod = header.getInterlaceMethod();
 	}
 	
 	/**
@@ -2082,6 +2232,26 @@ public class PortableNetworkGraphic {
 		return ppdc;
 	}
 	
+	/**
+	 * Sets the image that was decoded from the image data. If it is
+	 * held in a TiledPixelStorage, the storage is used to keep track
+	 * of whether the image is modified from here on. If only part of
+	 * the image was decoded, it no longer matches the image data, so
+	 * this PNG is treated as modified.
+	 *
+	 * @param decoded
+	 * The decoded image.
+	 */
+	private void setDecodedImage(Image decoded) {
+		image = decoded;
+		if(image.width != width || image.height != height) {
+			criticallyModify();
+		} else if(image.getStorage() instanceof TiledPixelStorage) {
+			imageStorage = (TiledPixelStorage)image.getStorage();
+			imageStorage.clearModified();
+		}
+	}
+	
 	/**
 	 * Sets the background color if only an index to a palette color
 	 * was provided.
@@ -2196,6 +2366,109 @@ public class PortableNetworkGraphic {
 		return tc;
 	}
 	
+	/**
+	 * Decodes the image data that was skipped when this PNG was
+	 * loaded, if decoding it was deferred. Otherwise, this does
+	 * nothing.
+	 *
+	 * @throws InvalidFormatException
+	 * If the image data is corrupt.
+	 */
+	private void decodeDeferredImage() throws InvalidFormatException {
+		if(deferredOptions == null) {
+			return;
+		}
+		MappedChunkReader reader = deferredReader;
+		ImageBuilder builder = createImageBuilder(deferredOptions, null);
+		ImageDataDecoder decoder = new ImageDataDecoder(width, height, mode, sampleDepth, interlaceMethod, builder);
+		decoder.setLastRow(builder.getLastRow());
+		if(reader != null) {
+			for(int i = 0; i < reader.getChunkCount() && !decoder.isStopped(); i++) {
+				if(reader.getType(i) == Chunk.IDAT) {
+					if(!reader.checksumMatches(i)) {
+						throw new InvalidFormatException("Corrupted chunk encountered", "png");
+					}
+					decoder.decode(reader.getData(i));
+				}
+			}
+		} else {
+			// the chunks were checked when they were copied
+			for(int i = 0; i < dataChunks.size() && !decoder.isStopped(); i++) {
+				decoder.decode(dataChunks.get(i).duplicate());
+			}
+		}
+		decoder.finish();
+		deferredReader = null;
+		deferredOptions = null;
+		setDecodedImage(builder.getImage());
+	}
+	
+	/**
+	 * Copies the image data chunks out of the mapped file that they
+	 * were loaded from. This must be done before that file is written
+	 * over, as the mapping no longer has anything behind it once the
+	 * file is truncated. If the image was deferred, its chunks are
+	 * checked first, since the file can no longer be read afterwards.
+	 *
+	 * @throws InvalidFormatException
+	 * If the image was deferred and its data is corrupt.
+	 */
+	private void detachImageData() throws InvalidFormatException {
+		if(sourceFile == null) {
+			return;
+		}
+		if(deferredReader != null) {
+			for(int i = 0; i < deferredReader.getChunkCount(); i++) {
+				if(deferredReader.getType(i) == Chunk.IDAT && !deferredReader.checksumMatches(i)) {
+					throw new InvalidFormatException("Corrupted chunk encountered", "png");
+				}
+			}
+			deferredReader = null;
+		}
+		for(int i = 0; i < dataChunks.size(); i++) {
+			ByteBuffer mapped = dataChunks.get(i);
+			ByteBuffer copy = ByteBuffer.allocate(mapped.remaining());
+			copy.put(mapped.duplicate());
+			copy.flip();
+			dataChunks.set(i, copy);
+		}
+		sourceFile = null;
+	}
+	
+	/**
+	 * Encodes the image and writes it as image data chunks. If more
+	 * than one compression thread is set, no custom filter selector
+	 * is in use, and the image is not interlaced, the image is split
+	 * into bands that are compressed in parallel.
+	 *
+	 * @param writer
+	 * The stream to write the chunks to.
+	 *
+	 * @throws StreamFailureException
+	 * If the stream fails.
+	 *
+	 * @throws InvalidFormatException
+	 * If the image was deferred and its data is corrupt.
+	 */
+	private void encodeImageData(ChunkOutputStream writer) throws StreamFailureException, InvalidFormatException {
+		decodeDeferredImage();
+		if(compressionThreads > 1 && filterSelector == null && interlaceMethod == InterlaceMethod.NONE) {
+			ForkJoinPool pool = new ForkJoinPool(compressionThreads);
+			try {
+				ParallelImageDataEncoder encoder = new ParallelImageDataEncoder(image, mode, palette, imageDataChunkSize, filterStrategy, pool);
+				encoder.setCompression(compressionLevel, compressionStrategy);
+				encoder.encode(writer);
+			} finally {
+				pool.shutdown();
+			}
+		} else {
+			FilterSelector selector = (filterSelector != null) ? filterSelector : filterStrategy.createSelector();
+			ImageDataEncoder encoder = new ImageDataEncoder(image, mode, palette, imageDataChunkSize, interlaceMethod, selector);
+			encoder.setCompression(compressionLevel, compressionStrategy);
+			encoder.encode(writer);
+		}
+	}
+	
 	/**
 	 * Writes the PNG data to a file.
 	 *
@@ -2213,23 +2486,81 @@ public class PortableNetworkGraphic {
 	 * If a chunk specifies an invalid value for a PNG file.
 	 */
 	private void writePngFile(String location, boolean forcePreservation) throws StreamFailureException, InvalidFormatException {
-		Chunk[] chunks = convertToChunks(forcePreservation);
-		FileOutputStream file = null;
-		while(file == null) {
-			try {
-				file = new FileOutputStream(location);
-			} catch(FileNotFoundException e) {
-				File f = new File(location);
+		if(isSourceFile(location)) {
+			detachImageData();
+		}
+		FileOutputStream file;
+		try {
+			file = new FileOutputStream(location);
+		} catch(FileNotFoundException e) {
+			throw new StreamFailureException(e.getMessage());
+		}
+		ChunkOutputStream writer = new ChunkOutputStream(file.getChannel());
+		try {
+			writePng(writer, forcePreservation);
+		} finally {
+			writer.close();
+		}
+	}
+	
+	/**
+	 * Checks whether a file is the one that the image data chunks are
+	 * mapped from.
+	 *
+	 * @param location
+	 * The name of the file.
+	 *
+	 * @return
+	 * Whether the file is the source of the mapped chunks. If this
+	 * cannot be told, it is assumed that it is.
+	 */
+	private boolean isSourceFile(String location) {
+		boolean same = false;
+		if(sourceFile != null) {
+			Path target = Paths.get(location);
+			if(Files.exists(target)) {
 				try {
-					f.createNewFile();
-				} catch(IOException ioe) {
-					throw new StreamFailureException(ioe.getMessage());
+					same = Files.isSameFile(target, Paths.get(sourceFile));
+				} catch(IOException e) {
+					same = true;
 				}
 			}
 		}
-		ChunkOutputStream writer = new ChunkOutputStream(file);
+		return same;
+	}
+	
+	/**
+	 * Writes the PNG data to a ChunkOutputStream. The stream is not
+	 * flushed.
+	 *
+	 * @param writer
+	 * The stream to write the data to.
+	 * 
+	 * @param forcePreservation
+	 * Whether or not image data should be forced to
+	 * be preserved from the original chunks.
+	 *
+	 * @throws StreamFailureException
+	 * If the stream failed.
+	 * 
+	 * @throws InvalidFormatException
+	 * If a chunk specifies an invalid value for a PNG file.
+	 */
+	private void writePng(ChunkOutputStream writer, boolean forcePreservation) throws StreamFailureException, InvalidFormatException {
+		Chunk[] leadingChunks = convertToLeadingChunks();
+		Chunk[] trailingChunks = convertToTrailingChunks();
 		writer.writeMagicNumber();
-		for(Chunk c: chunks) {
+		for(Chunk c: leadingChunks) {
+			writer.writeChunk(c);
+		}
+		if(forcePreservation || preserveImageData() || canReuseImageData()) {
+			for(ByteBuffer data: dataChunks) {
+				writer.writeChunk(Chunk.IDAT, data);
+			}
+		} else {
+			encodeImageData(writer);
+		}
+		for(Chunk c: trailingChunks) {
 			writer.writeChunk(c);
 		}
 	}
@@ -0,0 +1,32 @@
+package com.dekarrin.file.png;
+
+import com.dekarrin.graphics.Image;
+
+/**
+ * Interface for objects that wish to see a PNG's image while it is
+ * still being loaded. After each interlace pass is decoded, the
+ * listener is given a preview built from the pixels known so far,
+ * and may stop the load early if the preview is good enough.
+ */
+public interface ProgressiveListener {
+
+	/**
+	 * Receives a preview of the image after a pass. The preview is
+	 * a reduced copy of the image made of one pixel for each block
+	 * that the finished passes fill; after the first Adam7 pass it
+	 * is an eighth of the full width and height, and after the last
+	 * pass it is the full image.
+	 *
+	 * @param pass
+	 * The index of the pass that has just been decoded.
+	 *
+	 * @param preview
+	 * The preview image.
+	 *
+	 * @return
+	 * Whether loading should go on. If this is false, the rest of
+	 * the image data is skipped and the PNG's image is filled in
+	 * from the passes that have been decoded.
+	 */
+	public boolean passDecoded(int pass, Image preview);
+}
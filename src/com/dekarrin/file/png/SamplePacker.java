@@ -0,0 +1,111 @@
+package com.dekarrin.file.png;
+
+/**
+ * Moves samples between the packed form used in scanlines and arrays
+ * of ints. Samples of 8 and 16 bits take up one and two bytes, most
+ * significant byte first; smaller samples are packed into bytes from
+ * the most significant bit down. Each bit depth has its own loop so
+ * that whole rows can be converted without any per-sample branching.
+ */
+class SamplePacker {
+
+	/**
+	 * Packs samples into scanline bytes. When the samples do not end
+	 * on a byte boundary, the unused low bits of the last byte are set
+	 * to 0.
+	 *
+	 * @param samples
+	 * The samples to pack.
+	 *
+	 * @param count
+	 * The number of samples to pack.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample.
+	 *
+	 * @param data
+	 * The array to pack the samples into.
+	 *
+	 * @param offset
+	 * The index in the array of the first byte.
+	 */
+	public static void pack(int[] samples, int count, int sampleDepth, byte[] data, int offset) {
+		switch(sampleDepth) {
+			case 8:
+				for(int i = 0; i < count; i++) {
+					data[offset + i] = (byte)samples[i];
+				}
+				break;
+
+			case 16:
+				for(int i = 0, b = offset; i < count; i++, b += 2) {
+					data[b] = (byte)(samples[i] >>> 8);
+					data[b + 1] = (byte)samples[i];
+				}
+				break;
+
+			default:
+				int perByte = 8 / sampleDepth;
+				int mask = (1 << sampleDepth) - 1;
+				int b = offset;
+				for(int i = 0; i < count; i += perByte, b++) {
+					int packed = 0;
+					int shift = 8 - sampleDepth;
+					int end = Math.min(count, i + perByte);
+					for(int j = i; j < end; j++, shift -= sampleDepth) {
+						packed |= (samples[j] & mask) << shift;
+					}
+					data[b] = (byte)packed;
+				}
+				break;
+		}
+	}
+
+	/**
+	 * Unpacks samples from scanline bytes.
+	 *
+	 * @param data
+	 * The array holding the packed samples.
+	 *
+	 * @param offset
+	 * The index in the array of the first byte.
+	 *
+	 * @param count
+	 * The number of samples to unpack.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample.
+	 *
+	 * @param samples
+	 * The array to unpack the samples into.
+	 */
+	public static void unpack(byte[] data, int offset, int count, int sampleDepth, int[] samples) {
+		switch(sampleDepth) {
+			case 8:
+				for(int i = 0; i < count; i++) {
+					samples[i] = data[offset + i] & 0xff;
+				}
+				break;
+
+			case 16:
+				for(int i = 0, b = offset; i < count; i++, b += 2) {
+					samples[i] = ((data[b] & 0xff) << 8) | (data[b + 1] & 0xff);
+				}
+				break;
+
+			default:
+				int perByte = 8 / sampleDepth;
+				int mask = (1 << sampleDepth) - 1;
+				int b = offset;
+				for(int i = 0; i < count; i += perByte, b++) {
+					int packed = data[b] & 0xff;
+					int shift = 8 - sampleDepth;
+					int end = Math.min(count, i + perByte);
+					for(int j = i; j < end; j++, shift -= sampleDepth) {
+						samples[j] = (packed >>> shift) & mask;
+					}
+				}
+				break;
+		}
+	}
+}
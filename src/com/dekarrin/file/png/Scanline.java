@@ -1,13 +1,14 @@
 package com.dekarrin.file.png;
 
 import com.dekarrin.io.InvalidFormatException;
-import com.dekarrin.util.ByteComposer;
 import com.dekarrin.util.ByteHolder;
-import com.dekarrin.util.ByteParser;
 import java.util.Arrays;
 
 /**
- * A scanline from the PNG.
+ * A scanline from the PNG. Filtering depends on the unfiltered data
+ * of the scanline above, so each Scanline is given the one before it
+ * when it is created; no filtering state is shared between Scanlines
+ * of different images.
  */
 class Scanline {
 	
@@ -47,9 +48,14 @@ class Scanline {
 	public static final int ALPHA_SAMPLE = 3;
 	
 	/**
-	 * The last decoded data, used in filtering algorithms.
+	 * The scanline above this one, or null if this is the top row.
 	 */
-	private static byte[] lastData;
+	private Scanline previous;
+	
+	/**
+	 * The unfiltered bytes of this scanline, once they are known.
+	 */
+	private byte[] unfilteredData;
 	
 	/**
 	 * The number of samples that each pixel contains
@@ -95,10 +101,14 @@ class Scanline {
 	 * @param fm
 	 * The method to use when filtering.
 	 * 
+	 * @param previous
+	 * The scanline above this one, or null if this is the top row.
+	 * 
 	 * @throws InvalidFormatException
 	 * If the filter method is invalid.
 	 */
-	public Scanline(int samples, int sampleDepth, byte[] data, FilterMethod fm) throws InvalidFormatException {
+	public Scanline(int samples, int sampleDepth, byte[] data, FilterMethod fm, Scanline previous) throws InvalidFormatException {
+		this.previous = previous;
 		this.samplesPerPixel = samples;
 		this.sampleDepth = sampleDepth;
 		this.filteredData = data;
@@ -120,8 +130,12 @@ class Scanline {
 	 * 
 	 * @param fm
 	 * The method to use when filtering.
+	 * 
+	 * @param previous
+	 * The scanline above this one, or null if this is the top row.
 	 */
-	public Scanline(int samples, int sampleDepth, int width, FilterMethod fm) {
+	public Scanline(int samples, int sampleDepth, int width, FilterMethod fm, Scanline previous) {
+		this.previous = previous;
 		this.samplesPerPixel = samples;
 		this.sampleDepth = sampleDepth;
 		this.filterMethod = fm;
@@ -160,6 +174,7 @@ class Scanline {
 	 */
 	public void setSample(int pixel, int sampleType, int value) {
 		filteredData = null;
+		unfilteredData = null;
 		samples[pixel][sampleType] = value;
 	}
 	
@@ -219,18 +234,6 @@ class Scanline {
 		return samplesPerPixel;
 	}
 	
-	/**
-	 * Informs the Scanline class that the next instance will be
-	 * a top row. This resets the internal array used for storing
-	 * the last decoded data. When this is called, the next
-	 * Scanline instance will assume that it is the top row, and
-	 * any filtering that requires the use of the last decoded row
-	 * will consider the last row to be non-existent.
-	 */
-	public static void resetLines() {
-		lastData = null;
-	}
-	
 	/**
 	 * Creates the samples array for a certain amount of
 	 * pixels.
@@ -305,13 +308,13 @@ class Scanline {
 		switch(filterMethod) {
 			case ADAPTIVE:
 				filtered.add((byte)filterType.dataValue());
-				filtered.add(filterType.filter(unfiltered, lastData, getBpp()));
+				filtered.add(filterType.filter(unfiltered, priorData(), getBpp()));
 				break;
 				
 			default:
 				throw new InvalidFormatException("Bad filter method!", "png");
 		}
-		lastData = unfiltered;
+		unfilteredData = unfiltered;
 		return filtered.toArray();
 	}
 	
@@ -328,7 +331,7 @@ class Scanline {
 	 * If the filter method is wrong.
 	 */
 	private byte[] filter(byte[] unfiltered) throws InvalidFormatException {
-		return filter(unfiltered, FilterType.choose(unfiltered, lastData, getBpp()));
+		return filter(unfiltered, FilterType.choose(unfiltered, priorData(), getBpp()));
 	}
 	
 	/**
@@ -349,13 +352,13 @@ class Scanline {
 		filtered = Arrays.copyOfRange(filtered, 1, filtered.length);
 		switch(filterMethod) {
 			case ADAPTIVE:
-				unfiltered = filterType.filter(filtered, lastData, getBpp());
+				unfiltered = filterType.unfilter(filtered, priorData(), getBpp());
 				break;
 				
 			default:
 				throw new InvalidFormatException("Bad filter method!", "png");
 		}
-		lastData = unfiltered;
+		unfilteredData = unfiltered;
 		return unfiltered;
 	}
 	
@@ -493,11 +496,7 @@ class Scanline {
 	private int[] unpackMultiByteSamples(byte[] unfilteredData) {
 		int sampleWidth = sampleDepth / 8;
 		int[] samples = new int[unfilteredData.length / sampleWidth];
-		ByteParser parser = new ByteParser(unfilteredData);
-		int i = 0;
-		while(parser.remainingBlocks(sampleWidth) > 0) {
-			samples[i++] = parser.parseInt(sampleWidth);
-		}
+		SamplePacker.unpack(unfilteredData, 0, samples.length, sampleDepth, samples);
 		return samples;
 	}
 	
@@ -512,11 +511,30 @@ class Scanline {
 	 */
 	private byte[] packMultiByteSamples(int[] samples) {
 		int sampleWidth = sampleDepth / 8;
-		ByteComposer unfiltered = new ByteComposer(samples.length * sampleWidth);
-		for(int s: samples) {
-			unfiltered.composeInt(s, sampleWidth);
+		byte[] unfiltered = new byte[samples.length * sampleWidth];
+		SamplePacker.pack(samples, samples.length, sampleDepth, unfiltered, 0);
+		return unfiltered;
+	}
+	
+	/**
+	 * Gets the unfiltered bytes of the scanline above this one,
+	 * filtering it first if it has been changed.
+	 *
+	 * @return
+	 * The unfiltered bytes, or null if this is the top row.
+	 * 
+	 * @throws InvalidFormatException
+	 * If the filter method is invalid.
+	 */
+	private byte[] priorData() throws InvalidFormatException {
+		byte[] prior = null;
+		if(previous != null) {
+			if(previous.unfilteredData == null) {
+				previous.filterData();
+			}
+			prior = previous.unfilteredData;
 		}
-		return unfiltered.toArray();
+		return prior;
 	}
 	
 	/**
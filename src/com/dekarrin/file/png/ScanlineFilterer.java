@@ -0,0 +1,333 @@
+package com.dekarrin.file.png;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.dekarrin.graphics.Color;
+import com.dekarrin.graphics.Image;
+import com.dekarrin.graphics.Palette;
+
+/**
+ * Produces the filtered scanlines of an Image one row at a time.
+ * Rows are read from the image into reused buffers and filtered
+ * against the row above them, so only two rows of raw data are held
+ * at once. Since the filtering of a row depends only on that row and
+ * the one before it, a ScanlineFilterer can be started at any row,
+ * which lets several of them work on different parts of the same
+ * image.
+ *
+ * For interlaced images, the scanlines of each pass are produced in
+ * turn, and each holds only the pixels of its pass.
+ */
+class ScanlineFilterer {
+
+	/**
+	 * The number of bytes per complete pixel, rounded up to one.
+	 */
+	private int bpp;
+
+	/**
+	 * Used for looking up palette indexes.
+	 */
+	private Color color;
+
+	/**
+	 * Gives the order and size of the scanlines.
+	 */
+	private InterlaceEngine engine;
+
+	/**
+	 * The filtered current scanline.
+	 */
+	private byte[] filtered;
+
+	/**
+	 * The image being filtered.
+	 */
+	private Image image;
+
+	/**
+	 * The color mode to encode the image in.
+	 */
+	private ColorMode mode;
+
+	/**
+	 * The palette used for indexed images.
+	 */
+	private Palette palette;
+
+	/**
+	 * The palette index of each color that has been looked up,
+	 * keyed by its packed samples.
+	 */
+	private Map<Long, Integer> paletteIndexes;
+
+	/**
+	 * Holds a row of the image.
+	 */
+	private int[] pixelRow;
+
+	/**
+	 * The unfiltered previous scanline.
+	 */
+	private byte[] prior;
+
+	/**
+	 * The unfiltered current scanline.
+	 */
+	private byte[] raw;
+
+	/**
+	 * The number of bits in each sample.
+	 */
+	private int sampleDepth;
+
+	/**
+	 * The number of samples in each pixel of a scanline.
+	 */
+	private int samples;
+
+	/**
+	 * Holds the samples of a scanline before they are packed.
+	 */
+	private int[] scanlineSamples;
+
+	/**
+	 * Chooses the filter type of each scanline.
+	 */
+	private FilterSelector selector;
+
+	/**
+	 * Creates a new ScanlineFilterer that starts at the first row.
+	 *
+	 * @param image
+	 * The image to filter.
+	 *
+	 * @param mode
+	 * The color mode to encode the image in.
+	 *
+	 * @param palette
+	 * The palette to use for indexed images.
+	 *
+	 * @param interlaceMethod
+	 * The interlace method to produce the scanlines for.
+	 *
+	 * @param selector
+	 * Chooses the filter type of each scanline.
+	 */
+	public ScanlineFilterer(Image image, ColorMode mode, Palette palette, InterlaceMethod interlaceMethod, FilterSelector selector) {
+		this.image = image;
+		this.mode = mode;
+		this.palette = palette;
+		this.selector = selector;
+		sampleDepth = image.sampleDepth;
+		samples = mode.samples();
+		int bitsPerPixel = samples * sampleDepth;
+		bpp = Math.max(1, bitsPerPixel / 8);
+		engine = new InterlaceEngine(interlaceMethod, image.width, image.height, bitsPerPixel);
+		color = new Color(sampleDepth);
+		pixelRow = new int[image.width * image.getChannelSlots()];
+		scanlineSamples = new int[image.width * samples];
+		if(mode == ColorMode.INDEXED) {
+			paletteIndexes = new HashMap<Long, Integer>();
+		}
+	}
+
+	/**
+	 * Gets the total number of scanlines that will be produced.
+	 *
+	 * @return
+	 * The number of scanlines in all passes.
+	 */
+	public int getRowCount() {
+		return engine.getRowCount();
+	}
+
+	/**
+	 * Filters the next scanline.
+	 *
+	 * @return
+	 * The filtered scanline, starting with its filter-type byte.
+	 * The buffer is reused by the next call to this method.
+	 */
+	public byte[] next() {
+		advance();
+		selector.choose(raw, prior, bpp).filterScanline(raw, prior, filtered, bpp);
+		byte[] swap = prior;
+		prior = raw;
+		raw = swap;
+		return filtered;
+	}
+
+	/**
+	 * Moves to another scanline. The scanline before it is read
+	 * so that the next scanline is filtered exactly as it would be
+	 * had every scanline before it been filtered.
+	 *
+	 * @param index
+	 * The index of the scanline that the next call to next()
+	 * filters. For images that are not interlaced, this is the
+	 * image row.
+	 */
+	public void seek(int index) {
+		if(index > 0) {
+			engine.seek(index - 1);
+			advance();
+			byte[] swap = prior;
+			prior = raw;
+			raw = swap;
+		} else {
+			engine.seek(0);
+		}
+	}
+
+	/**
+	 * Moves to the next scanline and reads it into the raw buffer.
+	 * The buffers are sized for the pass, and at the start of each
+	 * pass they are cleared, so that the prior scanline is all zeros and no
+	 * padding bits are left over from the previous pass.
+	 */
+	private void advance() {
+		engine.next();
+		int length = engine.getScanlineLength();
+		if(raw == null || raw.length != length) {
+			raw = new byte[length];
+			prior = new byte[length];
+			filtered = new byte[length];
+		} else if(engine.isPassStart()) {
+			Arrays.fill(raw, (byte)0);
+			Arrays.fill(prior, (byte)0);
+		}
+		int pass = engine.getPass();
+		InterlaceMethod method = engine.getMethod();
+		deconstructRow(engine.getRow(), method.columnOffset(pass), method.columnIncrement(pass), engine.getPassWidth());
+	}
+
+	/**
+	 * Reads the pixels of a row of the image into the raw scanline
+	 * buffer. The whole row is copied out of the image at once, and
+	 * the samples of the pixels in the scanline are packed into the
+	 * buffer together.
+	 *
+	 * @param y
+	 * The row to read.
+	 *
+	 * @param x0
+	 * The column of the first pixel to read.
+	 *
+	 * @param dx
+	 * The distance between the columns of the pixels.
+	 *
+	 * @param pixels
+	 * The number of pixels to read.
+	 */
+	private void deconstructRow(int y, int x0, int dx, int pixels) {
+		image.getRow(y, pixelRow);
+		int slots = image.getChannelSlots();
+		int start = x0 * slots;
+		int step = dx * slots;
+		switch(mode) {
+			case GRAYSCALE:
+			case GRAYSCALE_ALPHA:
+				deconstructGrayscaleRow(start, step, pixels);
+				break;
+
+			case TRUECOLOR:
+			case TRUECOLOR_ALPHA:
+				deconstructColorRow(start, step, pixels);
+				break;
+
+			case INDEXED:
+				deconstructIndexedRow(start, step, pixels);
+				break;
+		}
+		SamplePacker.pack(scanlineSamples, pixels * samples, sampleDepth, raw, 1);
+	}
+
+	/**
+	 * Converts a row of the image into truecolor samples.
+	 *
+	 * @param start
+	 * The index in the row buffer of the first pixel to convert.
+	 *
+	 * @param step
+	 * The distance in the row buffer between the pixels.
+	 *
+	 * @param pixels
+	 * The number of pixels to convert.
+	 */
+	private void deconstructColorRow(int start, int step, int pixels) {
+		boolean hasAlpha = (mode == ColorMode.TRUECOLOR_ALPHA);
+		boolean imageHasAlpha = image.hasChannel(Image.ALPHA);
+		int maximum = color.maximumValue();
+		int s = 0;
+		for(int i = 0, p = start; i < pixels; i++, p += step) {
+			scanlineSamples[s++] = pixelRow[p + Image.RED];
+			scanlineSamples[s++] = pixelRow[p + Image.GREEN];
+			scanlineSamples[s++] = pixelRow[p + Image.BLUE];
+			if(hasAlpha) {
+				scanlineSamples[s++] = imageHasAlpha ? pixelRow[p + Image.ALPHA] : maximum;
+			}
+		}
+	}
+
+	/**
+	 * Converts a row of the image into grayscale samples. Color
+	 * images have their red channel used as the gray value.
+	 *
+	 * @param start
+	 * The index in the row buffer of the first pixel to convert.
+	 *
+	 * @param step
+	 * The distance in the row buffer between the pixels.
+	 *
+	 * @param pixels
+	 * The number of pixels to convert.
+	 */
+	private void deconstructGrayscaleRow(int start, int step, int pixels) {
+		boolean hasAlpha = (mode == ColorMode.GRAYSCALE_ALPHA);
+		int alphaChannel = image.hasChannel(Image.BLUE) ? Image.ALPHA : Image.GRAY_ALPHA;
+		boolean imageHasAlpha = image.hasChannel(alphaChannel);
+		int maximum = color.maximumValue();
+		int s = 0;
+		for(int i = 0, p = start; i < pixels; i++, p += step) {
+			scanlineSamples[s++] = pixelRow[p + Image.GRAY];
+			if(hasAlpha) {
+				scanlineSamples[s++] = imageHasAlpha ? pixelRow[p + alphaChannel] : maximum;
+			}
+		}
+	}
+
+	/**
+	 * Converts a row of the image into palette indexes. The index of
+	 * each distinct color is only searched for in the palette once.
+	 *
+	 * @param start
+	 * The index in the row buffer of the first pixel to convert.
+	 *
+	 * @param step
+	 * The distance in the row buffer between the pixels.
+	 *
+	 * @param pixels
+	 * The number of pixels to convert.
+	 */
+	private void deconstructIndexedRow(int start, int step, int pixels) {
+		boolean imageHasAlpha = image.hasChannel(Image.ALPHA);
+		int maximum = color.maximumValue();
+		for(int i = 0, p = start; i < pixels; i++, p += step) {
+			int r = pixelRow[p + Image.RED];
+			int g = pixelRow[p + Image.GREEN];
+			int b = pixelRow[p + Image.BLUE];
+			int a = imageHasAlpha ? pixelRow[p + Image.ALPHA] : maximum;
+			Long key = ((long)r << 48) | ((long)g << 32) | ((long)b << 16) | a;
+			Integer index = paletteIndexes.get(key);
+			if(index == null) {
+				color.setSamples(r, g, b, a);
+				index = palette.indexOf(color);
+				paletteIndexes.put(key, index);
+			}
+			scanlineSamples[i] = index;
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package com.dekarrin.file.png;
+
+/**
+ * Interface for objects that wish to receive the rows of a PNG's
+ * image data as they are decoded. Rows are delivered in the order
+ * that they are stored, already decompressed and unfiltered. For an
+ * interlaced image, this means that the rows of each pass are given
+ * in turn; each such row holds only the pixels of its pass, which are
+ * spread out across the image row as described by the interlace
+ * method.
+ */
+public interface ScanlineListener {
+
+	/**
+	 * Called when every row of a pass has been decoded. An image
+	 * that is not interlaced has a single pass.
+	 *
+	 * @param pass
+	 * The index of the pass.
+	 *
+	 * @return
+	 * Whether decoding should go on. If this is false, the rest of
+	 * the image data is skipped.
+	 */
+	public boolean passCompleted(int pass);
+
+	/**
+	 * Receives a decoded scanline. The buffer that holds the
+	 * scanline is reused for the next row, so implementations
+	 * must copy out any bytes they wish to keep before returning.
+	 *
+	 * @param pass
+	 * The interlace pass that the row belongs to.
+	 *
+	 * @param row
+	 * The index of the row within the full image.
+	 *
+	 * @param data
+	 * The buffer containing the unfiltered row.
+	 *
+	 * @param offset
+	 * The index of the first sample byte within the buffer.
+	 *
+	 * @param length
+	 * The number of sample bytes in the row.
+	 */
+	public void scanlineDecoded(int pass, int row, byte[] data, int offset, int length);
+}
@@ -9,6 +9,16 @@ import com.dekarrin.util.ByteComposer;
  */
 class SignificantBitsChunk extends Chunk {
 	
+	/**
+	 * Creates SignificantBitsChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) {
+			return new SignificantBitsChunk(data);
+		}
+	};
+	
 	/**
 	 * Significant bits in the original colors.
 	 */
@@ -125,28 +135,28 @@ class SignificantBitsChunk extends Chunk {
 			// lengths are used here, so the cases cannot correspond to to the color
 			// type constants.
 			case 1: // grayscale
-				g = parser.parseInt(1);
+				g = getParser().parseInt(1);
 				setProperties(g, g, g, 0);
 				break;
 				
 			case 2: // grayscale + alpha
-				g = parser.parseInt(1);
-				a = parser.parseInt(1);
+				g = getParser().parseInt(1);
+				a = getParser().parseInt(1);
 				setProperties(g, g, g, a);
 				break;
 				
 			case 3: // color
-				r = parser.parseInt(1);
-				g = parser.parseInt(1);
-				b = parser.parseInt(1);
+				r = getParser().parseInt(1);
+				g = getParser().parseInt(1);
+				b = getParser().parseInt(1);
 				setProperties(r, g, b, 0);
 				break;
 				
 			case 4: // color + alpha
-				r = parser.parseInt(1);
-				g = parser.parseInt(1);
-				b = parser.parseInt(1);
-				a = parser.parseInt(1);
+				r = getParser().parseInt(1);
+				g = getParser().parseInt(1);
+				b = getParser().parseInt(1);
+				a = getParser().parseInt(1);
 				setProperties(r, g, b, a);
 				break;
 		}
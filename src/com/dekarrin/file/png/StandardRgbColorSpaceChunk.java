@@ -7,6 +7,16 @@ import com.dekarrin.util.ByteComposer;
  */
 class StandardRgbColorSpaceChunk extends Chunk {
 
+	/**
+	 * Creates StandardRgbColorSpaceChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) {
+			return new StandardRgbColorSpaceChunk(data);
+		}
+	};
+	
 	/**
 	 * The rendering intent of this PNG.
 	 */
@@ -49,7 +59,7 @@ class StandardRgbColorSpaceChunk extends Chunk {
 	 * Parses the chunk data.
 	 */
 	private void parseData() {
-		RenderingIntent intent = RenderingIntent.fromData(parser.parseInt(1));
+		RenderingIntent intent = RenderingIntent.fromData(getParser().parseInt(1));
 		setProperties(intent);
 	}
 	
@@ -8,6 +8,16 @@ import com.dekarrin.util.ByteComposer;
  */
 class SuggestedPaletteChunk extends Chunk {
 	
+	/**
+	 * Creates SuggestedPaletteChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) {
+			return new SuggestedPaletteChunk(data);
+		}
+	};
+	
 	/**
 	 * The name of the palette.
 	 */
@@ -139,21 +149,21 @@ class SuggestedPaletteChunk extends Chunk {
 	 * Parses the chunk data.
 	 */
 	private void parseData() {
-		String name = parser.parseString();
-		int depth = parser.parseInt(1);
+		String name = getParser().parseString();
+		int depth = getParser().parseInt(1);
 		int sampleWidth = sampleDepth / 8;
-		int paletteCount = parser.remaining() / (sampleWidth * 4 + 2);
+		int paletteCount = getParser().remaining() / (sampleWidth * 4 + 2);
 		int[] freq = new int[paletteCount];
 		int[] red = new int[paletteCount];
 		int[] green = new int[paletteCount];
 		int[] blue = new int[paletteCount];
 		int[] alpha = new int[paletteCount];
 		for(int i = 0; i < paletteCount; i++) {
-			red[i]		=	parser.parseInt(sampleWidth);
-			green[i]	=	parser.parseInt(sampleWidth);
-			blue[i]		=	parser.parseInt(sampleWidth);
-			alpha[i]	=	parser.parseInt(sampleWidth);
-			freq[i]		=	parser.parseInt(2);
+			red[i]		=	getParser().parseInt(sampleWidth);
+			green[i]	=	getParser().parseInt(sampleWidth);
+			blue[i]		=	getParser().parseInt(sampleWidth);
+			alpha[i]	=	getParser().parseInt(sampleWidth);
+			freq[i]		=	getParser().parseInt(2);
 		}
 		setProperties(name, depth, red, green, blue, alpha, freq);
 	}
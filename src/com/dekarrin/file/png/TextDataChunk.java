@@ -7,6 +7,16 @@ import com.dekarrin.util.ByteComposer;
  */
 class TextDataChunk extends TextChunk {
 	
+	/**
+	 * Creates TextDataChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) {
+			return new TextDataChunk(data);
+		}
+	};
+	
 	/**
 	 * Creates a new TextDataChunk.
 	 *
@@ -45,8 +55,8 @@ class TextDataChunk extends TextChunk {
 	 * Turns chunk data into usable data.
 	 */
 	private void parseData() {
-		keyword	= parser.parseString();
-		text	= parser.parseRemainingString();
+		keyword	= getParser().parseString();
+		text	= getParser().parseRemainingString();
 	}
 	
 	/**
@@ -5,6 +5,16 @@ package com.dekarrin.file.png;
  */
 public class TrailerChunk extends Chunk {
 	
+	/**
+	 * Creates TrailerChunks from chunk data.
+	 */
+	public static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) {
+			return new TrailerChunk(data);
+		}
+	};
+	
 	/**
 	 * Creates a new TrailerChunk.
 	 *
@@ -10,6 +10,16 @@ import com.dekarrin.util.ByteComposer;
  */
 class TransparencyChunk extends Chunk {
 	
+	/**
+	 * Creates TransparencyChunks from chunk data.
+	 */
+	static final ChunkFactory FACTORY = new ChunkFactory() {
+		@Override
+		public Chunk createChunk(byte[] data) {
+			return new TransparencyChunk(data);
+		}
+	};
+	
 	/**
 	 * The mode of this background chunk. This is dependent on
 	 * the color type of the PNG, but the amount of data in this
@@ -179,17 +189,17 @@ class TransparencyChunk extends Chunk {
 	private void parseTransparencyProperty() {
 		switch(mode) {
 			case INDEXED:
-				setProperties(parser.parseRemainingInts(1));
+				setProperties(getParser().parseRemainingInts(1));
 				break;
 				
 			case GRAYSCALE:
 			case GRAYSCALE_ALPHA:
-				setProperties(parser.parseInt(2));
+				setProperties(getParser().parseInt(2));
 				break;
 				
 			case TRUECOLOR:
 			case TRUECOLOR_ALPHA:
-				setProperties(parser.parseInt(2), parser.parseInt(2), parser.parseInt(2));
+				setProperties(getParser().parseInt(2), getParser().parseInt(2), getParser().parseInt(2));
 				break;
 		}
 	}
@@ -0,0 +1,378 @@
+package com.dekarrin.graphics;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Stores the samples of an Image in ByteBuffers outside of the Java
+ * heap. The samples are interleaved the same way as in a
+ * PackedPixelStorage, one byte per sample for depths of 8 bits or
+ * fewer and two bytes otherwise, but the rows are spread over as many
+ * buffers as are needed, each holding a whole number of rows and no
+ * more than MAXIMUM_SEGMENT_SIZE bytes. This lets an image be larger
+ * than any single buffer or array could be.
+ *
+ * Subclasses decide where the buffers come from. Inserting rows,
+ * columns, or channels copies the samples into new buffers.
+ */
+public abstract class BufferPixelStorage implements PixelStorage {
+
+	/**
+	 * The largest number of bytes held in a single buffer.
+	 */
+	public static final int MAXIMUM_SEGMENT_SIZE = 1 << 30;
+
+	/**
+	 * The number of bytes in each sample.
+	 */
+	private int bytesPerSample;
+
+	/**
+	 * The height of this storage.
+	 */
+	private int height;
+
+	/**
+	 * Which channel slots hold a channel.
+	 */
+	private boolean[] present;
+
+	/**
+	 * The number of bytes in each row.
+	 */
+	private int rowSize;
+
+	/**
+	 * The number of rows in each buffer.
+	 */
+	private int rowsPerSegment;
+
+	/**
+	 * The number of bits used for each sample.
+	 */
+	private int sampleDepth;
+
+	/**
+	 * The buffers holding the rows.
+	 */
+	private ByteBuffer[] segments;
+
+	/**
+	 * The width of this storage.
+	 */
+	private int width;
+
+	/**
+	 * Sets up a new BufferPixelStorage with every channel slot filled.
+	 * The buffers are not created until the subclass calls
+	 * allocate().
+	 *
+	 * @param width
+	 * The width in pixels.
+	 *
+	 * @param height
+	 * The height in pixels.
+	 *
+	 * @param channelCount
+	 * The number of channels.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample. This must not be more than
+	 * 16.
+	 *
+	 * @throws InvalidBitDepthException
+	 * If the sample depth is more than 16 bits.
+	 */
+	protected BufferPixelStorage(int width, int height, int channelCount, int sampleDepth) throws InvalidBitDepthException {
+		if(sampleDepth < 1 || sampleDepth > PackedPixelStorage.MAXIMUM_SAMPLE_DEPTH) {
+			String message = String.format("Bit depth is %s; should be 1-%s!", sampleDepth, PackedPixelStorage.MAXIMUM_SAMPLE_DEPTH);
+			throw new InvalidBitDepthException(message);
+		}
+		this.width = width;
+		this.height = height;
+		this.sampleDepth = sampleDepth;
+		bytesPerSample = (sampleDepth <= 8) ? 1 : 2;
+		present = new boolean[channelCount];
+		Arrays.fill(present, true);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addChannel(int index) {
+		if(hasChannel(index)) {
+			return;
+		}
+		if(index >= present.length) {
+			int oldSlots = present.length;
+			BufferPixelStorage grown = createEmpty(width, height, index + 1, sampleDepth);
+			System.arraycopy(present, 0, grown.present, 0, oldSlots);
+			Arrays.fill(grown.present, oldSlots, grown.present.length, false);
+			int[] oldRow = new int[width * oldSlots];
+			int[] newRow = new int[width * grown.present.length];
+			for(int y = 0; y < height; y++) {
+				getRow(y, 0, width, oldRow, 0);
+				for(int x = 0; x < width; x++) {
+					System.arraycopy(oldRow, x * oldSlots, newRow, x * grown.present.length, oldSlots);
+				}
+				grown.setRow(y, 0, width, newRow, 0);
+			}
+			adopt(grown);
+		}
+		present[index] = true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PixelStorage createCompatible(int width, int height, int sampleDepth) {
+		BufferPixelStorage storage = createEmpty(width, height, present.length, sampleDepth);
+		storage.present = present.clone();
+		return storage;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getChannelSlots() {
+		return present.length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void getRow(int y, int x, int count, int[] buffer, int offset) {
+		ByteBuffer segment = segments[y / rowsPerSegment];
+		int length = count * present.length;
+		if(bytesPerSample == 1) {
+			int start = position(x, y);
+			for(int i = 0; i < length; i++) {
+				buffer[offset + i] = segment.get(start + i) & 0xff;
+			}
+		} else {
+			int start = position(x, y);
+			for(int i = 0; i < length; i++) {
+				buffer[offset + i] = segment.getShort(start + i * 2) & 0xffff;
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getSample(int channel, int x, int y) {
+		if(!hasChannel(channel)) {
+			return 0;
+		}
+		ByteBuffer segment = segments[y / rowsPerSegment];
+		int i = position(x, y) + channel * bytesPerSample;
+		if(bytesPerSample == 1) {
+			return segment.get(i) & 0xff;
+		} else {
+			return segment.getShort(i) & 0xffff;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getSampleDepth() {
+		return sampleDepth;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasChannel(int index) {
+		return (index >= 0 && index < present.length && present[index]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void insertColumn(int index) {
+		int newWidth = Math.max(width + 1, index + 1);
+		int before = Math.min(index, width);
+		int after = width - before;
+		int gap = newWidth - width;
+		int slots = present.length;
+		BufferPixelStorage grown = createEmpty(newWidth, height, slots, sampleDepth);
+		grown.present = present.clone();
+		int[] row = new int[width * slots];
+		for(int y = 0; y < height; y++) {
+			getRow(y, 0, width, row, 0);
+			grown.setRow(y, 0, before, row, 0);
+			grown.setRow(y, before + gap, after, row, before * slots);
+		}
+		adopt(grown);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void insertRow(int index) {
+		int newHeight = Math.max(height + 1, index + 1);
+		int gap = newHeight - height;
+		BufferPixelStorage grown = createEmpty(width, newHeight, present.length, sampleDepth);
+		grown.present = present.clone();
+		int[] row = new int[width * present.length];
+		for(int y = 0; y < height; y++) {
+			getRow(y, 0, width, row, 0);
+			int target = (y < index) ? y : y + gap;
+			grown.setRow(target, 0, width, row, 0);
+		}
+		adopt(grown);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setRow(int y, int x, int count, int[] buffer, int offset) {
+		ByteBuffer segment = segments[y / rowsPerSegment];
+		int slots = present.length;
+		int start = position(x, y);
+		for(int c = 0; c < slots; c++) {
+			if(!present[c]) {
+				continue;
+			}
+			if(bytesPerSample == 1) {
+				for(int i = c; i < count * slots; i += slots) {
+					segment.put(start + i, (byte)buffer[offset + i]);
+				}
+			} else {
+				for(int i = c; i < count * slots; i += slots) {
+					segment.putShort(start + i * 2, (short)buffer[offset + i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setSample(int channel, int x, int y, int value) {
+		if(!hasChannel(channel)) {
+			return;
+		}
+		ByteBuffer segment = segments[y / rowsPerSegment];
+		int i = position(x, y) + channel * bytesPerSample;
+		if(bytesPerSample == 1) {
+			segment.put(i, (byte)value);
+		} else {
+			segment.putShort(i, (short)value);
+		}
+	}
+
+	/**
+	 * Creates the buffers for the current size. Subclasses must call
+	 * this once from their constructors.
+	 */
+	protected void allocate() {
+		long length = (long)width * present.length * bytesPerSample;
+		if(length > MAXIMUM_SEGMENT_SIZE) {
+			throw new IllegalArgumentException("Image is too wide for its rows to fit in a buffer");
+		}
+		rowSize = (int)length;
+		rowsPerSegment = (rowSize == 0) ? Math.max(1, height) : Math.max(1, MAXIMUM_SEGMENT_SIZE / rowSize);
+		int count = (height + rowsPerSegment - 1) / rowsPerSegment;
+		int[] sizes = new int[count];
+		for(int i = 0; i < count; i++) {
+			int rows = Math.min(rowsPerSegment, height - i * rowsPerSegment);
+			sizes[i] = rows * rowSize;
+		}
+		segments = createSegments(sizes);
+	}
+
+	/**
+	 * Creates a new, empty storage of the same kind as this one. The
+	 * new storage must have been allocated.
+	 *
+	 * @param width
+	 * The width in pixels.
+	 *
+	 * @param height
+	 * The height in pixels.
+	 *
+	 * @param channelCount
+	 * The number of channel slots.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample.
+	 *
+	 * @return
+	 * The new storage.
+	 */
+	protected abstract BufferPixelStorage createEmpty(int width, int height, int channelCount, int sampleDepth);
+
+	/**
+	 * Creates the buffers that hold the rows. Every new buffer must
+	 * be filled with zeros.
+	 *
+	 * @param sizes
+	 * The size in bytes of each buffer.
+	 *
+	 * @return
+	 * The buffers, in the same order as the sizes.
+	 */
+	protected abstract ByteBuffer[] createSegments(int[] sizes);
+
+	/**
+	 * Takes over the buffers and layout of another storage.
+	 *
+	 * @param other
+	 * The storage whose buffers are to be used from now on.
+	 */
+	private void adopt(BufferPixelStorage other) {
+		width = other.width;
+		height = other.height;
+		present = other.present;
+		rowSize = other.rowSize;
+		rowsPerSegment = other.rowsPerSegment;
+		segments = other.segments;
+	}
+
+	/**
+	 * Gets the position of a pixel in the buffer that holds its row.
+	 *
+	 * @param x
+	 * The x-coordinate of the pixel.
+	 *
+	 * @param y
+	 * The y-coordinate of the pixel.
+	 *
+	 * @return
+	 * The index of the first byte of the pixel.
+	 */
+	private int position(int x, int y) {
+		int row = y % rowsPerSegment;
+		int i = row * rowSize + x * present.length * bytesPerSample;
+		return i;
+	}
+}
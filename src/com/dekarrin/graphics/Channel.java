@@ -53,7 +53,7 @@ public class Channel {
 			}
 		} else {
 			addRow();
-			for(int i = height; i > index; i--) {
+			for(int i = height - 1; i > index; i--) {
 				pixels[i] = pixels[i-1];
 			}
 			initializeRow(index);
@@ -85,7 +85,7 @@ public class Channel {
 		} else {
 			addColumn();
 			for(int i = 0; i < height; i++) {
-				for(int j = width; j > index; j--) {
+				for(int j = width - 1; j > index; j--) {
 					pixels[i][j] = pixels[i][j-1];
 				}
 			}
@@ -133,6 +133,64 @@ public class Channel {
 		pixels[y][x] = value;
 	}
 	
+	/**
+	 * Copies part of a row of this Channel into a buffer.
+	 *
+	 * @param y
+	 * The y-coordinate of the row.
+	 *
+	 * @param x
+	 * The x-coordinate of the first value to copy.
+	 *
+	 * @param count
+	 * The number of values to copy.
+	 *
+	 * @param buffer
+	 * The buffer to copy the values into.
+	 *
+	 * @param offset
+	 * The index in the buffer of the first value.
+	 *
+	 * @param stride
+	 * The distance in the buffer between consecutive values.
+	 */
+	public void getRow(int y, int x, int count, int[] buffer, int offset, int stride) {
+		int[] row = pixels[y];
+		for(int i = 0; i < count; i++) {
+			buffer[offset] = row[x + i];
+			offset += stride;
+		}
+	}
+	
+	/**
+	 * Copies values from a buffer into part of a row of this Channel.
+	 *
+	 * @param y
+	 * The y-coordinate of the row.
+	 *
+	 * @param x
+	 * The x-coordinate of the first value to set.
+	 *
+	 * @param count
+	 * The number of values to set.
+	 *
+	 * @param buffer
+	 * The buffer to copy the values from.
+	 *
+	 * @param offset
+	 * The index in the buffer of the first value.
+	 *
+	 * @param stride
+	 * The distance in the buffer between consecutive values.
+	 */
+	public void setRow(int y, int x, int count, int[] buffer, int offset, int stride) {
+		int[] row = pixels[y];
+		for(int i = 0; i < count; i++) {
+			row[x + i] = buffer[offset];
+			offset += stride;
+		}
+	}
+	
 	/**
 	 * Makes the pixel array one row larger.
 	 */
@@ -0,0 +1,212 @@
+package com.dekarrin.graphics;
+
+import java.util.Arrays;
+
+/**
+ * Stores the samples of an Image as a separate Channel for each
+ * channel. Any sample depth can be held, and rows and columns can be
+ * inserted cheaply, but every sample takes up a full int.
+ */
+public class ChannelPixelStorage implements PixelStorage {
+
+	/**
+	 * Creates ChannelPixelStorages.
+	 */
+	public static final PixelStorageFactory FACTORY = new PixelStorageFactory() {
+		@Override
+		public PixelStorage createStorage(int width, int height, int channelCount, int sampleDepth) {
+			return new ChannelPixelStorage(width, height, channelCount, sampleDepth);
+		}
+	};
+
+	/**
+	 * The Channels containing the samples themselves.
+	 */
+	private Channel[] channels;
+
+	/**
+	 * The height of this storage.
+	 */
+	private int height;
+
+	/**
+	 * The number of bits used for each sample.
+	 */
+	private int sampleDepth;
+
+	/**
+	 * The width of this storage.
+	 */
+	private int width;
+
+	/**
+	 * Creates a new ChannelPixelStorage with every channel slot
+	 * filled.
+	 *
+	 * @param width
+	 * The width in pixels.
+	 *
+	 * @param height
+	 * The height in pixels.
+	 *
+	 * @param channelCount
+	 * The number of channels.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample.
+	 */
+	public ChannelPixelStorage(int width, int height, int channelCount, int sampleDepth) {
+		this.width = width;
+		this.height = height;
+		this.sampleDepth = sampleDepth;
+		channels = new Channel[channelCount];
+		for(int i = 0; i < channelCount; i++) {
+			channels[i] = new Channel(width, height);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addChannel(int index) {
+		if(!hasChannel(index)) {
+			if(channels.length < index + 1) {
+				channels = Arrays.copyOf(channels, index + 1);
+			}
+			channels[index] = new Channel(width, height);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PixelStorage createCompatible(int width, int height, int sampleDepth) {
+		ChannelPixelStorage storage = new ChannelPixelStorage(width, height, 0, sampleDepth);
+		for(int i = 0; i < channels.length; i++) {
+			if(channels[i] != null) {
+				storage.addChannel(i);
+			}
+		}
+		return storage;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getChannelSlots() {
+		return channels.length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void getRow(int y, int x, int count, int[] buffer, int offset) {
+		int slots = channels.length;
+		for(int c = 0; c < slots; c++) {
+			if(channels[c] != null) {
+				channels[c].getRow(y, x, count, buffer, offset + c, slots);
+			} else {
+				for(int i = 0; i < count; i++) {
+					buffer[offset + c + i * slots] = 0;
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getSample(int channel, int x, int y) {
+		if(hasChannel(channel)) {
+			return channels[channel].valueAt(x, y);
+		} else {
+			return 0;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getSampleDepth() {
+		return sampleDepth;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasChannel(int index) {
+		return (index >= 0 && index < channels.length && channels[index] != null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void insertColumn(int index) {
+		for(Channel c: channels) {
+			if(c != null) {
+				c.insertColumn(index);
+			}
+		}
+		width = Math.max(width + 1, index + 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void insertRow(int index) {
+		for(Channel c: channels) {
+			if(c != null) {
+				c.insertRow(index);
+			}
+		}
+		height = Math.max(height + 1, index + 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setRow(int y, int x, int count, int[] buffer, int offset) {
+		int slots = channels.length;
+		for(int c = 0; c < slots; c++) {
+			if(channels[c] != null) {
+				channels[c].setRow(y, x, count, buffer, offset + c, slots);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setSample(int channel, int x, int y, int value) {
+		if(hasChannel(channel)) {
+			channels[channel].setValueAt(x, y, value);
+		}
+	}
+}
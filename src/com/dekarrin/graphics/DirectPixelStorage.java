@@ -0,0 +1,67 @@
+package com.dekarrin.graphics;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stores the samples of an Image in direct ByteBuffers. The samples
+ * take up memory outside of the Java heap, so very large images do
+ * not need a large heap and are never moved or scanned by the garbage
+ * collector. The memory is given back once the storage is no longer
+ * reachable and has been collected.
+ */
+public class DirectPixelStorage extends BufferPixelStorage {
+
+	/**
+	 * Creates DirectPixelStorages.
+	 */
+	public static final PixelStorageFactory FACTORY = new PixelStorageFactory() {
+		@Override
+		public PixelStorage createStorage(int width, int height, int channelCount, int sampleDepth) {
+			return new DirectPixelStorage(width, height, channelCount, sampleDepth);
+		}
+	};
+
+	/**
+	 * Creates a new DirectPixelStorage with every channel slot filled.
+	 *
+	 * @param width
+	 * The width in pixels.
+	 *
+	 * @param height
+	 * The height in pixels.
+	 *
+	 * @param channelCount
+	 * The number of channels.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample. This must not be more than
+	 * 16.
+	 *
+	 * @throws InvalidBitDepthException
+	 * If the sample depth is more than 16 bits.
+	 */
+	public DirectPixelStorage(int width, int height, int channelCount, int sampleDepth) throws InvalidBitDepthException {
+		super(width, height, channelCount, sampleDepth);
+		allocate();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected BufferPixelStorage createEmpty(int width, int height, int channelCount, int sampleDepth) {
+		return new DirectPixelStorage(width, height, channelCount, sampleDepth);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected ByteBuffer[] createSegments(int[] sizes) {
+		ByteBuffer[] segments = new ByteBuffer[sizes.length];
+		for(int i = 0; i < sizes.length; i++) {
+			segments[i] = ByteBuffer.allocateDirect(sizes[i]);
+		}
+		return segments;
+	}
+}
@@ -2,14 +2,18 @@
 package com.dekarrin.graphics;
 
 /**
- * Holds an image as an array of samples.
+ * Holds an image as an array of samples. The samples themselves are
+ * kept in a PixelStorage; by default each channel is a separate
+ * Channel, but a more compact storage can be given to the constructor,
+ * including storage outside of the Java heap such as a
+ * DirectPixelStorage or a MappedPixelStorage.
  */
 public class Image {
 	
 	/**
-	 * The Channels containing the Samples themselves.
+	 * Holds the samples themselves.
 	 */
-	private Channel[] channels;
+	private PixelStorage storage;
 	
 	/**
 	 * The number of bits used for each sample.
@@ -74,7 +78,7 @@ public class Image {
 		this.sampleDepth = sampleDepth;
 		this.width = width;
 		this.height = height;
-		createChannels(width, height, 3);
+		storage = new ChannelPixelStorage(width, height, 3, sampleDepth);
 	}
 	
 	/**
@@ -99,7 +103,7 @@ public class Image {
 		this.width = width;
 		this.height = height;
 		int channels = withAlpha ? 4 : 3;
-		createChannels(width, height, channels);
+		storage = new ChannelPixelStorage(width, height, channels, sampleDepth);
 	}
 	
 	/**
@@ -128,7 +132,23 @@ public class Image {
 		this.width = width;
 		this.height = height;
 		int channels = withAlpha ? withColor ? 4 : 2 : withColor ? 3 : 1;
-		createChannels(width, height, channels);
+		storage = new ChannelPixelStorage(width, height, channels, sampleDepth);
+	}
+	
+	/**
+	 * Creates a new image over existing storage. The size and sample
+	 * depth of the image are taken from the storage, and the channels
+	 * that the storage has decide whether the image is in color and
+	 * whether it has alpha.
+	 *
+	 * @param storage
+	 * The storage that holds the samples.
+	 */
+	public Image(PixelStorage storage) {
+		this.storage = storage;
+		this.sampleDepth = storage.getSampleDepth();
+		this.width = storage.getWidth();
+		this.height = storage.getHeight();
 	}
 	
 	/**
@@ -142,20 +162,15 @@ public class Image {
 	 * up to the specified index.
 	 */
 	public void insertRow(int index) {
-		for(Channel c: channels) {
-			c.insertRow(index);
-			height = c.height;
-		}
+		storage.insertRow(index);
+		height = storage.getHeight();
 	}
 	
 	/**
 	 * Inserts an empty row at the bottom of this image.
 	 */
 	public void insertRow() {
-		for(Channel c: channels) {
-			c.insertRow();
-			height = c.height;
-		}
+		insertRow(height);
 	}
 	
 	/**
@@ -169,20 +184,15 @@ public class Image {
 	 * inserted to come up to the specified index.
 	 */
 	public void insertColumn(int index) {
-		for(Channel c: channels) {
-			c.insertColumn(index);
-			width = c.width;
-		}
+		storage.insertColumn(index);
+		width = storage.getWidth();
 	}
 	
 	/**
 	 * Inserts an empty row at the right of this image.
 	 */
 	public void insertColumn() {
-		for(Channel c: channels) {
-			c.insertColumn();
-			width = c.width;
-		}
+		insertColumn(width);
 	}
 	
 	/**
@@ -193,13 +203,7 @@ public class Image {
 	 * The index of the channel to add.
 	 */
 	public void addChannel(int index) {
-		if(!hasChannel(index)) {
-			if(channels.length < index+1) {
-				Channel[] newChannels = java.util.Arrays.copyOfRange(channels, 0, index+1);
-				channels = newChannels;
-			}
-			channels[index] = new Channel(width, height);
-		}
+		storage.addChannel(index);
 	}
 	
 	/**
@@ -220,7 +224,7 @@ public class Image {
 	 * The value.
 	 */
 	public int valueAt(int channel, int x, int y) {
-		return channels[channel].valueAt(x, y);
+		return storage.getSample(channel, x, y);
 	}
 	
 	/**
@@ -243,9 +247,7 @@ public class Image {
 	 * The value that it is to be set to.
 	 */
 	public void setValueAt(int channel, int x, int y, int value) {
-		if(hasChannel(channel)) {
-			channels[channel].setValueAt(x, y, value);
-		}
+		storage.setSample(channel, x, y, value);
 	}
 	
 	/**
@@ -256,7 +258,7 @@ public class Image {
 	 */
 	public int channelCount() {
 		int chans = 0;
-		for(int i = 0; i < channels.length; i++) {
+		for(int i = 0; i < storage.getChannelSlots(); i++) {
 			if(hasChannel(i)) {
 				chans++;
 			}
@@ -271,11 +273,7 @@ public class Image {
 	 * The index of the channel to check for.
 	 */
 	public boolean hasChannel(int index) {
-		if(channels.length > index && channels[index] != null) {
-			return true;
-		} else {
-			return false;
-		}
+		return storage.hasChannel(index);
 	}
 	
 	/**
@@ -372,39 +370,126 @@ public class Image {
 	}
 	
 	/**
-	 * Creates the underlying Channels that make up this image.
+	 * Changes the bit depth of the samples. Each sample is scaled so
+	 * that it keeps the same fraction of the maximum value. The
+	 * samples are moved into new storage of the same kind as the
+	 * current storage.
+	 * 
+	 * @param sampleDepth
+	 * The bit depth to change it to.
+	 */
+	public void changeBitDepth(int sampleDepth) {
+		double oldMaximum = Math.pow(2, this.sampleDepth) - 1;
+		double newMaximum = Math.pow(2, sampleDepth) - 1;
+		int[] table = new int[(int)oldMaximum + 1];
+		for(int i = 0; i < table.length; i++) {
+			table[i] = (int)((i / oldMaximum) * newMaximum);
+		}
+		PixelStorage converted = storage.createCompatible(width, height, sampleDepth);
+		int[] row = new int[width * storage.getChannelSlots()];
+		for(int y = 0; y < height; y++) {
+			storage.getRow(y, 0, width, row, 0);
+			for(int i = 0; i < row.length; i++) {
+				row[i] = table[row[i]];
+			}
+			converted.setRow(y, 0, width, row, 0);
+		}
+		storage = converted;
+		this.sampleDepth = sampleDepth;
+	}
+	
+	/**
+	 * Gets the storage that holds the samples of this image.
 	 *
-	 * @param width
-	 * How wide the channels should be.
+	 * @return
+	 * The storage.
+	 */
+	public PixelStorage getStorage() {
+		return storage;
+	}
+	
+	/**
+	 * Copies a row of samples into a buffer. The samples of each pixel
+	 * are stored together in channel order, with a value for every
+	 * slot up to the highest channel; missing channels are read as 0.
 	 *
-	 * @param height
-	 * How tall the channels should be.
+	 * @param y
+	 * The y value of the row.
+	 *
+	 * @param buffer
+	 * The buffer to copy the samples into. It must have room for
+	 * width * getChannelSlots() samples.
+	 */
+	public void getRow(int y, int[] buffer) {
+		storage.getRow(y, 0, width, buffer, 0);
+	}
+	
+	/**
+	 * Copies part of a row of samples into a buffer.
+	 *
+	 * @param y
+	 * The y value of the row.
+	 *
+	 * @param x
+	 * The x value of the first pixel to copy.
 	 *
 	 * @param count
-	 * How many channels should be created.
+	 * The number of pixels to copy.
+	 *
+	 * @param buffer
+	 * The buffer to copy the samples into.
+	 *
+	 * @param offset
+	 * The index in the buffer of the first sample.
 	 */
-	private void createChannels(int width, int height, int count) {
-		channels = new Channel[count];
-		for(int i = 0; i < count; i++) {
-			channels[i] = new Channel(width, height);
-		}
+	public void getRow(int y, int x, int count, int[] buffer, int offset) {
+		storage.getRow(y, x, count, buffer, offset);
 	}
 	
 	/**
-	 * Changes the bit depth of the samples.
-	 * 
-	 * @param sampleDepth
-	 * The bit depth to change it to.
+	 * Gets the number of samples that each pixel takes up in a row
+	 * buffer.
+	 *
+	 * @return
+	 * The number of channel slots.
 	 */
-	public void changeBitDepth(int sampleDepth) {
-		Color c;
-		for(int x = 0; x < width; x++) {
-			for(int y = 0; y < height; y++) {
-				c = getColorAt(x, y);
-				c.changeBitDepth(sampleDepth);
-				setColorAt(x, y, c);
-			}
-		}
-		this.sampleDepth = sampleDepth;
+	public int getChannelSlots() {
+		return storage.getChannelSlots();
+	}
+	
+	/**
+	 * Copies a row of samples from a buffer. The buffer is laid out
+	 * as for getRow(); values for missing channels are ignored.
+	 *
+	 * @param y
+	 * The y value of the row.
+	 *
+	 * @param buffer
+	 * The buffer to copy the samples from.
+	 */
+	public void setRow(int y, int[] buffer) {
+		storage.setRow(y, 0, width, buffer, 0);
+	}
+	
+	/**
+	 * Copies samples from a buffer into part of a row.
+	 *
+	 * @param y
+	 * The y value of the row.
+	 *
+	 * @param x
+	 * The x value of the first pixel to set.
+	 *
+	 * @param count
+	 * The number of pixels to set.
+	 *
+	 * @param buffer
+	 * The buffer to copy the samples from.
+	 *
+	 * @param offset
+	 * The index in the buffer of the first sample.
+	 */
+	public void setRow(int y, int x, int count, int[] buffer, int offset) {
+		storage.setRow(y, x, count, buffer, offset);
 	}
-}
\ No newline at end of file
+}
@@ -3,7 +3,10 @@ package com.dekarrin.graphics;
 import com.dekarrin.util.ArrayHelper;
 
 /**
- * Performs manipulations on an image.
+ * Performs manipulations on an image. Pixels are visited a row at a
+ * time from top to bottom, the order that every kind of PixelStorage
+ * lays its samples out in, so that storage mapped from a file is read
+ * through once instead of being paged in and out for every column.
  */
 public class ImageManipulator {
 
@@ -49,8 +52,8 @@ public class ImageManipulator {
 	 */
 	public void replaceColor(Color replacedColor, Color newColor, double tolerance) {
 		Color c;
-		for(int x = 0; x < image.width; x++) {
-			for(int y = 0; y < image.height; y++) {
+		for(int y = 0; y < image.height; y++) {
+			for(int x = 0; x < image.width; x++) {
 				c = image.getColorAt(x, y);
 				if(c.equals(replacedColor, tolerance)) {
 					image.setColorAt(x, y, newColor);
@@ -68,8 +71,8 @@ public class ImageManipulator {
 	public void monochrome(Color monoColor) {
 		double hue = monoColor.hue();
 		Color c;
-		for(int x = 0; x < image.width; x++) {
-			for(int y = 0; y < image.height; y++) {
+		for(int y = 0; y < image.height; y++) {
+			for(int x = 0; x < image.width; x++) {
 				c = image.getColorAt(x, y);
 				c.setHue(hue);
 				image.setColorAt(x, y, c);
@@ -82,8 +85,8 @@ public class ImageManipulator {
 	 */
 	public void desaturate() {
 		Color c;
-		for(int x = 0; x < image.width; x++) {
-			for(int y = 0; y < image.height; y++) {
+		for(int y = 0; y < image.height; y++) {
+			for(int x = 0; x < image.width; x++) {
 				c = image.getColorAt(x, y);
 				c.setSaturation(0.0);
 				image.setColorAt(x, y, c);
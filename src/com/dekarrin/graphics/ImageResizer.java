@@ -50,7 +50,8 @@ public class ImageResizer {
 	 */
 	public void scale(double factor) {
 		PointTransformer pt = new PointTransformer(2);
-		Image scaled = new Image((int)(image.width*factor), (int)(image.height*factor), image.sampleDepth);
+		PixelStorage storage = image.getStorage().createCompatible((int)(image.width*factor), (int)(image.height*factor), image.sampleDepth);
+		Image scaled = new Image(storage);
 		for(int y = 0; y < image.height; y++) {
 			for(int x = 0; x < image.width; x++) {
 				Point pixel = new Point(2, x, y);
@@ -0,0 +1,154 @@
+package com.dekarrin.graphics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Stores the samples of an Image in a memory-mapped temporary file.
+ * The operating system pages the samples in and out as they are used,
+ * so an image can be larger than the memory available to the program.
+ * Access is fastest when rows are worked on in order from top to
+ * bottom.
+ *
+ * The file is deleted as soon as it has been mapped where the
+ * operating system allows it, and otherwise when the program exits.
+ */
+public class MappedPixelStorage extends BufferPixelStorage {
+
+	/**
+	 * Creates MappedPixelStorages in the default temporary directory.
+	 */
+	public static final PixelStorageFactory FACTORY = factory(null);
+
+	/**
+	 * The directory that the file is created in, or null for the
+	 * default temporary directory.
+	 */
+	private File directory;
+
+	/**
+	 * Creates a new MappedPixelStorage with every channel slot filled.
+	 * The file is created in the default temporary directory.
+	 *
+	 * @param width
+	 * The width in pixels.
+	 *
+	 * @param height
+	 * The height in pixels.
+	 *
+	 * @param channelCount
+	 * The number of channels.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample. This must not be more than
+	 * 16.
+	 *
+	 * @throws InvalidBitDepthException
+	 * If the sample depth is more than 16 bits.
+	 *
+	 * @throws StorageFailureException
+	 * If the file cannot be created or mapped.
+	 */
+	public MappedPixelStorage(int width, int height, int channelCount, int sampleDepth) throws InvalidBitDepthException, StorageFailureException {
+		this(width, height, channelCount, sampleDepth, null);
+	}
+
+	/**
+	 * Creates a new MappedPixelStorage with every channel slot filled.
+	 *
+	 * @param width
+	 * The width in pixels.
+	 *
+	 * @param height
+	 * The height in pixels.
+	 *
+	 * @param channelCount
+	 * The number of channels.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample. This must not be more than
+	 * 16.
+	 *
+	 * @param directory
+	 * The directory to create the file in, or null for the default
+	 * temporary directory.
+	 *
+	 * @throws InvalidBitDepthException
+	 * If the sample depth is more than 16 bits.
+	 *
+	 * @throws StorageFailureException
+	 * If the file cannot be created or mapped.
+	 */
+	public MappedPixelStorage(int width, int height, int channelCount, int sampleDepth, File directory) throws InvalidBitDepthException, StorageFailureException {
+		super(width, height, channelCount, sampleDepth);
+		this.directory = directory;
+		allocate();
+	}
+
+	/**
+	 * Gets a factory that creates MappedPixelStorages with their files
+	 * in a specific directory.
+	 *
+	 * @param directory
+	 * The directory to create the files in, or null for the default
+	 * temporary directory.
+	 *
+	 * @return
+	 * The factory.
+	 */
+	public static PixelStorageFactory factory(final File directory) {
+		PixelStorageFactory factory = new PixelStorageFactory() {
+			@Override
+			public PixelStorage createStorage(int width, int height, int channelCount, int sampleDepth) {
+				return new MappedPixelStorage(width, height, channelCount, sampleDepth, directory);
+			}
+		};
+		return factory;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected BufferPixelStorage createEmpty(int width, int height, int channelCount, int sampleDepth) {
+		return new MappedPixelStorage(width, height, channelCount, sampleDepth, directory);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * All of the buffers are mapped from one new file, which is
+	 * deleted once they have been mapped.
+	 */
+	@Override
+	protected ByteBuffer[] createSegments(int[] sizes) {
+		ByteBuffer[] segments = new ByteBuffer[sizes.length];
+		try {
+			File file = File.createTempFile("pixels", ".tmp", directory);
+			file.deleteOnExit();
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				long total = 0;
+				for(int size: sizes) {
+					total += size;
+				}
+				raf.setLength(total);
+				FileChannel channel = raf.getChannel();
+				long offset = 0;
+				for(int i = 0; i < sizes.length; i++) {
+					segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset, sizes[i]);
+					offset += sizes[i];
+				}
+			} finally {
+				raf.close();
+			}
+			file.delete();
+		} catch(IOException e) {
+			throw new StorageFailureException("Could not map pixel storage file", e);
+		}
+		return segments;
+	}
+}
@@ -0,0 +1,365 @@
+package com.dekarrin.graphics;
+
+import java.util.Arrays;
+
+/**
+ * Stores the samples of an Image in a single interleaved array. The
+ * samples of each pixel are kept together, one for every channel
+ * slot, and rows follow each other from top to bottom with no padding.
+ * Samples of 8 bits or fewer are held in a byte array, and samples of
+ * up to 16 bits in a short array, so an 8-bit RGBA image takes four
+ * bytes per pixel.
+ *
+ * The sample for channel c of the pixel at (x, y) is at index
+ * y * rowStride + x * pixelStride + c. Inserting rows, columns, or
+ * channels copies the whole array.
+ */
+public class PackedPixelStorage implements PixelStorage {
+
+	/**
+	 * The largest sample depth that can be stored.
+	 */
+	public static final int MAXIMUM_SAMPLE_DEPTH = 16;
+
+	/**
+	 * Creates PackedPixelStorages.
+	 */
+	public static final PixelStorageFactory FACTORY = new PixelStorageFactory() {
+		@Override
+		public PixelStorage createStorage(int width, int height, int channelCount, int sampleDepth) {
+			return new PackedPixelStorage(width, height, channelCount, sampleDepth);
+		}
+	};
+
+	/**
+	 * The samples, when they are 8 bits or fewer.
+	 */
+	private byte[] bytes;
+
+	/**
+	 * The height of this storage.
+	 */
+	private int height;
+
+	/**
+	 * Which channel slots hold a channel.
+	 */
+	private boolean[] present;
+
+	/**
+	 * The number of bits used for each sample.
+	 */
+	private int sampleDepth;
+
+	/**
+	 * The samples, when they are more than 8 bits.
+	 */
+	private short[] shorts;
+
+	/**
+	 * The width of this storage.
+	 */
+	private int width;
+
+	/**
+	 * Creates a new PackedPixelStorage with every channel slot filled.
+	 *
+	 * @param width
+	 * The width in pixels.
+	 *
+	 * @param height
+	 * The height in pixels.
+	 *
+	 * @param channelCount
+	 * The number of channels.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample. This must not be more than
+	 * 16.
+	 *
+	 * @throws InvalidBitDepthException
+	 * If the sample depth is more than 16 bits.
+	 */
+	public PackedPixelStorage(int width, int height, int channelCount, int sampleDepth) throws InvalidBitDepthException {
+		if(sampleDepth < 1 || sampleDepth > MAXIMUM_SAMPLE_DEPTH) {
+			String message = String.format("Bit depth is %s; should be 1-%s!", sampleDepth, MAXIMUM_SAMPLE_DEPTH);
+			throw new InvalidBitDepthException(message);
+		}
+		this.width = width;
+		this.height = height;
+		this.sampleDepth = sampleDepth;
+		present = new boolean[channelCount];
+		Arrays.fill(present, true);
+		allocate(width, height, channelCount);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addChannel(int index) {
+		if(hasChannel(index)) {
+			return;
+		}
+		if(index >= present.length) {
+			int oldSlots = present.length;
+			int newSlots = index + 1;
+			byte[] oldBytes = bytes;
+			short[] oldShorts = shorts;
+			allocate(width, height, newSlots);
+			int pixels = width * height;
+			for(int p = 0; p < pixels; p++) {
+				if(bytes != null) {
+					System.arraycopy(oldBytes, p * oldSlots, bytes, p * newSlots, oldSlots);
+				} else {
+					System.arraycopy(oldShorts, p * oldSlots, shorts, p * newSlots, oldSlots);
+				}
+			}
+			present = Arrays.copyOf(present, newSlots);
+		}
+		present[index] = true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PixelStorage createCompatible(int width, int height, int sampleDepth) {
+		PackedPixelStorage storage = new PackedPixelStorage(width, height, present.length, sampleDepth);
+		storage.present = present.clone();
+		return storage;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getChannelSlots() {
+		return present.length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Gets the distance between the first samples of two neighboring
+	 * pixels.
+	 *
+	 * @return
+	 * The pixel stride in samples.
+	 */
+	public int getPixelStride() {
+		return present.length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void getRow(int y, int x, int count, int[] buffer, int offset) {
+		int start = index(0, x, y);
+		int length = count * present.length;
+		if(bytes != null) {
+			for(int i = 0; i < length; i++) {
+				buffer[offset + i] = bytes[start + i] & 0xff;
+			}
+		} else {
+			for(int i = 0; i < length; i++) {
+				buffer[offset + i] = shorts[start + i] & 0xffff;
+			}
+		}
+	}
+
+	/**
+	 * Gets the distance between the first samples of two neighboring
+	 * rows.
+	 *
+	 * @return
+	 * The row stride in samples.
+	 */
+	public int getRowStride() {
+		return width * present.length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getSample(int channel, int x, int y) {
+		if(!hasChannel(channel)) {
+			return 0;
+		}
+		int i = index(channel, x, y);
+		if(bytes != null) {
+			return bytes[i] & 0xff;
+		} else {
+			return shorts[i] & 0xffff;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getSampleDepth() {
+		return sampleDepth;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasChannel(int index) {
+		return (index >= 0 && index < present.length && present[index]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void insertColumn(int index) {
+		int oldWidth = width;
+		int newWidth = Math.max(width + 1, index + 1);
+		int slots = present.length;
+		byte[] oldBytes = bytes;
+		short[] oldShorts = shorts;
+		allocate(newWidth, height, slots);
+		int before = Math.min(index, oldWidth) * slots;
+		int after = (oldWidth * slots) - before;
+		int gap = (newWidth - oldWidth) * slots;
+		for(int y = 0; y < height; y++) {
+			int from = y * oldWidth * slots;
+			int to = y * newWidth * slots;
+			if(bytes != null) {
+				System.arraycopy(oldBytes, from, bytes, to, before);
+				System.arraycopy(oldBytes, from + before, bytes, to + before + gap, after);
+			} else {
+				System.arraycopy(oldShorts, from, shorts, to, before);
+				System.arraycopy(oldShorts, from + before, shorts, to + before + gap, after);
+			}
+		}
+		width = newWidth;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void insertRow(int index) {
+		int oldHeight = height;
+		int newHeight = Math.max(height + 1, index + 1);
+		int rowStride = getRowStride();
+		byte[] oldBytes = bytes;
+		short[] oldShorts = shorts;
+		allocate(width, newHeight, present.length);
+		int before = Math.min(index, oldHeight) * rowStride;
+		int after = (oldHeight * rowStride) - before;
+		int gap = (newHeight - oldHeight) * rowStride;
+		if(bytes != null) {
+			System.arraycopy(oldBytes, 0, bytes, 0, before);
+			System.arraycopy(oldBytes, before, bytes, before + gap, after);
+		} else {
+			System.arraycopy(oldShorts, 0, shorts, 0, before);
+			System.arraycopy(oldShorts, before, shorts, before + gap, after);
+		}
+		height = newHeight;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setRow(int y, int x, int count, int[] buffer, int offset) {
+		int slots = present.length;
+		int start = index(0, x, y);
+		for(int c = 0; c < slots; c++) {
+			if(!present[c]) {
+				continue;
+			}
+			if(bytes != null) {
+				for(int i = c; i < count * slots; i += slots) {
+					bytes[start + i] = (byte)buffer[offset + i];
+				}
+			} else {
+				for(int i = c; i < count * slots; i += slots) {
+					shorts[start + i] = (short)buffer[offset + i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setSample(int channel, int x, int y, int value) {
+		if(!hasChannel(channel)) {
+			return;
+		}
+		int i = index(channel, x, y);
+		if(bytes != null) {
+			bytes[i] = (byte)value;
+		} else {
+			shorts[i] = (short)value;
+		}
+	}
+
+	/**
+	 * Creates a new, empty sample array of the type needed for the
+	 * sample depth.
+	 *
+	 * @param width
+	 * The width of the array in pixels.
+	 *
+	 * @param height
+	 * The height of the array in pixels.
+	 *
+	 * @param slots
+	 * The number of channel slots in each pixel.
+	 */
+	private void allocate(int width, int height, int slots) {
+		long length = (long)width * height * slots;
+		if(length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Image is too large to be packed into one array");
+		}
+		if(sampleDepth <= 8) {
+			bytes = new byte[(int)length];
+		} else {
+			shorts = new short[(int)length];
+		}
+	}
+
+	/**
+	 * Gets the index of a sample in the array.
+	 *
+	 * @param channel
+	 * The channel of the sample.
+	 *
+	 * @param x
+	 * The x-coordinate of the pixel.
+	 *
+	 * @param y
+	 * The y-coordinate of the pixel.
+	 *
+	 * @return
+	 * The index of the sample.
+	 */
+	private int index(int channel, int x, int y) {
+		int slots = present.length;
+		int i = (y * width + x) * slots + channel;
+		return i;
+	}
+}
@@ -0,0 +1,180 @@
+package com.dekarrin.graphics;
+
+/**
+ * Holds the samples of an Image. Samples are addressed by channel
+ * index and pixel coordinates. A storage has a fixed number of channel
+ * slots, some of which may be empty; empty slots read as 0 and ignore
+ * writes.
+ *
+ * Rows can be copied in bulk to and from caller-supplied buffers. In
+ * a row buffer, the samples of each pixel are stored together, one
+ * for every channel slot, and the pixels follow each other from left
+ * to right.
+ */
+public interface PixelStorage {
+
+	/**
+	 * Adds a channel to this storage. If there is already a channel
+	 * at the specified index, this method has no effect.
+	 *
+	 * @param index
+	 * The index of the channel to add.
+	 */
+	public void addChannel(int index);
+
+	/**
+	 * Creates an empty storage of the same kind and with the same
+	 * channels as this one.
+	 *
+	 * @param width
+	 * The width of the new storage in pixels.
+	 *
+	 * @param height
+	 * The height of the new storage in pixels.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample of the new storage.
+	 *
+	 * @return
+	 * The new storage.
+	 */
+	public PixelStorage createCompatible(int width, int height, int sampleDepth);
+
+	/**
+	 * Gets the number of channel slots in this storage. This is the
+	 * number of samples per pixel in a row buffer.
+	 *
+	 * @return
+	 * The number of channel slots.
+	 */
+	public int getChannelSlots();
+
+	/**
+	 * Gets the height of this storage.
+	 *
+	 * @return
+	 * The height in pixels.
+	 */
+	public int getHeight();
+
+	/**
+	 * Copies part of a row into a buffer.
+	 *
+	 * @param y
+	 * The y-coordinate of the row.
+	 *
+	 * @param x
+	 * The x-coordinate of the first pixel to copy.
+	 *
+	 * @param count
+	 * The number of pixels to copy.
+	 *
+	 * @param buffer
+	 * The buffer to copy the samples into. It must have room for
+	 * count times getChannelSlots() samples after the offset.
+	 *
+	 * @param offset
+	 * The index in the buffer of the first sample.
+	 */
+	public void getRow(int y, int x, int count, int[] buffer, int offset);
+
+	/**
+	 * Gets the value of a single sample.
+	 *
+	 * @param channel
+	 * The channel of the sample.
+	 *
+	 * @param x
+	 * The x-coordinate of the pixel.
+	 *
+	 * @param y
+	 * The y-coordinate of the pixel.
+	 *
+	 * @return
+	 * The value of the sample.
+	 */
+	public int getSample(int channel, int x, int y);
+
+	/**
+	 * Gets the number of bits in each sample.
+	 *
+	 * @return
+	 * The sample depth.
+	 */
+	public int getSampleDepth();
+
+	/**
+	 * Gets the width of this storage.
+	 *
+	 * @return
+	 * The width in pixels.
+	 */
+	public int getWidth();
+
+	/**
+	 * Checks whether there is a channel at an index.
+	 *
+	 * @param index
+	 * The index of the channel to check for.
+	 *
+	 * @return
+	 * Whether the channel exists.
+	 */
+	public boolean hasChannel(int index);
+
+	/**
+	 * Inserts an empty column.
+	 *
+	 * @param index
+	 * Where to insert the column. If this is greater than the width,
+	 * columns are added until the width reaches the index.
+	 */
+	public void insertColumn(int index);
+
+	/**
+	 * Inserts an empty row.
+	 *
+	 * @param index
+	 * Where to insert the row. If this is greater than the height,
+	 * rows are added until the height reaches the index.
+	 */
+	public void insertRow(int index);
+
+	/**
+	 * Copies samples from a buffer into part of a row.
+	 *
+	 * @param y
+	 * The y-coordinate of the row.
+	 *
+	 * @param x
+	 * The x-coordinate of the first pixel to set.
+	 *
+	 * @param count
+	 * The number of pixels to set.
+	 *
+	 * @param buffer
+	 * The buffer to copy the samples from. It must hold count times
+	 * getChannelSlots() samples after the offset.
+	 *
+	 * @param offset
+	 * The index in the buffer of the first sample.
+	 */
+	public void setRow(int y, int x, int count, int[] buffer, int offset);
+
+	/**
+	 * Sets the value of a single sample.
+	 *
+	 * @param channel
+	 * The channel of the sample.
+	 *
+	 * @param x
+	 * The x-coordinate of the pixel.
+	 *
+	 * @param y
+	 * The y-coordinate of the pixel.
+	 *
+	 * @param value
+	 * The new value of the sample.
+	 */
+	public void setSample(int channel, int x, int y, int value);
+}
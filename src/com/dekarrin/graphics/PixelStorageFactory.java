@@ -0,0 +1,30 @@
+package com.dekarrin.graphics;
+
+/**
+ * Creates the PixelStorage for new Images. This lets code that builds
+ * images, such as an image decoder, leave the choice of where the
+ * samples are kept to its caller. Each kind of storage provides a
+ * factory of its own.
+ */
+public interface PixelStorageFactory {
+
+	/**
+	 * Creates a new, empty storage with every channel slot filled.
+	 *
+	 * @param width
+	 * The width in pixels.
+	 *
+	 * @param height
+	 * The height in pixels.
+	 *
+	 * @param channelCount
+	 * The number of channels.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample.
+	 *
+	 * @return
+	 * The new storage.
+	 */
+	public PixelStorage createStorage(int width, int height, int channelCount, int sampleDepth);
+}
@@ -0,0 +1,23 @@
+package com.dekarrin.graphics;
+
+/**
+ * Exception indicating that the space to hold the samples of an image
+ * could not be set up.
+ */
+public class StorageFailureException extends RuntimeException {
+
+	private static final long serialVersionUID = 4907381920447315573L;
+
+	/**
+	 * Creates a new StorageFailureException with a specified message.
+	 *
+	 * @param message
+	 * The message to assign to this StorageFailureException.
+	 *
+	 * @param cause
+	 * The exception that caused the failure.
+	 */
+	public StorageFailureException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
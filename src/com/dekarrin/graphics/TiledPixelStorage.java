@@ -0,0 +1,795 @@
+package com.dekarrin.graphics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stores the samples of an Image in square tiles, only some of which
+ * are kept in memory at once. A tile is loaded the first time one of
+ * its pixels is used, and the tiles that have gone unused the longest
+ * are dropped once more than a set number are loaded. Dropped tiles
+ * that have been written to are saved to a scratch file and read back
+ * from it when they are next used; tiles that have never been written
+ * to read as 0 and take up no space at all. This lets an image be far
+ * larger than the memory available to the program while keeping the
+ * area being worked on fast to reach.
+ *
+ * Within a tile, samples are interleaved the same way as in a
+ * PackedPixelStorage, one byte per sample for depths of 8 bits or
+ * fewer and two bytes otherwise.
+ *
+ * The storage also keeps track of which tiles have been modified
+ * since clearModified() was last called, so that code which saves the
+ * image can tell whether any of it has changed.
+ */
+public class TiledPixelStorage implements PixelStorage {
+
+	/**
+	 * The default number of tiles kept in memory.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 64;
+
+	/**
+	 * The default width and height of a tile in pixels.
+	 */
+	public static final int DEFAULT_TILE_SIZE = 256;
+
+	/**
+	 * Creates TiledPixelStorages with the default tile size and cache
+	 * size, spilling to the default temporary directory.
+	 */
+	public static final PixelStorageFactory FACTORY = factory(DEFAULT_TILE_SIZE, DEFAULT_CACHE_SIZE, null);
+
+	/**
+	 * The number of bytes in each sample.
+	 */
+	private int bytesPerSample;
+
+	/**
+	 * The tiles that are in memory, from least to most recently used.
+	 */
+	private TileCache cache;
+
+	/**
+	 * The directory that the scratch file is created in, or null for
+	 * the default temporary directory.
+	 */
+	private File directory;
+
+	/**
+	 * The height of this storage.
+	 */
+	private int height;
+
+	/**
+	 * The index of the tile that was used last, or -1 if there is
+	 * none.
+	 */
+	private int lastIndex = -1;
+
+	/**
+	 * The tile that was used last.
+	 */
+	private Tile lastTile;
+
+	/**
+	 * The most tiles kept in memory at once.
+	 */
+	private int maxCachedTiles;
+
+	/**
+	 * The number of tiles that have been modified.
+	 */
+	private int modifiedCount;
+
+	/**
+	 * Which tiles have been modified since clearModified() was last
+	 * called.
+	 */
+	private boolean[] modifiedTiles;
+
+	/**
+	 * Which channel slots hold a channel.
+	 */
+	private boolean[] present;
+
+	/**
+	 * The number of bits used for each sample.
+	 */
+	private int sampleDepth;
+
+	/**
+	 * The file that tiles are saved to when they are dropped, or null
+	 * if none has been needed yet.
+	 */
+	private RandomAccessFile scratch;
+
+	/**
+	 * Which tiles have been saved to the scratch file.
+	 */
+	private boolean[] storedTiles;
+
+	/**
+	 * The number of bytes in each tile.
+	 */
+	private int tileBytes;
+
+	/**
+	 * The number of tiles in each row of tiles.
+	 */
+	private int tilesAcross;
+
+	/**
+	 * The width and height of each tile in pixels.
+	 */
+	private int tileSize;
+
+	/**
+	 * The width of this storage.
+	 */
+	private int width;
+
+	/**
+	 * Creates a new TiledPixelStorage with every channel slot filled,
+	 * the default tile size and cache size, and its scratch file in
+	 * the default temporary directory.
+	 *
+	 * @param width
+	 * The width in pixels.
+	 *
+	 * @param height
+	 * The height in pixels.
+	 *
+	 * @param channelCount
+	 * The number of channels.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample. This must not be more than
+	 * 16.
+	 *
+	 * @throws InvalidBitDepthException
+	 * If the sample depth is more than 16 bits.
+	 */
+	public TiledPixelStorage(int width, int height, int channelCount, int sampleDepth) throws InvalidBitDepthException {
+		this(width, height, channelCount, sampleDepth, DEFAULT_TILE_SIZE, DEFAULT_CACHE_SIZE, null);
+	}
+
+	/**
+	 * Creates a new TiledPixelStorage with every channel slot filled.
+	 *
+	 * @param width
+	 * The width in pixels.
+	 *
+	 * @param height
+	 * The height in pixels.
+	 *
+	 * @param channelCount
+	 * The number of channels.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample. This must not be more than
+	 * 16.
+	 *
+	 * @param tileSize
+	 * The width and height of each tile in pixels.
+	 *
+	 * @param maxCachedTiles
+	 * The most tiles to keep in memory at once.
+	 *
+	 * @param directory
+	 * The directory to create the scratch file in, or null for the
+	 * default temporary directory.
+	 *
+	 * @throws InvalidBitDepthException
+	 * If the sample depth is more than 16 bits.
+	 */
+	public TiledPixelStorage(int width, int height, int channelCount, int sampleDepth, int tileSize, int maxCachedTiles, File directory) throws InvalidBitDepthException {
+		if(sampleDepth < 1 || sampleDepth > PackedPixelStorage.MAXIMUM_SAMPLE_DEPTH) {
+			String message = String.format("Bit depth is %s; should be 1-%s!", sampleDepth, PackedPixelStorage.MAXIMUM_SAMPLE_DEPTH);
+			throw new InvalidBitDepthException(message);
+		}
+		if(tileSize < 1) {
+			throw new IllegalArgumentException("Tile size must be positive");
+		}
+		if(maxCachedTiles < 1) {
+			throw new IllegalArgumentException("At least one tile must be cached");
+		}
+		this.width = width;
+		this.height = height;
+		this.sampleDepth = sampleDepth;
+		this.tileSize = tileSize;
+		this.maxCachedTiles = maxCachedTiles;
+		this.directory = directory;
+		bytesPerSample = (sampleDepth <= 8) ? 1 : 2;
+		present = new boolean[channelCount];
+		Arrays.fill(present, true);
+		layOut();
+	}
+
+	/**
+	 * Gets a factory that creates TiledPixelStorages with specific
+	 * settings.
+	 *
+	 * @param tileSize
+	 * The width and height of each tile in pixels.
+	 *
+	 * @param maxCachedTiles
+	 * The most tiles that each storage keeps in memory at once.
+	 *
+	 * @param directory
+	 * The directory to create the scratch files in, or null for the
+	 * default temporary directory.
+	 *
+	 * @return
+	 * The factory.
+	 */
+	public static PixelStorageFactory factory(final int tileSize, final int maxCachedTiles, final File directory) {
+		PixelStorageFactory factory = new PixelStorageFactory() {
+			@Override
+			public PixelStorage createStorage(int width, int height, int channelCount, int sampleDepth) {
+				return new TiledPixelStorage(width, height, channelCount, sampleDepth, tileSize, maxCachedTiles, directory);
+			}
+		};
+		return factory;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addChannel(int index) {
+		if(hasChannel(index)) {
+			return;
+		}
+		if(index >= present.length) {
+			int oldSlots = present.length;
+			TiledPixelStorage grown = createEmpty(width, height, index + 1, sampleDepth);
+			System.arraycopy(present, 0, grown.present, 0, oldSlots);
+			Arrays.fill(grown.present, oldSlots, grown.present.length, false);
+			int[] oldRow = new int[width * oldSlots];
+			int[] newRow = new int[width * grown.present.length];
+			for(int y = 0; y < height; y++) {
+				getRow(y, 0, width, oldRow, 0);
+				for(int x = 0; x < width; x++) {
+					System.arraycopy(oldRow, x * oldSlots, newRow, x * grown.present.length, oldSlots);
+				}
+				grown.setRow(y, 0, width, newRow, 0);
+			}
+			adopt(grown);
+		}
+		present[index] = true;
+	}
+
+	/**
+	 * Clears the record of which tiles have been modified. Tiles that
+	 * are written to afterwards are counted as modified again.
+	 */
+	public void clearModified() {
+		Arrays.fill(modifiedTiles, false);
+		modifiedCount = 0;
+	}
+
+	/**
+	 * Closes the scratch file and drops every tile. This storage
+	 * cannot be used afterwards.
+	 *
+	 * @throws StorageFailureException
+	 * If the scratch file cannot be closed.
+	 */
+	public void close() throws StorageFailureException {
+		cache.clear();
+		lastIndex = -1;
+		lastTile = null;
+		closeScratch();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PixelStorage createCompatible(int width, int height, int sampleDepth) {
+		TiledPixelStorage storage = createEmpty(width, height, present.length, sampleDepth);
+		storage.present = present.clone();
+		return storage;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getChannelSlots() {
+		return present.length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Gets the number of tiles that have been modified since
+	 * clearModified() was last called.
+	 *
+	 * @return
+	 * The number of modified tiles.
+	 */
+	public int getModifiedTileCount() {
+		return modifiedCount;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void getRow(int y, int x, int count, int[] buffer, int offset) {
+		int slots = present.length;
+		int end = x + count;
+		int ty = y / tileSize;
+		int rowStart = (y % tileSize) * tileSize;
+		while(x < end) {
+			int px = x % tileSize;
+			int n = Math.min(tileSize - px, end - x);
+			byte[] data = tile(x / tileSize, ty).data;
+			int start = (rowStart + px) * slots;
+			int length = n * slots;
+			if(bytesPerSample == 1) {
+				for(int i = 0; i < length; i++) {
+					buffer[offset + i] = data[start + i] & 0xff;
+				}
+			} else {
+				for(int i = 0, b = start * 2; i < length; i++, b += 2) {
+					buffer[offset + i] = ((data[b] & 0xff) << 8) | (data[b + 1] & 0xff);
+				}
+			}
+			offset += length;
+			x += n;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getSample(int channel, int x, int y) {
+		if(!hasChannel(channel)) {
+			return 0;
+		}
+		byte[] data = tile(x / tileSize, y / tileSize).data;
+		int i = position(x, y) + channel;
+		if(bytesPerSample == 1) {
+			return data[i] & 0xff;
+		} else {
+			return ((data[i * 2] & 0xff) << 8) | (data[i * 2 + 1] & 0xff);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getSampleDepth() {
+		return sampleDepth;
+	}
+
+	/**
+	 * Gets the width and height of the tiles.
+	 *
+	 * @return
+	 * The tile size in pixels.
+	 */
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasChannel(int index) {
+		return (index >= 0 && index < present.length && present[index]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void insertColumn(int index) {
+		int newWidth = Math.max(width + 1, index + 1);
+		int before = Math.min(index, width);
+		int after = width - before;
+		int gap = newWidth - width;
+		int slots = present.length;
+		TiledPixelStorage grown = createEmpty(newWidth, height, slots, sampleDepth);
+		grown.present = present.clone();
+		int[] row = new int[width * slots];
+		for(int y = 0; y < height; y++) {
+			getRow(y, 0, width, row, 0);
+			grown.setRow(y, 0, before, row, 0);
+			grown.setRow(y, before + gap, after, row, before * slots);
+		}
+		adopt(grown);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void insertRow(int index) {
+		int newHeight = Math.max(height + 1, index + 1);
+		int gap = newHeight - height;
+		TiledPixelStorage grown = createEmpty(width, newHeight, present.length, sampleDepth);
+		grown.present = present.clone();
+		int[] row = new int[width * present.length];
+		for(int y = 0; y < height; y++) {
+			getRow(y, 0, width, row, 0);
+			int target = (y < index) ? y : y + gap;
+			grown.setRow(target, 0, width, row, 0);
+		}
+		adopt(grown);
+	}
+
+	/**
+	 * Checks whether any tile has been modified since clearModified()
+	 * was last called.
+	 *
+	 * @return
+	 * Whether any of the samples may have changed.
+	 */
+	public boolean isModified() {
+		return (modifiedCount > 0);
+	}
+
+	/**
+	 * Checks whether a tile has been modified since clearModified()
+	 * was last called.
+	 *
+	 * @param tileX
+	 * The column of the tile, counted in tiles.
+	 *
+	 * @param tileY
+	 * The row of the tile, counted in tiles.
+	 *
+	 * @return
+	 * Whether any of the samples in the tile may have changed.
+	 */
+	public boolean isTileModified(int tileX, int tileY) {
+		return modifiedTiles[tileY * tilesAcross + tileX];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setRow(int y, int x, int count, int[] buffer, int offset) {
+		int slots = present.length;
+		int end = x + count;
+		int ty = y / tileSize;
+		int rowStart = (y % tileSize) * tileSize;
+		while(x < end) {
+			int px = x % tileSize;
+			int n = Math.min(tileSize - px, end - x);
+			byte[] data = modifiableTile(x / tileSize, ty).data;
+			int start = (rowStart + px) * slots;
+			int length = n * slots;
+			for(int c = 0; c < slots; c++) {
+				if(!present[c]) {
+					continue;
+				}
+				if(bytesPerSample == 1) {
+					for(int i = c; i < length; i += slots) {
+						data[start + i] = (byte)buffer[offset + i];
+					}
+				} else {
+					for(int i = c; i < length; i += slots) {
+						int b = (start + i) * 2;
+						data[b] = (byte)(buffer[offset + i] >>> 8);
+						data[b + 1] = (byte)buffer[offset + i];
+					}
+				}
+			}
+			offset += length;
+			x += n;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setSample(int channel, int x, int y, int value) {
+		if(!hasChannel(channel)) {
+			return;
+		}
+		byte[] data = modifiableTile(x / tileSize, y / tileSize).data;
+		int i = position(x, y) + channel;
+		if(bytesPerSample == 1) {
+			data[i] = (byte)value;
+		} else {
+			data[i * 2] = (byte)(value >>> 8);
+			data[i * 2 + 1] = (byte)value;
+		}
+	}
+
+	/**
+	 * Takes over the tiles and layout of another storage, closing the
+	 * scratch file of this one. The cached tiles are moved into a
+	 * cache of this storage so that they are spilled to the right
+	 * file.
+	 *
+	 * @param other
+	 * The storage whose tiles are to be used from now on.
+	 */
+	private void adopt(TiledPixelStorage other) {
+		closeScratch();
+		width = other.width;
+		height = other.height;
+		present = other.present;
+		tilesAcross = other.tilesAcross;
+		tileBytes = other.tileBytes;
+		cache = new TileCache();
+		cache.putAll(other.cache);
+		modifiedTiles = other.modifiedTiles;
+		modifiedCount = other.modifiedCount;
+		storedTiles = other.storedTiles;
+		scratch = other.scratch;
+		lastIndex = other.lastIndex;
+		lastTile = other.lastTile;
+	}
+
+	/**
+	 * Closes the scratch file, if one has been opened.
+	 *
+	 * @throws StorageFailureException
+	 * If the scratch file cannot be closed.
+	 */
+	private void closeScratch() throws StorageFailureException {
+		if(scratch != null) {
+			try {
+				scratch.close();
+			} catch(IOException e) {
+				throw new StorageFailureException("Could not close tile scratch file", e);
+			}
+			scratch = null;
+		}
+	}
+
+	/**
+	 * Creates a new, empty storage with the same tile settings as this
+	 * one.
+	 *
+	 * @param width
+	 * The width in pixels.
+	 *
+	 * @param height
+	 * The height in pixels.
+	 *
+	 * @param channelCount
+	 * The number of channel slots.
+	 *
+	 * @param sampleDepth
+	 * The number of bits in each sample.
+	 *
+	 * @return
+	 * The new storage.
+	 */
+	private TiledPixelStorage createEmpty(int width, int height, int channelCount, int sampleDepth) {
+		return new TiledPixelStorage(width, height, channelCount, sampleDepth, tileSize, maxCachedTiles, directory);
+	}
+
+	/**
+	 * Sets up the tile grid and the cache for the current size.
+	 */
+	private void layOut() {
+		long length = (long)tileSize * tileSize * present.length * bytesPerSample;
+		if(length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Tile size is too large for a tile to fit in an array");
+		}
+		tileBytes = (int)length;
+		tilesAcross = (width + tileSize - 1) / tileSize;
+		int tilesDown = (height + tileSize - 1) / tileSize;
+		int count = tilesAcross * tilesDown;
+		modifiedTiles = new boolean[count];
+		storedTiles = new boolean[count];
+		modifiedCount = 0;
+		cache = new TileCache();
+		lastIndex = -1;
+		lastTile = null;
+	}
+
+	/**
+	 * Reads a tile into memory. A tile that has never been saved to
+	 * the scratch file is filled with zeros.
+	 *
+	 * @param index
+	 * The index of the tile.
+	 *
+	 * @return
+	 * The tile.
+	 *
+	 * @throws StorageFailureException
+	 * If the tile cannot be read from the scratch file.
+	 */
+	private Tile load(int index) throws StorageFailureException {
+		Tile tile = new Tile(tileBytes);
+		if(storedTiles[index]) {
+			try {
+				scratch.seek((long)index * tileBytes);
+				scratch.readFully(tile.data);
+			} catch(IOException e) {
+				throw new StorageFailureException("Could not read tile from scratch file", e);
+			}
+		}
+		return tile;
+	}
+
+	/**
+	 * Gets a tile that is about to be written to, marking it as
+	 * modified.
+	 *
+	 * @param tileX
+	 * The column of the tile, counted in tiles.
+	 *
+	 * @param tileY
+	 * The row of the tile, counted in tiles.
+	 *
+	 * @return
+	 * The tile.
+	 */
+	private Tile modifiableTile(int tileX, int tileY) {
+		Tile tile = tile(tileX, tileY);
+		tile.dirty = true;
+		if(!modifiedTiles[lastIndex]) {
+			modifiedTiles[lastIndex] = true;
+			modifiedCount++;
+		}
+		return tile;
+	}
+
+	/**
+	 * Gets the position of a pixel in the tile that holds it.
+	 *
+	 * @param x
+	 * The x-coordinate of the pixel.
+	 *
+	 * @param y
+	 * The y-coordinate of the pixel.
+	 *
+	 * @return
+	 * The index of the first sample of the pixel.
+	 */
+	private int position(int x, int y) {
+		int i = ((y % tileSize) * tileSize + (x % tileSize)) * present.length;
+		return i;
+	}
+
+	/**
+	 * Saves a tile to the scratch file, creating the file if this is
+	 * the first tile to be saved.
+	 *
+	 * @param index
+	 * The index of the tile.
+	 *
+	 * @param tile
+	 * The tile to save.
+	 *
+	 * @throws StorageFailureException
+	 * If the tile cannot be written.
+	 */
+	private void spill(int index, Tile tile) throws StorageFailureException {
+		try {
+			if(scratch == null) {
+				File file = File.createTempFile("tiles", ".tmp", directory);
+				file.deleteOnExit();
+				scratch = new RandomAccessFile(file, "rw");
+				file.delete();
+			}
+			scratch.seek((long)index * tileBytes);
+			scratch.write(tile.data);
+		} catch(IOException e) {
+			throw new StorageFailureException("Could not write tile to scratch file", e);
+		}
+		storedTiles[index] = true;
+		tile.dirty = false;
+	}
+
+	/**
+	 * Gets a tile, loading it if it is not in memory.
+	 *
+	 * @param tileX
+	 * The column of the tile, counted in tiles.
+	 *
+	 * @param tileY
+	 * The row of the tile, counted in tiles.
+	 *
+	 * @return
+	 * The tile.
+	 */
+	private Tile tile(int tileX, int tileY) {
+		int index = tileY * tilesAcross + tileX;
+		if(index != lastIndex) {
+			Tile tile = cache.get(index);
+			if(tile == null) {
+				tile = load(index);
+				cache.put(index, tile);
+			}
+			lastIndex = index;
+			lastTile = tile;
+		}
+		return lastTile;
+	}
+
+	/**
+	 * The samples of one tile.
+	 */
+	private static class Tile {
+
+		/**
+		 * The samples, interleaved by pixel.
+		 */
+		public final byte[] data;
+
+		/**
+		 * Whether the samples differ from what is in the scratch file.
+		 */
+		public boolean dirty = false;
+
+		/**
+		 * Creates a new Tile filled with zeros.
+		 *
+		 * @param length
+		 * The number of bytes in the tile.
+		 */
+		public Tile(int length) {
+			data = new byte[length];
+		}
+	}
+
+	/**
+	 * Holds the tiles that are in memory in order of use, and saves
+	 * the least recently used one when too many are held.
+	 */
+	private class TileCache extends LinkedHashMap<Integer, Tile> {
+
+		private static final long serialVersionUID = -2687409618251944172L;
+
+		/**
+		 * Creates a new, empty TileCache.
+		 */
+		public TileCache() {
+			super(16, 0.75f, true);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 *
+		 * Tiles that have been written to since they were loaded are
+		 * saved before they are dropped.
+		 */
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Tile> eldest) {
+			if(size() <= maxCachedTiles) {
+				return false;
+			}
+			Tile tile = eldest.getValue();
+			if(tile.dirty) {
+				spill(eldest.getKey(), tile);
+			}
+			return true;
+		}
+	}
+}
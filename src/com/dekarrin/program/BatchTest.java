@@ -0,0 +1,157 @@
+package com.dekarrin.program;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.dekarrin.db.MySqlEngine;
+import com.dekarrin.db.TableData;
+
+/**
+ * Tests that batched writes to several tables share round trips. Rows
+ * are written to an auctions table and an events table in turn, as
+ * AuctionScan does, through a MySqlEngine on a stand-in connection that
+ * counts how many times each statement sends a batch. No database is
+ * needed.
+ */
+public class BatchTest extends ConsoleProgram {
+
+	private static final String[] EVENTS = {"add", "bid", "time", "remove"};
+
+	/**
+	 * The number of times that each statement has sent a batch, keyed
+	 * by its SQL.
+	 */
+	private Map<String,Integer> executions = new HashMap<String,Integer>();
+
+	/**
+	 * The number of rows that each statement has sent, keyed by its SQL.
+	 */
+	private Map<String,Integer> sentRows = new HashMap<String,Integer>();
+
+	public static void main(String[] args) {
+		new BatchTest(args);
+	}
+
+	public BatchTest(String[] args) {
+		super(args);
+		addArgument("pairs", "The number of auction and event pairs to write (default 1000)", true);
+		addArgument("batch size", "The batch size to use (default 100)", true);
+		int pairs = hasArgument("pairs") ? getArgumentAsInt("pairs", 0) : 1000;
+		int batchSize = hasArgument("batch size") ? getArgumentAsInt("batch size", 0) : 100;
+		try {
+			MySqlEngine db = new MySqlEngine(createConnection());
+			db.setBatchSize(batchSize);
+			for(int i = 0; i < pairs; i++) {
+				TableData auction = new TableData("auctions");
+				auction.addColumn("auc", "item");
+				auction.addRow("" + i, "" + (i % 7));
+				db.insertBatch(auction);
+				TableData event = new TableData("events");
+				event.addColumn("auction", "event", "argument");
+				event.addRow("" + i, EVENTS[i % EVENTS.length]);
+				event.set("argument", (i % 2 == 1) ? "" + i : null);
+				db.insertBatch(event);
+			}
+			db.flush();
+		} catch(SQLException e) {
+			giveFatalError(e.toString());
+		}
+		int calls = 0;
+		int rows = 0;
+		for(String sql: executions.keySet()) {
+			ui.println(executions.get(sql) + " batches, " + sentRows.get(sql) + " rows: " + sql);
+			calls += executions.get(sql);
+			rows += sentRows.get(sql);
+		}
+		int expected = executions.size() * ((2 * pairs + batchSize - 1) / batchSize);
+		check(executions.size() == 2, "expected one statement per table; got " + executions.size());
+		check(rows == 2 * pairs, "sent " + rows + " of " + (2 * pairs) + " rows");
+		check(calls <= expected, "sent " + calls + " batches; expected at most " + expected);
+		ui.println("All checks passed.");
+	}
+
+	/**
+	 * Creates a stand-in connection whose prepared statements count the
+	 * rows and batches that they send.
+	 */
+	private Connection createConnection() {
+		return (Connection)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if(method.getName().equals("prepareStatement")) {
+					return createStatement((String)args[0]);
+				}
+				return defaultValue(method.getReturnType());
+			}
+		});
+	}
+
+	/**
+	 * Creates a stand-in prepared statement.
+	 */
+	private PreparedStatement createStatement(final String sql) {
+		executions.put(sql, 0);
+		sentRows.put(sql, 0);
+		return (PreparedStatement)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {PreparedStatement.class}, new InvocationHandler() {
+			private int pending = 0;
+
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				String name = method.getName();
+				if(name.equals("addBatch")) {
+					pending++;
+				} else if(name.equals("clearBatch")) {
+					pending = 0;
+				} else if(name.equals("executeBatch")) {
+					executions.put(sql, executions.get(sql) + 1);
+					sentRows.put(sql, sentRows.get(sql) + pending);
+					int[] counts = new int[pending];
+					Arrays.fill(counts, 1);
+					pending = 0;
+					return counts;
+				} else if(name.equals("getGeneratedKeys")) {
+					return createEmptyResult();
+				}
+				return defaultValue(method.getReturnType());
+			}
+		});
+	}
+
+	/**
+	 * Creates a stand-in result set with no rows.
+	 */
+	private ResultSet createEmptyResult() {
+		return (ResultSet)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {ResultSet.class}, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				return defaultValue(method.getReturnType());
+			}
+		});
+	}
+
+	/**
+	 * Gets the value that a stand-in method gives back.
+	 */
+	private static Object defaultValue(Class<?> type) {
+		Object value = null;
+		if(type == boolean.class) {
+			value = false;
+		} else if(type == int.class) {
+			value = 0;
+		} else if(type == long.class) {
+			value = 0L;
+		}
+		return value;
+	}
+
+	private void check(boolean passed, String message) {
+		if(!passed) {
+			giveFatalError(message);
+		}
+	}
+}
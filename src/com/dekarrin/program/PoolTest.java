@@ -0,0 +1,158 @@
+package com.dekarrin.program;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import com.dekarrin.db.ConnectionPool;
+import com.dekarrin.db.PooledDatabaseManager;
+import com.dekarrin.db.TableData;
+
+/**
+ * Tests a PooledDatabaseManager against any database that a JDBC URL
+ * can be given for, such as an embedded one. More threads than the
+ * pool has connections each insert rows in batches, count them, and
+ * release their sessions; the pool is then checked to have every
+ * connection back and to close them once they are idle.
+ *
+ * The driver must be on the class path, and the database must accept
+ * MySQL's quoting of names with backticks (for example, H2 with
+ * MODE=MySQL, or SQLite). The table pool_test is dropped and created.
+ */
+public class PoolTest extends ConsoleProgram {
+
+	private static final String TABLE = "pool_test";
+
+	private static final int POOL_SIZE = 2;
+
+	public static void main(String[] args) {
+		new PoolTest(args);
+	}
+
+	public PoolTest(String[] args) {
+		super(args);
+		addArgument("url", "The JDBC URL of the database", false);
+		addArgument("driver", "The class of the JDBC driver, if it must be loaded", true);
+		addArgument("threads", "The number of threads to run (default 4)", true);
+		addArgument("rows", "The number of rows each thread inserts (default 500)", true);
+		String url = getArgument("url");
+		String driver = getArgument("driver");
+		int threads = hasArgument("threads") ? getArgumentAsInt("threads", 0) : 4;
+		int rows = hasArgument("rows") ? getArgumentAsInt("rows", 0) : 500;
+		if(driver != null) {
+			try {
+				Class.forName(driver);
+			} catch(ClassNotFoundException e) {
+				giveFatalError("driver not found: " + driver);
+			}
+		}
+		ConnectionPool pool = new ConnectionPool(url, new Properties(), POOL_SIZE);
+		try {
+			createTable(pool);
+			runThreads(new PooledDatabaseManager(pool), threads, rows);
+			check(pool.getOpenCount() <= POOL_SIZE, "more connections opened than the pool allows");
+			check(pool.getIdleCount() == pool.getOpenCount(), "connections were not given back");
+			pool.setIdleTimeout(0L);
+			Thread.sleep(5);
+			pool.evictIdle();
+			check(pool.getOpenCount() == 0, "idle connections were not closed");
+		} catch(Exception e) {
+			giveFatalError(e.toString());
+		} finally {
+			pool.close();
+		}
+		ui.println("All checks passed.");
+	}
+
+	/**
+	 * Drops and creates the table that the threads insert into.
+	 */
+	private void createTable(ConnectionPool pool) throws SQLException {
+		Connection conn = pool.borrow();
+		try {
+			Statement st = conn.createStatement();
+			try {
+				st.execute("DROP TABLE IF EXISTS " + TABLE);
+				st.execute("CREATE TABLE " + TABLE + " (id INT, worker INT, name VARCHAR(32))");
+			} finally {
+				st.close();
+			}
+		} finally {
+			pool.giveBack(conn);
+		}
+	}
+
+	/**
+	 * Runs the threads and waits for them to finish, then checks that
+	 * every row was inserted.
+	 */
+	private void runThreads(final PooledDatabaseManager db, int threads, final int rows) throws Exception {
+		final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+		db.setBatchSize(50);
+		Thread[] workers = new Thread[threads];
+		for(int i = 0; i < threads; i++) {
+			final int worker = i;
+			workers[i] = new Thread() {
+				public void run() {
+					try {
+						insertRows(db, worker, rows);
+						int count = db.count(TABLE, "`worker`=" + worker);
+						db.release();
+						if(count != rows) {
+							failures.add("worker " + worker + " found " + count + " of its " + rows + " rows");
+						}
+					} catch(Exception e) {
+						failures.add("worker " + worker + ": " + e);
+						try {
+							db.release();
+						} catch(SQLException e2) {
+							// the connection is given back either way
+						}
+					}
+				}
+			};
+			workers[i].start();
+		}
+		for(Thread t: workers) {
+			t.join();
+		}
+		for(String f: failures) {
+			ui.println(f);
+		}
+		check(failures.isEmpty(), failures.size() + " threads failed");
+		int total = db.count(TABLE, "1=1");
+		db.release();
+		check(total == threads * rows, "found " + total + " of " + (threads * rows) + " rows");
+	}
+
+	/**
+	 * Inserts the rows of one thread, a few at a time, and then ends
+	 * its session so that another thread can use the connection.
+	 */
+	private static void insertRows(PooledDatabaseManager db, int worker, int rows) throws SQLException {
+		TableData data = new TableData(TABLE);
+		data.addColumn("id", "worker", "name");
+		for(int i = 0; i < rows; i++) {
+			data.addRow("" + i, "" + worker, "row " + i);
+			if(data.rows() == 20) {
+				db.insertBatch(data);
+				data = new TableData(TABLE);
+				data.addColumn("id", "worker", "name");
+			}
+		}
+		if(data.rows() > 0) {
+			db.insertBatch(data);
+		}
+		db.release();
+	}
+
+	private void check(boolean passed, String message) {
+		if(!passed) {
+			giveFatalError(message);
+		}
+	}
+}
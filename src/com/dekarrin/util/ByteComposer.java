@@ -1,12 +1,17 @@
 package com.dekarrin.util;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 /**
  * a wrapper class for ByteBuffer that makes converting
  * different data types into series of bytes easier.
- * This class is the counterpart to ByteParser. 
+ * This class is the counterpart to ByteParser. A ByteComposer
+ * can write into an array of its own or straight into any
+ * ByteBuffer, including direct and mapped buffers, and can be
+ * reused with reset(). Values are written as big-endian values
+ * unless the byte order is changed.
  */
 public class ByteComposer {
 
@@ -16,6 +21,22 @@ public class ByteComposer {
 	 */
 	private ByteBuffer dataBuffer;
 	
+	/**
+	 * The byte order that values are written in.
+	 */
+	private ByteOrder order = ByteOrder.BIG_ENDIAN;
+	
+	/**
+	 * Whether the array behind the buffer was created by this
+	 * ByteComposer.
+	 */
+	private boolean ownsArray;
+	
+	/**
+	 * The position in the buffer that composing started at.
+	 */
+	private int start;
+	
 	/**
 	 * Creates a new ByteComposer with an array of a
 	 * specified size.
@@ -24,18 +45,89 @@ public class ByteComposer {
 	 * The size of the array to create.
 	 */
 	public ByteComposer(int size) {
-		dataBuffer = ByteBuffer.wrap(new byte[size]);
+		reset(ByteBuffer.wrap(new byte[size]));
+		ownsArray = true;
+	}
+	
+	/**
+	 * Creates a new ByteComposer that writes directly into a
+	 * ByteBuffer. Composing starts at the buffer's position and
+	 * moves it forward. The byte order of the buffer is set to the
+	 * byte order of this ByteComposer.
+	 *
+	 * @param buffer
+	 * The buffer to write into.
+	 */
+	public ByteComposer(ByteBuffer buffer) {
+		reset(buffer);
+	}
+	
+	/**
+	 * Starts composing over again from the beginning. Nothing is
+	 * reallocated, and the bytes already written are overwritten as
+	 * new ones are composed.
+	 */
+	public void reset() {
+		dataBuffer.position(start);
+	}
+	
+	/**
+	 * Points this ByteComposer at a ByteBuffer. Composing starts at
+	 * the buffer's position and moves it forward. The byte order of
+	 * the buffer is set to the byte order of this ByteComposer.
+	 *
+	 * @param buffer
+	 * The buffer to write into.
+	 */
+	public void reset(ByteBuffer buffer) {
+		dataBuffer = buffer;
+		dataBuffer.order(order);
+		start = buffer.position();
+		ownsArray = false;
+	}
+	
+	/**
+	 * Gets the byte order that values are written in.
+	 *
+	 * @return
+	 * The byte order.
+	 */
+	public ByteOrder getByteOrder() {
+		return order;
+	}
+	
+	/**
+	 * Sets the byte order that values are written in. This affects
+	 * every multi-byte value, including ints written at a specific
+	 * width.
+	 *
+	 * @param order
+	 * The new byte order.
+	 */
+	public void setByteOrder(ByteOrder order) {
+		this.order = order;
+		dataBuffer.order(order);
 	}
 	
 	/**
 	 * Gets the contents of this ByteComposer as a byte
-	 * array.
+	 * array. If this ByteComposer created its own array, that
+	 * array is returned; otherwise, the bytes composed so far are
+	 * copied into a new array.
 	 *
 	 * @return
 	 * The contents.
 	 */
 	public byte[] toArray() {
-		return dataBuffer.array();
+		if(ownsArray) {
+			return dataBuffer.array();
+		}
+		ByteBuffer composed = dataBuffer.duplicate();
+		composed.flip();
+		composed.position(start);
+		byte[] contents = new byte[composed.remaining()];
+		composed.get(contents);
+		return contents;
 	}
 	
 	/**
@@ -50,11 +142,12 @@ public class ByteComposer {
 	 * array to.
 	 */
 	public void resize(int size) {
-		int oldSizePosition = dataBuffer.position();
+		int oldSizePosition = dataBuffer.position() - start;
 		byte[] currentArray = toArray();
 		byte[] setValues = Arrays.copyOfRange(currentArray, 0, oldSizePosition);
 		byte[] resizedArray = Arrays.copyOfRange(setValues, 0, size);
-		dataBuffer = ByteBuffer.wrap(resizedArray);
+		reset(ByteBuffer.wrap(resizedArray));
+		ownsArray = true;
 		if(oldSizePosition < size) {
 			dataBuffer.position(oldSizePosition);
 		}
@@ -97,9 +190,25 @@ public class ByteComposer {
 	 * The shorts to add.
 	 */
 	public void composeShorts(short[] values) {
-		for(int i = 0; i < values.length; i++) {
-			composeShort(values[i]);
-		}
+		composeShorts(values, 0, values.length);
+	}
+	
+	/**
+	 * Adds a range of shorts to the data. The shorts are copied in
+	 * bulk.
+	 *
+	 * @param values
+	 * The array holding the shorts to add.
+	 *
+	 * @param offset
+	 * The index in the array of the first short.
+	 *
+	 * @param count
+	 * The number of shorts to add.
+	 */
+	public void composeShorts(short[] values, int offset, int count) {
+		dataBuffer.asShortBuffer().put(values, offset, count);
+		skip(count * 2);
 	}
 	
 	/**
@@ -123,7 +232,15 @@ public class ByteComposer {
 	 * The width of the int.
 	 */
 	public void composeInt(int value, int width) {
-		composeBytes(intToBytes(value, width));
+		if(order == ByteOrder.BIG_ENDIAN) {
+			for(int i = width - 1; i >= 0; i--) {
+				dataBuffer.put((byte)(value >>> (8 * i)));
+			}
+		} else {
+			for(int i = 0; i < width; i++) {
+				dataBuffer.put((byte)(value >>> (8 * i)));
+			}
+		}
 	}
 	
 	/**
@@ -133,9 +250,25 @@ public class ByteComposer {
 	 * The ints to add.
 	 */
 	public void composeInts(int[] values) {
-		for(int i = 0; i < values.length; i++) {
-			composeInt(values[i]);
-		}
+		composeInts(values, 0, values.length);
+	}
+	
+	/**
+	 * Adds a range of ints to the data. The ints are copied in
+	 * bulk.
+	 *
+	 * @param values
+	 * The array holding the ints to add.
+	 *
+	 * @param offset
+	 * The index in the array of the first int.
+	 *
+	 * @param count
+	 * The number of ints to add.
+	 */
+	public void composeInts(int[] values, int offset, int count) {
+		dataBuffer.asIntBuffer().put(values, offset, count);
+		skip(count * 4);
 	}
 	
 	/**
@@ -149,8 +282,32 @@ public class ByteComposer {
 	 * The width of each int.
 	 */
 	public void composeInts(int[] values, int width) {
-		for(int i = 0; i < values.length; i++) {
-			composeInt(values[i], width);
+		composeInts(values, 0, values.length, width);
+	}
+	
+	/**
+	 * Adds a range of ints to the data with specified
+	 * widths.
+	 *
+	 * @param values
+	 * The array holding the ints to add.
+	 *
+	 * @param offset
+	 * The index in the array of the first int.
+	 *
+	 * @param count
+	 * The number of ints to add.
+	 *
+	 * @param width
+	 * The width of each int.
+	 */
+	public void composeInts(int[] values, int offset, int count, int width) {
+		if(width == 4) {
+			composeInts(values, offset, count);
+		} else {
+			for(int i = 0; i < count; i++) {
+				composeInt(values[offset + i], width);
+			}
 		}
 	}
 	
@@ -171,9 +328,25 @@ public class ByteComposer {
 	 * The longs to add.
 	 */
 	public void composeLongs(long[] values) {
-		for(int i = 0; i < values.length; i++) {
-			composeLong(values[i]);
-		}
+		composeLongs(values, 0, values.length);
+	}
+	
+	/**
+	 * Adds a range of longs to the data. The longs are copied in
+	 * bulk.
+	 *
+	 * @param values
+	 * The array holding the longs to add.
+	 *
+	 * @param offset
+	 * The index in the array of the first long.
+	 *
+	 * @param count
+	 * The number of longs to add.
+	 */
+	public void composeLongs(long[] values, int offset, int count) {
+		dataBuffer.asLongBuffer().put(values, offset, count);
+		skip(count * 8);
 	}
 	
 	/**
@@ -311,24 +484,14 @@ public class ByteComposer {
 	}
 	
 	/**
-	 * Converts an int into bytes.
-	 *
-	 * @param value
-	 * The int to convert.
+	 * Moves the write position forward past bytes that were
+	 * written through a view of the buffer.
 	 *
-	 * @param width
-	 * The number of bytes to convert to. Depending on
-	 * how big the int is, this may alter the value.
-	 * 
-	 * @return
-	 * The bytes that make up the int.
+	 * @param count
+	 * The number of bytes to move past.
 	 */
-	private byte[] intToBytes(int value, int width) {
-		byte[] bytes = new byte[width];
-		for(int i = 0; i < width; i++) {
-			bytes[i] = (byte)(value >>> 8*(width-1-i));
-		}
-		return bytes;
+	private void skip(int count) {
+		dataBuffer.position(dataBuffer.position() + count);
 	}
 	
 	/**
@@ -50,7 +50,7 @@ public class ByteHolder implements PrimitiveHolder {
 	 */
 	public void set(byte data, int index) {
 		holder[index] = data;
-		if(index > pointer) {
+		if(index >= pointer) {
 			pointer = index + 1;
 		}
 	}
@@ -1,14 +1,18 @@
 package com.dekarrin.util;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Vector;
 
 /**
  * A wrapper for the ByteBuffer class that serves as a more
  * convenient way of easily parsing bytes. This class wraps
- * around an array of bytes and adds the capabilities of
- * reading the rest of the buffer. All values are read as
- * big-endian values from the wrapped array.
+ * around an array of bytes or any ByteBuffer, including direct,
+ * mapped, and read-only buffers, and adds the capabilities of
+ * reading the rest of the buffer. A ByteBuffer is read in place
+ * rather than copied, and a ByteParser can be pointed at new data
+ * with reset() so that it can be reused. Values are read as
+ * big-endian values unless the byte order is changed.
  */
 public class ByteParser {
 	
@@ -17,6 +21,11 @@ public class ByteParser {
 	 */
 	private ByteBuffer dataBuffer;
 	
+	/**
+	 * The byte order that values are read in.
+	 */
+	private ByteOrder order = ByteOrder.BIG_ENDIAN;
+	
 	/**
 	 * Creates a new ByteParser for an array of bytes.
 	 *
@@ -24,7 +33,68 @@ public class ByteParser {
 	 * The array to wrap around.
 	 */
 	public ByteParser(byte[] dataArray) {
-		dataBuffer = ByteBuffer.wrap(dataArray);
+		reset(dataArray);
+	}
+	
+	/**
+	 * Creates a new ByteParser that reads directly from a
+	 * ByteBuffer. Parsing starts at the buffer's position, stops at
+	 * its limit, and moves its position forward. The byte order of
+	 * the buffer is set to the byte order of this ByteParser.
+	 *
+	 * @param buffer
+	 * The buffer to read from.
+	 */
+	public ByteParser(ByteBuffer buffer) {
+		reset(buffer);
+	}
+	
+	/**
+	 * Points this ByteParser at an array of bytes. Parsing starts
+	 * over from the beginning of the array.
+	 *
+	 * @param dataArray
+	 * The array to wrap around.
+	 */
+	public void reset(byte[] dataArray) {
+		reset(ByteBuffer.wrap(dataArray));
+	}
+	
+	/**
+	 * Points this ByteParser at a ByteBuffer. Parsing starts at the
+	 * buffer's position, stops at its limit, and moves its position
+	 * forward. The byte order of the buffer is set to the byte order
+	 * of this ByteParser.
+	 *
+	 * @param buffer
+	 * The buffer to read from.
+	 */
+	public void reset(ByteBuffer buffer) {
+		dataBuffer = buffer;
+		dataBuffer.order(order);
+	}
+	
+	/**
+	 * Gets the byte order that values are read in.
+	 *
+	 * @return
+	 * The byte order.
+	 */
+	public ByteOrder getByteOrder() {
+		return order;
+	}
+	
+	/**
+	 * Sets the byte order that values are read in. This affects
+	 * every multi-byte value, including ints read at a specific
+	 * width.
+	 *
+	 * @param order
+	 * The new byte order.
+	 */
+	public void setByteOrder(ByteOrder order) {
+		this.order = order;
+		dataBuffer.order(order);
 	}
 	
 	/**
@@ -50,10 +120,27 @@ public class ByteParser {
 	 */
 	public byte[] parseBytes(int count) {
 		byte[] byteArray = new byte[count];
-		dataBuffer.get(byteArray);
+		parseBytes(byteArray, 0, count);
 		return byteArray;
 	}
 	
+	/**
+	 * Reads multiple next bytes from the data into an existing
+	 * array.
+	 *
+	 * @param destination
+	 * The array to read the bytes into.
+	 *
+	 * @param offset
+	 * The index in the array of the first byte.
+	 *
+	 * @param count
+	 * The number of bytes to read.
+	 */
+	public void parseBytes(byte[] destination, int offset, int count) {
+		dataBuffer.get(destination, offset, count);
+	}
+	
 	/**
 	 * Gets the rest of the data.
 	 *
@@ -88,12 +175,28 @@ public class ByteParser {
 	 */
 	public short[] parseShorts(int count) {
 		short[] shortArray = new short[count];
-		for(int i = 0; i < count; i++) {
-			shortArray[i] = parseShort();
-		}
+		parseShorts(shortArray, 0, count);
 		return shortArray;
 	}
 	
+	/**
+	 * Reads multiple next shorts from the data into an existing
+	 * array. The shorts are copied in bulk.
+	 *
+	 * @param destination
+	 * The array to read the shorts into.
+	 *
+	 * @param offset
+	 * The index in the array of the first short.
+	 *
+	 * @param count
+	 * The number of shorts to read.
+	 */
+	public void parseShorts(short[] destination, int offset, int count) {
+		dataBuffer.asShortBuffer().get(destination, offset, count);
+		skip(count * 2);
+	}
+	
 	/**
 	 * Gets the rest of the data as shorts.
 	 *
@@ -127,8 +230,16 @@ public class ByteParser {
 	 * The next int.
 	 */
 	public int parseInt(int width) {
-		byte[] holder = parseBytes(width);
-		int parsedInt = arrayToInt(holder);
+		int parsedInt = 0;
+		if(order == ByteOrder.BIG_ENDIAN) {
+			for(int i = 0; i < width; i++) {
+				parsedInt = (parsedInt << 8) | (dataBuffer.get() & 0xff);
+			}
+		} else {
+			for(int i = 0; i < width; i++) {
+				parsedInt |= (dataBuffer.get() & 0xff) << (8 * i);
+			}
+		}
 		return parsedInt;
 	}
 	
@@ -145,12 +256,28 @@ public class ByteParser {
 	 */
 	public int[] parseInts(int count) {
 		int[] intArray = new int[count];
-		for(int i = 0; i < count; i++) {
-			intArray[i] = parseInt();
-		}
+		parseInts(intArray, 0, count);
 		return intArray;
 	}
 	
+	/**
+	 * Reads multiple next ints from the data into an existing
+	 * array. The ints are copied in bulk.
+	 *
+	 * @param destination
+	 * The array to read the ints into.
+	 *
+	 * @param offset
+	 * The index in the array of the first int.
+	 *
+	 * @param count
+	 * The number of ints to read.
+	 */
+	public void parseInts(int[] destination, int offset, int count) {
+		dataBuffer.asIntBuffer().get(destination, offset, count);
+		skip(count * 4);
+	}
+	
 	/**
 	 * Gets multiple next ints from the data. After the
 	 * ints are obtained, the position is remembered. This
@@ -169,12 +296,37 @@ public class ByteParser {
 	 */
 	public int[] parseInts(int count, int width) {
 		int[] intArray = new int[count];
-		for(int i = 0; i < count; i++) {
-			intArray[i] = parseInt(width);
-		}
+		parseInts(intArray, 0, count, width);
 		return intArray;
 	}
 	
+	/**
+	 * Reads multiple next ints of a specific size from the data
+	 * into an existing array.
+	 *
+	 * @param destination
+	 * The array to read the ints into.
+	 *
+	 * @param offset
+	 * The index in the array of the first int.
+	 *
+	 * @param count
+	 * The number of ints to read.
+	 *
+	 * @param width
+	 * The width in bytes of the int to be read. This must be
+	 * no bigger than the width of a native integer, 4.
+	 */
+	public void parseInts(int[] destination, int offset, int count, int width) {
+		if(width == 4) {
+			parseInts(destination, offset, count);
+		} else {
+			for(int i = 0; i < count; i++) {
+				destination[offset + i] = parseInt(width);
+			}
+		}
+	}
+	
 	/**
 	 * Gets the rest of the data as ints.
 	 *
@@ -224,12 +376,28 @@ public class ByteParser {
 	 */
 	public long[] parseLongs(int count) {
 		long[] longArray = new long[count];
-		for(int i = 0; i < count; i++) {
-			longArray[i] = parseLong();
-		}
+		parseLongs(longArray, 0, count);
 		return longArray;
 	}
 	
+	/**
+	 * Reads multiple next longs from the data into an existing
+	 * array. The longs are copied in bulk.
+	 *
+	 * @param destination
+	 * The array to read the longs into.
+	 *
+	 * @param offset
+	 * The index in the array of the first long.
+	 *
+	 * @param count
+	 * The number of longs to read.
+	 */
+	public void parseLongs(long[] destination, int offset, int count) {
+		dataBuffer.asLongBuffer().get(destination, offset, count);
+		skip(count * 8);
+	}
+	
 	/**
 	 * Gets the rest of the data as longs.
 	 *
@@ -628,11 +796,21 @@ public class ByteParser {
 	 * are left in the buffer.
 	 */
 	public int remainingBlocks(int size) {
-		int bytes = dataBuffer.capacity() - dataBuffer.position();
+		int bytes = dataBuffer.remaining();
 		int blocks = bytes / size;
 		return blocks;
 	}
 	
+	/**
+	 * Moves past bytes without reading them.
+	 *
+	 * @param count
+	 * The number of bytes to skip.
+	 */
+	public void skip(int count) {
+		dataBuffer.position(dataBuffer.position() + count);
+	}
+	
 	/**
 	 * Converts a single byte into a string.
 	 *
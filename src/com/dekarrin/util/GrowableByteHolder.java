@@ -240,11 +240,11 @@ public class GrowableByteHolder extends ByteHolder implements Growable {
 	 * Grows the internal storage array. The new size of the
 	 * array is calculated by taking the current size and
 	 * multiplying it by the growthFactor; this is the size
-	 * delta of the of array. This is then added to the current
-	 * size.
+	 * delta of the of array, which is always at least 1. This is
+	 * then added to the current size.
 	 */
 	private void grow() {
-		int lengthDelta = (int)(holder.length * growthFactor);
+		int lengthDelta = Math.max(1, (int)(holder.length * growthFactor));
 		int newLength = holder.length + lengthDelta;
 		resize(newLength);
 	}
@@ -87,9 +87,9 @@ public class GrowableIntHolder extends IntHolder implements Growable {
 	 */
 	@Override
 	public void add(int data) {
-		checkIndexValidity(position() + 1);
+		checkIndexValidity(position());
 		super.add(data);
-		fitSizeToIndex(position());
+		fitSizeToIndex(position()-1);
 	}
 	
 	/**
@@ -106,9 +106,10 @@ public class GrowableIntHolder extends IntHolder implements Growable {
 	 */
 	@Override
 	public void add(int[] data) {
-		checkIndexValidity(position() + data.length);
+		int finalIndex = position() + data.length - 1;
+		checkIndexValidity(finalIndex);
 		super.add(data);
-		fitSizeToIndex(position());
+		fitSizeToIndex(finalIndex);
 	}
 	
 	/**
@@ -171,8 +172,8 @@ public class GrowableIntHolder extends IntHolder implements Growable {
 	@Override
 	public void resize(int size) {
 		super.resize(size);
-		if(size > holder.length) {
-			size = holder.length;
+		if(this.size > holder.length) {
+			this.size = holder.length;
 		}
 	}
 	
@@ -239,11 +240,11 @@ public class GrowableIntHolder extends IntHolder implements Growable {
 	 * Grows the internal storage array. The new size of the
 	 * array is calculated by taking the current size and
 	 * multiplying it by the growthFactor; this is the size
-	 * delta of the of array. This is then added to the current
-	 * size.
+	 * delta of the of array, which is always at least 1. This is
+	 * then added to the current size.
 	 */
 	private void grow() {
-		int lengthDelta = (int)(holder.length * growthFactor);
+		int lengthDelta = Math.max(1, (int)(holder.length * growthFactor));
 		int newLength = holder.length + lengthDelta;
 		resize(newLength);
 	}
@@ -0,0 +1,136 @@
+package com.dekarrin.util;
+
+/**
+ * Works out the sizes and slots of the open-addressed tables used by
+ * the primitive hash collections. Tables always have a power-of-two
+ * length, so that a hash can be turned into a slot with a mask, and
+ * are never filled past the load factor, so that a probe always
+ * reaches an empty slot.
+ */
+class HashTables {
+	
+	/**
+	 * The largest fraction of a table that may be filled.
+	 */
+	public static final double LOAD_FACTOR = 0.75;
+	
+	/**
+	 * The length of the largest table that can be created.
+	 */
+	public static final int MAXIMUM_LENGTH = 1 << 30;
+	
+	/**
+	 * Finds the capacity to grow a table to.
+	 *
+	 * @param capacity
+	 * The current capacity.
+	 *
+	 * @param growthFactor
+	 * The fraction of the current capacity to add.
+	 *
+	 * @return
+	 * The new capacity. This is always at least one more than the
+	 * current capacity.
+	 */
+	public static int grow(int capacity, double growthFactor) {
+		long delta = Math.max(1, (long)(capacity * growthFactor));
+		int grown = (int)Math.min(Integer.MAX_VALUE, capacity + delta);
+		return grown;
+	}
+	
+	/**
+	 * Gets the slot that a key hashes to.
+	 *
+	 * @param key
+	 * The key.
+	 *
+	 * @param mask
+	 * One less than the length of the table.
+	 *
+	 * @return
+	 * The index of the first slot to probe for the key.
+	 */
+	public static int slot(int key, int mask) {
+		int h = key * 0x9e3779b9;
+		h ^= (h >>> 16);
+		return h & mask;
+	}
+	
+	/**
+	 * Gets the slot that a key hashes to.
+	 *
+	 * @param key
+	 * The key.
+	 *
+	 * @param mask
+	 * One less than the length of the table.
+	 *
+	 * @return
+	 * The index of the first slot to probe for the key.
+	 */
+	public static int slot(long key, int mask) {
+		long h = key * 0x9e3779b97f4a7c15L;
+		h ^= (h >>> 32);
+		h ^= (h >>> 16);
+		return (int)h & mask;
+	}
+	
+	/**
+	 * Gets the length of the smallest table that can hold a number of
+	 * keys without going over the load factor.
+	 *
+	 * @param capacity
+	 * The number of keys.
+	 *
+	 * @return
+	 * The table length, which is a power of two.
+	 */
+	public static int tableLength(int capacity) {
+		long needed = (long)Math.ceil(capacity / LOAD_FACTOR) + 1;
+		int length = 2;
+		while(length < needed && length < MAXIMUM_LENGTH) {
+			length <<= 1;
+		}
+		return length;
+	}
+	
+	/**
+	 * Gets the number of keys that a table can hold before it must be
+	 * grown.
+	 *
+	 * @param length
+	 * The length of the table.
+	 *
+	 * @return
+	 * The capacity of the table.
+	 */
+	public static int threshold(int length) {
+		int threshold = Math.min(length - 1, (int)(length * LOAD_FACTOR));
+		return threshold;
+	}
+	
+	/**
+	 * Checks whether a key in a table may be moved back into an empty
+	 * slot when another key is removed. It may as long as the empty
+	 * slot is not before the key's own slot in its probe sequence.
+	 *
+	 * @param home
+	 * The slot that the key hashes to.
+	 *
+	 * @param current
+	 * The slot that the key is in.
+	 *
+	 * @param gap
+	 * The empty slot.
+	 *
+	 * @param mask
+	 * One less than the length of the table.
+	 *
+	 * @return
+	 * True if the key can be moved into the gap; false otherwise.
+	 */
+	public static boolean canShift(int home, int current, int gap, int mask) {
+		boolean shift = ((current - home) & mask) >= ((current - gap) & mask);
+		return shift;
+	}
+}
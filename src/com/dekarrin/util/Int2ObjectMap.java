@@ -0,0 +1,458 @@
+package com.dekarrin.util;
+
+import java.util.Arrays;
+
+/**
+ * Maps ints to objects without boxing the keys. Keys and values are
+ * kept in two parallel arrays that form an open-addressed table with
+ * linear probing. An empty slot is marked by a key of 0, so the value
+ * for the key 0 is kept separately.
+ *
+ * Looking up a key that is not in the map gives null.
+ *
+ * @param <V>
+ * The type of the values.
+ *
+ * The map has a single cursor, which is reset and handed out again by
+ * each call to cursor(), so stepping through the map never allocates.
+ * Because of this, only one iteration over a map can be in progress
+ * at a time. Entries are returned in no particular order.
+ */
+public class Int2ObjectMap<V> implements Growable {
+	
+	/**
+	 * The capacity of a map created without one.
+	 */
+	public static final int DEFAULT_CAPACITY = 16;
+	
+	/**
+	 * The cursor handed out by cursor().
+	 */
+	private Cursor cursor;
+	
+	/**
+	 * How much the capacity grows by when the table runs out of room.
+	 */
+	private double growthFactor = 1.0;
+	
+	/**
+	 * Whether the map holds the key 0.
+	 */
+	private boolean hasZeroKey = false;
+	
+	/**
+	 * The keys of the table. Empty slots hold 0.
+	 */
+	private int[] keys;
+	
+	/**
+	 * One less than the length of the table.
+	 */
+	private int mask;
+	
+	/**
+	 * The number of entries in the map, including the key 0.
+	 */
+	private int size = 0;
+	
+	/**
+	 * The number of entries that can be held before the table must
+	 * grow.
+	 */
+	private int threshold;
+	
+	/**
+	 * The values of the table.
+	 */
+	private Object[] values;
+	
+	/**
+	 * The value for the key 0.
+	 */
+	private V zeroValue;
+	
+	/**
+	 * Creates a new, empty Int2ObjectMap with the default capacity.
+	 */
+	public Int2ObjectMap() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates a new, empty Int2ObjectMap.
+	 *
+	 * @param capacity
+	 * The number of entries that can be added before the map must
+	 * grow.
+	 */
+	public Int2ObjectMap(int capacity) {
+		allocate(capacity);
+	}
+	
+	/**
+	 * Creates a new, empty Int2ObjectMap.
+	 *
+	 * @param capacity
+	 * The number of entries that can be added before the map must
+	 * grow.
+	 *
+	 * @param growthFactor
+	 * How much to grow by whenever the map must be grown.
+	 */
+	public Int2ObjectMap(int capacity, double growthFactor) {
+		this(capacity);
+		this.growthFactor = growthFactor;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int capacity() {
+		return threshold;
+	}
+	
+	/**
+	 * Removes every entry from the map. The capacity is kept.
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(values, null);
+		hasZeroKey = false;
+		zeroValue = null;
+		size = 0;
+	}
+	
+	/**
+	 * Checks whether the map holds a key.
+	 *
+	 * @param key
+	 * The key to look for.
+	 *
+	 * @return
+	 * True if the key is in the map; false otherwise.
+	 */
+	public boolean containsKey(int key) {
+		if(key == 0) {
+			return hasZeroKey;
+		}
+		return (find(key) != -1);
+	}
+	
+	/**
+	 * Gets the cursor for the map, reset to before the first entry.
+	 * The same cursor is returned each time, so a new call restarts
+	 * any iteration that is in progress. The values of entries may be
+	 * changed through the cursor, but the map must not otherwise be
+	 * changed while it is being iterated over.
+	 *
+	 * @return
+	 * The cursor.
+	 */
+	public Cursor cursor() {
+		if(cursor == null) {
+			cursor = new Cursor();
+		}
+		cursor.reset();
+		return cursor;
+	}
+	
+	/**
+	 * Gets the value for a key.
+	 *
+	 * @param key
+	 * The key to look up.
+	 *
+	 * @return
+	 * The value for the key, or null if the key is not in the map.
+	 */
+	public V get(int key) {
+		if(key == 0) {
+			return hasZeroKey ? zeroValue : null;
+		}
+		int slot = find(key);
+		V value = (slot != -1) ? valueAt(slot) : null;
+		return value;
+	}
+	
+	/**
+	 * Checks whether the map is empty.
+	 *
+	 * @return
+	 * True if the map holds no entries; false otherwise.
+	 */
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+	
+	/**
+	 * Sets the value for a key.
+	 *
+	 * @param key
+	 * The key.
+	 *
+	 * @param value
+	 * The value.
+	 *
+	 * @return
+	 * The value that the key had before, or null if it was not in
+	 * the map.
+	 */
+	public V put(int key, V value) {
+		V old;
+		if(key == 0) {
+			if(hasZeroKey) {
+				old = zeroValue;
+				zeroValue = value;
+				return old;
+			}
+			hasZeroKey = true;
+			zeroValue = value;
+		} else {
+			int slot = HashTables.slot(key, mask);
+			while(keys[slot] != 0) {
+				if(keys[slot] == key) {
+					old = valueAt(slot);
+					values[slot] = value;
+					return old;
+				}
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = key;
+			values[slot] = value;
+		}
+		if(++size > threshold) {
+			resize(HashTables.grow(threshold, growthFactor));
+		}
+		return null;
+	}
+	
+	/**
+	 * Removes a key from the map. The entries that follow it in its
+	 * probe sequence are moved back to fill the gap, so no marker is
+	 * left behind and lookups do not slow down as keys are removed.
+	 *
+	 * @param key
+	 * The key to remove.
+	 *
+	 * @return
+	 * The value that the key had, or null if it was not in the map.
+	 */
+	public V remove(int key) {
+		if(key == 0) {
+			if(!hasZeroKey) {
+				return null;
+			}
+			V old = zeroValue;
+			hasZeroKey = false;
+			zeroValue = null;
+			size--;
+			return old;
+		}
+		int slot = find(key);
+		if(slot == -1) {
+			return null;
+		}
+		V old = valueAt(slot);
+		int gap = slot;
+		int next = (gap + 1) & mask;
+		while(keys[next] != 0) {
+			int home = HashTables.slot(keys[next], mask);
+			if(HashTables.canShift(home, next, gap, mask)) {
+				keys[gap] = keys[next];
+				values[gap] = values[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[gap] = 0;
+		values[gap] = null;
+		size--;
+		return old;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The table of a map is rebuilt for the new capacity, and entries
+	 * are never dropped; if the capacity given is less than the
+	 * number of entries in the map, the table is made just large
+	 * enough to hold them.
+	 */
+	@Override
+	public void resize(int size) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(Math.max(size, this.size));
+		for(int i = 0; i < oldKeys.length; i++) {
+			int key = oldKeys[i];
+			if(key != 0) {
+				int slot = HashTables.slot(key, mask);
+				while(keys[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = key;
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setGrowthFactor(double factor) {
+		growthFactor = factor;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Creates a new, empty table.
+	 *
+	 * @param capacity
+	 * The number of entries that the table must hold.
+	 */
+	private void allocate(int capacity) {
+		int length = HashTables.tableLength(capacity);
+		keys = new int[length];
+		values = new Object[length];
+		mask = length - 1;
+		threshold = HashTables.threshold(length);
+	}
+	
+	/**
+	 * Finds the slot holding a key other than 0.
+	 *
+	 * @param key
+	 * The key to look for.
+	 *
+	 * @return
+	 * The slot, or -1 if the key is not in the table.
+	 */
+	private int find(int key) {
+		int slot = HashTables.slot(key, mask);
+		while(keys[slot] != 0) {
+			if(keys[slot] == key) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Gets the value in a slot of the table.
+	 *
+	 * @param slot
+	 * The slot.
+	 *
+	 * @return
+	 * The value.
+	 */
+	@SuppressWarnings("unchecked")
+	private V valueAt(int slot) {
+		return (V)values[slot];
+	}
+	
+	/**
+	 * Steps through the entries of a Int2ObjectMap in table order,
+	 * starting with the key 0.
+	 */
+	public class Cursor {
+		
+		/**
+		 * The number of entries that have not been reached.
+		 */
+		private int remaining;
+		
+		/**
+		 * The slot of the current entry, or -1 for the key 0.
+		 */
+		private int slot;
+		
+		/**
+		 * Whether the key 0 has yet to be reached.
+		 */
+		private boolean zeroPending;
+		
+		/**
+		 * Creates a new Cursor.
+		 */
+		private Cursor() {}
+		
+		/**
+		 * Gets the key of the current entry.
+		 *
+		 * @return
+		 * The key.
+		 */
+		public int key() {
+			int key = (slot == -1) ? 0 : keys[slot];
+			return key;
+		}
+		
+		/**
+		 * Moves to the next entry.
+		 *
+		 * @return
+		 * True if there was another entry; false if the end of the
+		 * map has been reached.
+		 */
+		public boolean next() {
+			if(remaining == 0) {
+				return false;
+			}
+			remaining--;
+			if(zeroPending) {
+				zeroPending = false;
+				slot = -1;
+				return true;
+			}
+			do {
+				slot++;
+			} while(keys[slot] == 0);
+			return true;
+		}
+		
+		/**
+		 * Sets the value of the current entry.
+		 *
+		 * @param value
+		 * The new value.
+		 */
+		public void setValue(V value) {
+			if(slot == -1) {
+				zeroValue = value;
+			} else {
+				values[slot] = value;
+			}
+		}
+		
+		/**
+		 * Gets the value of the current entry.
+		 *
+		 * @return
+		 * The value.
+		 */
+		public V value() {
+			V value = (slot == -1) ? zeroValue : valueAt(slot);
+			return value;
+		}
+		
+		/**
+		 * Moves back to before the first entry.
+		 */
+		private void reset() {
+			remaining = size;
+			slot = -1;
+			zeroPending = hasZeroKey;
+		}
+	}
+}
@@ -0,0 +1,344 @@
+package com.dekarrin.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A list of ints backed by an array that grows as ints are added. The
+ * ints are stored unboxed, so a list of a million ints takes up about
+ * four megabytes rather than the twenty or so that an
+ * ArrayList&lt;Integer&gt; would.
+ *
+ * The list has a single iterator, which is reset and handed out again
+ * by each call to iterator(), so stepping through the list never
+ * allocates. Because of this, only one iteration over a list can be
+ * in progress at a time; ints can also be read directly with get().
+ */
+public class IntArrayList implements Growable {
+	
+	/**
+	 * The capacity of a list created without one.
+	 */
+	public static final int DEFAULT_CAPACITY = 10;
+	
+	/**
+	 * The array holding the ints.
+	 */
+	private int[] elements;
+	
+	/**
+	 * How much the array grows by when it runs out of room.
+	 */
+	private double growthFactor = 0.5;
+	
+	/**
+	 * The iterator handed out by iterator().
+	 */
+	private Cursor iterator;
+	
+	/**
+	 * The number of ints in the list.
+	 */
+	private int size = 0;
+	
+	/**
+	 * Creates a new, empty IntArrayList with the default capacity.
+	 */
+	public IntArrayList() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates a new, empty IntArrayList.
+	 *
+	 * @param capacity
+	 * The number of ints that can be added before the list must
+	 * grow.
+	 */
+	public IntArrayList(int capacity) {
+		elements = new int[capacity];
+	}
+	
+	/**
+	 * Creates a new, empty IntArrayList.
+	 *
+	 * @param capacity
+	 * The number of ints that can be added before the list must
+	 * grow.
+	 *
+	 * @param growthFactor
+	 * How much to grow by whenever the list must be grown.
+	 */
+	public IntArrayList(int capacity, double growthFactor) {
+		this(capacity);
+		this.growthFactor = growthFactor;
+	}
+	
+	/**
+	 * Creates a new IntArrayList holding a copy of an array.
+	 *
+	 * @param values
+	 * The ints to put in the list.
+	 */
+	public IntArrayList(int[] values) {
+		elements = values.clone();
+		size = values.length;
+	}
+	
+	/**
+	 * Adds an int to the end of the list.
+	 *
+	 * @param value
+	 * The int to add.
+	 */
+	public void add(int value) {
+		ensureCapacity(size + 1);
+		elements[size++] = value;
+	}
+	
+	/**
+	 * Adds ints to the end of the list.
+	 *
+	 * @param values
+	 * The ints to add.
+	 */
+	public void addAll(int[] values) {
+		ensureCapacity(size + values.length);
+		System.arraycopy(values, 0, elements, size, values.length);
+		size += values.length;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int capacity() {
+		return elements.length;
+	}
+	
+	/**
+	 * Removes every int from the list. The capacity is kept.
+	 */
+	public void clear() {
+		size = 0;
+	}
+	
+	/**
+	 * Checks whether the list holds an int.
+	 *
+	 * @param value
+	 * The int to look for.
+	 *
+	 * @return
+	 * True if the int is in the list; false otherwise.
+	 */
+	public boolean contains(int value) {
+		return (indexOf(value) != -1);
+	}
+	
+	/**
+	 * Makes sure that the list can hold a number of ints without
+	 * growing again.
+	 *
+	 * @param minimum
+	 * The number of ints.
+	 */
+	public void ensureCapacity(int minimum) {
+		if(minimum > elements.length) {
+			int newLength = HashTables.grow(elements.length, growthFactor);
+			resize(Math.max(minimum, newLength));
+		}
+	}
+	
+	/**
+	 * Gets the int at an index.
+	 *
+	 * @param index
+	 * The index of the int.
+	 *
+	 * @return
+	 * The int.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * If the index is not less than the size of the list.
+	 */
+	public int get(int index) {
+		checkIndex(index);
+		return elements[index];
+	}
+	
+	/**
+	 * Finds the first index of an int.
+	 *
+	 * @param value
+	 * The int to look for.
+	 *
+	 * @return
+	 * The index of the int, or -1 if it is not in the list.
+	 */
+	public int indexOf(int value) {
+		for(int i = 0; i < size; i++) {
+			if(elements[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Checks whether the list is empty.
+	 *
+	 * @return
+	 * True if the list holds no ints; false otherwise.
+	 */
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+	
+	/**
+	 * Gets the iterator for the list, reset to the first int. The
+	 * same iterator is returned each time, so a new call restarts
+	 * any iteration that is in progress. The list must not be changed
+	 * while it is being iterated over.
+	 *
+	 * @return
+	 * The iterator.
+	 */
+	public IntIterator iterator() {
+		if(iterator == null) {
+			iterator = new Cursor();
+		}
+		iterator.index = 0;
+		return iterator;
+	}
+	
+	/**
+	 * Removes the int at an index. The ints after it are moved down
+	 * by one.
+	 *
+	 * @param index
+	 * The index of the int.
+	 *
+	 * @return
+	 * The int that was removed.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * If the index is not less than the size of the list.
+	 */
+	public int removeAt(int index) {
+		checkIndex(index);
+		int old = elements[index];
+		System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+		size--;
+		return old;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void resize(int size) {
+		elements = Arrays.copyOf(elements, size);
+		if(this.size > size) {
+			this.size = size;
+		}
+	}
+	
+	/**
+	 * Sets the int at an index.
+	 *
+	 * @param index
+	 * The index of the int.
+	 *
+	 * @param value
+	 * The new int.
+	 *
+	 * @return
+	 * The int that was replaced.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * If the index is not less than the size of the list.
+	 */
+	public int set(int index, int value) {
+		checkIndex(index);
+		int old = elements[index];
+		elements[index] = value;
+		return old;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setGrowthFactor(double factor) {
+		growthFactor = factor;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Sorts the list into ascending order.
+	 */
+	public void sort() {
+		Arrays.sort(elements, 0, size);
+	}
+	
+	/**
+	 * Copies the ints into a new array.
+	 *
+	 * @return
+	 * An array holding the ints in the list, in order.
+	 */
+	public int[] toArray() {
+		int[] values = Arrays.copyOf(elements, size);
+		return values;
+	}
+	
+	/**
+	 * Checks that an index is within the list.
+	 *
+	 * @param index
+	 * The index to check.
+	 */
+	private void checkIndex(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+	
+	/**
+	 * Steps through the list in order.
+	 */
+	private class Cursor implements IntIterator {
+		
+		/**
+		 * The index of the next int.
+		 */
+		private int index;
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() {
+			return (index < size);
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int next() {
+			if(index >= size) {
+				throw new NoSuchElementException();
+			}
+			return elements[index++];
+		}
+	}
+}
@@ -50,7 +50,7 @@ public class IntHolder implements PrimitiveHolder {
 	 */
 	public void set(int data, int index) {
 		holder[index] = data;
-		if(index > position) {
+		if(index >= position) {
 			position = index + 1;
 		}
 	}
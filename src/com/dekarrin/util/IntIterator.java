@@ -0,0 +1,26 @@
+package com.dekarrin.util;
+
+/**
+ * Steps through a collection of ints without boxing them.
+ */
+public interface IntIterator {
+	
+	/**
+	 * Checks whether there are any ints left.
+	 *
+	 * @return
+	 * True if next() will return another int; false otherwise.
+	 */
+	public boolean hasNext();
+	
+	/**
+	 * Gets the next int.
+	 *
+	 * @return
+	 * The int.
+	 *
+	 * @throws java.util.NoSuchElementException
+	 * If there are no ints left.
+	 */
+	public int next();
+}
@@ -0,0 +1,344 @@
+package com.dekarrin.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A list of longs backed by an array that grows as longs are added. The
+ * longs are stored unboxed, so a list of a million longs takes up about
+ * eight megabytes rather than the twenty-four or so that an
+ * ArrayList&lt;Long&gt; would.
+ *
+ * The list has a single iterator, which is reset and handed out again
+ * by each call to iterator(), so stepping through the list never
+ * allocates. Because of this, only one iteration over a list can be
+ * in progress at a time; longs can also be read directly with get().
+ */
+public class LongArrayList implements Growable {
+	
+	/**
+	 * The capacity of a list created without one.
+	 */
+	public static final int DEFAULT_CAPACITY = 10;
+	
+	/**
+	 * The array holding the longs.
+	 */
+	private long[] elements;
+	
+	/**
+	 * How much the array grows by when it runs out of room.
+	 */
+	private double growthFactor = 0.5;
+	
+	/**
+	 * The iterator handed out by iterator().
+	 */
+	private Cursor iterator;
+	
+	/**
+	 * The number of longs in the list.
+	 */
+	private int size = 0;
+	
+	/**
+	 * Creates a new, empty LongArrayList with the default capacity.
+	 */
+	public LongArrayList() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates a new, empty LongArrayList.
+	 *
+	 * @param capacity
+	 * The number of longs that can be added before the list must
+	 * grow.
+	 */
+	public LongArrayList(int capacity) {
+		elements = new long[capacity];
+	}
+	
+	/**
+	 * Creates a new, empty LongArrayList.
+	 *
+	 * @param capacity
+	 * The number of longs that can be added before the list must
+	 * grow.
+	 *
+	 * @param growthFactor
+	 * How much to grow by whenever the list must be grown.
+	 */
+	public LongArrayList(int capacity, double growthFactor) {
+		this(capacity);
+		this.growthFactor = growthFactor;
+	}
+	
+	/**
+	 * Creates a new LongArrayList holding a copy of an array.
+	 *
+	 * @param values
+	 * The longs to put in the list.
+	 */
+	public LongArrayList(long[] values) {
+		elements = values.clone();
+		size = values.length;
+	}
+	
+	/**
+	 * Adds a long to the end of the list.
+	 *
+	 * @param value
+	 * The long to add.
+	 */
+	public void add(long value) {
+		ensureCapacity(size + 1);
+		elements[size++] = value;
+	}
+	
+	/**
+	 * Adds longs to the end of the list.
+	 *
+	 * @param values
+	 * The longs to add.
+	 */
+	public void addAll(long[] values) {
+		ensureCapacity(size + values.length);
+		System.arraycopy(values, 0, elements, size, values.length);
+		size += values.length;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int capacity() {
+		return elements.length;
+	}
+	
+	/**
+	 * Removes every long from the list. The capacity is kept.
+	 */
+	public void clear() {
+		size = 0;
+	}
+	
+	/**
+	 * Checks whether the list holds an long.
+	 *
+	 * @param value
+	 * The long to look for.
+	 *
+	 * @return
+	 * True if the long is in the list; false otherwise.
+	 */
+	public boolean contains(long value) {
+		return (indexOf(value) != -1);
+	}
+	
+	/**
+	 * Makes sure that the list can hold a number of longs without
+	 * growing again.
+	 *
+	 * @param minimum
+	 * The number of longs.
+	 */
+	public void ensureCapacity(int minimum) {
+		if(minimum > elements.length) {
+			int newLength = HashTables.grow(elements.length, growthFactor);
+			resize(Math.max(minimum, newLength));
+		}
+	}
+	
+	/**
+	 * Gets the long at an index.
+	 *
+	 * @param index
+	 * The index of the long.
+	 *
+	 * @return
+	 * The long.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * If the index is not less than the size of the list.
+	 */
+	public long get(int index) {
+		checkIndex(index);
+		return elements[index];
+	}
+	
+	/**
+	 * Finds the first index of an long.
+	 *
+	 * @param value
+	 * The long to look for.
+	 *
+	 * @return
+	 * The index of the long, or -1 if it is not in the list.
+	 */
+	public int indexOf(long value) {
+		for(int i = 0; i < size; i++) {
+			if(elements[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Checks whether the list is empty.
+	 *
+	 * @return
+	 * True if the list holds no longs; false otherwise.
+	 */
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+	
+	/**
+	 * Gets the iterator for the list, reset to the first long. The
+	 * same iterator is returned each time, so a new call restarts
+	 * any iteration that is in progress. The list must not be changed
+	 * while it is being iterated over.
+	 *
+	 * @return
+	 * The iterator.
+	 */
+	public LongIterator iterator() {
+		if(iterator == null) {
+			iterator = new Cursor();
+		}
+		iterator.index = 0;
+		return iterator;
+	}
+	
+	/**
+	 * Removes the long at an index. The longs after it are moved down
+	 * by one.
+	 *
+	 * @param index
+	 * The index of the long.
+	 *
+	 * @return
+	 * The long that was removed.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * If the index is not less than the size of the list.
+	 */
+	public long removeAt(int index) {
+		checkIndex(index);
+		long old = elements[index];
+		System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+		size--;
+		return old;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void resize(int size) {
+		elements = Arrays.copyOf(elements, size);
+		if(this.size > size) {
+			this.size = size;
+		}
+	}
+	
+	/**
+	 * Sets the long at an index.
+	 *
+	 * @param index
+	 * The index of the long.
+	 *
+	 * @param value
+	 * The new long.
+	 *
+	 * @return
+	 * The long that was replaced.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 * If the index is not less than the size of the list.
+	 */
+	public long set(int index, long value) {
+		checkIndex(index);
+		long old = elements[index];
+		elements[index] = value;
+		return old;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setGrowthFactor(double factor) {
+		growthFactor = factor;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Sorts the list into ascending order.
+	 */
+	public void sort() {
+		Arrays.sort(elements, 0, size);
+	}
+	
+	/**
+	 * Copies the longs into a new array.
+	 *
+	 * @return
+	 * An array holding the longs in the list, in order.
+	 */
+	public long[] toArray() {
+		long[] values = Arrays.copyOf(elements, size);
+		return values;
+	}
+	
+	/**
+	 * Checks that an index is within the list.
+	 *
+	 * @param index
+	 * The index to check.
+	 */
+	private void checkIndex(int index) {
+		if(index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+	
+	/**
+	 * Steps through the list in order.
+	 */
+	private class Cursor implements LongIterator {
+		
+		/**
+		 * The index of the next long.
+		 */
+		private int index;
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() {
+			return (index < size);
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public long next() {
+			if(index >= size) {
+				throw new NoSuchElementException();
+			}
+			return elements[index++];
+		}
+	}
+}
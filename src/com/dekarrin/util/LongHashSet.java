@@ -0,0 +1,364 @@
+package com.dekarrin.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of longs that stores them unboxed. The longs are kept in an
+ * open-addressed table with linear probing, so each one takes up a
+ * single slot of a long array instead of a boxed Long and a hash map
+ * entry. An empty slot is marked by 0, so whether the set holds 0 is
+ * kept separately.
+ *
+ * The set has a single iterator, which is reset and handed out again
+ * by each call to iterator(), so stepping through the set never
+ * allocates. Because of this, only one iteration over a set can be in
+ * progress at a time. The longs are returned in no particular order.
+ */
+public class LongHashSet implements Growable {
+	
+	/**
+	 * The capacity of a set created without one.
+	 */
+	public static final int DEFAULT_CAPACITY = 16;
+	
+	/**
+	 * How much the capacity grows by when the table runs out of room.
+	 */
+	private double growthFactor = 1.0;
+	
+	/**
+	 * Whether the set holds 0.
+	 */
+	private boolean hasZero = false;
+	
+	/**
+	 * The iterator handed out by iterator().
+	 */
+	private Cursor iterator;
+	
+	/**
+	 * One less than the length of the table.
+	 */
+	private int mask;
+	
+	/**
+	 * The number of longs in the set, including 0.
+	 */
+	private int size = 0;
+	
+	/**
+	 * The hash table. Empty slots hold 0.
+	 */
+	private long[] table;
+	
+	/**
+	 * The number of longs that can be held before the table must
+	 * grow.
+	 */
+	private int threshold;
+	
+	/**
+	 * Creates a new, empty LongHashSet with the default capacity.
+	 */
+	public LongHashSet() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates a new, empty LongHashSet.
+	 *
+	 * @param capacity
+	 * The number of longs that can be added before the set must
+	 * grow.
+	 */
+	public LongHashSet(int capacity) {
+		allocate(capacity);
+	}
+	
+	/**
+	 * Creates a new, empty LongHashSet.
+	 *
+	 * @param capacity
+	 * The number of longs that can be added before the set must
+	 * grow.
+	 *
+	 * @param growthFactor
+	 * How much to grow by whenever the set must be grown.
+	 */
+	public LongHashSet(int capacity, double growthFactor) {
+		this(capacity);
+		this.growthFactor = growthFactor;
+	}
+	
+	/**
+	 * Adds a long to the set.
+	 *
+	 * @param value
+	 * The long to add.
+	 *
+	 * @return
+	 * True if the long was added; false if it was already in the
+	 * set.
+	 */
+	public boolean add(long value) {
+		if(value == 0) {
+			if(hasZero) {
+				return false;
+			}
+			hasZero = true;
+		} else {
+			int slot = HashTables.slot(value, mask);
+			while(table[slot] != 0) {
+				if(table[slot] == value) {
+					return false;
+				}
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = value;
+		}
+		if(++size > threshold) {
+			resize(HashTables.grow(threshold, growthFactor));
+		}
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int capacity() {
+		return threshold;
+	}
+	
+	/**
+	 * Removes every long from the set. The capacity is kept.
+	 */
+	public void clear() {
+		Arrays.fill(table, 0);
+		hasZero = false;
+		size = 0;
+	}
+	
+	/**
+	 * Checks whether the set holds a long.
+	 *
+	 * @param value
+	 * The long to look for.
+	 *
+	 * @return
+	 * True if the long is in the set; false otherwise.
+	 */
+	public boolean contains(long value) {
+		if(value == 0) {
+			return hasZero;
+		}
+		int slot = HashTables.slot(value, mask);
+		while(table[slot] != 0) {
+			if(table[slot] == value) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks whether the set is empty.
+	 *
+	 * @return
+	 * True if the set holds no longs; false otherwise.
+	 */
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+	
+	/**
+	 * Gets the iterator for the set, reset to the first long. The
+	 * same iterator is returned each time, so a new call restarts
+	 * any iteration that is in progress. The set must not be changed
+	 * while it is being iterated over.
+	 *
+	 * @return
+	 * The iterator.
+	 */
+	public LongIterator iterator() {
+		if(iterator == null) {
+			iterator = new Cursor();
+		}
+		iterator.reset();
+		return iterator;
+	}
+	
+	/**
+	 * Removes a long from the set. The longs that follow it in its
+	 * probe sequence are moved back to fill the gap, so no marker is
+	 * left behind and lookups do not slow down as longs are removed.
+	 *
+	 * @param value
+	 * The long to remove.
+	 *
+	 * @return
+	 * True if the long was removed; false if it was not in the set.
+	 */
+	public boolean remove(long value) {
+		if(value == 0) {
+			if(!hasZero) {
+				return false;
+			}
+			hasZero = false;
+			size--;
+			return true;
+		}
+		int slot = HashTables.slot(value, mask);
+		while(table[slot] != value) {
+			if(table[slot] == 0) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		int gap = slot;
+		int next = (gap + 1) & mask;
+		while(table[next] != 0) {
+			int home = HashTables.slot(table[next], mask);
+			if(HashTables.canShift(home, next, gap, mask)) {
+				table[gap] = table[next];
+				gap = next;
+			}
+			next = (next + 1) & mask;
+		}
+		table[gap] = 0;
+		size--;
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The table of a set is rebuilt for the new capacity, and longs
+	 * are never dropped; if the capacity given is less than the
+	 * number of longs in the set, the table is made just large
+	 * enough to hold them.
+	 */
+	@Override
+	public void resize(int size) {
+		long[] oldTable = table;
+		allocate(Math.max(size, this.size));
+		for(int i = 0; i < oldTable.length; i++) {
+			long value = oldTable[i];
+			if(value != 0) {
+				int slot = HashTables.slot(value, mask);
+				while(table[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				table[slot] = value;
+			}
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setGrowthFactor(double factor) {
+		growthFactor = factor;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Copies the longs into a new array.
+	 *
+	 * @return
+	 * An array holding every long in the set.
+	 */
+	public long[] toArray() {
+		long[] values = new long[size];
+		int i = 0;
+		if(hasZero) {
+			i++;
+		}
+		for(int slot = 0; slot < table.length; slot++) {
+			if(table[slot] != 0) {
+				values[i++] = table[slot];
+			}
+		}
+		return values;
+	}
+	
+	/**
+	 * Creates a new, empty table.
+	 *
+	 * @param capacity
+	 * The number of longs that the table must hold.
+	 */
+	private void allocate(int capacity) {
+		int length = HashTables.tableLength(capacity);
+		table = new long[length];
+		mask = length - 1;
+		threshold = HashTables.threshold(length);
+	}
+	
+	/**
+	 * Steps through the set in table order, starting with 0.
+	 */
+	private class Cursor implements LongIterator {
+		
+		/**
+		 * The number of longs that have not been returned.
+		 */
+		private int remaining;
+		
+		/**
+		 * The slot of the last long returned.
+		 */
+		private int slot;
+		
+		/**
+		 * Whether 0 has yet to be returned.
+		 */
+		private boolean zeroPending;
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() {
+			return (remaining > 0);
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public long next() {
+			if(remaining == 0) {
+				throw new NoSuchElementException();
+			}
+			remaining--;
+			if(zeroPending) {
+				zeroPending = false;
+				return 0;
+			}
+			do {
+				slot++;
+			} while(table[slot] == 0);
+			return table[slot];
+		}
+		
+		/**
+		 * Moves back to the start of the set.
+		 */
+		private void reset() {
+			remaining = size;
+			slot = -1;
+			zeroPending = hasZero;
+		}
+	}
+}
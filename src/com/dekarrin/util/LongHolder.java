@@ -0,0 +1,161 @@
+package com.dekarrin.util;
+
+import java.util.Arrays;
+
+/**
+ * Holds longs and remembers its current location.
+ */
+public class LongHolder implements PrimitiveHolder {
+	
+	/**
+	 * The internal array for holding elements.
+	 */
+	protected long[] holder;
+	
+	/**
+	 * The pointer for remembering the current position.
+	 */
+	protected int position = 0;
+	
+	/**
+	 * Creates a new LongHolder of a specified size.
+	 *
+	 * @param size
+	 * The size of the long holder.
+	 */
+	public LongHolder(int size) {
+		holder = new long[size];
+	}
+	
+	/**
+	 * Creates a new LongHolder from an existing array.
+	 *
+	 * @param array
+	 * The array to create the LongHolder from.
+	 */
+	public LongHolder(long[] array) {
+		holder = array;
+	}
+	
+	/**
+	 * Inserts a long at an index. If the index is greater
+	 * than the current position, the position is changed to
+	 * the index + 1.
+	 *
+	 * @param data
+	 * The long to be inserted.
+	 *
+	 * @param index
+	 * The index to insert it at.
+	 */
+	public void set(long data, int index) {
+		holder[index] = data;
+		if(index >= position) {
+			position = index + 1;
+		}
+	}
+	
+	/**
+	 * Inserts a long at the end of the holder. The long is
+	 * inserted and the position pointer is incremented by 1.
+	 *
+	 * @param data
+	 * The long to be inserted.
+	 */
+	public void add(long data) {
+		holder[position++] = data;
+	}
+	
+	/**
+	 * Inserts longs at the end of the holder. The longs are
+	 * inserted and the position pointer is incremented by
+	 * the length of the given array.
+	 *
+	 * @param data
+	 * The longs to be inserted.
+	 */
+	public void add(long[] data) {
+		for(int i = 0; i < data.length; i++) {
+			add(data[i]);
+		}
+	}
+	
+	/**
+	 * Gets the long at the specified index.
+	 *
+	 * @param index
+	 * The index to retrieve the long from.
+	 *
+	 * @return
+	 * The specified long.
+	 */
+	public long get(int index) {
+		return holder[index];
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void resize(int size) {
+		holder = Arrays.copyOfRange(holder, 0, size);
+		if(position > holder.length) {
+			reset();
+		}
+	}
+	
+	/**
+	 * Gets the entire internal array.
+	 *
+	 * @return
+	 * The array.
+	 */
+	public long[] toArray() {
+		return holder;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int position() {
+		return position;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void move(int index) {
+		position = index;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void reset() {
+		move(0);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isAtEnd() {
+		return (position == holder.length);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int size() {
+		return holder.length;
+	}
+	
+	/**
+	 * Gets the next long.
+	 *
+	 * @return
+	 * The long.
+	 */
+	public long next() {
+		long nextLong = holder[position++];
+		return nextLong;
+	}
+}
\ No newline at end of file
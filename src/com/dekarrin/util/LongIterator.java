@@ -0,0 +1,26 @@
+package com.dekarrin.util;
+
+/**
+ * Steps through a collection of longs without boxing them.
+ */
+public interface LongIterator {
+	
+	/**
+	 * Checks whether there are any longs left.
+	 *
+	 * @return
+	 * True if next() will return another long; false otherwise.
+	 */
+	public boolean hasNext();
+	
+	/**
+	 * Gets the next long.
+	 *
+	 * @return
+	 * The long.
+	 *
+	 * @throws java.util.NoSuchElementException
+	 * If there are no longs left.
+	 */
+	public long next();
+}
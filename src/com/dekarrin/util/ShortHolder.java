@@ -0,0 +1,161 @@
+package com.dekarrin.util;
+
+import java.util.Arrays;
+
+/**
+ * Holds shorts and remembers its current location.
+ */
+public class ShortHolder implements PrimitiveHolder {
+	
+	/**
+	 * The internal array for holding elements.
+	 */
+	protected short[] holder;
+	
+	/**
+	 * The pointer for remembering the current position.
+	 */
+	protected int position = 0;
+	
+	/**
+	 * Creates a new ShortHolder of a specified size.
+	 *
+	 * @param size
+	 * The size of the short holder.
+	 */
+	public ShortHolder(int size) {
+		holder = new short[size];
+	}
+	
+	/**
+	 * Creates a new ShortHolder from an existing array.
+	 *
+	 * @param array
+	 * The array to create the ShortHolder from.
+	 */
+	public ShortHolder(short[] array) {
+		holder = array;
+	}
+	
+	/**
+	 * Inserts a short at an index. If the index is greater
+	 * than the current position, the position is changed to
+	 * the index + 1.
+	 *
+	 * @param data
+	 * The short to be inserted.
+	 *
+	 * @param index
+	 * The index to insert it at.
+	 */
+	public void set(short data, int index) {
+		holder[index] = data;
+		if(index >= position) {
+			position = index + 1;
+		}
+	}
+	
+	/**
+	 * Inserts a short at the end of the holder. The short is
+	 * inserted and the position pointer is incremented by 1.
+	 *
+	 * @param data
+	 * The short to be inserted.
+	 */
+	public void add(short data) {
+		holder[position++] = data;
+	}
+	
+	/**
+	 * Inserts shorts at the end of the holder. The shorts are
+	 * inserted and the position pointer is incremented by
+	 * the length of the given array.
+	 *
+	 * @param data
+	 * The shorts to be inserted.
+	 */
+	public void add(short[] data) {
+		for(int i = 0; i < data.length; i++) {
+			add(data[i]);
+		}
+	}
+	
+	/**
+	 * Gets the short at the specified index.
+	 *
+	 * @param index
+	 * The index to retrieve the short from.
+	 *
+	 * @return
+	 * The specified short.
+	 */
+	public short get(int index) {
+		return holder[index];
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void resize(int size) {
+		holder = Arrays.copyOfRange(holder, 0, size);
+		if(position > holder.length) {
+			reset();
+		}
+	}
+	
+	/**
+	 * Gets the entire internal array.
+	 *
+	 * @return
+	 * The array.
+	 */
+	public short[] toArray() {
+		return holder;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int position() {
+		return position;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void move(int index) {
+		position = index;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void reset() {
+		move(0);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean isAtEnd() {
+		return (position == holder.length);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public int size() {
+		return holder.length;
+	}
+	
+	/**
+	 * Gets the next short.
+	 *
+	 * @return
+	 * The short.
+	 */
+	public short next() {
+		short nextShort = holder[position++];
+		return nextShort;
+	}
+}
\ No newline at end of file
@@ -18,10 +18,15 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import com.dekarrin.db.MySqlEngine;
+import com.dekarrin.db.ResultCursor;
 import com.dekarrin.db.TableData;
+import com.dekarrin.db.TableIndex;
 import com.dekarrin.error.TrafficException;
 import com.dekarrin.program.ConsoleProgram;
 import com.dekarrin.program.FatalErrorException;
+import com.dekarrin.util.LongArrayList;
+import com.dekarrin.util.LongHashSet;
+import com.dekarrin.util.LongIterator;
 
 /**
  * Grabs data from the WOW auction house.
@@ -89,9 +94,22 @@ public class AuctionScan extends ConsoleProgram {
 	private boolean onFullSnapshot = false;
 	
 	/**
-	 * A list of current auction ids.
+	 * The ids of the auctions in the last snapshot that have not been
+	 * seen in the current dump. These are kept unboxed, since a
+	 * snapshot can hold millions of them.
 	 */
-	private HashMap<Long,Long> deletedAuctions;
+	private LongHashSet deletedAuctions;
+	
+	/**
+	 * The auctions in the current snapshot as they were before the
+	 * current dump was added.
+	 */
+	private TableData currentAuctions;
+	
+	/**
+	 * Finds the rows of currentAuctions by auc.
+	 */
+	private TableIndex currentAuctionsByAuc;
 	
 	public static void main(String[] args) {
 		new AuctionScan(args);
@@ -113,6 +131,8 @@ public class AuctionScan extends ConsoleProgram {
 				if(!onFullSnapshot) {
 					System.out.println("Setting up used auction ID's...");
 					setupDeletedAuctions();
+					System.out.println("Loading current auctions...");
+					loadCurrentAuctions();
 				}
 				System.out.println("Adding new and changed auctions...");
 				addNewAndChangedAuctions();
@@ -124,6 +144,7 @@ public class AuctionScan extends ConsoleProgram {
 				} else {
 					System.out.println("Auction deletion not required.");
 				}
+				core.db.flush();
 			} else {
 				System.out.println("Snapshot is up to date.");
 			}
@@ -366,7 +387,7 @@ public class AuctionScan extends ConsoleProgram {
 	 * @throws SQLException 
 	 */
 	private boolean auctionExists(AuctionData auction) throws SQLException {
-		return deletedAuctions.containsKey(auction.auc);
+		return deletedAuctions.contains(auction.auc);
 	}
 	
 	/**
@@ -374,9 +395,10 @@ public class AuctionScan extends ConsoleProgram {
 	 * event for them.
 	 */
 	private void removeOldAuctions() throws SQLException {
-		for(Long auc: deletedAuctions.values()) {
+		LongIterator aucs = deletedAuctions.iterator();
+		while(aucs.hasNext()) {
 			AuctionData ad = new AuctionData();
-			ad.auc = auc;
+			ad.auc = aucs.next();
 			addEvent("remove", ad);
 		}
 	}
@@ -387,9 +409,11 @@ public class AuctionScan extends ConsoleProgram {
 	 * @throws SQLException 
 	 */
 	private void changeExistingAuction(AuctionData auction) throws SQLException {
-		core.db.selectRows("auctions", "`auc`='"+auction.auc+"' AND `snapshot`='"+lastSnapshot+"'");
+		if(!currentAuctionsByAuc.containsKey(auction.auc)) {
+			throw new SQLException("Auction "+auction.auc+" is not in snapshot "+lastSnapshot);
+		}
 		HashMap<String,String> newData;
-		newData = core.db.getResult().getMap();
+		newData = currentAuctions.getMap(currentAuctionsByAuc.get(auction.auc));
 		AuctionData oldAuction = new AuctionData(newData);
 		if(!oldAuction.equals(auction)) {
 			if(auction.bid != oldAuction.bid) {
@@ -417,19 +441,38 @@ public class AuctionScan extends ConsoleProgram {
 	 * @throws SQLException 
 	 */
 	private long[] getCurrentIds() throws SQLException {
-		core.db.call("get_current_ids");
-		TableData td = core.db.getResult();
-		return td.getLongArray("auc");
+		LongArrayList ids = new LongArrayList();
+		ResultCursor cursor = core.db.callCursor("get_current_ids");
+		try {
+			int auc = cursor.columnIndex("auc");
+			while(cursor.next()) {
+				ids.add(cursor.getLong(auc));
+			}
+		} finally {
+			cursor.close();
+		}
+		return ids.toArray();
 	}
 	
 	private void setupDeletedAuctions() throws SQLException {
-		deletedAuctions = new HashMap<Long,Long>();
 		long[] aucs = getCurrentIds();
+		deletedAuctions = new LongHashSet(aucs.length);
 		for(long auc: aucs) {
-			deletedAuctions.put(auc, auc);
+			deletedAuctions.add(auc);
 		}
 	}
 	
+	/**
+	 * Loads every auction in the current snapshot at once and indexes
+	 * them by auc, so that changed auctions can be compared without a
+	 * query for each one.
+	 */
+	private void loadCurrentAuctions() throws SQLException {
+		core.db.selectRows("auctions", "`snapshot`='"+lastSnapshot+"'");
+		currentAuctions = core.db.getResult();
+		currentAuctionsByAuc = currentAuctions.index("auc");
+	}
+	
 	/**
 	 * Makes it so an auction is tagged as not deleted.
 	 */
@@ -450,17 +493,18 @@ public class AuctionScan extends ConsoleProgram {
 	 */
 	private void addEvent(String eventType, AuctionData auction) throws SQLException {
 		TableData td = new TableData("events");
-		td.addColumn("auction", "event", "snapshot");
+		// every event has the same columns so that they all go in one batch
+		td.addColumn("auction", "event", "snapshot", "argument");
 		td.addRow(Long.toString(auction.auc), eventType, Long.toString(lastSnapshot));
 		eventType.toLowerCase();
 		if(eventType.equals("time")) {
-			td.addColumn("argument");
-			td.jumpColumn("argument").set(auction.timeLeft.toString());
+			td.set("argument", auction.timeLeft.toString());
 		} else if(eventType.equals("bid")) {
-			td.addColumn("argument");
-			td.jumpColumn("argument").set(Integer.toString(auction.bid));
+			td.set("argument", Integer.toString(auction.bid));
+		} else {
+			td.set("argument", (String)null);
 		}
-		core.db.insert(td);
+		core.db.insertBatch(td);
 	}
 	
 	/**
@@ -482,7 +526,7 @@ public class AuctionScan extends ConsoleProgram {
 		td.setInt(auction.quantity);
 		td.set(auction.timeLeft.toString());
 		td.set(auction.faction.toString());
-		core.db.insert(td);
+		core.db.insertBatch(td);
 	}
 	
 	/**
@@ -64,8 +64,7 @@ public class ItemScan extends ConsoleProgram {
 	 * @throws SQLException 
 	 */
 	private boolean hasNullItems() throws SQLException {
-		core.db.selectItem("id", "items", "`name` IS NULL");
-		return !(core.db.getResult().isEmpty());
+		return (core.db.selectItem("id", "items", "`name` IS NULL") != null);
 	}
 	
 	/**
@@ -0,0 +1,61 @@
+package com.dekarrin.zip;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Helpers for the growable output buffers used by the compressers.
+ */
+class ByteBuffers {
+
+	/**
+	 * The smallest capacity that a grown buffer is given.
+	 */
+	private static final int MINIMUM_CAPACITY = 64;
+
+	/**
+	 * Creates a larger copy of a buffer. The new buffer has at least
+	 * twice the capacity, is direct if the old one was, and holds
+	 * the bytes of the old one up to its position.
+	 *
+	 * @param buffer
+	 * The buffer to grow.
+	 *
+	 * @return
+	 * The new buffer, positioned just past the copied bytes.
+	 */
+	public static ByteBuffer grow(ByteBuffer buffer) {
+		int capacity = (int)Math.min(Integer.MAX_VALUE, Math.max(MINIMUM_CAPACITY, buffer.capacity() * 2L));
+		if(capacity <= buffer.position()) {
+			throw new OutOfMemoryError("Output is too large for a buffer");
+		}
+		ByteBuffer grown;
+		if(buffer.isDirect()) {
+			grown = ByteBuffer.allocateDirect(capacity);
+		} else {
+			grown = ByteBuffer.allocate(capacity);
+		}
+		buffer.flip();
+		grown.put(buffer);
+		return grown;
+	}
+
+	/**
+	 * Gets the bytes of a heap buffer up to its position as an array.
+	 * The backing array itself is returned when it is exactly full.
+	 *
+	 * @param buffer
+	 * The buffer to get the bytes of.
+	 *
+	 * @return
+	 * The bytes.
+	 */
+	public static byte[] toArray(ByteBuffer buffer) {
+		byte[] array = buffer.array();
+		int length = buffer.position();
+		if(buffer.arrayOffset() != 0 || length != array.length) {
+			array = Arrays.copyOfRange(array, buffer.arrayOffset(), buffer.arrayOffset() + length);
+		}
+		return array;
+	}
+}
@@ -0,0 +1,56 @@
+package com.dekarrin.zip;
+
+import java.util.zip.Deflater;
+
+/**
+ * The strategies that a ZLIB compresser can use for matching data.
+ * The run-length strategy of native zlib is not offered by the Java
+ * Deflater; HUFFMAN_ONLY is the closest substitute for data that is
+ * mostly runs of repeated bytes.
+ */
+public enum CompressionStrategy {
+	
+	/**
+	 * Normal string matching. This works best for most data.
+	 */
+	DEFAULT(Deflater.DEFAULT_STRATEGY),
+	
+	/**
+	 * Favors Huffman coding over string matching. This works best
+	 * for data made up of small values with a fairly random
+	 * distribution, such as filtered image data.
+	 */
+	FILTERED(Deflater.FILTERED),
+	
+	/**
+	 * Uses Huffman coding only, with no string matching. This is the
+	 * fastest strategy.
+	 */
+	HUFFMAN_ONLY(Deflater.HUFFMAN_ONLY);
+	
+	/**
+	 * The Deflater constant for this strategy.
+	 */
+	private int deflaterValue;
+	
+	/**
+	 * Creates a new CompressionStrategy.
+	 * 
+	 * @param value
+	 * The Deflater constant for the strategy.
+	 */
+	private CompressionStrategy(int value) {
+		deflaterValue = value;
+	}
+	
+	/**
+	 * Gets the value to pass to Deflater.setStrategy() for this
+	 * CompressionStrategy.
+	 * 
+	 * @return
+	 * The Deflater constant.
+	 */
+	public int deflaterValue() {
+		return deflaterValue;
+	}
+}
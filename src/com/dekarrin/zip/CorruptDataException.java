@@ -0,0 +1,20 @@
+package com.dekarrin.zip;
+
+/**
+ * Exception indicating that compressed data could not be
+ * decompressed because it is not in the expected format.
+ */
+public class CorruptDataException extends RuntimeException {
+
+	private static final long serialVersionUID = 4130291622703951763L;
+
+	/**
+	 * Creates a new CorruptDataException with a specified message.
+	 *
+	 * @param message
+	 * The message to assign to this CorruptDataException.
+	 */
+	public CorruptDataException(String message) {
+		super(message);
+	}
+}
@@ -1,5 +1,10 @@
 package com.dekarrin.zip;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
 /**
  * Methods for decompressing binary data.
  */
@@ -14,6 +19,25 @@ public interface Decompresser {
 	 */
 	public byte[] decompress();
 	
+	/**
+	 * Decompresses the data into an array of a known length. The data
+	 * is inflated straight into the array with no intermediate
+	 * copying. If the data has already been decompressed, the stored
+	 * output is returned.
+	 *
+	 * @param length
+	 * The exact length of the decompressed data.
+	 *
+	 * @return
+	 * The decompressed data.
+	 *
+	 * @throws CorruptDataException
+	 * If the data does not decompress to exactly the given length,
+	 * or if there is anything after the end of the compressed
+	 * stream.
+	 */
+	public byte[] decompressExact(int length) throws CorruptDataException;
+	
 	/**
 	 * Decompresses the data into a String. The string uses the default
 	 * encoding for the system.
@@ -39,12 +63,65 @@ public interface Decompresser {
 	 * Changes the size of the output buffer. This will not affect
 	 * the size of the value returned, but will change the memory
 	 * requirement for the operation. A larger buffer means less
-	 * time wasted on the creation of a new buffer every time the
-	 * current one is filled, but also uses more memory. The
-	 * default size for the buffer is 50.
+	 * time spent passing data through the buffer, but also uses
+	 * more memory. The default size for the buffer is 8192.
 	 * 
 	 * @param newSize
 	 * The size in bytes to set the output buffer to.
 	 */
 	public void setBufferSize(int newSize);
+	
+	/**
+	 * Decompresses all of the data read from a stream and writes the
+	 * result to another stream. Data is read and written one buffer
+	 * at a time, so it is never all held in memory. Any data that
+	 * this object was created with is not used. Neither stream is
+	 * closed.
+	 *
+	 * @param in
+	 * The stream to read compressed data from.
+	 *
+	 * @param out
+	 * The stream to write the decompressed data to.
+	 *
+	 * @return
+	 * The number of bytes written to the output stream.
+	 *
+	 * @throws IOException
+	 * If either stream fails.
+	 */
+	public long decompress(InputStream in, OutputStream out) throws IOException;
+	
+	/**
+	 * Decompresses the remaining data in one buffer into another. Direct
+	 * buffers are supported for both. The input is read from its
+	 * position to its limit. The result is written at the position
+	 * of the output buffer; if it does not fit, a larger buffer of
+	 * the same kind is allocated, the output so far is copied into
+	 * it, and it takes the place of the output buffer. Any data that
+	 * this object was created with is not used.
+	 *
+	 * @param input
+	 * The buffer holding the compressed data.
+	 *
+	 * @param output
+	 * The buffer to write the decompressed data to.
+	 *
+	 * @return
+	 * The buffer holding the result. This is the output buffer
+	 * unless it had to be grown. Its position is just past the last
+	 * byte written.
+	 */
+	public ByteBuffer decompress(ByteBuffer input, ByteBuffer output);
+	
+	/**
+	 * Gives the expected size of the result so that room can be
+	 * allocated for it all at once. The result is still correct if
+	 * the real size differs; it only takes more copying.
+	 * 
+	 * @param size
+	 * The expected size of the result in bytes, or 0 if it is not
+	 * known.
+	 */
+	public void setExpectedSize(int size);
 }
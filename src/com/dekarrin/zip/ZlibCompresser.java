@@ -1,10 +1,16 @@
 package com.dekarrin.zip;
 
 import java.util.zip.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 
 /**
- * Compresses binary data using ZLIB.
+ * Compresses binary data using ZLIB. Output is collected in a buffer
+ * that doubles in size whenever it fills, so compressing n bytes takes
+ * O(n) copying no matter how small the buffer size is.
  */
 public class ZlibCompresser implements Compresser {
 	
@@ -22,7 +28,23 @@ public class ZlibCompresser implements Compresser {
 	 * The size of the output buffer. This is how many bytes
 	 * are attempted to be compressed each time.
 	 */
-	private int outputBufferSize = 50;
+	private int outputBufferSize = 8192;
+	
+	/**
+	 * The expected size of the compressed data, or 0 if it is not
+	 * known.
+	 */
+	private int expectedSize = 0;
+	
+	/**
+	 * The compression level, from 0 to 9.
+	 */
+	private int level = Deflater.DEFAULT_COMPRESSION;
+	
+	/**
+	 * The strategy used for compression.
+	 */
+	private CompressionStrategy strategy = CompressionStrategy.DEFAULT;
 	
 	/**
 	 * Creates a new ZlibCompresser for the specified data.
@@ -34,6 +56,42 @@ public class ZlibCompresser implements Compresser {
 		uncompressedData = data;
 	}
 	
+	/**
+	 * Creates a new ZlibCompresser for the specified data with a
+	 * specific compression level and strategy.
+	 *
+	 * @param data
+	 * The binary data to compress.
+	 *
+	 * @param level
+	 * The compression level, from 0 (none) to 9 (best), or
+	 * Deflater.DEFAULT_COMPRESSION.
+	 *
+	 * @param strategy
+	 * The strategy to use for compression.
+	 */
+	public ZlibCompresser(byte[] data, int level, CompressionStrategy strategy) {
+		uncompressedData = data;
+		this.level = level;
+		this.strategy = strategy;
+	}
+	
+	/**
+	 * Creates a new ZlibCompresser with no data of its own, for use
+	 * with streams and buffers.
+	 *
+	 * @param level
+	 * The compression level, from 0 (none) to 9 (best), or
+	 * Deflater.DEFAULT_COMPRESSION.
+	 *
+	 * @param strategy
+	 * The strategy to use for compression.
+	 */
+	public ZlibCompresser(int level, CompressionStrategy strategy) {
+		this.level = level;
+		this.strategy = strategy;
+	}
+	
 	/**
 	 * Creates a new ZlibCompresser for the specified String.
 	 *
@@ -98,60 +156,107 @@ public class ZlibCompresser implements Compresser {
 	/**
 	 * {@inheritDoc}
 	 */
-	public void setBufferSize(int newSize) {
-		outputBufferSize = newSize;
+	public long compress(InputStream in, OutputStream out) throws IOException {
+		Deflater compresser = ZlibPool.acquireDeflater(level, strategy);
+		try {
+			byte[] inputBuffer = new byte[outputBufferSize];
+			byte[] outputBuffer = new byte[outputBufferSize];
+			long total = 0;
+			int count;
+			while((count = in.read(inputBuffer)) != -1) {
+				compresser.setInput(inputBuffer, 0, count);
+				while(!compresser.needsInput()) {
+					count = compresser.deflate(outputBuffer);
+					out.write(outputBuffer, 0, count);
+					total += count;
+				}
+			}
+			compresser.finish();
+			while(!compresser.finished()) {
+				count = compresser.deflate(outputBuffer);
+				out.write(outputBuffer, 0, count);
+				total += count;
+			}
+			return total;
+		} finally {
+			ZlibPool.releaseDeflater(compresser);
+		}
 	}
 	
 	/**
-	 * Compresses the stored data.
+	 * {@inheritDoc}
 	 */
-	private void compressInputData() {
-		Deflater compresser = new Deflater();
-		compresser.setInput(uncompressedData);
-		compresser.finish();
-		byte[] outputBuffer = new byte[outputBufferSize];
-		int actualLength = 0;
-		while(!compresser.finished()) {
-			actualLength = compresser.deflate(outputBuffer);
-			addToOutput(outputBuffer, actualLength);
+	public ByteBuffer compress(ByteBuffer input, ByteBuffer output) {
+		Deflater compresser = ZlibPool.acquireDeflater(level, strategy);
+		try {
+			byte[] inputBuffer = null;
+			if(input.hasArray()) {
+				compresser.setInput(input.array(), input.arrayOffset() + input.position(), input.remaining());
+				input.position(input.limit());
+				compresser.finish();
+			} else {
+				inputBuffer = new byte[outputBufferSize];
+			}
+			byte[] outputBuffer = output.hasArray() ? null : new byte[outputBufferSize];
+			while(!compresser.finished()) {
+				if(inputBuffer != null && compresser.needsInput()) {
+					if(input.hasRemaining()) {
+						int count = Math.min(input.remaining(), inputBuffer.length);
+						input.get(inputBuffer, 0, count);
+						compresser.setInput(inputBuffer, 0, count);
+					} else {
+						compresser.finish();
+						inputBuffer = null;
+					}
+				}
+				if(!output.hasRemaining()) {
+					output = ByteBuffers.grow(output);
+					if(output.hasArray()) {
+						outputBuffer = null;
+					}
+				}
+				if(outputBuffer == null) {
+					int count = compresser.deflate(output.array(), output.arrayOffset() + output.position(), output.remaining());
+					output.position(output.position() + count);
+				} else {
+					int count = compresser.deflate(outputBuffer, 0, Math.min(outputBuffer.length, output.remaining()));
+					output.put(outputBuffer, 0, count);
+				}
+			}
+			return output;
+		} finally {
+			ZlibPool.releaseDeflater(compresser);
 		}
-		compresser.end();
 	}
 	
 	/**
-	 * Adds the result of a deflation to the output bytes.
-	 *
-	 * @param result
-	 * The result of a deflation operation.
-	 *
-	 * @param length
-	 * The length to which the result array should be processed.
-	 */
-	private void addToOutput(byte[] result, int length) {
-		int oldDataLength = (compressedData != null) ? compressedData.length : 0;
-		allocateCompressedData(length);
-		for(int i = 0; i < length; i++) {
-			compressedData[oldDataLength + i] = result[i];
-		}
+	 * {@inheritDoc}
+	 */
+	public void setBufferSize(int newSize) {
+		outputBufferSize = newSize;
 	}
 	
 	/**
-	 * Allocates the compressed data with more memory. If it hasn't
-	 * been initialized yet, that is done as well.
-	 *
-	 * @param amount
-	 * The extra amount to allocate to the compressed data. It's new size
-	 * will be its old size + amount.
+	 * {@inheritDoc}
 	 */
-	private void allocateCompressedData(int amount) {
-		if(compressedData == null) {
-			compressedData = new byte[0];
+	public void setExpectedSize(int size) {
+		expectedSize = size;
+	}
+	
+	/**
+	 * Compresses the stored data. Without an expected size, the
+	 * output starts at half the size of the input.
+	 */
+	private void compressInputData() {
+		if(uncompressedData == null) {
+			throw new IllegalStateException("No data to compress");
 		}
-		byte[] holder = new byte[compressedData.length + amount];
-		for(int i = 0; i < compressedData.length; i++) {
-			holder[i] = compressedData[i];
+		int capacity = expectedSize;
+		if(capacity <= 0) {
+			capacity = Math.max(outputBufferSize, uncompressedData.length / 2);
 		}
-		compressedData = holder;
+		ByteBuffer output = compress(ByteBuffer.wrap(uncompressedData), ByteBuffer.allocate(capacity));
+		compressedData = ByteBuffers.toArray(output);
 	}
 	
 	/**
@@ -1,10 +1,17 @@
 package com.dekarrin.zip;
 
 import java.util.zip.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 
 /**
- * Decompresses binary data using ZLIB.
+ * Decompresses binary data using ZLIB. Output is collected in a buffer
+ * that doubles in size whenever it fills, so decompressing to n bytes
+ * takes O(n) copying no matter how small the buffer size is. Data
+ * that is not a valid zlib stream causes a CorruptDataException.
  */
 public class ZlibDecompresser implements Decompresser {
 	
@@ -22,7 +29,20 @@ public class ZlibDecompresser implements Decompresser {
 	 * The size of the output buffer. This is how many bytes
 	 * are attempted to be decompressed each time.
 	 */
-	private int outputBufferSize = 50;
+	private int outputBufferSize = 8192;
+	
+	/**
+	 * The expected size of the decompressed data, or 0 if it is not
+	 * known.
+	 */
+	private int expectedSize = 0;
+	
+	/**
+	 * Creates a new ZlibDecompresser with no data of its own, for use
+	 * with streams and buffers.
+	 */
+	public ZlibDecompresser() {
+	}
 	
 	/**
 	 * Creates a new ZlibDecompresser for the specified data.
@@ -72,6 +92,18 @@ public class ZlibDecompresser implements Decompresser {
 		return decompressedData;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public byte[] decompressExact(int length) throws CorruptDataException {
+		if(!alreadyDecompressed()) {
+			decompressInputData(length);
+		} else if(decompressedData.length != length) {
+			throw new CorruptDataException("Decompressed data is " + decompressedData.length + " bytes, not " + length);
+		}
+		return decompressedData;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -95,6 +127,76 @@ public class ZlibDecompresser implements Decompresser {
 		return output;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public long decompress(InputStream in, OutputStream out) throws IOException {
+		Inflater decompresser = ZlibPool.acquireInflater();
+		try {
+			byte[] inputBuffer = new byte[outputBufferSize];
+			byte[] outputBuffer = new byte[outputBufferSize];
+			long total = 0;
+			while(!decompresser.finished()) {
+				if(decompresser.needsInput()) {
+					int count = in.read(inputBuffer);
+					if(count == -1) {
+						throw new CorruptDataException("Compressed data ended early");
+					}
+					decompresser.setInput(inputBuffer, 0, count);
+				}
+				int count = inflate(decompresser, outputBuffer, 0, outputBuffer.length);
+				out.write(outputBuffer, 0, count);
+				total += count;
+			}
+			return total;
+		} finally {
+			ZlibPool.releaseInflater(decompresser);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public ByteBuffer decompress(ByteBuffer input, ByteBuffer output) {
+		Inflater decompresser = ZlibPool.acquireInflater();
+		try {
+			byte[] inputBuffer = null;
+			if(input.hasArray()) {
+				decompresser.setInput(input.array(), input.arrayOffset() + input.position(), input.remaining());
+				input.position(input.limit());
+			} else {
+				inputBuffer = new byte[outputBufferSize];
+			}
+			byte[] outputBuffer = output.hasArray() ? null : new byte[outputBufferSize];
+			while(!decompresser.finished()) {
+				if(decompresser.needsInput()) {
+					if(inputBuffer == null || !input.hasRemaining()) {
+						throw new CorruptDataException("Compressed data ended early");
+					}
+					int count = Math.min(input.remaining(), inputBuffer.length);
+					input.get(inputBuffer, 0, count);
+					decompresser.setInput(inputBuffer, 0, count);
+				}
+				if(!output.hasRemaining()) {
+					output = ByteBuffers.grow(output);
+					if(output.hasArray()) {
+						outputBuffer = null;
+					}
+				}
+				if(outputBuffer == null) {
+					int count = inflate(decompresser, output.array(), output.arrayOffset() + output.position(), output.remaining());
+					output.position(output.position() + count);
+				} else {
+					int count = inflate(decompresser, outputBuffer, 0, Math.min(outputBuffer.length, output.remaining()));
+					output.put(outputBuffer, 0, count);
+				}
+			}
+			return output;
+		} finally {
+			ZlibPool.releaseInflater(decompresser);
+		}
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -103,59 +205,99 @@ public class ZlibDecompresser implements Decompresser {
 	}
 	
 	/**
-	 * Decompresses the stored data.
+	 * {@inheritDoc}
+	 */
+	public void setExpectedSize(int size) {
+		expectedSize = size;
+	}
+	
+	/**
+	 * Decompresses the stored data. Without an expected size, the
+	 * output starts at four times the size of the input.
 	 */
 	private void decompressInputData() {
-		Inflater decompresser = new Inflater();
-		decompresser.setInput(compressedData);
-		byte[] outputBuffer = new byte[outputBufferSize];
-		int actualLength = 0;
-		while(!decompresser.finished()) {
-			try {
-				actualLength = decompresser.inflate(outputBuffer);
-			} catch(DataFormatException e) {
-				System.err.println("Bad DEFLATE format!");
-				System.exit(1);
-			}
-			addToOutput(outputBuffer, actualLength);
+		if(compressedData == null) {
+			throw new IllegalStateException("No data to decompress");
 		}
-		decompresser.end();
+		int capacity = expectedSize;
+		if(capacity <= 0) {
+			capacity = (int)Math.min(Integer.MAX_VALUE - 8, Math.max(outputBufferSize, compressedData.length * 4L));
+		}
+		ByteBuffer output = decompress(ByteBuffer.wrap(compressedData), ByteBuffer.allocate(capacity));
+		decompressedData = ByteBuffers.toArray(output);
 	}
 	
 	/**
-	 * Adds the result of an inflation to the output bytes.
-	 *
-	 * @param result
-	 * The result of an inflation operation.
+	 * Decompresses the stored data into an array of an exact length.
+	 * Once the array is full, the rest of the stream is inflated a
+	 * byte at a time to confirm that it ends there.
 	 *
 	 * @param length
-	 * The length to which the result array should be processed.
+	 * The exact length of the decompressed data.
 	 */
-	private void addToOutput(byte[] result, int length) {
-		int oldDataLength = (decompressedData != null) ? decompressedData.length : 0;
-		allocateDecompressedData(length);
-		for(int i = 0; i < length; i++) {
-			decompressedData[oldDataLength + i] = result[i];
+	private void decompressInputData(int length) {
+		if(compressedData == null) {
+			throw new IllegalStateException("No data to decompress");
+		}
+		Inflater decompresser = ZlibPool.acquireInflater();
+		try {
+			decompresser.setInput(compressedData);
+			byte[] output = new byte[length];
+			int filled = 0;
+			while(filled < length) {
+				if(decompresser.finished()) {
+					throw new CorruptDataException("Decompressed data is " + filled + " bytes, not " + length);
+				} else if(decompresser.needsInput()) {
+					throw new CorruptDataException("Compressed data ended early");
+				}
+				filled += inflate(decompresser, output, filled, length - filled);
+			}
+			byte[] probe = new byte[1];
+			while(!decompresser.finished()) {
+				if(decompresser.needsInput()) {
+					throw new CorruptDataException("Compressed data ended early");
+				} else if(inflate(decompresser, probe, 0, 1) > 0) {
+					throw new CorruptDataException("Decompressed data is longer than " + length + " bytes");
+				}
+			}
+			if(decompresser.getRemaining() > 0) {
+				throw new CorruptDataException("Unexpected data after the end of the compressed data");
+			}
+			decompressedData = output;
+		} finally {
+			ZlibPool.releaseInflater(decompresser);
 		}
 	}
 	
 	/**
-	 * Allocates the decompressedData with more memory. If it hasn't
-	 * been initialized yet, that is done as well.
+	 * Runs an Inflater once, turning its exceptions into
+	 * CorruptDataExceptions.
+	 *
+	 * @param decompresser
+	 * The Inflater to run.
+	 *
+	 * @param buffer
+	 * The array to write the output to.
+	 *
+	 * @param offset
+	 * The index of the first byte of output.
 	 *
-	 * @param amount
-	 * The extra amount to allocate to decompressedData. It's new size
-	 * will be its old size + amount.
+	 * @param length
+	 * The most bytes of output to write.
+	 *
+	 * @return
+	 * The number of bytes written.
 	 */
-	private void allocateDecompressedData(int amount) {
-		if(decompressedData == null) {
-			decompressedData = new byte[0];
-		}
-		byte[] holder = new byte[decompressedData.length + amount];
-		for(int i = 0; i < decompressedData.length; i++) {
-			holder[i] = decompressedData[i];
+	private static int inflate(Inflater decompresser, byte[] buffer, int offset, int length) {
+		try {
+			int count = decompresser.inflate(buffer, offset, length);
+			if(count == 0 && decompresser.needsDictionary()) {
+				throw new CorruptDataException("Compressed data requires a preset dictionary");
+			}
+			return count;
+		} catch(DataFormatException e) {
+			throw new CorruptDataException("Bad DEFLATE format: " + e.getMessage());
 		}
-		decompressedData = holder;
 	}
 	
 	/**
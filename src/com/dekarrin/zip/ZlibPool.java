@@ -0,0 +1,174 @@
+package com.dekarrin.zip;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps one idle Deflater and one idle Inflater for each thread so
+ * that their native resources can be reused from one operation to
+ * the next instead of being allocated and freed every time. An
+ * object that is taken from the pool belongs to the caller until it
+ * is released, so pooled objects are never shared between threads.
+ */
+public class ZlibPool {
+	
+	/**
+	 * The idle Deflater of each thread.
+	 */
+	private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>();
+	
+	/**
+	 * The idle Inflater of each thread.
+	 */
+	private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>();
+	
+	/**
+	 * The idle raw Deflater of each thread.
+	 */
+	private static final ThreadLocal<Deflater> rawDeflaters = new ThreadLocal<Deflater>();
+	
+	/**
+	 * Takes a Deflater from the current thread's pool, creating one
+	 * if there is none available.
+	 * 
+	 * @param level
+	 * The compression level, from 0 to 9, or
+	 * Deflater.DEFAULT_COMPRESSION.
+	 * 
+	 * @param strategy
+	 * The compression strategy.
+	 * 
+	 * @return
+	 * A Deflater that is ready for new input.
+	 */
+	public static Deflater acquireDeflater(int level, CompressionStrategy strategy) {
+		return acquire(deflaters, false, level, strategy);
+	}
+	
+	/**
+	 * Takes a raw Deflater from the current thread's pool, creating
+	 * one if there is none available. A raw Deflater writes plain
+	 * DEFLATE data with no zlib header or checksum, so that its
+	 * output can be joined with the output of others.
+	 * 
+	 * @param level
+	 * The compression level, from 0 to 9, or
+	 * Deflater.DEFAULT_COMPRESSION.
+	 * 
+	 * @param strategy
+	 * The compression strategy.
+	 * 
+	 * @return
+	 * A raw Deflater that is ready for new input.
+	 */
+	public static Deflater acquireRawDeflater(int level, CompressionStrategy strategy) {
+		return acquire(rawDeflaters, true, level, strategy);
+	}
+	
+	/**
+	 * Takes an Inflater from the current thread's pool, creating one
+	 * if there is none available.
+	 * 
+	 * @return
+	 * An Inflater that is ready for new input.
+	 */
+	public static Inflater acquireInflater() {
+		Inflater inflater = inflaters.get();
+		if(inflater != null) {
+			inflaters.set(null);
+		} else {
+			inflater = new Inflater();
+		}
+		return inflater;
+	}
+	
+	/**
+	 * Returns a Deflater to the current thread's pool. If the pool
+	 * already holds one, the Deflater is ended instead. The Deflater
+	 * must not be used after it is released.
+	 * 
+	 * @param deflater
+	 * The Deflater to release.
+	 */
+	public static void releaseDeflater(Deflater deflater) {
+		release(deflaters, deflater);
+	}
+	
+	/**
+	 * Returns a raw Deflater to the current thread's pool. If the
+	 * pool already holds one, the Deflater is ended instead. The
+	 * Deflater must not be used after it is released.
+	 * 
+	 * @param deflater
+	 * The raw Deflater to release.
+	 */
+	public static void releaseRawDeflater(Deflater deflater) {
+		release(rawDeflaters, deflater);
+	}
+	
+	/**
+	 * Returns an Inflater to the current thread's pool. If the pool
+	 * already holds one, the Inflater is ended instead. The Inflater
+	 * must not be used after it is released.
+	 * 
+	 * @param inflater
+	 * The Inflater to release.
+	 */
+	public static void releaseInflater(Inflater inflater) {
+		if(inflaters.get() == null) {
+			inflater.reset();
+			inflaters.set(inflater);
+		} else {
+			inflater.end();
+		}
+	}
+	
+	/**
+	 * Takes a Deflater from a pool, creating one if there is none
+	 * available.
+	 * 
+	 * @param pool
+	 * The pool to take the Deflater from.
+	 * 
+	 * @param nowrap
+	 * Whether a new Deflater should omit the zlib header.
+	 * 
+	 * @param level
+	 * The compression level.
+	 * 
+	 * @param strategy
+	 * The compression strategy.
+	 * 
+	 * @return
+	 * A Deflater that is ready for new input.
+	 */
+	private static Deflater acquire(ThreadLocal<Deflater> pool, boolean nowrap, int level, CompressionStrategy strategy) {
+		Deflater deflater = pool.get();
+		if(deflater != null) {
+			pool.set(null);
+			deflater.setLevel(level);
+		} else {
+			deflater = new Deflater(level, nowrap);
+		}
+		deflater.setStrategy(strategy.deflaterValue());
+		return deflater;
+	}
+	
+	/**
+	 * Returns a Deflater to a pool, or ends it if the pool is full.
+	 * 
+	 * @param pool
+	 * The pool to return the Deflater to.
+	 * 
+	 * @param deflater
+	 * The Deflater to release.
+	 */
+	private static void release(ThreadLocal<Deflater> pool, Deflater deflater) {
+		if(pool.get() == null) {
+			deflater.reset();
+			pool.set(deflater);
+		} else {
+			deflater.end();
+		}
+	}
+}